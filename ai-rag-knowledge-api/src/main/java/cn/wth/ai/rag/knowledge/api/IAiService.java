@@ -14,6 +14,9 @@ public interface IAiService {
 
     Flux<ChatResponse> generateStream(String model, String message);
 
-    Flux<ChatResponse> generateStreamRag(String model, String ragTag, String message);
+    /**
+     * @param retrievalMode 检索方式：vector、keyword、hybrid，为空使用默认配置
+     */
+    Flux<ChatResponse> generateStreamRag(String model, String ragTag, String message, String retrievalMode);
 
 }
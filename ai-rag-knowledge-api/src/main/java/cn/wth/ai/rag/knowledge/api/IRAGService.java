@@ -1,5 +1,8 @@
 package cn.wth.ai.rag.knowledge.api;
 
+import cn.wth.ai.rag.knowledge.api.dto.EmbeddingCacheStatsDTO;
+import cn.wth.ai.rag.knowledge.api.dto.IngestJobDTO;
+import cn.wth.ai.rag.knowledge.api.dto.KnowledgeBaseDTO;
 import cn.wth.ai.rag.knowledge.api.response.Response;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -14,7 +17,17 @@ public interface IRAGService {
 
     Response<List<String>> queryRagTagList();
 
+    Response<List<KnowledgeBaseDTO>> queryKnowledgeBaseList();
+
     Response<String> uploadFile(String ragTag, List<MultipartFile> files);
 
+    Response<IngestJobDTO> queryIngestJob(String jobId);
+
+    Response<EmbeddingCacheStatsDTO> queryEmbeddingCacheStats();
+
     Response<String> analyzeGitRepository(String repoUrl, String userName, String token) throws Exception;
+
+    Response<Boolean> deleteRagTag(String ragTag);
+
+    Response<Boolean> reindexRagTag(String ragTag);
 }
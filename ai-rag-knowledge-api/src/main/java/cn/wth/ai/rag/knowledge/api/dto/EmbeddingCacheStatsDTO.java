@@ -0,0 +1,32 @@
+package cn.wth.ai.rag.knowledge.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @Author: 5th
+ * @Description: 向量缓存命中统计
+ * @CreateTime: 2026-10-18 15:40
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmbeddingCacheStatsDTO implements Serializable {
+
+    /** 进程内缓存命中数 */
+    private long localHits;
+    /** Redis缓存命中数 */
+    private long redisHits;
+    /** 未命中数，即实际调用向量模型的文本数 */
+    private long misses;
+    /** 命中率 */
+    private double hitRate;
+    /** 进程内缓存条目数 */
+    private long localSize;
+
+}
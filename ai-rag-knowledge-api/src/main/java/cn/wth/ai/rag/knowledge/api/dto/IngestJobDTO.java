@@ -0,0 +1,78 @@
+package cn.wth.ai.rag.knowledge.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库导入任务进度
+ * @CreateTime: 2026-10-18 14:20
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestJobDTO implements Serializable {
+
+    /** 任务ID */
+    private String jobId;
+    /** 知识库标签 */
+    private String ragTag;
+    /** 任务状态；PENDING、RUNNING、COMPLETED、PARTIAL_FAILED、FAILED */
+    private String status;
+    /** 扫描过的文件数，仅仓库导入 */
+    private long scannedFiles;
+    /** 被过滤掉（排除规则、超过大小上限、二进制）的文件数，仅仓库导入 */
+    private long skippedFiles;
+    /** 文件总数 */
+    private int totalFiles;
+    /** 已完成文件数 */
+    private int finishedFiles;
+    /** 失败文件数 */
+    private int failedFiles;
+    /** 已写入向量库的分片数 */
+    private long chunks;
+    /** 与知识库已有内容完全重复（忽略空白差异）而未写入的分片数 */
+    private long duplicateChunks;
+    /** 与知识库已有内容近似重复（SimHash 汉明距离在阈值内）而未写入的分片数 */
+    private long nearDuplicateChunks;
+    /** 已解析的字节数 */
+    private long bytes;
+    /** 任务耗时（毫秒） */
+    private long elapsedMillis;
+    /** 分片吞吐（个/秒） */
+    private double chunksPerSecond;
+    /** 解析吞吐（字节/秒） */
+    private double bytesPerSecond;
+    /** 任务级失败原因，例如仓库拉取失败 */
+    private String error;
+    /** 文件明细 */
+    private List<FileProgress> files;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FileProgress implements Serializable {
+        /** 文件名 */
+        private String fileName;
+        /** 文件状态；QUEUED、PARSING、EMBEDDING、DONE、FAILED */
+        private String status;
+        /** 已切分出的分片数，解析期间持续增长 */
+        private int chunks;
+        /** 已写入的分片数 */
+        private int writtenChunks;
+        /** 完全重复而未写入的分片数 */
+        private int duplicateChunks;
+        /** 近似重复而未写入的分片数 */
+        private int nearDuplicateChunks;
+        /** 失败原因 */
+        private String error;
+    }
+
+}
@@ -0,0 +1,32 @@
+package cn.wth.ai.rag.knowledge.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库目录中的一项
+ * @CreateTime: 2026-10-19 02:30
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeBaseDTO implements Serializable {
+
+    /** 知识库标签 */
+    private String ragTag;
+    /** 向量库中的分片数，最近一次导入任务结束时统计 */
+    private long chunks;
+    /** 最近一次导入任务结束的时间，从未导入完成为0 */
+    private long lastIndexedTime;
+    /** 最近一次导入使用的向量模型 */
+    private String embeddingModel;
+    /** 登记时间 */
+    private long createTime;
+
+}
@@ -0,0 +1,25 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.embedding.EmbeddingCache;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 向量缓存，两级：进程内 Caffeine + 可选的 Redis
+ */
+@Configuration
+@EnableConfigurationProperties(EmbeddingCacheConfigProperties.class)
+public class EmbeddingCacheConfig {
+
+    @Bean
+    public EmbeddingCache embeddingCache(EmbeddingCacheConfigProperties properties, RedissonClient redissonClient) {
+        return new EmbeddingCache(properties.getLocalMaxMegabytes() * 1024L * 1024L,
+                properties.isRedisEnabled() ? redissonClient : null,
+                Duration.ofHours(properties.getRedisTtlHours()));
+    }
+
+}
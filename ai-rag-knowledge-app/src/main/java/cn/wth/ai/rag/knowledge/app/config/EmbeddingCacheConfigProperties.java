@@ -0,0 +1,22 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 向量缓存配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.embedding.cache", ignoreInvalidFields = true)
+public class EmbeddingCacheConfigProperties {
+
+    /** 是否启用向量缓存，默认为true */
+    private boolean enabled = true;
+    /** 进程内缓存容量上限（单位：MB），默认为64 */
+    private int localMaxMegabytes = 64;
+    /** 是否启用Redis共享缓存，默认为false */
+    private boolean redisEnabled = false;
+    /** Redis中缓存的过期时间（单位：小时），默认为168 */
+    private int redisTtlHours = 168;
+
+}
@@ -0,0 +1,98 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.catalog.KnowledgeBaseCatalog;
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import cn.wth.ai.rag.knowledge.trigger.git.GitRepositoryIndexer;
+import cn.wth.ai.rag.knowledge.trigger.git.RepositoryFileWalker;
+import cn.wth.ai.rag.knowledge.trigger.ingest.ChunkDeduplicator;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestJobRegistry;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestPipeline;
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTokenSplitter;
+import cn.wth.ai.rag.knowledge.trigger.ingest.VectorStoreWriter;
+import cn.wth.ai.rag.knowledge.trigger.metrics.RagMetrics;
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识库导入流水线配置
+ */
+@Configuration
+@EnableConfigurationProperties(IngestConfigProperties.class)
+public class IngestConfig {
+
+    @Bean
+    public IngestJobRegistry ingestJobRegistry(IngestConfigProperties properties) {
+        return new IngestJobRegistry(Paths.get(properties.getSpoolDir()), TimeUnit.MINUTES.toMillis(properties.getJobRetentionMinutes()));
+    }
+
+    /**
+     * 文本切分器；导入流水线流式切分，也可以作为 DocumentTransformer 整篇切分，代码文件按类、方法边界断开
+     */
+    @Bean
+    public StreamingTokenSplitter tokenSplitter(IngestConfigProperties properties) {
+        return new StreamingTokenSplitter(properties.getSplitter());
+    }
+
+    /**
+     * 分片去重；指纹按知识库登记在Redis中，向量化之前去掉知识库里已有的完全重复、近似重复分片
+     */
+    @Bean
+    public ChunkDeduplicator chunkDeduplicator(RedissonClient redissonClient, IngestConfigProperties properties) {
+        return new ChunkDeduplicator(redissonClient, properties.getDedup());
+    }
+
+    /**
+     * 导入流水线；流式解析切分、去重与向量化、写库三个阶段各自使用有界线程池，各阶段耗时记录到 rag.ingest.* 指标。
+     * 开启虚拟线程时各阶段改用虚拟线程，线程数不变
+     */
+    @Bean
+    public IngestPipeline ingestPipeline(StreamingTokenSplitter tokenSplitter, ChunkDeduplicator chunkDeduplicator,
+                                         @Qualifier("ollamaEmbeddingModel") EmbeddingModel embeddingModel,
+                                         VectorStoreWriter vectorStoreWriter, RagMetrics ragMetrics, IngestConfigProperties properties,
+                                         ThreadMode threadMode) {
+        return new IngestPipeline(tokenSplitter, chunkDeduplicator, embeddingModel, vectorStoreWriter, ragMetrics, properties.getPipeline(),
+                threadMode);
+    }
+
+    /**
+     * Git仓库文件遍历；并行遍历工作区，过滤排除目录、大文件和二进制文件
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RepositoryFileWalker repositoryFileWalker(IngestConfigProperties properties) {
+        return new RepositoryFileWalker(properties.getWalker());
+    }
+
+    /**
+     * Git仓库增量索引；已索引的提交记录在Redis中，拉取在有界线程池中异步执行
+     */
+    @Bean(destroyMethod = "shutdown")
+    public GitRepositoryIndexer gitRepositoryIndexer(RedissonClient redissonClient, VectorStoreWriter vectorStoreWriter,
+                                                     ChunkDeduplicator chunkDeduplicator, IngestJobRegistry ingestJobRegistry,
+                                                     IngestPipeline ingestPipeline, RepositoryFileWalker repositoryFileWalker,
+                                                     IngestConfigProperties properties, ThreadMode threadMode) {
+        return new GitRepositoryIndexer(Paths.get(properties.getGitRepoDir()), redissonClient, vectorStoreWriter, chunkDeduplicator,
+                ingestJobRegistry, ingestPipeline, repositoryFileWalker, properties.getGit(), threadMode);
+    }
+
+    /**
+     * 知识库目录；存在Redis哈希中，各节点读内存副本，变更通过Redis发布订阅通知。导入任务结束后更新分片数和导入时间
+     */
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public KnowledgeBaseCatalog knowledgeBaseCatalog(RedissonClient redissonClient, IngestPipeline ingestPipeline, VectorStoreRouter vectorStoreRouter,
+                                                     @Value("${spring.ai.ollama.embedding.model:nomic-embed-text}") String embeddingModel,
+                                                     IngestConfigProperties properties) {
+        KnowledgeBaseCatalog catalog = new KnowledgeBaseCatalog(redissonClient, embeddingModel, properties.getCatalog());
+        ingestPipeline.onJobFinished(job -> catalog.recordIndexed(job.getRagTag(), vectorStoreRouter.count(job.getRagTag())));
+        return catalog;
+    }
+
+}
@@ -0,0 +1,38 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.catalog.KnowledgeBaseCatalog;
+import cn.wth.ai.rag.knowledge.trigger.git.GitRepositoryIndexer;
+import cn.wth.ai.rag.knowledge.trigger.git.RepositoryFileWalker;
+import cn.wth.ai.rag.knowledge.trigger.ingest.ChunkDeduplicator;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestPipeline;
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTokenSplitter;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 知识库导入配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.ingest", ignoreInvalidFields = true)
+public class IngestConfigProperties {
+
+    /** 上传文件落盘目录，每个导入任务一个子目录 */
+    private String spoolDir = "./data/ingest-spool";
+    /** Git仓库本地检出目录，每个仓库一个子目录，增量索引时复用 */
+    private String gitRepoDir = "./data/git-repos";
+    /** 已结束任务在内存中的保留时间（单位：分钟），默认为60 */
+    private int jobRetentionMinutes = 60;
+    /** 流水线各阶段线程数与队列上限 */
+    private IngestPipeline.Config pipeline = new IngestPipeline.Config();
+    /** 分片切分参数，默认与 TokenTextSplitter 相同 */
+    private StreamingTokenSplitter.Config splitter = new StreamingTokenSplitter.Config();
+    /** 分片去重，按知识库去掉完全重复和近似重复的分片 */
+    private ChunkDeduplicator.Config dedup = new ChunkDeduplicator.Config();
+    /** Git仓库拉取并发数与排队上限 */
+    private GitRepositoryIndexer.Config git = new GitRepositoryIndexer.Config();
+    /** Git仓库文件遍历的过滤规则与并行度 */
+    private RepositoryFileWalker.Config walker = new RepositoryFileWalker.Config();
+    /** 知识库目录，各节点内存副本的刷新间隔 */
+    private KnowledgeBaseCatalog.Config catalog = new KnowledgeBaseCatalog.Config();
+
+}
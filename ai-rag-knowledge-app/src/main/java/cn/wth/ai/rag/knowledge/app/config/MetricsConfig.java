@@ -0,0 +1,58 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.catalog.KnowledgeBaseCatalog;
+import cn.wth.ai.rag.knowledge.trigger.embedding.EmbeddingCache;
+import cn.wth.ai.rag.knowledge.trigger.metrics.RagMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 导入与问答指标；MeterRegistry 由 Actuator 提供，通过 /actuator/prometheus 导出
+ */
+@Configuration
+@EnableConfigurationProperties(MetricsConfigProperties.class)
+public class MetricsConfig {
+
+    /**
+     * 知识库目录依赖导入流水线，导入流水线又依赖指标，目录在首次记录指标时再取
+     */
+    @Bean
+    public RagMetrics ragMetrics(MeterRegistry meterRegistry,
+                                 @Value("${spring.ai.ollama.embedding.model:nomic-embed-text}") String embeddingModel,
+                                 MetricsConfigProperties properties, ObjectProvider<KnowledgeBaseCatalog> knowledgeBaseCatalog) {
+        return new RagMetrics(meterRegistry, embeddingModel, properties.getMaxRagTags(),
+                ragTag -> knowledgeBaseCatalog.getObject().contains(ragTag));
+    }
+
+    /**
+     * 向量缓存的命中计数；导出时读取缓存已有的计数，缓存读写路径上不再额外计数
+     */
+    @Bean
+    public MeterBinder embeddingCacheMetrics(EmbeddingCache embeddingCache) {
+        return registry -> {
+            FunctionCounter.builder("rag.embedding.cache.requests", embeddingCache, EmbeddingCache::getLocalHits)
+                    .description("向量缓存查询次数")
+                    .tag("result", "local-hit")
+                    .register(registry);
+            FunctionCounter.builder("rag.embedding.cache.requests", embeddingCache, EmbeddingCache::getRedisHits)
+                    .description("向量缓存查询次数")
+                    .tag("result", "redis-hit")
+                    .register(registry);
+            FunctionCounter.builder("rag.embedding.cache.requests", embeddingCache, EmbeddingCache::getMisses)
+                    .description("向量缓存查询次数")
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("rag.embedding.cache.size", embeddingCache, EmbeddingCache::getLocalSize)
+                    .description("进程内向量缓存的条目数")
+                    .register(registry);
+        };
+    }
+
+}
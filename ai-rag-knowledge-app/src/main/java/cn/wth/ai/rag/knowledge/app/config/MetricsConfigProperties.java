@@ -0,0 +1,16 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 导入与问答指标配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.metrics", ignoreInvalidFields = true)
+public class MetricsConfigProperties {
+
+    /** 作为标签单独统计的 ragTag 个数上限，超过后新出现的、或不在知识库目录中的 ragTag 记为 other，默认为100 */
+    private int maxRagTags = 100;
+
+}
@@ -1,62 +1,126 @@
 package cn.wth.ai.rag.knowledge.app.config;
 
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import cn.wth.ai.rag.knowledge.trigger.embedding.BatchingEmbeddingModel;
+import cn.wth.ai.rag.knowledge.trigger.embedding.CachingEmbeddingModel;
+import cn.wth.ai.rag.knowledge.trigger.embedding.EmbeddingCache;
+import cn.wth.ai.rag.knowledge.trigger.ollama.OllamaEndpoint;
+import cn.wth.ai.rag.knowledge.trigger.ollama.OllamaRouter;
+import cn.wth.ai.rag.knowledge.trigger.ollama.RoutingOllamaApi;
 import io.micrometer.observation.ObservationRegistry;
-import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.OllamaEmbeddingModel;
 import org.springframework.ai.ollama.api.OllamaApi;
 import org.springframework.ai.ollama.api.OllamaOptions;
-import org.springframework.ai.ollama.management.ModelManagementOptions;
-import org.springframework.ai.openai.api.OpenAiApi;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
+@EnableConfigurationProperties(OllamaRoutingConfigProperties.class)
 public class OllamaConfig {
 
-    @Bean
-    public OllamaApi ollamaApi(@Value("${spring.ai.ollama.base-url}") String baseUrl) {
-        return new OllamaApi(baseUrl);
+    /** 向量表名 */
+    static final String VECTOR_TABLE_NAME = "vector_store_ollama_deepseek";
+
+    /**
+     * 对话节点组；没有配置 rag.ollama.chat 时只有 spring.ai.ollama.base-url 一个节点
+     */
+    @Bean(destroyMethod = "shutdown")
+    public OllamaRouter ollamaChatRouter(@Value("${spring.ai.ollama.base-url}") String baseUrl, OllamaRoutingConfigProperties properties) {
+        return router("chat", chatNodes(baseUrl, properties), properties);
     }
 
+    /**
+     * 向量化节点组；没有配置 rag.ollama.embedding 时使用对话节点的地址，但并发名额单独计算，导入不会占满对话的名额
+     */
+    @Bean(destroyMethod = "shutdown")
+    public OllamaRouter ollamaEmbeddingRouter(@Value("${spring.ai.ollama.base-url}") String baseUrl, OllamaRoutingConfigProperties properties) {
+        List<OllamaEndpoint.Config> nodes = properties.getEmbedding().isEmpty() ? chatNodes(baseUrl, properties) : properties.getEmbedding();
+        return router("embedding", nodes, properties);
+    }
+
+    /**
+     * 对话请求发往对话节点组，向量化请求发往向量化节点组，组内按已加载模型和在途请求数选择节点
+     */
     @Bean
-    public OllamaChatModel chatClient(OllamaApi ollamaApi) {
-        return OllamaChatModel.builder().ollamaApi(ollamaApi).build();
+    public OllamaApi ollamaApi(@Qualifier("ollamaChatRouter") OllamaRouter chatRouter,
+                               @Qualifier("ollamaEmbeddingRouter") OllamaRouter embeddingRouter) {
+        return new RoutingOllamaApi(chatRouter, embeddingRouter);
     }
 
     /**
-     * 配置文本分割器。
-     * 这个Bean负责创建文本分割工具，可以把长文本切分成小段落。
-     * 在做文档检索时，通常需要先把文档分成小块再处理，这个分割器就是干这个的。
+     * 对话模型；接入 Actuator 的 ObservationRegistry 后，每次调用产生 gen_ai.client.operation 计时、token 用量指标和链路追踪的 span
      */
     @Bean
-    public TokenTextSplitter tokenTextSplitter() {
-        return new TokenTextSplitter();
+    public OllamaChatModel chatClient(OllamaApi ollamaApi, ObjectProvider<ObservationRegistry> observationRegistry) {
+        return OllamaChatModel.builder()
+                .ollamaApi(ollamaApi)
+                .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+                .build();
     }
 
     /**
-     * 配置内存向量存储。
-     *
-     * 这个Bean创建一个内存中的向量数据库，用来存储和检索文本的向量表示。
-     * 它使用Ollama的API将文本转换为向量，并用nomic-embed-text模型生成这些向量。
-     * 适合小规模应用或测试使用。
+     * 配置Ollama向量模型。
+     * PostgreSQL向量存储和导入流水线共用这一个实例，模型由 spring.ai.ollama.embedding.model 指定。
+     * 外层包装批量调用：每个请求最多 batchSize 条文本，最多 concurrency 个请求同时在途，结果保持输入顺序。
+     * 最外层是向量缓存，同一模型下内容相同的分片不再重复向量化。
+     * 实际请求模型的调用（未命中缓存的部分）记录到 ObservationRegistry。
      *
      * @param ollamaApi AI模型服务的接口
-     * @return 返回一个可以在内存中存储向量的数据库
+     * @param model 向量模型名称
+     * @param batchSize 单个向量化请求包含的文本数
+     * @param concurrency 同时在途的向量化请求数
+     * @param embeddingCache 向量缓存
+     * @param cacheProperties 向量缓存配置
+     * @param observationRegistry 调用观测，没有时不记录
+     * @param threadMode 批量请求线程类型，与请求处理一致
+     * @return 返回Ollama向量模型
      */
-    @Bean
-    public SimpleVectorStore simpleVectorStore(OllamaApi ollamaApi) {
+    @Bean(destroyMethod = "shutdown")
+    public EmbeddingModel ollamaEmbeddingModel(OllamaApi ollamaApi,
+                                               @Value("${spring.ai.ollama.embedding.model:nomic-embed-text}") String model,
+                                               @Value("${spring.ai.ollama.embedding.batch-size:32}") int batchSize,
+                                               @Value("${spring.ai.ollama.embedding.concurrency:4}") int concurrency,
+                                               EmbeddingCache embeddingCache,
+                                               EmbeddingCacheConfigProperties cacheProperties,
+                                               ObjectProvider<ObservationRegistry> observationRegistry,
+                                               ThreadMode threadMode) {
         OllamaEmbeddingModel embeddingModel = OllamaEmbeddingModel
                 .builder()
                 .ollamaApi(ollamaApi)
-                .defaultOptions(OllamaOptions.builder().model("nomic-embed-text").build())
+                .defaultOptions(OllamaOptions.builder().model(model).build())
+                .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
                 .build();
-        return SimpleVectorStore.builder(embeddingModel).build();
+        BatchingEmbeddingModel batchingEmbeddingModel = new BatchingEmbeddingModel(embeddingModel, batchSize, concurrency, threadMode);
+        if (!cacheProperties.isEnabled()) {
+            return batchingEmbeddingModel;
+        }
+        return new CachingEmbeddingModel(batchingEmbeddingModel, embeddingCache, model);
+    }
+
+    private static List<OllamaEndpoint.Config> chatNodes(String baseUrl, OllamaRoutingConfigProperties properties) {
+        if (!properties.getChat().isEmpty()) return properties.getChat();
+        OllamaEndpoint.Config node = new OllamaEndpoint.Config();
+        node.setBaseUrl(baseUrl);
+        return List.of(node);
+    }
+
+    private static OllamaRouter router(String name, List<OllamaEndpoint.Config> nodes, OllamaRoutingConfigProperties properties) {
+        OllamaRouter router = new OllamaRouter(name, nodes.stream().map(OllamaEndpoint::new).toList(),
+                TimeUnit.SECONDS.toMillis(properties.getAcquireTimeoutSeconds()));
+        router.start(Duration.ofSeconds(properties.getHealthCheckSeconds()));
+        return router;
     }
 
     /**
@@ -65,19 +129,21 @@ public class OllamaConfig {
      * 它同样使用Ollama的API生成向量，但会把这些向量保存在PostgreSQL数据库中。
      * 使用前需要确保PostgreSQL已安装vector扩展。
      *
-     * @param ollamaApi AI模型服务的接口
+     * 分批交给向量模型自己处理，这里不再按token数预先拆分。
+     * 查询使用的距离与 rag.vector.index.distance-type 一致，向量索引才会被使用。
+     *
+     * @param embeddingModel 向量模型
      * @param jdbcTemplate 数据库连接工具
+     * @param vectorProperties 向量库配置
      * @return 返回一个可以在PostgreSQL中存储向量的数据库
      */
     @Bean
-    public PgVectorStore pgVectorStore(OllamaApi ollamaApi, JdbcTemplate jdbcTemplate) {
-        OllamaEmbeddingModel embeddingModel = OllamaEmbeddingModel
-                .builder()
-                .ollamaApi(ollamaApi)
-                .defaultOptions(OllamaOptions.builder().model("nomic-embed-text").build())
-                .build();
+    public PgVectorStore pgVectorStore(@Qualifier("ollamaEmbeddingModel") EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate,
+                                       VectorStoreConfigProperties vectorProperties) {
         return PgVectorStore.builder(jdbcTemplate, embeddingModel)
-                .vectorTableName("vector_store_ollama_deepseek")
+                .vectorTableName(VECTOR_TABLE_NAME)
+                .distanceType(vectorProperties.getIndex().getDistanceType())
+                .batchingStrategy(documents -> List.of(documents))
                 .build();
     }
 
@@ -0,0 +1,26 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.ollama.OllamaEndpoint;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ollama 多节点路由配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.ollama", ignoreInvalidFields = true)
+public class OllamaRoutingConfigProperties {
+
+    /** 对话节点，为空时使用 spring.ai.ollama.base-url */
+    private List<OllamaEndpoint.Config> chat = new ArrayList<>();
+    /** 向量化节点，为空时使用对话节点的地址，并发上限与对话分开计算 */
+    private List<OllamaEndpoint.Config> embedding = new ArrayList<>();
+    /** 所有节点都满载时的最长等待时间（单位：秒），默认为30 */
+    private int acquireTimeoutSeconds = 30;
+    /** 健康检查间隔（单位：秒），默认为10 */
+    private int healthCheckSeconds = 10;
+
+}
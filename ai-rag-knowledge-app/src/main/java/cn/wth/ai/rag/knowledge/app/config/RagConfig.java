@@ -0,0 +1,106 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestPipeline;
+import cn.wth.ai.rag.knowledge.trigger.rag.CrossEncoder;
+import cn.wth.ai.rag.knowledge.trigger.rag.CrossEncoderReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.KeywordRetriever;
+import cn.wth.ai.rag.knowledge.trigger.rag.LexicalReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.MmrReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.ModelWarmer;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagContextAssembler;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagRetriever;
+import cn.wth.ai.rag.knowledge.trigger.rag.RerankerChain;
+import cn.wth.ai.rag.knowledge.trigger.rag.SemanticCache;
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 知识库问答配置；检索（向量、关键词、混合）、重排、上下文拼装、模型预热与语义缓存
+ */
+@Configuration
+@EnableConfigurationProperties(RagConfigProperties.class)
+public class RagConfig {
+
+    /**
+     * 关键词检索；全文检索配置与 content 上的全文索引一致
+     */
+    @Bean
+    public KeywordRetriever keywordRetriever(JdbcTemplate jdbcTemplate, VectorStoreRouter vectorStoreRouter,
+                                             VectorStoreConfigProperties vectorProperties) {
+        return new KeywordRetriever(jdbcTemplate, vectorStoreRouter, vectorProperties.getIndex().getTextSearchConfig());
+    }
+
+    /**
+     * 重排步骤；MMR 使用带缓存的向量模型，交叉编码器需要另外注册 CrossEncoder Bean
+     */
+    @Bean
+    public RerankerChain rerankerChain(@Qualifier("ollamaEmbeddingModel") EmbeddingModel embeddingModel, ObjectProvider<CrossEncoder> crossEncoder,
+                                       RagConfigProperties properties) {
+        RerankerChain.Config config = properties.getRerank();
+        List<RerankerChain.Step> steps = new ArrayList<>();
+        for (RerankerChain.Type type : config.getSteps()) {
+            steps.add(switch (type) {
+                case LEXICAL -> new RerankerChain.Step("lexical", new LexicalReranker(config.getLexicalWeight()));
+                case MMR -> new RerankerChain.Step("mmr", new MmrReranker(embeddingModel, config.getMmrLambda()));
+                case CROSS_ENCODER -> {
+                    CrossEncoder encoder = crossEncoder.getIfAvailable();
+                    if (null == encoder) {
+                        throw new IllegalStateException("rag.chat.rerank.steps 包含 CROSS_ENCODER，但没有注册 CrossEncoder");
+                    }
+                    yield new RerankerChain.Step("cross-encoder", new CrossEncoderReranker(encoder));
+                }
+            });
+        }
+        return new RerankerChain(steps, config.getCandidates());
+    }
+
+    @Bean
+    public RagRetriever ragRetriever(VectorStoreRouter vectorStoreRouter, KeywordRetriever keywordRetriever, RerankerChain rerankerChain,
+                                     RagConfigProperties properties) {
+        return new RagRetriever(vectorStoreRouter, keywordRetriever, properties.getTopK(), properties.getSimilarityThreshold(),
+                properties.getRetrievalMode(), properties.getHybridCandidates(), properties.getRrfK(), rerankerChain);
+    }
+
+    /**
+     * 检索专用调度器；检索是阻塞的数据库调用，放在有界线程池中执行，不占用 Servlet 线程
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler ragRetrievalScheduler(RagConfigProperties properties) {
+        return Schedulers.newBoundedElastic(properties.getRetrievalThreads(), properties.getRetrievalQueueCapacity(), "rag-retrieval");
+    }
+
+    @Bean
+    public ModelWarmer modelWarmer(OllamaChatModel ollamaChatModel, RagConfigProperties properties) {
+        return new ModelWarmer(ollamaChatModel, properties.isWarmUpEnabled(), properties.getKeepAliveMinutes());
+    }
+
+    /**
+     * 语义缓存；任何导入任务结束后清除对应知识库的缓存
+     */
+    @Bean
+    public SemanticCache semanticCache(@Qualifier("ollamaEmbeddingModel") EmbeddingModel embeddingModel, IngestPipeline ingestPipeline,
+                                       RagConfigProperties properties) {
+        SemanticCache semanticCache = new SemanticCache(embeddingModel, properties.getSemanticCache());
+        ingestPipeline.onJobFinished(job -> semanticCache.invalidate(job.getRagTag()));
+        return semanticCache;
+    }
+
+    @Bean
+    public RagContextAssembler ragContextAssembler(RagConfigProperties properties) {
+        return new RagContextAssembler(new JTokkitTokenCountEstimator(), properties.getMaxContextTokens());
+    }
+
+}
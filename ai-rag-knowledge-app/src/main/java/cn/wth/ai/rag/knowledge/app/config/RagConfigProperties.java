@@ -0,0 +1,41 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.rag.RerankerChain;
+import cn.wth.ai.rag.knowledge.trigger.rag.RetrievalMode;
+import cn.wth.ai.rag.knowledge.trigger.rag.SemanticCache;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 知识库问答配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.chat", ignoreInvalidFields = true)
+public class RagConfigProperties {
+
+    /** 最终拼入上下文的分片数（配置了重排时为重排后保留的个数），默认为5 */
+    private int topK = 5;
+    /** 相似度下限，默认为0（不过滤） */
+    private double similarityThreshold = 0;
+    /** 未指定时的检索方式；VECTOR、KEYWORD、HYBRID，默认为VECTOR */
+    private RetrievalMode retrievalMode = RetrievalMode.VECTOR;
+    /** 混合检索时向量、关键词各自召回的候选数，默认为20 */
+    private int hybridCandidates = 20;
+    /** 倒数排名融合的常数 k，默认为60 */
+    private int rrfK = 60;
+    /** 检索结果重排，检索多取候选、重排后保留 topK 个 */
+    private RerankerChain.Config rerank = new RerankerChain.Config();
+    /** 拼入提示词的上下文 token 上限，默认为2048 */
+    private int maxContextTokens = 2048;
+    /** 检索线程数上限，默认为16 */
+    private int retrievalThreads = 16;
+    /** 检索排队上限，默认为256 */
+    private int retrievalQueueCapacity = 256;
+    /** 是否在检索的同时预热对话模型，默认为true */
+    private boolean warmUpEnabled = true;
+    /** 对话模型在 Ollama 中常驻的时间（单位：分钟），默认为30 */
+    private int keepAliveMinutes = 30;
+    /** 语义缓存，相似问题复用回答和检索结果 */
+    private SemanticCache.Config semanticCache = new SemanticCache.Config();
+
+}
@@ -0,0 +1,67 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.concurrent.PinnedThreadMonitor;
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 线程模型配置；spring.threads.virtual.enabled 为 true 且运行在 Java 21 及以上时，Tomcat 请求处理、导入流水线、
+ * Git 拉取和批量向量化都使用虚拟线程，否则都使用平台线程。
+ * 检索仍在 rag-retrieval 调度器上执行，线程数限制了检索占用的数据库连接数，与请求线程的类型无关
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ThreadingConfigProperties.class)
+public class ThreadingConfig {
+
+    @Bean
+    public ThreadMode threadMode(Environment environment, RagConfigProperties ragProperties, IngestConfigProperties ingestProperties,
+                                 RedisClientConfigProperties redisProperties, ThreadingConfigProperties properties) {
+        ThreadMode threadMode = Threading.VIRTUAL.isActive(environment) ? ThreadMode.VIRTUAL : ThreadMode.PLATFORM;
+        if (ThreadMode.PLATFORM == threadMode && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("已开启 spring.threads.virtual.enabled，但当前 Java {} 不支持虚拟线程，继续使用平台线程", Runtime.version().feature());
+        }
+        log.info("线程模型:{}", threadMode);
+        checkPoolSizes(threadMode, environment, ragProperties, ingestProperties, redisProperties, properties);
+        return threadMode;
+    }
+
+    /**
+     * 虚拟线程钉住诊断；只在虚拟线程模式下订阅 JFR 事件
+     */
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public PinnedThreadMonitor pinnedThreadMonitor(ThreadMode threadMode, MeterRegistry meterRegistry, ThreadingConfigProperties properties) {
+        return new PinnedThreadMonitor(threadMode, meterRegistry, properties.getPinning());
+    }
+
+    /**
+     * 连接池大小检查。虚拟线程模式下请求数不再受 Tomcat 线程数限制，连接池成为实际排队的地方，
+     * 连接数小于会同时持有连接的线程数时，多出来的线程在连接池上等待到 connection-timeout 才失败。
+     * 数据库：检索线程 + 导入写库线程 + 请求线程余量；Redis：检索线程（查询向量缓存）+ 导入向量化线程（去重、向量缓存）+ 请求线程余量。
+     * Git 拉取线程不单独计入：同一仓库的并发请求在进程内合并，拉取前后各读写一次 rag:git:indexed-commit，拉取期间不占用 Redis 连接
+     */
+    private static void checkPoolSizes(ThreadMode threadMode, Environment environment, RagConfigProperties ragProperties,
+                                       IngestConfigProperties ingestProperties, RedisClientConfigProperties redisProperties,
+                                       ThreadingConfigProperties properties) {
+        int headroom = properties.getRequestConnectionHeadroom();
+        int retrievalThreads = ragProperties.getRetrievalThreads();
+        int databaseDemand = retrievalThreads + ingestProperties.getPipeline().getWriteThreads() + headroom;
+        int databasePool = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        if (databasePool < databaseDemand) {
+            log.warn("数据库连接池偏小 线程模型:{} maximum-pool-size:{} 建议不小于:{}（检索线程 {} + 导入写库线程 {} + 余量 {}）",
+                    threadMode, databasePool, databaseDemand, retrievalThreads, ingestProperties.getPipeline().getWriteThreads(), headroom);
+        }
+        int redisDemand = retrievalThreads + ingestProperties.getPipeline().getEmbedThreads() + headroom;
+        if (redisProperties.getPoolSize() < redisDemand) {
+            log.warn("Redis 连接池偏小 线程模型:{} pool-size:{} 建议不小于:{}（检索线程 {} + 导入向量化线程 {} + 余量 {}）",
+                    threadMode, redisProperties.getPoolSize(), redisDemand, retrievalThreads, ingestProperties.getPipeline().getEmbedThreads(), headroom);
+        }
+    }
+
+}
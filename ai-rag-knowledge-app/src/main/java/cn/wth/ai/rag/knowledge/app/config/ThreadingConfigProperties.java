@@ -0,0 +1,19 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.concurrent.PinnedThreadMonitor;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 线程模型配置；是否使用虚拟线程由 spring.threads.virtual.enabled 决定
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.threads", ignoreInvalidFields = true)
+public class ThreadingConfigProperties {
+
+    /** 虚拟线程钉住诊断 */
+    private PinnedThreadMonitor.Config pinning = new PinnedThreadMonitor.Config();
+    /** 请求线程直接访问数据库、Redis 的并发余量，计入连接池大小检查，默认为2 */
+    private int requestConnectionHeadroom = 2;
+
+}
@@ -0,0 +1,67 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.vector.LocalVectorTier;
+import cn.wth.ai.rag.knowledge.trigger.vector.PgVectorIndexManager;
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * 向量库索引、查询参数、知识库路由与进程内向量层配置
+ */
+@Configuration
+@EnableConfigurationProperties(VectorStoreConfigProperties.class)
+public class VectorStoreConfig {
+
+    /**
+     * 向量索引管理；启动后在后台按配置补齐或重建索引
+     */
+    @Bean
+    public PgVectorIndexManager pgVectorIndexManager(JdbcTemplate jdbcTemplate, VectorStoreConfigProperties properties) {
+        PgVectorIndexManager indexManager = new PgVectorIndexManager(jdbcTemplate, OllamaConfig.VECTOR_TABLE_NAME, properties.getIndex());
+        if (properties.getIndex().isManageOnStartup()) {
+            indexManager.ensureIndexesAsync();
+        }
+        return indexManager;
+    }
+
+    /**
+     * 热点知识库的进程内向量层，替代原来未使用的 SimpleVectorStore；启动时加载上次保存的索引文件，关闭时保存
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = "rag.vector.local", name = "enabled", havingValue = "true")
+    public LocalVectorTier localVectorTier(JdbcTemplate jdbcTemplate, @Qualifier("ollamaEmbeddingModel") EmbeddingModel embeddingModel,
+                                           VectorStoreConfigProperties properties) {
+        LocalVectorTier localTier = new LocalVectorTier(jdbcTemplate, embeddingModel, properties.getLocal());
+        localTier.load();
+        return localTier;
+    }
+
+    /**
+     * 向量表路由；检索和导入流水线的写入都经过这里，按 rag.vector.routing.mode 使用共用表或每个知识库一张表，
+     * rag.vector.copy.enabled 时写入使用二进制 COPY
+     * 检索时每次查询在事务内设置 ef_search/probes；启用进程内向量层时热点知识库在后台定时对账
+     */
+    @Bean
+    public VectorStoreRouter vectorStoreRouter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                               @Qualifier("ollamaEmbeddingModel") EmbeddingModel embeddingModel, PgVectorStore pgVectorStore,
+                                               PgVectorIndexManager pgVectorIndexManager, VectorStoreConfigProperties properties,
+                                               ObjectProvider<LocalVectorTier> localVectorTier) {
+        LocalVectorTier localTier = localVectorTier.getIfAvailable();
+        VectorStoreRouter router = new VectorStoreRouter(jdbcTemplate, transactionManager, embeddingModel, pgVectorStore,
+                OllamaConfig.VECTOR_TABLE_NAME, pgVectorIndexManager, properties.getRouting(), properties.getCopy(), localTier);
+        if (null != localTier) {
+            localTier.start(router::syncLocalTier);
+        }
+        return router;
+    }
+
+}
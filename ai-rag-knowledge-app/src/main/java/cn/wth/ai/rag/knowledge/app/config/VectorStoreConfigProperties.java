@@ -0,0 +1,29 @@
+package cn.wth.ai.rag.knowledge.app.config;
+
+import cn.wth.ai.rag.knowledge.trigger.ingest.PgCopyVectorWriter;
+import cn.wth.ai.rag.knowledge.trigger.vector.LocalVectorTier;
+import cn.wth.ai.rag.knowledge.trigger.vector.PgVectorIndexManager;
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 向量库配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.vector", ignoreInvalidFields = true)
+public class VectorStoreConfigProperties {
+
+    /** 向量索引类型、距离、构建参数与查询参数 */
+    private PgVectorIndexManager.Config index = new PgVectorIndexManager.Config();
+
+    /** 知识库到向量表的路由 */
+    private VectorStoreRouter.Config routing = new VectorStoreRouter.Config();
+
+    /** 导入流水线以二进制 COPY 批量写入，以及全量导入时延后构建索引 */
+    private PgCopyVectorWriter.Config copy = new PgCopyVectorWriter.Config();
+
+    /** 热点知识库的进程内向量层 */
+    private LocalVectorTier.Config local = new LocalVectorTier.Config();
+
+}
@@ -0,0 +1,118 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.ingest.ChunkDeduplicator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @Author: 5th
+ * @Description: 分片去重测试，使用进程内索引，不依赖外部服务
+ * @CreateTime: 2026-10-18 23:40
+ */
+public class ChunkDeduplicatorTest {
+
+    private static final String LICENSE = "Licensed under the Apache License, Version 2.0 (the \"License\");\n"
+            + " * you may not use this file except in compliance with the License.";
+
+    @Test
+    public void test_exact_duplicates() {
+        ChunkDeduplicator deduplicator = new ChunkDeduplicator(null, new ChunkDeduplicator.Config());
+
+        ChunkDeduplicator.Result first = deduplicator.filter("doc", "a.java", List.of(new Document(LICENSE), new Document("class A {}")));
+        Assert.assertEquals(2, first.getKept().size());
+
+        // 只差空白的分片也算完全重复，同一批内的重复同样去掉
+        ChunkDeduplicator.Result second = deduplicator.filter("doc", "b.java", List.of(
+                new Document("  " + LICENSE.replace("\n", "\n\n")), new Document("class B {}"), new Document("class B {}")));
+        Assert.assertEquals(List.of("class B {}"), second.getKept().stream().map(Document::getText).toList());
+        Assert.assertEquals(2, second.getExactDuplicates());
+
+        // 不同知识库互不影响
+        Assert.assertEquals(1, deduplicator.filter("other", "a.java", List.of(new Document(LICENSE))).getKept().size());
+    }
+
+    @Test
+    public void test_near_duplicates() {
+        ChunkDeduplicator deduplicator = new ChunkDeduplicator(null, new ChunkDeduplicator.Config());
+        String text = paragraph(new Random(7), 200);
+        String edited = text.replaceFirst(" \\w+ ", " changed ");
+        String unrelated = paragraph(new Random(8), 200);
+
+        Assert.assertTrue(Long.bitCount(ChunkDeduplicator.simHash(text, 3) ^ ChunkDeduplicator.simHash(edited, 3)) <= 3);
+        Assert.assertTrue(Long.bitCount(ChunkDeduplicator.simHash(text, 3) ^ ChunkDeduplicator.simHash(unrelated, 3)) > 3);
+
+        Assert.assertEquals(1, deduplicator.filter("doc", "a.md", List.of(new Document(text))).getKept().size());
+        ChunkDeduplicator.Result result = deduplicator.filter("doc", "b.md", List.of(new Document(edited), new Document(unrelated)));
+        Assert.assertEquals(List.of(unrelated), result.getKept().stream().map(Document::getText).toList());
+        Assert.assertEquals(1, result.getNearDuplicates());
+
+        // 关闭近似去重后只去掉完全相同的分片
+        ChunkDeduplicator.Config config = new ChunkDeduplicator.Config();
+        config.setNearDuplicate(false);
+        ChunkDeduplicator exactOnly = new ChunkDeduplicator(null, config);
+        exactOnly.filter("doc", "a.md", List.of(new Document(text)));
+        Assert.assertEquals(1, exactOnly.filter("doc", "b.md", List.of(new Document(edited))).getKept().size());
+    }
+
+    @Test
+    public void test_release_and_forget() {
+        ChunkDeduplicator deduplicator = new ChunkDeduplicator(null, new ChunkDeduplicator.Config());
+        String text = paragraph(new Random(7), 200);
+
+        // 导入失败时撤回指纹，重新导入不会被当成重复
+        ChunkDeduplicator.Result failed = deduplicator.filter("doc", "a.md", List.of(new Document(text)));
+        deduplicator.release("doc", "a.md", failed.getFingerprints());
+        Assert.assertEquals(1, deduplicator.filter("doc", "a.md", List.of(new Document(text))).getKept().size());
+
+        // 来源的分片被删除后，返回因重复没有写入的来源，重新导入时补写这份内容
+        Assert.assertTrue(deduplicator.filter("doc", "b.md", List.of(new Document(text))).getKept().isEmpty());
+        Assert.assertEquals(Set.of("b.md"), deduplicator.forgetSources("doc", Set.of("a.md")));
+        Assert.assertEquals(1, deduplicator.filter("doc", "b.md", List.of(new Document(text))).getKept().size());
+
+        deduplicator.forget("doc");
+        Assert.assertEquals(1, deduplicator.filter("doc", "c.md", List.of(new Document(text))).getKept().size());
+    }
+
+    @Test
+    public void test_forget_sources_returns_survivors() {
+        ChunkDeduplicator deduplicator = new ChunkDeduplicator(null, new ChunkDeduplicator.Config());
+        String text = paragraph(new Random(7), 200);
+        String edited = text.replaceFirst(" \\w+ ", " changed ");
+
+        Assert.assertEquals(2, deduplicator.filter("doc", "a.md", List.of(new Document(text), new Document("class A {}"))).getKept().size());
+        Assert.assertEquals(List.of("class B {}"), deduplicator.filter("doc", "b.md",
+                List.of(new Document(edited), new Document("class B {}"))).getKept().stream().map(Document::getText).toList());
+        Assert.assertTrue(deduplicator.filter("doc", "c.md", List.of(new Document("class A {}"))).getKept().isEmpty());
+
+        // 删除不是 owner 的来源不影响其他来源
+        Assert.assertTrue(deduplicator.forgetSources("doc", Set.of("c.md")).isEmpty());
+        Assert.assertTrue(deduplicator.filter("doc", "c.md", List.of(new Document("class A {}"))).getKept().isEmpty());
+
+        // a.md 被删除后 b.md 的近似重复和 c.md 的完全重复都需要补写
+        Assert.assertEquals(Set.of("b.md", "c.md"), deduplicator.forgetSources("doc", Set.of("a.md")));
+
+        // b.md 不删除旧分片直接重新导入，只保留缺少的那一份
+        ChunkDeduplicator.Result reingested = deduplicator.filter("doc", "b.md", List.of(new Document(edited), new Document("class B {}")));
+        Assert.assertEquals(List.of(edited), reingested.getKept().stream().map(Document::getText).toList());
+        Assert.assertEquals(1, reingested.getExactDuplicates());
+        Assert.assertTrue(deduplicator.filter("doc", "d.md", List.of(new Document(text))).getKept().isEmpty());
+    }
+
+    private static String paragraph(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int letters = 2 + random.nextInt(8);
+            for (int j = 0; j < letters; j++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append(i % 15 == 14 ? ". " : " ");
+        }
+        return text.toString().trim();
+    }
+
+}
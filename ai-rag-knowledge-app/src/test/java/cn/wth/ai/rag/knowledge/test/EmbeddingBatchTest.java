@@ -0,0 +1,149 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.embedding.BatchingEmbeddingModel;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 批量向量化测试，使用桩模型，不依赖 Ollama；压测不同 batchSize 的吞吐见 bench 模块的 EmbeddingThroughput
+ * @CreateTime: 2026-10-18 15:10
+ */
+public class EmbeddingBatchTest {
+
+    @Test
+    public void test_batches_split_and_results_in_order() {
+        // 三批同时在途后才返回，先开始的请求最后完成，结果仍按输入顺序
+        StubModel stub = new StubModel(3);
+        BatchingEmbeddingModel model = new BatchingEmbeddingModel(stub, 4, 3);
+        try {
+            List<String> texts = texts(10);
+            EmbeddingResponse response = model.call(new EmbeddingRequest(texts, null));
+
+            Assert.assertEquals(List.of(4, 4, 2), stub.batchSizes.stream().sorted((a, b) -> b - a).toList());
+            Assert.assertEquals(3, stub.peak.get());
+            Assert.assertEquals(List.of(2, 1, 0), stub.completed);
+            List<Embedding> results = response.getResults();
+            Assert.assertEquals(texts.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                Assert.assertEquals(i, results.get(i).getIndex().intValue());
+                Assert.assertEquals(i, results.get(i).getOutput()[0], 0);
+            }
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    @Test
+    public void test_concurrency_limit() {
+        StubModel stub = new StubModel(0);
+        BatchingEmbeddingModel model = new BatchingEmbeddingModel(stub, 1, 2);
+        try {
+            List<float[]> embeddings = model.embed(texts(16));
+            Assert.assertEquals(16, embeddings.size());
+            Assert.assertEquals(16, stub.batchSizes.size());
+            Assert.assertTrue("peak " + stub.peak.get(), stub.peak.get() <= 2);
+            for (int i = 0; i < embeddings.size(); i++) {
+                Assert.assertEquals(i, embeddings.get(i)[0], 0);
+            }
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    @Test
+    public void test_error_propagates() {
+        StubModel stub = new StubModel(0);
+        BatchingEmbeddingModel model = new BatchingEmbeddingModel(stub, 2, 2);
+        try {
+            List<String> texts = new ArrayList<>(texts(6));
+            texts.set(3, "fail");
+            IllegalStateException e = Assert.assertThrows(IllegalStateException.class, () -> model.embed(texts));
+            Assert.assertEquals("embedding failed: fail", e.getMessage());
+
+            // 失败不影响后续请求
+            Assert.assertEquals(4, model.embed(texts(4)).size());
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    private static List<String> texts(int count) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add(String.valueOf(i));
+        }
+        return texts;
+    }
+
+    /**
+     * 向量的第一个分量为文本本身的数字；记录每个请求的文本数、同时在途的请求数和完成顺序
+     */
+    private static class StubModel implements EmbeddingModel {
+
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<Integer> completed = new CopyOnWriteArrayList<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        private final AtomicInteger sequence = new AtomicInteger();
+        /** 等待该数量的请求同时在途后再返回，0 表示不等待 */
+        private final CountDownLatch overlap;
+
+        StubModel(int overlap) {
+            this.overlap = new CountDownLatch(overlap);
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<String> texts = request.getInstructions();
+            batchSizes.add(texts.size());
+            int order = sequence.getAndIncrement();
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                if (overlap.getCount() > 0) {
+                    overlap.countDown();
+                    Assert.assertTrue(overlap.await(5, TimeUnit.SECONDS));
+                    // 越早开始的批次越晚完成
+                    Thread.sleep(50L * (batchSizes.size() - order));
+                } else {
+                    Thread.sleep(2);
+                }
+                List<Embedding> embeddings = new ArrayList<>(texts.size());
+                for (String text : texts) {
+                    if ("fail".equals(text)) throw new IllegalStateException("embedding failed: " + text);
+                    embeddings.add(new Embedding(new float[]{Float.parseFloat(text), 1f}, embeddings.size()));
+                }
+                completed.add(order);
+                return new EmbeddingResponse(embeddings);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+    }
+
+}
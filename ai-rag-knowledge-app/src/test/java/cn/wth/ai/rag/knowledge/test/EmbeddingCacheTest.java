@@ -0,0 +1,62 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.embedding.CachingEmbeddingModel;
+import cn.wth.ai.rag.knowledge.trigger.embedding.EmbeddingCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 向量缓存测试，不依赖外部服务
+ * @CreateTime: 2026-10-18 15:40
+ */
+public class EmbeddingCacheTest {
+
+    @Test
+    public void test_reuse_cached_embeddings() {
+        AtomicInteger embeddedTexts = new AtomicInteger();
+        EmbeddingModel delegate = new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (String text : request.getInstructions()) {
+                    embeddedTexts.incrementAndGet();
+                    embeddings.add(new Embedding(new float[]{text.length(), text.hashCode()}, embeddings.size()));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return call(new EmbeddingRequest(List.of(document.getText()), null)).getResult().getOutput();
+            }
+        };
+
+        EmbeddingCache embeddingCache = new EmbeddingCache(1024 * 1024, null, Duration.ZERO);
+        CachingEmbeddingModel embeddingModel = new CachingEmbeddingModel(delegate, embeddingCache, "nomic-embed-text");
+
+        List<float[]> first = embeddingModel.embed(List.of("a", "bb", "a"));
+        Assert.assertEquals(2, embeddedTexts.get());
+        Assert.assertArrayEquals(first.get(0), first.get(2), 0F);
+
+        List<float[]> second = embeddingModel.embed(List.of("ccc", "bb", "a"));
+        Assert.assertEquals(3, embeddedTexts.get());
+        Assert.assertArrayEquals(first.get(1), second.get(1), 0F);
+        Assert.assertArrayEquals(first.get(0), second.get(2), 0F);
+        Assert.assertEquals(3, second.get(0)[0], 0F);
+
+        Assert.assertEquals(2, embeddingCache.getLocalHits());
+        Assert.assertEquals(3, embeddingCache.getMisses());
+    }
+
+}
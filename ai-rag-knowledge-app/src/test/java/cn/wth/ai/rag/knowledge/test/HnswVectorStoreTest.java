@@ -0,0 +1,253 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.vector.HnswIndex;
+import cn.wth.ai.rag.knowledge.trigger.vector.HnswVectorStore;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @Author: 5th
+ * @Description: 进程内 HNSW 向量库测试：召回率与暴力检索对比、删除与过滤、保存后重新加载，不依赖外部服务
+ * @CreateTime: 2026-10-18 21:10
+ */
+public class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    public void test_recall_against_brute_force() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            float[] vector = randomUnitVector(random);
+            vectors.add(vector);
+            Assert.assertEquals(i, index.add(vector));
+        }
+
+        int k = 10;
+        int found = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Integer> expected = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -dot(query, vectors.get(i))))
+                    .limit(k)
+                    .collect(Collectors.toSet());
+            HnswIndex.Result result = index.search(query, k, 64, null);
+            Assert.assertEquals(k, result.nodes().length);
+            for (int i = 1; i < k; i++) {
+                Assert.assertTrue(result.scores()[i - 1] >= result.scores()[i]);
+            }
+            for (int node : result.nodes()) {
+                if (expected.contains(node)) found++;
+            }
+        }
+        double recall = (double) found / (queries * k);
+        Assert.assertTrue("recall@10 " + recall, recall >= 0.95);
+    }
+
+    @Test
+    public void test_delete_and_filter() {
+        HnswVectorStore store = new HnswVectorStore(embeddingModel(), 16, 100, 64);
+        store.add(documents(300));
+
+        store.delete(new FilterExpressionBuilder().eq("source", "b.md").build());
+        store.delete(List.of("doc-0"));
+        Assert.assertEquals(300 - 100 - 1, store.size());
+
+        List<Document> all = store.similaritySearch(SearchRequest.builder().query("text 0").topK(300).build());
+        Assert.assertEquals(199, all.size());
+        Assert.assertTrue(all.stream().noneMatch(document -> "b.md".equals(document.getMetadata().get("source"))));
+        Assert.assertTrue(all.stream().noneMatch(document -> "doc-0".equals(document.getId())));
+
+        List<Document> filtered = store.similaritySearch(SearchRequest.builder().query("text 5").topK(5)
+                .filterExpression(new FilterExpressionBuilder().eq("source", "c.md").build()).build());
+        Assert.assertEquals(5, filtered.size());
+        Assert.assertEquals("doc-5", filtered.get(0).getId());
+        Assert.assertEquals(1, filtered.get(0).getScore(), 1e-5);
+        Assert.assertTrue(filtered.stream().allMatch(document -> "c.md".equals(document.getMetadata().get("source"))));
+
+        // 同一 id 重新写入替换旧分片
+        store.add(List.of(new Document("doc-5", "text 7", Map.of("source", "c.md"))));
+        Assert.assertEquals(199, store.size());
+        Document replaced = store.similaritySearch(SearchRequest.builder().query("text 7").topK(2).build()).stream()
+                .filter(document -> "doc-5".equals(document.getId())).findFirst().orElseThrow();
+        Assert.assertEquals("text 7", replaced.getText());
+    }
+
+    @Test
+    public void test_delete_by_origin_except_job() {
+        HnswVectorStore store = new HnswVectorStore(embeddingModel(), 16, 100, 64);
+        store.add(List.of(
+                new Document("old", "text 1", Map.of("source", "a.md", "origin", "github.com/x/repo", "job", "j1")),
+                new Document("new", "text 2", Map.of("source", "a.md", "origin", "github.com/x/repo", "job", "j2")),
+                new Document("other-repo", "text 3", Map.of("source", "a.md", "origin", "github.com/y/repo", "job", "j0")),
+                new Document("upload", "text 4", Map.of("source", "a.md", "job", "j3"))));
+
+        // 全量重建成功后只清理同一仓库的旧分片，其他仓库和上传的文件保留
+        FilterExpressionBuilder builder = new FilterExpressionBuilder();
+        store.delete(builder.and(builder.eq("origin", "github.com/x/repo"), builder.ne("job", "j2")).build());
+
+        Assert.assertEquals(Set.of("new", "other-repo", "upload"), Set.copyOf(ids(
+                store.similaritySearch(SearchRequest.builder().query("text 1").topK(10).build()))));
+    }
+
+    @Test
+    public void test_save_and_load() throws Exception {
+        EmbeddingModel embeddingModel = embeddingModel();
+        HnswVectorStore store = new HnswVectorStore(embeddingModel, 16, 100, 64);
+        store.add(documents(300));
+        store.delete(new FilterExpressionBuilder().eq("source", "a.md").build());
+        Assert.assertTrue(store.isDirty());
+
+        Path file = Files.createTempFile("hnsw", ".idx");
+        try {
+            store.save(file);
+            Assert.assertFalse(store.isDirty());
+            HnswVectorStore loaded = HnswVectorStore.load(file, embeddingModel, 64, 4);
+            Assert.assertNotNull(loaded);
+            Assert.assertEquals(store.ids(), loaded.ids());
+
+            SearchRequest request = SearchRequest.builder().query("text 43").topK(10).build();
+            Assert.assertEquals(ids(store.similaritySearch(request)), ids(loaded.similaritySearch(request)));
+            Document first = loaded.similaritySearch(request).get(0);
+            Assert.assertEquals("text 43", first.getText());
+            Assert.assertEquals("demo", first.getMetadata().get("knowledge"));
+
+            // 删除超过阈值后重建，结果不变
+            Assert.assertTrue(loaded.compact(0.3));
+            Assert.assertEquals(store.ids(), loaded.ids());
+            Assert.assertEquals("doc-43", loaded.similaritySearch(request).get(0).getId());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_int8_rerank() throws Exception {
+        EmbeddingModel embeddingModel = embeddingModel();
+        HnswVectorStore exact = new HnswVectorStore(embeddingModel, 16, 100, 64);
+        HnswVectorStore quantized = new HnswVectorStore(embeddingModel, 16, 100, 64, HnswIndex.Encoding.INT8, 4);
+        exact.add(documents(2000));
+        quantized.add(documents(2000));
+        Assert.assertEquals(HnswIndex.Encoding.INT8, quantized.encoding());
+
+        Path file = Files.createTempFile("hnsw", ".idx");
+        try {
+            quantized.save(file);
+            // 保存后原始向量改为从文件映射，堆内只剩量化向量
+            Assert.assertTrue(quantized.memoryBytes() < exact.memoryBytes());
+            HnswVectorStore loaded = HnswVectorStore.load(file, embeddingModel, 64, 4);
+            Assert.assertEquals(HnswIndex.Encoding.INT8, loaded.encoding());
+
+            int found = 0;
+            for (int q = 0; q < 50; q++) {
+                SearchRequest request = SearchRequest.builder().query("query " + q).topK(10).build();
+                List<Document> expected = exact.similaritySearch(request);
+                List<String> actual = ids(loaded.similaritySearch(request));
+                found += (int) expected.stream().filter(document -> actual.contains(document.getId())).count();
+
+                // 重排后的分数是原始向量的相似度
+                Document first = loaded.similaritySearch(request).get(0);
+                Document sameInExact = expected.stream().filter(document -> document.getId().equals(first.getId())).findFirst().orElse(null);
+                if (null != sameInExact) {
+                    Assert.assertEquals(sameInExact.getScore(), first.getScore(), 1e-5);
+                }
+            }
+            Assert.assertTrue("recall@10 " + found / 500D, found / 500D >= 0.95);
+
+            // 加载后继续写入的分片在堆内保存原始向量，同样参与重排
+            loaded.add(List.of(new Document("new", "text new", Map.of())));
+            Assert.assertEquals("new", loaded.similaritySearch(SearchRequest.builder().query("text new").topK(1).build()).get(0).getId());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * doc-i 的文本为 "text i"，来源按 i % 3 分到 a.md、b.md、c.md
+     */
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String source = new String[]{"a.md", "b.md", "c.md"}[i % 3];
+            documents.add(new Document("doc-" + i, "text " + i, Map.of("source", source, "knowledge", "demo")));
+        }
+        return documents;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * 文本哈希作为随机种子生成向量，同一文本的向量相同；分量非负，任意两个向量的相似度都大于 0，不会被默认的相似度下限过滤
+     */
+    private static EmbeddingModel embeddingModel() {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (String text : request.getInstructions()) {
+                    embeddings.add(new Embedding(vector(text), embeddings.size()));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return vector(document.getText());
+            }
+        };
+    }
+
+    private static float[] vector(String text) {
+        Random random = new Random(text.hashCode());
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) Math.abs(random.nextGaussian()) * 3;
+        }
+        return vector;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+}
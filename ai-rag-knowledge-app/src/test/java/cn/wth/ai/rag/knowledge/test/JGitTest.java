@@ -1,5 +1,6 @@
 package cn.wth.ai.rag.knowledge.test;
 
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTokenSplitter;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
@@ -9,7 +10,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.PathResource;
@@ -32,7 +32,7 @@ import java.util.List;
 public class JGitTest {
 
     @Resource
-    private TokenTextSplitter tokenTextSplitter;
+    private StreamingTokenSplitter tokenSplitter;
     @Resource
     private PgVectorStore pgVectorStore;
 
@@ -68,7 +68,7 @@ public class JGitTest {
                 TikaDocumentReader reader = new TikaDocumentReader(resource);
 
                 List<Document> documents = reader.get();
-                List<Document> documentSplitterList = tokenTextSplitter.apply(documents);
+                List<Document> documentSplitterList = tokenSplitter.apply(documents);
 
                 documents.forEach(doc -> doc.getMetadata().put("knowledge", "ai-rag-knowledge"));
                 documentSplitterList.forEach(doc -> doc.getMetadata().put("knowledge", "ai-rag-knowledge"));
@@ -0,0 +1,159 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.catalog.KnowledgeBaseCatalog;
+import org.junit.Assert;
+import org.junit.Test;
+import org.redisson.api.RList;
+import org.redisson.api.RMap;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库目录测试；两个目录实例共用一个内存中的假 Redis（哈希、列表、同步投递的发布订阅），模拟两个节点
+ * @CreateTime: 2026-10-19 02:30
+ */
+public class KnowledgeBaseCatalogTest {
+
+    @Test
+    public void test_changes_propagate_between_nodes() {
+        FakeRedis redis = new FakeRedis();
+        KnowledgeBaseCatalog node1 = new KnowledgeBaseCatalog(redis.client(), "nomic-embed-text", new KnowledgeBaseCatalog.Config());
+        KnowledgeBaseCatalog node2 = new KnowledgeBaseCatalog(redis.client(), "nomic-embed-text", new KnowledgeBaseCatalog.Config());
+        node1.start();
+        node2.start();
+
+        node1.register("doc");
+        Assert.assertTrue(node2.contains("doc"));
+
+        node2.recordIndexed("doc", 42);
+        Assert.assertEquals(42, node1.get("doc").getChunks());
+        Assert.assertTrue(node1.get("doc").getLastIndexedTime() > 0);
+        Assert.assertEquals("nomic-embed-text", node1.get("doc").getEmbeddingModel());
+
+        // 内存中已有时登记不访问 Redis
+        int writes = redis.writes;
+        node2.register("doc");
+        Assert.assertEquals(writes, redis.writes);
+
+        node1.remove("doc");
+        Assert.assertFalse(node2.contains("doc"));
+        Assert.assertTrue(node2.list().isEmpty());
+    }
+
+    @Test
+    public void test_legacy_list_migrated_in_order() {
+        FakeRedis redis = new FakeRedis();
+        redis.lists.put("ragTag", new ArrayList<>(List.of("b", "a", "c")));
+
+        KnowledgeBaseCatalog catalog = new KnowledgeBaseCatalog(redis.client(), "nomic-embed-text", new KnowledgeBaseCatalog.Config());
+        catalog.start();
+
+        Assert.assertEquals(List.of("b", "a", "c"), catalog.ragTags());
+        Assert.assertFalse(redis.lists.containsKey("ragTag"));
+    }
+
+    @Test
+    public void test_rag_tag_validation() {
+        Assert.assertTrue(KnowledgeBaseCatalog.isValidRagTag("ai-rag-knowledge"));
+        Assert.assertTrue(KnowledgeBaseCatalog.isValidRagTag("spring_ai.v1"));
+        Assert.assertTrue(KnowledgeBaseCatalog.isValidRagTag("知识库01"));
+        Assert.assertFalse(KnowledgeBaseCatalog.isValidRagTag(null));
+        Assert.assertFalse(KnowledgeBaseCatalog.isValidRagTag(""));
+        Assert.assertFalse(KnowledgeBaseCatalog.isValidRagTag("a' OR '1'='1"));
+        Assert.assertFalse(KnowledgeBaseCatalog.isValidRagTag("a\"b"));
+        Assert.assertFalse(KnowledgeBaseCatalog.isValidRagTag("a b"));
+        Assert.assertFalse(KnowledgeBaseCatalog.isValidRagTag("a/b"));
+    }
+
+    /**
+     * 只实现目录用到的命令
+     */
+    private static class FakeRedis {
+
+        private final Map<String, Map<String, String>> maps = new ConcurrentHashMap<>();
+        private final Map<String, List<String>> lists = new ConcurrentHashMap<>();
+        private final Map<String, List<MessageListener<Object>>> topics = new ConcurrentHashMap<>();
+        private int writes;
+
+        RedissonClient client() {
+            return proxy(RedissonClient.class, (method, args) -> switch (method) {
+                case "getMap" -> map((String) args[0]);
+                case "getTopic" -> topic((String) args[0]);
+                case "getList" -> list((String) args[0]);
+                default -> throw new UnsupportedOperationException(method);
+            });
+        }
+
+        private RMap<String, String> map(String name) {
+            Map<String, String> map = maps.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+            return proxy(RMap.class, (method, args) -> switch (method) {
+                case "get" -> map.get(args[0]);
+                case "readAllMap" -> new HashMap<>(map);
+                case "fastPut" -> {
+                    writes++;
+                    yield null == map.put((String) args[0], (String) args[1]);
+                }
+                case "fastPutIfAbsent" -> {
+                    writes++;
+                    yield null == map.putIfAbsent((String) args[0], (String) args[1]);
+                }
+                case "fastRemove" -> {
+                    writes++;
+                    long removed = 0;
+                    for (Object key : (Object[]) args[0]) {
+                        if (null != map.remove(key)) removed++;
+                    }
+                    yield removed;
+                }
+                default -> throw new UnsupportedOperationException(method);
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private RTopic topic(String name) {
+            List<MessageListener<Object>> listeners = topics.computeIfAbsent(name, key -> new CopyOnWriteArrayList<>());
+            return proxy(RTopic.class, (method, args) -> switch (method) {
+                case "addListener" -> {
+                    listeners.add((MessageListener<Object>) args[1]);
+                    yield listeners.size() - 1;
+                }
+                case "removeListener" -> null;
+                case "publish" -> {
+                    listeners.forEach(listener -> listener.onMessage(name, args[0]));
+                    yield (long) listeners.size();
+                }
+                default -> throw new UnsupportedOperationException(method);
+            });
+        }
+
+        private RList<String> list(String name) {
+            return proxy(RList.class, (method, args) -> switch (method) {
+                case "isExists" -> lists.containsKey(name);
+                case "readAll" -> new ArrayList<>(lists.getOrDefault(name, List.of()));
+                case "delete" -> null != lists.remove(name);
+                default -> throw new UnsupportedOperationException(method);
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<?> type, Handler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> handler.handle(method.getName(), null == args ? new Object[0] : args));
+        }
+
+        private interface Handler {
+            Object handle(String method, Object[] args);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.ollama.OllamaEndpoint;
+import cn.wth.ai.rag.knowledge.trigger.ollama.OllamaRouter;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: Ollama 多节点路由测试；每个节点是本地的 /api/ps 桩服务，返回该节点已加载的模型，不依赖真实 Ollama
+ * @CreateTime: 2026-10-19 03:40
+ */
+public class OllamaRouterTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @After
+    public void tearDown() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    public void test_prefers_node_with_model_loaded() throws IOException {
+        OllamaEndpoint node1 = endpoint(stub("{\"models\":[]}"), 4);
+        OllamaEndpoint node2 = endpoint(stub("{\"models\":[{\"name\":\"deepseek-r1:1.5b\"}]}"), 4);
+        Assert.assertTrue(node1.probe(client, Duration.ofSeconds(2)));
+        Assert.assertTrue(node2.probe(client, Duration.ofSeconds(2)));
+        OllamaRouter router = new OllamaRouter("chat", List.of(node1, node2), 100);
+
+        // 已加载模型的节点在途请求更多也优先，直到名额用完
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(node2, router.acquire("deepseek-r1:1.5b"));
+        }
+        Assert.assertSame(node1, router.acquire("deepseek-r1:1.5b"));
+
+        // 其他模型按在途请求数选择
+        Assert.assertSame(node1, router.acquire("qwen2.5:7b"));
+    }
+
+    @Test
+    public void test_default_tag_matches() throws IOException {
+        OllamaEndpoint node1 = endpoint(stub("{\"models\":[]}"), 4);
+        OllamaEndpoint node2 = endpoint(stub("{\"models\":[{\"name\":\"nomic-embed-text:latest\"},"
+                + "{\"name\":\"registry.local:5000/library/bge-m3\"}]}"), 4);
+        Assert.assertTrue(node1.probe(client, Duration.ofSeconds(2)));
+        Assert.assertTrue(node2.probe(client, Duration.ofSeconds(2)));
+
+        // 配置中不带标签的模型名与 /api/ps 返回的 :latest 是同一个模型
+        Assert.assertTrue(node2.isLoaded("nomic-embed-text"));
+        Assert.assertTrue(node2.isLoaded("nomic-embed-text:latest"));
+        Assert.assertFalse(node2.isLoaded("nomic-embed-text:v1.5"));
+        // 仓库地址中的端口不是标签
+        Assert.assertTrue(node2.isLoaded("registry.local:5000/library/bge-m3:latest"));
+
+        OllamaRouter router = new OllamaRouter("embedding", List.of(node1, node2), 100);
+        Assert.assertSame(node2, router.acquire("nomic-embed-text"));
+    }
+
+    @Test
+    public void test_least_outstanding_and_concurrency_limit() throws IOException {
+        OllamaEndpoint node1 = endpoint(stub("{\"models\":[]}"), 1);
+        OllamaEndpoint node2 = endpoint(stub("{\"models\":[]}"), 1);
+        OllamaRouter router = new OllamaRouter("embedding", List.of(node1, node2), 100);
+
+        OllamaEndpoint first = router.acquire("nomic-embed-text");
+        OllamaEndpoint second = router.acquire("nomic-embed-text");
+        Assert.assertNotSame(first, second);
+
+        long start = System.currentTimeMillis();
+        Assert.assertThrows(IllegalStateException.class, () -> router.acquire("nomic-embed-text"));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+
+        router.release(second);
+        Assert.assertSame(second, router.acquire("nomic-embed-text"));
+        Assert.assertEquals(1, first.getOutstanding());
+    }
+
+    @Test
+    public void test_unhealthy_node_ranked_last() throws IOException {
+        HttpServer down = stub("{\"models\":[{\"name\":\"deepseek-r1:1.5b\"}]}");
+        OllamaEndpoint node1 = endpoint(down, 4);
+        OllamaEndpoint node2 = endpoint(stub("{\"models\":[]}"), 4);
+        Assert.assertTrue(node1.probe(client, Duration.ofSeconds(2)));
+        down.stop(0);
+        Assert.assertFalse(node1.probe(client, Duration.ofSeconds(2)));
+        OllamaRouter router = new OllamaRouter("chat", List.of(node1, node2), 100);
+
+        Assert.assertSame(node2, router.acquire("deepseek-r1:1.5b"));
+        Assert.assertSame(node2, router.acquire("deepseek-r1:1.5b"));
+    }
+
+    private static OllamaEndpoint endpoint(HttpServer server, int maxConcurrency) {
+        return new OllamaEndpoint("http://localhost:" + server.getAddress().getPort(), null, maxConcurrency);
+    }
+
+    private HttpServer stub(String ps) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/ps", exchange -> {
+            byte[] body = ps.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return server;
+    }
+
+}
@@ -0,0 +1,231 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.ingest.PgCopyVectorWriter;
+import com.alibaba.fastjson.JSON;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @Author: 5th
+ * @Description: 二进制 COPY 编码测试；用假连接截获发送给数据库的字节流，按 PostgreSQL 二进制 COPY 格式解码后与输入比对，不依赖数据库
+ * @CreateTime: 2026-10-19 05:00
+ */
+public class PgCopyVectorWriterTest {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+
+    @Test
+    public void test_jsonb_rows_decode() throws Exception {
+        FakeCopy copy = new FakeCopy("jsonb");
+        List<Document> documents = List.of(
+                new Document(UUID.randomUUID().toString(), "王大瓜 1990年出生", Map.of("knowledge", "doc", "source", "a.md")),
+                new Document(UUID.randomUUID().toString(), "class A {}", Map.of("knowledge", "doc", "source", "A.java")));
+        List<float[]> embeddings = List.of(new float[]{0.5f, -1.25f, 3f}, new float[]{Float.MIN_VALUE, 0f, -0f});
+
+        new PgCopyVectorWriter(copy.jdbcTemplate(), "vector_store", new PgCopyVectorWriter.Config()).write(documents, embeddings);
+
+        Assert.assertEquals("COPY vector_store (id, content, metadata, embedding) FROM STDIN (FORMAT BINARY)", copy.sql);
+        assertRows(copy.bytes(), documents, embeddings, true);
+    }
+
+    @Test
+    public void test_json_rows_span_several_chunks() throws Exception {
+        FakeCopy copy = new FakeCopy("json");
+        // 最小 8KB 的缓冲区，大分片和多行会分多段发送
+        PgCopyVectorWriter.Config config = new PgCopyVectorWriter.Config();
+        config.setBufferKb(1);
+        List<Document> documents = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(new Document(UUID.randomUUID().toString(), "第" + i + "段".repeat(i * 200), Map.of("knowledge", "doc", "chunk", i)));
+            float[] embedding = new float[768];
+            for (int d = 0; d < embedding.length; d++) {
+                embedding[d] = i + d / 1000f;
+            }
+            embeddings.add(embedding);
+        }
+
+        new PgCopyVectorWriter(copy.jdbcTemplate(), "rag_kb_doc", config).write(documents, embeddings);
+
+        Assert.assertTrue("writes " + copy.writes, copy.writes > 1);
+        assertRows(copy.bytes(), documents, embeddings, false);
+    }
+
+    @Test
+    public void test_row_count_mismatch_fails() {
+        FakeCopy copy = new FakeCopy("jsonb");
+        copy.reportedRows = 0L;
+        PgCopyVectorWriter writer = new PgCopyVectorWriter(copy.jdbcTemplate(), "vector_store", new PgCopyVectorWriter.Config());
+        Assert.assertThrows(IllegalStateException.class, () -> writer.write(
+                List.of(new Document(UUID.randomUUID().toString(), "text", Map.of())), List.of(new float[]{1f})));
+    }
+
+    /**
+     * 按二进制 COPY 格式解码：文件头，每行 字段数 + (长度 + 内容)*，文件尾 -1
+     */
+    private static void assertRows(byte[] bytes, List<Document> documents, List<float[]> embeddings, boolean jsonb) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        Assert.assertArrayEquals(SIGNATURE, signature);
+        Assert.assertEquals("flags", 0, in.readInt());
+        Assert.assertEquals("header extension", 0, in.readInt());
+
+        for (int row = 0; row < documents.size(); row++) {
+            Document document = documents.get(row);
+            Assert.assertEquals(4, in.readShort());
+
+            Assert.assertEquals(16, in.readInt());
+            Assert.assertEquals(UUID.fromString(document.getId()), new UUID(in.readLong(), in.readLong()));
+
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            Assert.assertEquals(document.getText(), new String(content, StandardCharsets.UTF_8));
+
+            int length = in.readInt();
+            if (jsonb) {
+                Assert.assertEquals("jsonb version", 1, in.readByte());
+                length--;
+            }
+            byte[] metadata = new byte[length];
+            in.readFully(metadata);
+            Assert.assertEquals(document.getMetadata(), JSON.parseObject(new String(metadata, StandardCharsets.UTF_8)).getInnerMap());
+
+            float[] embedding = embeddings.get(row);
+            Assert.assertEquals(4 + embedding.length * 4, in.readInt());
+            Assert.assertEquals(embedding.length, in.readShort());
+            Assert.assertEquals("unused", 0, in.readShort());
+            for (float value : embedding) {
+                Assert.assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(in.readFloat()));
+            }
+        }
+        Assert.assertEquals("trailer", -1, in.readShort());
+        Assert.assertEquals(0, in.available());
+    }
+
+    /**
+     * 假的 JDBC 连接：metadata 列类型固定，COPY 数据写入内存
+     */
+    private static class FakeCopy {
+
+        private final String metadataType;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private String sql;
+        private int writes;
+        /** endCopy 返回的行数，为空时返回实际解析出的行数 */
+        private Long reportedRows;
+
+        FakeCopy(String metadataType) {
+            this.metadataType = metadataType;
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+
+        JdbcTemplate jdbcTemplate() {
+            Connection connection = proxy(Connection.class, (method, args) -> switch (method) {
+                case "unwrap" -> pgConnection();
+                default -> throw new UnsupportedOperationException(method);
+            });
+            return new JdbcTemplate() {
+                @Override
+                public <T> T execute(ConnectionCallback<T> action) {
+                    try {
+                        return action.doInConnection(connection);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+                    return requiredType.cast(metadataType);
+                }
+            };
+        }
+
+        private PGConnection pgConnection() {
+            BaseConnection baseConnection = proxy(BaseConnection.class, (method, args) -> null);
+            return proxy(PGConnection.class, (method, args) -> switch (method) {
+                case "getCopyAPI" -> {
+                    try {
+                        yield new CopyManager(baseConnection) {
+                            @Override
+                            public CopyIn copyIn(String copySql) {
+                                sql = copySql;
+                                return capture();
+                            }
+                        };
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                default -> throw new UnsupportedOperationException(method);
+            });
+        }
+
+        private CopyIn capture() {
+            return proxy(CopyIn.class, (method, args) -> switch (method) {
+                case "writeToCopy" -> {
+                    out.write((byte[]) args[0], (int) args[1], (int) args[2]);
+                    writes++;
+                    yield null;
+                }
+                case "endCopy" -> null != reportedRows ? reportedRows : (long) countRows(bytes());
+                case "isActive" -> false;
+                default -> throw new UnsupportedOperationException(method);
+            });
+        }
+
+        /**
+         * 跳过各字段数出行数
+         */
+        private static int countRows(byte[] bytes) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+                in.skipNBytes(19);
+                int rows = 0;
+                for (short fields; (fields = in.readShort()) != -1; rows++) {
+                    for (int i = 0; i < fields; i++) {
+                        in.skipNBytes(in.readInt());
+                    }
+                }
+                return rows;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> handler.handle(method.getName(), null == args ? new Object[0] : args));
+        }
+
+        private interface Handler {
+            Object handle(String method, Object[] args);
+        }
+    }
+
+}
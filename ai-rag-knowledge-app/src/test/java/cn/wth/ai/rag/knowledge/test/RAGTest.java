@@ -1,5 +1,6 @@
 package cn.wth.ai.rag.knowledge.test;
 
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTokenSplitter;
 import com.alibaba.fastjson.JSON;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +15,6 @@ import org.springframework.ai.document.Document;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
@@ -40,7 +40,7 @@ public class RAGTest {
     @Resource
     private OllamaChatModel ollamaChatModel;
     @Resource
-    private TokenTextSplitter tokenTextSplitter;
+    private StreamingTokenSplitter tokenSplitter;
     @Resource
     private PgVectorStore pgVectorStore;
 
@@ -54,7 +54,7 @@ public class RAGTest {
         log.info("文档读取完成，原始文档数量: {}", documents.size());
 
         log.info("开始文档切分...");
-        List<Document> documentSplitterList = tokenTextSplitter.apply(documents);
+        List<Document> documentSplitterList = tokenSplitter.apply(documents);
         log.info("文档切分完成，切分后文档数量: {}", documentSplitterList.size());
 
         log.info("为文档添加元数据标记...");
@@ -0,0 +1,53 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.rag.RagContextAssembler;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagPromptTemplate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 提示词上下文拼装测试，不依赖外部服务
+ * @CreateTime: 2026-10-18 17:50
+ */
+public class RagContextAssemblerTest {
+
+    @Test
+    public void test_assemble_ordered_deduplicated() {
+        RagContextAssembler assembler = new RagContextAssembler(new JTokkitTokenCountEstimator(), 1024);
+        String context = assembler.assemble(List.of(
+                document("b.md", "second answer", 0.5),
+                document("a.md", "first  answer", 0.9),
+                document("c.md", "first answer", 0.4)));
+
+        Assert.assertEquals("[1] source: a.md\nfirst  answer\n---\n[2] source: b.md\nsecond answer", context);
+    }
+
+    @Test
+    public void test_assemble_token_budget() {
+        RagContextAssembler assembler = new RagContextAssembler(new JTokkitTokenCountEstimator(), 20);
+        String context = assembler.assemble(List.of(
+                document("long.md", "word ".repeat(200), 0.9),
+                document("short.md", "short", 0.8)));
+
+        Assert.assertTrue(context.startsWith("[1] source: long.md"));
+        Assert.assertFalse(context.contains("short.md"));
+        Assert.assertTrue(new JTokkitTokenCountEstimator().estimate(context) <= 20);
+    }
+
+    @Test
+    public void test_prompt_template() {
+        RagPromptTemplate template = new RagPromptTemplate("DOCUMENTS:\n{documents}\nEND");
+        Assert.assertEquals("DOCUMENTS:\nctx\nEND", template.render(Map.of("documents", "ctx")));
+    }
+
+    private static Document document(String source, String text, double score) {
+        return Document.builder().text(text).metadata(Map.of("source", source)).score(score).build();
+    }
+
+}
@@ -0,0 +1,117 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.metrics.RagMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 导入与问答指标测试，使用内存中的 SimpleMeterRegistry
+ * @CreateTime: 2026-10-19 01:50
+ */
+public class RagMetricsTest {
+
+    @Test
+    public void test_stream_records_ttft_and_tokens() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RagMetrics metrics = new RagMetrics(registry, "nomic-embed-text", 10, ragTag -> true);
+
+        Flux<ChatResponse> stream = Flux.just("一", "二", "三", "四")
+                .delayElements(Duration.ofMillis(20))
+                .map(text -> new ChatResponse(List.of(new Generation(new AssistantMessage(text)))));
+        long count = metrics.meterStream(stream, "doc", "deepseek", System.currentTimeMillis()).count().block();
+        Assert.assertEquals(4, count);
+
+        Timer ttft = registry.find("rag.chat.ttft").tags("ragTag", "doc", "model", "deepseek").timer();
+        Assert.assertNotNull(ttft);
+        Assert.assertEquals(1, ttft.count());
+        Assert.assertTrue(ttft.totalTime(TimeUnit.MILLISECONDS) >= 15);
+
+        // 没有用量信息时按输出段数计 token
+        DistributionSummary tokens = registry.find("rag.chat.tokens").tags("ragTag", "doc").summary();
+        Assert.assertNotNull(tokens);
+        Assert.assertEquals(4, tokens.totalAmount(), 0);
+        DistributionSummary rate = registry.find("rag.chat.tokens.per.second").tags("ragTag", "doc").summary();
+        Assert.assertNotNull(rate);
+        Assert.assertTrue(rate.totalAmount() > 0);
+    }
+
+    @Test
+    public void test_rag_tags_beyond_limit_fold_into_other() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RagMetrics metrics = new RagMetrics(registry, "nomic-embed-text", 2, ragTag -> true);
+
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "a", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "b", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "c", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "d", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "a", 1_000_000);
+
+        Assert.assertEquals(2, registry.find("rag.ingest.embed").tags("ragTag", "a", "model", "nomic-embed-text").timer().count());
+        Assert.assertEquals(2, registry.find("rag.ingest.embed").tags("ragTag", "other").timer().count());
+        Assert.assertEquals(3, registry.find("rag.ingest.embed").timers().size());
+    }
+
+    @Test
+    public void test_unknown_rag_tags_do_not_take_slots() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RagMetrics metrics = new RagMetrics(registry, "nomic-embed-text", 2, Set.of("a", "b")::contains);
+
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "x", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "y", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "a", 1_000_000);
+        metrics.recordIngest(RagMetrics.Stage.EMBED, "b", 1_000_000);
+
+        Assert.assertEquals(1, registry.find("rag.ingest.embed").tags("ragTag", "a").timer().count());
+        Assert.assertEquals(1, registry.find("rag.ingest.embed").tags("ragTag", "b").timer().count());
+        Assert.assertEquals(2, registry.find("rag.ingest.embed").tags("ragTag", "other").timer().count());
+        Assert.assertEquals(3, registry.find("rag.ingest.embed").timers().size());
+    }
+
+    @Test
+    public void test_rag_tag_limit_holds_under_concurrency() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RagMetrics metrics = new RagMetrics(registry, "nomic-embed-text", 5, ragTag -> true);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 200; i++) {
+                    metrics.recordIngest(RagMetrics.Stage.EMBED, "tag-" + (i * 8 + offset), 1_000_000);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 5 个名额加 other
+        Assert.assertEquals(6, registry.find("rag.ingest.embed").timers().size());
+        Assert.assertEquals(1600 - 5, registry.find("rag.ingest.embed").tags("ragTag", "other").timer().count());
+    }
+
+}
@@ -0,0 +1,47 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.rag.RagRetriever;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: 5th
+ * @Description: 混合检索的倒数排名融合测试，不依赖外部服务
+ * @CreateTime: 2026-10-18 20:40
+ */
+public class RagRetrieverFusionTest {
+
+    @Test
+    public void test_fuse_prefers_documents_in_both_rankings() {
+        List<Document> vector = List.of(document("a", 0.9), document("b", 0.8), document("c", 0.7));
+        List<Document> keyword = List.of(document("c", 3.0), document("d", 2.0));
+
+        List<Document> fused = RagRetriever.fuse(List.of(vector, keyword), 60, 3);
+
+        // c 在两路中都出现，1/63 + 1/61 高于只在向量结果第一位的 a 的 1/61
+        Assert.assertEquals(List.of("c", "a", "b"), ids(fused));
+        Assert.assertEquals(1D / 63 + 1D / 61, fused.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    public void test_fuse_ties_keep_first_seen_order() {
+        List<Document> vector = List.of(document("a", 0.9));
+        List<Document> keyword = List.of(document("b", 5.0));
+
+        Assert.assertEquals(List.of("a", "b"), ids(RagRetriever.fuse(List.of(vector, keyword), 60, 5)));
+        Assert.assertTrue(RagRetriever.fuse(List.of(List.of(), List.of()), 60, 5).isEmpty());
+    }
+
+    private static Document document(String id, double score) {
+        return Document.builder().id(id).text("text " + id).score(score).build();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,105 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.git.RepositoryFileWalker;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 仓库文件遍历测试，不依赖外部服务
+ * @CreateTime: 2026-10-18 17:10
+ */
+public class RepositoryFileWalkerTest {
+
+    @Test
+    public void test_walk_filters() throws Exception {
+        Path root = Files.createTempDirectory("rag-walker");
+        try {
+            write(root.resolve("README.md"), "readme");
+            write(root.resolve("src/main/App.java"), "class App {}");
+            write(root.resolve(".git/config"), "[core]");
+            write(root.resolve("node_modules/x/index.js"), "module.exports = 1");
+            write(root.resolve("docs/logo.png"), "png");
+            write(root.resolve("big.txt"), "x".repeat(2048));
+            Files.createDirectories(root.resolve("bin"));
+            Files.write(root.resolve("bin/data.dat"), new byte[]{1, 0, 2, 3});
+
+            RepositoryFileWalker.Config config = new RepositoryFileWalker.Config();
+            config.setMaxFileSizeKb(1);
+            config.setParallelism(2);
+            RepositoryFileWalker walker = new RepositoryFileWalker(config);
+            try {
+                RepositoryFileWalker.Result result = walker.walk(root);
+                Assert.assertEquals(List.of("README.md", "src/main/App.java"), result.getFiles());
+                // .git、node_modules 整个目录被剪枝，不计入扫描
+                Assert.assertEquals(5, result.getScanned().get());
+                Assert.assertEquals(3, result.getSkipped().get());
+                Assert.assertEquals("readme".length() + "class App {}".length(), result.getBytes().get());
+
+                config.setIncludeGlobs(List.of("src/**"));
+                RepositoryFileWalker includeWalker = new RepositoryFileWalker(config);
+                try {
+                    Assert.assertEquals(List.of("src/main/App.java"), includeWalker.walk(root).getFiles());
+                } finally {
+                    includeWalker.shutdown();
+                }
+            } finally {
+                walker.shutdown();
+            }
+        } finally {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+
+    @Test
+    public void test_accept_checks_every_path_component() throws Exception {
+        Path root = Files.createTempDirectory("rag-walker");
+        try {
+            write(root.resolve("node_modules/x.js"), "module.exports = 1");
+            write(root.resolve("target/foo.txt"), "build output");
+            write(root.resolve("a/node_modules/b/y.js"), "module.exports = 2");
+            write(root.resolve("docs/guide.md"), "guide");
+            write(root.resolve("src/App.java"), "class App {}");
+
+            RepositoryFileWalker.Config config = new RepositoryFileWalker.Config();
+            config.setParallelism(1);
+            RepositoryFileWalker walker = new RepositoryFileWalker(config);
+            try {
+                RepositoryFileWalker.Result result = new RepositoryFileWalker.Result();
+                // 增量索引逐个判断变化的文件，排除目录下的文件同样要被过滤
+                Assert.assertFalse(walker.accept(root, "node_modules/x.js", result));
+                Assert.assertFalse(walker.accept(root, "target/foo.txt", result));
+                Assert.assertFalse(walker.accept(root, "a/node_modules/b/y.js", result));
+                Assert.assertTrue(walker.accept(root, "docs/guide.md", result));
+                Assert.assertTrue(walker.accept(root, "src/App.java", result));
+            } finally {
+                walker.shutdown();
+            }
+
+            // 不含 / 的 include 模式同样匹配目录名
+            config.setIncludeGlobs(List.of("docs"));
+            RepositoryFileWalker includeWalker = new RepositoryFileWalker(config);
+            try {
+                RepositoryFileWalker.Result result = new RepositoryFileWalker.Result();
+                Assert.assertTrue(includeWalker.accept(root, "docs/guide.md", result));
+                Assert.assertFalse(includeWalker.accept(root, "src/App.java", result));
+            } finally {
+                includeWalker.shutdown();
+            }
+        } finally {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+
+    private static void write(Path path, String content) throws Exception {
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+    }
+
+}
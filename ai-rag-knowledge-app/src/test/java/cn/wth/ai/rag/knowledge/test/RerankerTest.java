@@ -0,0 +1,114 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.rag.CrossEncoder;
+import cn.wth.ai.rag.knowledge.trigger.rag.CrossEncoderReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.LexicalReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.MmrReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.RerankerChain;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 检索结果重排测试，向量模型和交叉编码器均为固定结果的桩，不依赖外部服务
+ * @CreateTime: 2026-10-19 01:20
+ */
+public class RerankerTest {
+
+    /** 固定的向量；a1、a2 内容雷同，b 与问题相关但角度不同 */
+    private static final Map<String, float[]> VECTORS = Map.of(
+            "如何配置 Redis", new float[]{1f, 0f, 0f},
+            "a1", new float[]{0.95f, 0.3f, 0f},
+            "a2", new float[]{0.94f, 0.32f, 0f},
+            "b", new float[]{0.8f, 0f, 0.6f});
+
+    @Test
+    public void test_lexical_promotes_exact_terms() {
+        List<Document> candidates = List.of(
+                new Document("缓存的一般介绍"),
+                new Document("向量检索的原理"),
+                new Document("RedisConfig 中配置 Redisson 连接池"));
+
+        List<Document> reranked = new LexicalReranker(0.5).rerank("RedisConfig 怎么配置", candidates, 2);
+
+        Assert.assertEquals(2, reranked.size());
+        Assert.assertEquals("RedisConfig 中配置 Redisson 连接池", reranked.get(0).getText());
+        Assert.assertTrue(reranked.get(0).getScore() >= reranked.get(1).getScore());
+    }
+
+    @Test
+    public void test_mmr_skips_near_duplicate() {
+        List<Document> candidates = List.of(new Document("a1"), new Document("a2"), new Document("b"));
+
+        // 只按相似度时 a1、a2 排在前两位，MMR 选出 a1 后 a2 的冗余度很高，改选 b
+        List<Document> reranked = new MmrReranker(embeddingModel(), 0.5).rerank("如何配置 Redis", candidates, 2);
+
+        Assert.assertEquals(List.of("a1", "b"), reranked.stream().map(Document::getText).toList());
+        Assert.assertTrue(reranked.get(0).getScore() > reranked.get(1).getScore());
+    }
+
+    @Test
+    public void test_cross_encoder_orders_by_score() {
+        // 按文本长度打分的桩
+        CrossEncoder crossEncoder = (query, passages) -> {
+            float[] scores = new float[passages.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = passages.get(i).length();
+            }
+            return scores;
+        };
+        List<Document> candidates = List.of(new Document("x"), new Document("xxx"), new Document("xx"));
+
+        List<Document> reranked = new CrossEncoderReranker(crossEncoder).rerank("q", candidates, 2);
+
+        Assert.assertEquals(List.of("xxx", "xx"), reranked.stream().map(Document::getText).toList());
+    }
+
+    @Test
+    public void test_chain_cuts_to_top_n_and_records_latency() {
+        RerankerChain chain = new RerankerChain(List.of(
+                new RerankerChain.Step("lexical", new LexicalReranker(0.5)),
+                new RerankerChain.Step("mmr", new MmrReranker(embeddingModel(), 0.5))), 50);
+        List<Document> candidates = List.of(new Document("a1"), new Document("a2"), new Document("b"));
+
+        Assert.assertEquals(50, chain.candidates(5));
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        List<Document> reranked = chain.rerank("如何配置 Redis", candidates, 2, latencies);
+
+        Assert.assertEquals(2, reranked.size());
+        Assert.assertEquals(List.of("lexical", "mmr"), new ArrayList<>(latencies.keySet()));
+
+        RerankerChain disabled = new RerankerChain(List.of(), 50);
+        Assert.assertEquals(5, disabled.candidates(5));
+        Assert.assertEquals(2, disabled.rerank("q", candidates, 2).size());
+    }
+
+    private static EmbeddingModel embeddingModel() {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (String text : request.getInstructions()) {
+                    embeddings.add(new Embedding(VECTORS.get(text), embeddings.size()));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return VECTORS.get(document.getText());
+            }
+        };
+    }
+
+}
@@ -0,0 +1,79 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.rag.SemanticCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 语义缓存测试，不依赖外部服务
+ * @CreateTime: 2026-10-18 18:50
+ */
+public class SemanticCacheTest {
+
+    /** 固定的问题向量，前两个几乎同向，第三个正交 */
+    private static final Map<String, float[]> VECTORS = Map.of(
+            "RAG 是什么", new float[]{1f, 0f, 0f},
+            "RAG是什么？", new float[]{0.99f, 0.05f, 0f},
+            "怎么部署", new float[]{0f, 1f, 0f});
+
+    @Test
+    public void test_similar_query_hits() {
+        SemanticCache cache = new SemanticCache(embeddingModel(), new SemanticCache.Config());
+
+        float[] first = cache.embedQuery("RAG 是什么");
+        long generation = cache.generation("doc");
+        cache.putAnswer("doc", "deepseek", first, "检索增强生成", generation);
+        cache.putDocuments("doc", first, List.of(new Document("chunk")), generation);
+
+        float[] similar = cache.embedQuery("RAG是什么？");
+        Assert.assertEquals("检索增强生成", cache.findAnswer("doc", "deepseek", similar));
+        Assert.assertEquals(1, cache.findDocuments("doc", similar).size());
+        Assert.assertNull(cache.findAnswer("doc", "qwen", similar));
+        Assert.assertNull(cache.findAnswer("other", "deepseek", similar));
+        Assert.assertNull(cache.findAnswer("doc", "deepseek", cache.embedQuery("怎么部署")));
+    }
+
+    @Test
+    public void test_invalidate() {
+        SemanticCache cache = new SemanticCache(embeddingModel(), new SemanticCache.Config());
+
+        float[] query = cache.embedQuery("RAG 是什么");
+        long generation = cache.generation("doc");
+        cache.putAnswer("doc", "deepseek", query, "检索增强生成", generation);
+        cache.invalidate("doc");
+        Assert.assertNull(cache.findAnswer("doc", "deepseek", query));
+
+        // 失效前开始生成的回答不会写回缓存
+        cache.putAnswer("doc", "deepseek", query, "过期回答", generation);
+        Assert.assertNull(cache.findAnswer("doc", "deepseek", query));
+    }
+
+    private static EmbeddingModel embeddingModel() {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (String text : request.getInstructions()) {
+                    embeddings.add(new Embedding(VECTORS.get(text), embeddings.size()));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return VECTORS.get(document.getText());
+            }
+        };
+    }
+
+}
@@ -0,0 +1,261 @@
+package cn.wth.ai.rag.knowledge.test;
+
+import cn.wth.ai.rag.knowledge.trigger.ingest.Cl100kPieces;
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTikaReader;
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTokenSplitter;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Author: 5th
+ * @Description: 流式解析与切分测试：分段追加与 TokenTextSplitter 整篇切分的结果一致、分词与 tiktoken 正则一致、分片 token 数不超过上限、
+ * 代码按方法边界切分、分片重叠的 token 数、空白行合并、分片数达到上限时提前结束解析；切分吞吐见 bench 模块的 SplitterBenchmark
+ * @CreateTime: 2026-10-18 22:30
+ */
+public class StreamingSplitterTest {
+
+    private static final Encoding CL100K = Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    @Test
+    public void test_split_in_pieces() {
+        String text = text(200_000);
+        List<String> chunks = new ArrayList<>();
+        StreamingTokenSplitter.Session session = new StreamingTokenSplitter(new StreamingTokenSplitter.Config()).open(false, chunks::add);
+        // 模拟 Tika 的回调，每次只追加一小段
+        for (int from = 0; from < text.length(); from += 97) {
+            session.append(text.substring(from, Math.min(from + 97, text.length())));
+        }
+        session.finish();
+
+        Assert.assertEquals(chunks.size(), session.chunks());
+        Assert.assertEquals(text.replaceAll("\\s", ""), String.join("", chunks).replaceAll("\\s", ""));
+
+        // 与 TokenTextSplitter 整篇切分的结果相同
+        List<String> expected = new TokenTextSplitter().apply(List.of(new Document(text))).stream().map(Document::getText).toList();
+        Assert.assertEquals(expected, chunks);
+    }
+
+    @Test
+    public void test_read_file() throws Exception {
+        Path file = Files.createTempFile("ingest", ".txt");
+        try {
+            Files.writeString(file, "第一段\n\n\n\n   \n第二段 " + text(20_000), StandardCharsets.UTF_8);
+            List<String> chunks = new ArrayList<>();
+            StreamingTokenSplitter.Session session = new StreamingTokenSplitter(new StreamingTokenSplitter.Config()).open(false, chunks::add);
+            Assert.assertFalse(new StreamingTikaReader().read(file, session));
+            // 连续的空白行合并为一行
+            Assert.assertTrue(chunks.get(0).startsWith("第一段\n\n第二段"));
+
+            StreamingTokenSplitter.Config config = new StreamingTokenSplitter.Config();
+            config.setMaxNumChunks(2);
+            List<String> limited = new ArrayList<>();
+            Assert.assertTrue(new StreamingTikaReader().read(file, new StreamingTokenSplitter(config).open(false, limited::add)));
+            Assert.assertEquals(2, limited.size());
+            Assert.assertEquals(chunks.subList(0, 2), limited);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_whole_document_same_as_stream() {
+        StreamingTokenSplitter splitter = new StreamingTokenSplitter(new StreamingTokenSplitter.Config());
+        String text = text(50_000);
+        List<String> streamed = new ArrayList<>();
+        StreamingTokenSplitter.Session session = splitter.open(false, streamed::add);
+        session.append(text);
+        session.finish();
+
+        List<Document> documents = splitter.apply(List.of(new Document(text, Map.of("source", "a.md"))));
+        Assert.assertEquals(streamed, documents.stream().map(Document::getText).toList());
+        Assert.assertTrue(documents.stream().allMatch(document -> "a.md".equals(document.getMetadata().get("source"))));
+    }
+
+    @Test
+    public void test_code_boundaries() {
+        StreamingTokenSplitter splitter = new StreamingTokenSplitter(new StreamingTokenSplitter.Config());
+        Assert.assertTrue(splitter.isCode("src/main/java/Demo.java"));
+        Assert.assertFalse(splitter.isCode("README.md"));
+        Assert.assertFalse(splitter.isCode("v1.0/Makefile"));
+
+        String code = code(40);
+        List<String> chunks = new ArrayList<>();
+        splitter.split(code, true, chunks::add);
+        Assert.assertTrue(chunks.size() > 1);
+        // 除第一个分片外，每个分片都从方法的注释开始，方法不会被拆到两个分片里
+        for (String chunk : chunks.subList(1, chunks.size())) {
+            Assert.assertTrue(chunk, chunk.startsWith("/**"));
+        }
+        for (int i = 0; i < 40; i++) {
+            String method = "public int method" + i + "(";
+            Assert.assertEquals(1, chunks.stream().filter(chunk -> chunk.contains(method)).count());
+        }
+    }
+
+    @Test
+    public void test_overlap() {
+        StreamingTokenSplitter.Config config = new StreamingTokenSplitter.Config();
+        config.setChunkSize(200);
+        config.setMinChunkSizeChars(100);
+        config.setOverlap(50);
+        List<String> chunks = new ArrayList<>();
+        new StreamingTokenSplitter(config).split(text(20_000), false, chunks::add);
+        for (int i = 1; i < chunks.size(); i++) {
+            // 前一个分片的末尾出现在后一个分片的开头
+            String previous = chunks.get(i - 1);
+            String tail = previous.substring(previous.length() - 40);
+            Assert.assertTrue(chunks.get(i).substring(0, Math.min(chunks.get(i).length(), 400)).contains(tail));
+        }
+    }
+
+    @Test
+    public void test_chunk_token_bounds() {
+        StreamingTokenSplitter.Config config = new StreamingTokenSplitter.Config();
+        config.setChunkSize(300);
+        config.setMinChunkSizeChars(200);
+        List<Document> chunks = new StreamingTokenSplitter(config).apply(List.of(
+                new Document(text(60_000), Map.of("source", "docs/guide.md")),
+                new Document(code(60), Map.of("source", "src/main/java/Demo.java"))));
+
+        List<Document> prose = chunks.stream().filter(chunk -> "docs/guide.md".equals(chunk.getMetadata().get("source"))).toList();
+        Assert.assertTrue(prose.size() > 10);
+        Assert.assertTrue(chunks.size() > prose.size());
+        for (Document chunk : chunks) {
+            Assert.assertTrue(chunk.getText(), CL100K.countTokensOrdinary(chunk.getText()) <= config.getChunkSize());
+        }
+        // 正文分片在窗口内最后一个句末标点处断开，断开位置超过 minChunkSizeChars，分片以句号或换行结尾
+        for (Document chunk : prose.subList(0, prose.size() - 1)) {
+            String text = chunk.getText();
+            Assert.assertTrue(text, text.length() > config.getMinChunkSizeChars());
+            Assert.assertTrue(text, text.endsWith("."));
+        }
+    }
+
+    @Test
+    public void test_overlap_tokens() {
+        StreamingTokenSplitter.Config config = new StreamingTokenSplitter.Config();
+        config.setChunkSize(200);
+        config.setMinChunkSizeChars(100);
+        config.setOverlap(50);
+        List<String> chunks = new ArrayList<>();
+        new StreamingTokenSplitter(config).split(text(30_000), false, chunks::add);
+        Assert.assertTrue(chunks.size() > 10);
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            String current = chunks.get(i);
+            // 窗口不超过 chunkSize；重叠从带前导空格的片段开始，去掉首尾空白后开头的词可能多编码出一个 token
+            Assert.assertTrue(CL100K.countTokensOrdinary(current) <= config.getChunkSize() + 1);
+            // 后一个分片以前一个分片的末尾开头，重叠部分从片段边界开始，至少 overlap 个 token
+            int shared = 0;
+            for (int length = Math.min(previous.length(), current.length()); length > 0; length--) {
+                if (previous.endsWith(current.substring(0, length))) {
+                    shared = length;
+                    break;
+                }
+            }
+            int tokens = CL100K.countTokensOrdinary(current.substring(0, shared));
+            Assert.assertTrue("chunk " + i + " overlap " + tokens, tokens >= config.getOverlap() - 1 && tokens < config.getOverlap() + 10);
+        }
+    }
+
+    @Test
+    public void test_code_split_points_follow_source() {
+        StreamingTokenSplitter.Config config = new StreamingTokenSplitter.Config();
+        config.setChunkSize(200);
+        config.setMinChunkSizeChars(100);
+        StreamingTokenSplitter splitter = new StreamingTokenSplitter(config);
+        String code = code(30);
+
+        // 代码文件在方法注释前断开
+        List<Document> java = splitter.apply(List.of(new Document(code, Map.of("source", "src/main/java/Demo.java"))));
+        Assert.assertTrue(java.size() > 5);
+        for (Document chunk : java.subList(1, java.size())) {
+            Assert.assertTrue(chunk.getText(), chunk.getText().startsWith("/**"));
+        }
+
+        // 同样的内容作为普通文本时按行断开，方法会被拆开
+        List<Document> text = splitter.apply(List.of(new Document(code, Map.of("source", "notes/Demo.txt"))));
+        Assert.assertTrue(text.stream().skip(1).anyMatch(chunk -> !chunk.getText().startsWith("/**")));
+
+        // 关闭代码边界切分后 .java 也按普通文本切分
+        config.setCodeAware(false);
+        Assert.assertEquals(text.stream().map(Document::getText).toList(),
+                new StreamingTokenSplitter(config).apply(List.of(new Document(code, Map.of("source", "src/main/java/Demo.java"))))
+                        .stream().map(Document::getText).toList());
+    }
+
+    @Test
+    public void test_pieces_same_as_regex() {
+        Pattern pattern = Pattern.compile("(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+                + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+", Pattern.UNICODE_CHARACTER_CLASS);
+        String alphabet = "aZé中文ß1２Ⅻ '\"’.,;:!?(){}<>+-=_/\\\t\r\n\u00a0\u3000😀sStTrReEvVlLmMdD";
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                text.appendCodePoint(alphabet.codePointAt(alphabet.offsetByCodePoints(0, random.nextInt(alphabet.codePointCount(0, alphabet.length())))));
+            }
+            Matcher matcher = pattern.matcher(text);
+            int start = 0;
+            while (matcher.find()) {
+                Assert.assertEquals("[" + text + "] at " + start, matcher.end(), Cl100kPieces.next(text, start, text.length()));
+                start = matcher.end();
+            }
+            Assert.assertEquals(text.length(), start);
+        }
+    }
+
+    /**
+     * 一个类，count 个带注释的方法，方法之间空一行
+     */
+    private static String code(int count) {
+        StringBuilder code = new StringBuilder("package demo;\n\npublic class Demo {\n\n");
+        for (int i = 0; i < count; i++) {
+            code.append("    /**\n     * method ").append(i).append("\n     */\n");
+            code.append("    public int method").append(i).append("(int value) {\n");
+            for (int j = 0; j < 8; j++) {
+                code.append("        value = value * ").append(31 + j).append(" + ").append(i).append(";\n");
+                if (j == 3) code.append("\n");
+            }
+            code.append("        return value;\n    }\n\n");
+        }
+        return code.append("}\n").toString();
+    }
+
+    /**
+     * 随机单词组成的句子，每隔几句换行
+     */
+    private static String text(int length) {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            int words = 5 + random.nextInt(15);
+            for (int i = 0; i < words; i++) {
+                int letters = 2 + random.nextInt(8);
+                for (int j = 0; j < letters; j++) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                text.append(i == words - 1 ? "." : " ");
+            }
+            text.append(random.nextInt(5) == 0 ? "\n" : " ");
+        }
+        return text.toString();
+    }
+
+}
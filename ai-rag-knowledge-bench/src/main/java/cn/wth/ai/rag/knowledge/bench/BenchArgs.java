@@ -0,0 +1,41 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 命令行参数，格式为 --name=value，未指定时取默认值
+ * @CreateTime: 2026-10-19 03:10
+ */
+public class BenchArgs {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public BenchArgs(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("参数格式为 --name=value：" + arg);
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return null == value ? defaultValue : Integer.parseInt(value);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return null == value ? defaultValue : Double.parseDouble(value);
+    }
+
+}
@@ -0,0 +1,99 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import org.springframework.ai.document.Document;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * @Author: 5th
+ * @Description: 压测语料；从 20000 个随机单词的词表中按 Zipf 分布取词生成英文段落和问题，另生成 Java 源码。
+ * 种子相同时生成的内容相同，每次压测的输入一致，结果之间可以比较
+ * @CreateTime: 2026-10-19 03:10
+ */
+public class BenchCorpus {
+
+    private static final int VOCABULARY_SIZE = 20000;
+
+    private final String[] vocabulary = new String[VOCABULARY_SIZE];
+    private final Random random;
+
+    public BenchCorpus(long seed) {
+        this.random = new Random(seed);
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int letters = 2 + random.nextInt(9);
+            for (int j = 0; j < letters; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+    }
+
+    /**
+     * 英文段落，句子之间随机插入空行
+     */
+    public String prose(int length) {
+        StringBuilder text = new StringBuilder(length + 128);
+        while (text.length() < length) {
+            int words = 5 + random.nextInt(15);
+            for (int i = 0; i < words; i++) {
+                text.append(word()).append(i == words - 1 ? "." : " ");
+            }
+            text.append(random.nextInt(8) == 0 ? "\n\n" : " ");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Java 源码，每个方法结构相同、常量不同
+     */
+    public static String code(int length) {
+        StringBuilder code = new StringBuilder("package demo;\n\npublic class Demo {\n\n");
+        for (int i = 0; code.length() < length; i++) {
+            code.append("    /**\n     * method ").append(i).append("\n     */\n");
+            code.append("    public int method").append(i).append("(int value) {\n");
+            for (int j = 0; j < 12; j++) {
+                code.append("        value = value * ").append(31 + j).append(" + ").append(i).append(";\n");
+            }
+            code.append("        return value;\n    }\n\n");
+        }
+        return code.append("}\n").toString();
+    }
+
+    /**
+     * 知识库分片，元数据与导入时写入的一致（knowledge、source），id 由标签和序号决定
+     */
+    public List<Document> chunks(String ragTag, int count, int chars) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = UUID.nameUUIDFromBytes((ragTag + "#" + i).getBytes(StandardCharsets.UTF_8)).toString();
+            documents.add(new Document(id, prose(chars).strip(), Map.of("knowledge", ragTag, "source", "docs/page-" + (i / 8) + ".md")));
+        }
+        return documents;
+    }
+
+    /**
+     * 问题；和分片取自同一个词表，检索能召回有重叠词的分片
+     */
+    public String question() {
+        int words = 4 + random.nextInt(5);
+        StringBuilder question = new StringBuilder("what is");
+        for (int i = 0; i < words; i++) {
+            question.append(' ').append(word());
+        }
+        return question.append('?').toString();
+    }
+
+    /**
+     * 第 k 个词出现的概率约为 1/k，接近自然语言的重复程度
+     */
+    private String word() {
+        return vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1];
+    }
+
+}
@@ -0,0 +1,72 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import cn.wth.ai.rag.knowledge.trigger.embedding.BatchingEmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 批量向量化吞吐测量，对比不同 batchSize 下的吞吐（分片/秒）；不指定 base-url 时在随机端口启动 Ollama 桩服务，
+ * 每个请求固定耗时 embed-latency-ms，只体现批量和并发带来的变化，真实收益需要指向实际的 Ollama：
+ * java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.EmbeddingThroughput --base-url=http://localhost:11434
+ * --model=nomic-embed-text --chunks=512 --concurrency=4 --batch-sizes=1,4,8,16,32,64
+ * @CreateTime: 2026-10-19 04:50
+ */
+@Slf4j
+public class EmbeddingThroughput {
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs arguments = new BenchArgs(args);
+        int chunks = arguments.getInt("chunks", 512);
+        int concurrency = arguments.getInt("concurrency", 4);
+        int[] batchSizes = Arrays.stream(arguments.get("batch-sizes", "1,4,8,16,32,64").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+
+        String baseUrl = arguments.get("base-url", null);
+        StubOllamaServer stub = null;
+        if (null == baseUrl) {
+            StubEmbeddingModel stubModel = new StubEmbeddingModel(arguments.getInt("dimensions", 768),
+                    Duration.ofMillis(arguments.getInt("embed-latency-ms", 20)));
+            stub = new StubOllamaServer(0, stubModel, new StubChatModel(1, Duration.ZERO, Duration.ZERO)).start();
+            baseUrl = "http://localhost:" + stub.port();
+        }
+
+        try {
+            OllamaEmbeddingModel embeddingModel = OllamaEmbeddingModel.builder()
+                    .ollamaApi(new OllamaApi(baseUrl))
+                    .defaultOptions(OllamaOptions.builder().model(arguments.get("model", "nomic-embed-text")).build())
+                    .build();
+
+            List<String> texts = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                texts.add("第" + i + "段：" + "王大瓜 1990年出生，这是一段用于压测向量化吞吐的文本。".repeat(20));
+            }
+
+            // 预热，避免首个请求包含模型加载时间
+            embeddingModel.embed(texts.subList(0, 1));
+
+            for (int batchSize : batchSizes) {
+                BatchingEmbeddingModel batchingEmbeddingModel = new BatchingEmbeddingModel(embeddingModel, batchSize, concurrency);
+                try {
+                    long start = System.nanoTime();
+                    List<float[]> embeddings = batchingEmbeddingModel.embed(texts);
+                    double seconds = (System.nanoTime() - start) / 1_000_000_000D;
+                    log.info("batchSize:{} concurrency:{} 分片数:{} 耗时:{}s 吞吐:{} 分片/秒", batchSize, concurrency,
+                            embeddings.size(), String.format("%.2f", seconds), String.format("%.1f", embeddings.size() / seconds));
+                } finally {
+                    batchingEmbeddingModel.shutdown();
+                }
+            }
+        } finally {
+            if (null != stub) stub.close();
+        }
+    }
+
+}
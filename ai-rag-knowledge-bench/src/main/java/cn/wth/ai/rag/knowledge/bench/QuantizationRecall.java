@@ -0,0 +1,169 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import cn.wth.ai.rag.knowledge.trigger.vector.HnswIndex;
+import cn.wth.ai.rag.knowledge.trigger.vector.HnswVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: 5th
+ * @Description: 进程内向量量化对比；FLOAT32 与 INT8（不同重排倍数）的 HNSW 索引构建耗时、堆内存、文件大小、recall@k 与 p50/p99 延迟。
+ * 向量分量以 0 为中心随机生成，维度默认与 nomic-embed-text 一致（768），基准为暴力检索的精确 topK；不依赖数据库和模型服务：
+ * java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.QuantizationRecall --rows=50000 --rerank-factors=1,4,10
+ * @CreateTime: 2026-10-19 05:10
+ */
+@Slf4j
+public class QuantizationRecall {
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs arguments = new BenchArgs(args);
+        int rows = arguments.getInt("rows", 50000);
+        int dimensions = arguments.getInt("dimensions", 768);
+        int queryCount = arguments.getInt("queries", 200);
+        int topK = arguments.getInt("top-k", 10);
+        int efSearch = arguments.getInt("ef-search", 64);
+        int[] rerankFactors = Arrays.stream(arguments.get("rerank-factors", "1,4,10").split(","))
+                .mapToInt(factor -> Integer.parseInt(factor.trim())).toArray();
+
+        List<float[]> vectors = randomVectors(rows, dimensions, 7);
+        List<float[]> queries = randomVectors(queryCount, dimensions, 42);
+        Map<String, float[]> queryVectors = new HashMap<>();
+        List<Set<String>> groundTruth = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            queryVectors.put("q" + i, queries.get(i));
+            groundTruth.add(exactTopK(vectors, queries.get(i), topK));
+        }
+
+        List<Document> documents = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            documents.add(new Document(String.valueOf(i), "", Map.of()));
+        }
+        EmbeddingModel embeddingModel = embeddingModel(queryVectors, dimensions);
+        for (HnswIndex.Encoding encoding : HnswIndex.Encoding.values()) {
+            // FLOAT32 不重排，只测一组
+            for (int factor : encoding == HnswIndex.Encoding.INT8 ? rerankFactors : new int[]{1}) {
+                HnswVectorStore store = new HnswVectorStore(embeddingModel, 16, 100, efSearch, encoding, factor);
+                long start = System.currentTimeMillis();
+                store.add(documents, vectors);
+                long buildMillis = System.currentTimeMillis() - start;
+
+                Path file = Files.createTempFile("hnsw-bench", ".idx");
+                try {
+                    store.save(file);
+                    HnswVectorStore loaded = HnswVectorStore.load(file, embeddingModel, efSearch, factor);
+
+                    long[] latencies = new long[queries.size()];
+                    double recall = 0;
+                    for (int i = 0; i < queries.size(); i++) {
+                        long queryStart = System.nanoTime();
+                        List<Document> found = loaded.similaritySearch(SearchRequest.builder().query("q" + i).topK(topK)
+                                .similarityThresholdAll().build());
+                        latencies[i] = System.nanoTime() - queryStart;
+                        Set<String> ids = found.stream().map(Document::getId).collect(Collectors.toCollection(HashSet::new));
+                        ids.retainAll(groundTruth.get(i));
+                        recall += (double) ids.size() / topK;
+                    }
+                    Arrays.sort(latencies);
+                    log.info("编码:{} 重排倍数:{} 向量数:{} 构建:{}ms 堆内存:{}MB 文件:{}MB recall@{}:{} p50:{}ms p99:{}ms", encoding, factor,
+                            rows, buildMillis, megabytes(loaded.memoryBytes()), megabytes(Files.size(file)), topK,
+                            String.format("%.3f", recall / queries.size()),
+                            String.format("%.3f", percentile(latencies, 0.50) / 1_000_000D),
+                            String.format("%.3f", percentile(latencies, 0.99) / 1_000_000D));
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static Set<String> exactTopK(List<float[]> vectors, float[] query, int topK) {
+        Integer[] order = new Integer[vectors.size()];
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            order[i] = i;
+            scores[i] = cosine(query, vectors.get(i));
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        Set<String> top = new HashSet<>();
+        for (int i = 0; i < Math.min(topK, order.length); i++) {
+            top.add(String.valueOf(order[i]));
+        }
+        return top;
+    }
+
+    private static List<float[]> randomVectors(int count, int dimensions, long seed) {
+        Random random = new Random(seed);
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimensions];
+            for (int d = 0; d < dimensions; d++) {
+                vector[d] = random.nextFloat() - 0.5f;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * 查询文本 q0、q1… 映射到预先生成的查询向量
+     */
+    private static EmbeddingModel embeddingModel(Map<String, float[]> queryVectors, int dimensions) {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (String text : request.getInstructions()) {
+                    embeddings.add(new Embedding(queryVectors.getOrDefault(text, new float[dimensions]), embeddings.size()));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return queryVectors.getOrDefault(document.getText(), new float[dimensions]);
+            }
+
+            @Override
+            public int dimensions() {
+                return dimensions;
+            }
+        };
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f", bytes / 1024D / 1024D);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+}
@@ -0,0 +1,151 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 应用启动耗时与内存测量；以子进程启动应用 runs 次，从启动进程到 /actuator/health 有响应（UP 或 DOWN 都算）记为启动耗时，
+ * 此时读取进程的 RSS（/proc/pid/status 的 VmRSS，只支持 Linux），输出中位数、最小值、最大值，写入 out 指定的 JSON。
+ * 指定 baseline 时与基线比较，启动耗时或 RSS 中位数上升超过 threshold 时以退出码 1 结束
+ * <p>
+ * 优化前后各测一次，例如普通 jar 与 AOT + AppCDS（mvn -P cds package）：
+ * java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.StartupProbe --dir=ai-rag-knowledge-app/target
+ * --jar=ai-rag-knowledge-app.jar --runs=5 --out=startup-before.json
+ * java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.StartupProbe --dir=ai-rag-knowledge-app/target/cds
+ * --jar=ai-rag-knowledge-app-cds.jar --jvm-args="-XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true"
+ * --runs=5 --baseline=startup-before.json
+ * <p>
+ * 应用需要能连上所用 profile 的 PostgreSQL 和 Redis；app-args 可以追加应用参数，例如 --spring.profiles.active=test
+ * @CreateTime: 2026-10-19 04:40
+ */
+@Slf4j
+public class StartupProbe {
+
+    private static final List<String> COMPARED = List.of("startupMsP50", "rssMbP50");
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs arguments = new BenchArgs(args);
+        Path dir = Paths.get(arguments.get("dir", "."));
+        String jar = arguments.get("jar", "ai-rag-knowledge-app.jar");
+        int port = arguments.getInt("port", 8090);
+        int runs = arguments.getInt("runs", 5);
+        Duration timeout = Duration.ofSeconds(arguments.getInt("timeout-seconds", 180));
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(split(arguments.get("jvm-args", "")));
+        command.add("-jar");
+        command.add(jar);
+        command.add("--server.port=" + port);
+        command.addAll(split(arguments.get("app-args", "")));
+        log.info("启动命令 {}", String.join(" ", command));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(1)).build();
+        long[] startupMillis = new long[runs];
+        long[] rssKb = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            Process process = new ProcessBuilder(command).directory(dir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.to(dir.resolve("startup-probe.log").toFile()))
+                    .start();
+            long start = System.nanoTime();
+            try {
+                startupMillis[run] = TimeUnit.NANOSECONDS.toMillis(awaitReady(process, client, health, timeout) - start);
+                rssKb[run] = rssKb(process.pid());
+                log.info("第 {} 次 启动耗时:{}ms RSS:{}MB", run + 1, startupMillis[run], rssKb[run] / 1024);
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly().waitFor();
+            }
+        }
+
+        Arrays.sort(startupMillis);
+        Arrays.sort(rssKb);
+        JSONObject result = new JSONObject(true)
+                .fluentPut("jar", jar)
+                .fluentPut("jvmArgs", arguments.get("jvm-args", ""))
+                .fluentPut("runs", runs)
+                .fluentPut("startupMsP50", startupMillis[runs / 2])
+                .fluentPut("startupMsMin", startupMillis[0])
+                .fluentPut("startupMsMax", startupMillis[runs - 1])
+                .fluentPut("rssMbP50", rssKb[runs / 2] / 1024)
+                .fluentPut("rssMbMax", rssKb[runs - 1] / 1024);
+        String json = JSON.toJSONString(result, SerializerFeature.PrettyFormat);
+        log.info("启动测量结果\n{}", json);
+        Files.writeString(Paths.get(arguments.get("out", "startup-report.json")), json, StandardCharsets.UTF_8);
+
+        String baseline = arguments.get("baseline", null);
+        if (null == baseline) return;
+        JSONObject previous = JSON.parseObject(Files.readString(Paths.get(baseline), StandardCharsets.UTF_8));
+        double threshold = arguments.getDouble("threshold", 0.1);
+        boolean regressed = false;
+        for (String metric : COMPARED) {
+            long before = previous.getLongValue(metric);
+            long after = result.getLongValue(metric);
+            log.info("{} 基线:{} 本次:{} 变化:{}%", metric, before, after, before == 0 ? "-" : Math.round((after - before) * 1000.0 / before) / 10.0);
+            if (before > 0 && after > before * (1 + threshold)) {
+                log.warn("启动指标退化 {} {} → {}", metric, before, after);
+                regressed = true;
+            }
+        }
+        if (regressed) System.exit(1);
+    }
+
+    /**
+     * 轮询健康检查直到有响应
+     *
+     * @return 就绪时的 System.nanoTime()
+     */
+    private static long awaitReady(Process process, HttpClient client, HttpRequest health, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("应用启动失败，退出码 " + process.exitValue() + "，输出见 startup-probe.log");
+            }
+            try {
+                client.send(health, HttpResponse.BodyHandlers.discarding());
+                return System.nanoTime();
+            } catch (IOException e) {
+                // 端口尚未监听
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("应用在 " + timeout.toSeconds() + " 秒内没有就绪");
+    }
+
+    private static long rssKb(long pid) throws IOException {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) return 0;
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return 0;
+    }
+
+    private static List<String> split(String value) {
+        return value.isBlank() ? List.of() : Arrays.asList(value.trim().split("\\s+"));
+    }
+
+}
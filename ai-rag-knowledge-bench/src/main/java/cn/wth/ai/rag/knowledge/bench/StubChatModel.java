@@ -0,0 +1,87 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @Author: 5th
+ * @Description: 对话模型桩；回答由提示词决定（同一提示词的回答相同），首个 token 前等待 firstTokenDelay，
+ * 之后每个 token 间隔 interTokenDelay，模拟模型的预填充和逐个生成；流式输出的最后一段带 STOP 和用量
+ * @CreateTime: 2026-10-19 03:10
+ */
+public class StubChatModel implements ChatModel {
+
+    private final int tokens;
+    private final Duration firstTokenDelay;
+    private final Duration interTokenDelay;
+
+    public StubChatModel(int tokens, Duration firstTokenDelay, Duration interTokenDelay) {
+        this.tokens = tokens;
+        this.firstTokenDelay = firstTokenDelay;
+        this.interTokenDelay = interTokenDelay;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<String> answer = answer(prompt.getContents());
+        StubEmbeddingModel.sleep(firstTokenDelay.toNanos() + interTokenDelay.toNanos() * (answer.size() - 1));
+        return response(String.join("", answer), true, prompt.getContents());
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        String contents = prompt.getContents();
+        List<String> answer = answer(contents);
+        return Flux.range(0, answer.size())
+                .concatMap(i -> delay(i == 0 ? firstTokenDelay : interTokenDelay).thenReturn(i))
+                .map(i -> response(answer.get(i), i == answer.size() - 1, contents));
+    }
+
+    /**
+     * 回答的各个 token；以提示词的哈希为种子，同一提示词的回答相同
+     */
+    public List<String> answer(String prompt) {
+        Random random = new Random(prompt.hashCode());
+        List<String> answer = new ArrayList<>(tokens);
+        for (int i = 0; i < tokens; i++) {
+            answer.add((i == 0 ? "" : " ") + "t" + random.nextInt(1000));
+        }
+        return answer;
+    }
+
+    public Duration getFirstTokenDelay() {
+        return firstTokenDelay;
+    }
+
+    public Duration getInterTokenDelay() {
+        return interTokenDelay;
+    }
+
+    /**
+     * 提示词 token 数按每 4 个字符一个估算
+     */
+    private ChatResponse response(String text, boolean last, String prompt) {
+        AssistantMessage output = new AssistantMessage(text);
+        if (!last) return new ChatResponse(List.of(new Generation(output)));
+        return new ChatResponse(List.of(new Generation(output, ChatGenerationMetadata.builder().finishReason("STOP").build())),
+                ChatResponseMetadata.builder().model("stub").usage(new DefaultUsage(prompt.length() / 4, tokens)).build());
+    }
+
+    private static Mono<Long> delay(Duration delay) {
+        return delay.isZero() ? Mono.just(0L) : Mono.delay(delay);
+    }
+
+}
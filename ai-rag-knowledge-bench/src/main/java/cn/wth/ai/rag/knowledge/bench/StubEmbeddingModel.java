@@ -0,0 +1,104 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author: 5th
+ * @Description: 向量模型桩；按词做特征哈希（每个词累加到一个维度上，符号由哈希决定）后归一化，
+ * 同一文本的向量固定，有相同词的文本余弦相似度更高，检索、重排、语义缓存的行为接近真实模型。
+ * latency 模拟每次请求的模型耗时，按请求计，不按文本数计，与 Ollama 批量向量化一致
+ * @CreateTime: 2026-10-19 03:10
+ */
+public class StubEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final long latencyNanos;
+
+    public StubEmbeddingModel(int dimensions, Duration latency) {
+        this.dimensions = dimensions;
+        this.latencyNanos = latency.toNanos();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        pause();
+        List<Embedding> embeddings = new ArrayList<>(request.getInstructions().size());
+        for (String text : request.getInstructions()) {
+            embeddings.add(new Embedding(vector(text), embeddings.size()));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        pause();
+        return vector(text);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 特征哈希；没有词的文本返回第一个维度上的单位向量，避免零向量
+     */
+    public float[] vector(String text) {
+        float[] vector = new float[dimensions];
+        int length = null == text ? 0 : text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean letter = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                int hash = text.substring(start, i).toLowerCase(Locale.ROOT).hashCode() * 0x9E3779B9;
+                vector[Math.floorMod(hash, dimensions)] += hash < 0 ? -1f : 1f;
+                start = -1;
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            vector[0] = 1f;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private void pause() {
+        sleep(latencyNanos);
+    }
+
+    /**
+     * parkNanos 可能提前返回，按截止时间补足
+     */
+    static void sleep(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+}
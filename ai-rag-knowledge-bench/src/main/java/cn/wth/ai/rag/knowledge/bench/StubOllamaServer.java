@@ -0,0 +1,214 @@
+package cn.wth.ai.rag.knowledge.bench;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @Author: 5th
+ * @Description: 本地 Ollama 桩服务，实现应用用到的 /api/chat（流式为 NDJSON）、/api/embed、/api/tags、/api/show、/api/pull，
+ * 以及健康检查用的 /api/ps（请求过的模型记为已加载）；回答和向量分别由 StubChatModel、StubEmbeddingModel 生成，结果固定、耗时可配置。
+ * 压测时应用以 --spring.ai.ollama.base-url=http://localhost:11434 指向它，不需要真实模型和 GPU；
+ * nodes 大于 1 时从 port 起在连续端口上启动多个节点，配合 rag.ollama.chat、rag.ollama.embedding 测试多节点路由
+ * <p>
+ * 单独启动：java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.StubOllamaServer --port=11434 --nodes=1 --dimensions=768
+ * --embed-latency-ms=5 --ttft-ms=200 --token-ms=15 --tokens=100
+ * @CreateTime: 2026-10-19 03:10
+ */
+@Slf4j
+public class StubOllamaServer implements AutoCloseable {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String JSON_TYPE = "application/json";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StubEmbeddingModel embeddingModel;
+    private final StubChatModel chatModel;
+    /** 请求过的模型，/api/ps 返回 */
+    private final Set<String> loadedModels = ConcurrentHashMap.newKeySet();
+
+    public StubOllamaServer(int port, StubEmbeddingModel embeddingModel, StubChatModel chatModel) throws IOException {
+        this.embeddingModel = embeddingModel;
+        this.chatModel = chatModel;
+        this.server = HttpServer.create(new InetSocketAddress(port), 256);
+        // 流式回答在整个生成期间占用线程，不限制线程数
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/api/chat", handler(this::chat));
+        server.createContext("/api/embed", handler(this::embed));
+        server.createContext("/api/tags", handler(exchange -> send(exchange, JSON_TYPE,
+                JSON.toJSONString(new JSONObject().fluentPut("models", new JSONArray())))));
+        server.createContext("/api/ps", handler(this::ps));
+        server.createContext("/api/show", handler(exchange -> send(exchange, JSON_TYPE, "{}")));
+        server.createContext("/api/pull", handler(exchange -> send(exchange, JSON_TYPE, "{\"status\":\"success\"}")));
+    }
+
+    public StubOllamaServer start() {
+        server.start();
+        log.info("Ollama 桩服务已启动 端口:{}", port());
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void ps(HttpExchange exchange) throws IOException {
+        JSONArray models = new JSONArray();
+        loadedModels.forEach(model -> models.add(new JSONObject(true).fluentPut("name", model).fluentPut("model", model)));
+        send(exchange, JSON_TYPE, JSON.toJSONString(new JSONObject().fluentPut("models", models)));
+    }
+
+    /**
+     * 请求体为 {"model","input": 文本或文本数组}，返回 {"model","embeddings": [[...]]}
+     */
+    private void embed(HttpExchange exchange) throws IOException {
+        JSONObject request = body(exchange);
+        Object input = request.get("input");
+        List<String> texts = new ArrayList<>();
+        if (input instanceof JSONArray array) {
+            array.forEach(text -> texts.add(String.valueOf(text)));
+        } else if (null != input) {
+            texts.add(String.valueOf(input));
+        }
+        loaded(request.getString("model"));
+        List<float[]> embeddings = embeddingModel.embed(texts);
+        send(exchange, JSON_TYPE, JSON.toJSONString(new JSONObject()
+                .fluentPut("model", request.getString("model"))
+                .fluentPut("embeddings", embeddings)));
+    }
+
+    /**
+     * 请求体为 {"model","messages","stream"}；流式时每个 token 一行，最后一行 done 为 true 并带 token 数和耗时
+     */
+    private void chat(HttpExchange exchange) throws IOException {
+        JSONObject request = body(exchange);
+        String model = request.getString("model");
+        loaded(model);
+        StringBuilder prompt = new StringBuilder();
+        JSONArray messages = request.getJSONArray("messages");
+        if (null != messages) {
+            for (int i = 0; i < messages.size(); i++) {
+                prompt.append(messages.getJSONObject(i).getString("content"));
+            }
+        }
+        List<String> answer = chatModel.answer(prompt.toString());
+        long start = System.nanoTime();
+        // Ollama 不传 stream 时默认流式
+        if (Boolean.FALSE.equals(request.getBoolean("stream"))) {
+            StubEmbeddingModel.sleep(delay(chatModel.getFirstTokenDelay(), chatModel.getInterTokenDelay(), answer.size()));
+            send(exchange, JSON_TYPE, line(model, String.join("", answer), true, answer.size(), prompt.length(), System.nanoTime() - start));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", NDJSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < answer.size(); i++) {
+                StubEmbeddingModel.sleep((i == 0 ? chatModel.getFirstTokenDelay() : chatModel.getInterTokenDelay()).toNanos());
+                out.write((line(model, answer.get(i), false, 0, 0, 0) + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            out.write((line(model, "", true, answer.size(), prompt.length(), System.nanoTime() - start) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void loaded(String model) {
+        if (null != model) loadedModels.add(model);
+    }
+
+    private static String line(String model, String content, boolean done, int evalCount, int promptChars, long nanos) {
+        JSONObject line = new JSONObject(true)
+                .fluentPut("model", model)
+                .fluentPut("created_at", Instant.now().toString())
+                .fluentPut("message", new JSONObject(true).fluentPut("role", "assistant").fluentPut("content", content))
+                .fluentPut("done", done);
+        if (done) {
+            line.fluentPut("done_reason", "stop")
+                    .fluentPut("total_duration", nanos)
+                    .fluentPut("prompt_eval_count", promptChars / 4)
+                    .fluentPut("eval_count", evalCount)
+                    .fluentPut("eval_duration", nanos);
+        }
+        return line.toJSONString();
+    }
+
+    private static long delay(Duration first, Duration inter, int tokens) {
+        return first.toNanos() + inter.toNanos() * Math.max(0, tokens - 1);
+    }
+
+    private static JSONObject body(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        return body.isBlank() ? new JSONObject() : JSON.parseObject(body);
+    }
+
+    private static void send(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 处理失败时返回 500，不让连接挂起
+     */
+    private static HttpHandler handler(Handler handler) {
+        return exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (Exception e) {
+                log.warn("Ollama 桩服务处理失败 {} {}", exchange.getRequestURI(), e.getMessage());
+                try {
+                    exchange.sendResponseHeaders(500, -1);
+                } catch (IOException ignored) {
+                    // 已经开始输出
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        BenchArgs arguments = new BenchArgs(args);
+        StubEmbeddingModel embeddingModel = new StubEmbeddingModel(arguments.getInt("dimensions", 768),
+                Duration.ofMillis(arguments.getInt("embed-latency-ms", 5)));
+        StubChatModel chatModel = new StubChatModel(arguments.getInt("tokens", 100), Duration.ofMillis(arguments.getInt("ttft-ms", 200)),
+                Duration.ofMillis(arguments.getInt("token-ms", 15)));
+        int port = arguments.getInt("port", 11434);
+        for (int i = 0; i < arguments.getInt("nodes", 1); i++) {
+            new StubOllamaServer(port + i, embeddingModel, chatModel).start();
+        }
+    }
+
+}
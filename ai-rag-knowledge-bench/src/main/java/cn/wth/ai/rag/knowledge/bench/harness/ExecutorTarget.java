@@ -0,0 +1,79 @@
+package cn.wth.ai.rag.knowledge.bench.harness;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @Author: 5th
+ * @Description: 模拟服务端请求线程的压测对象；客户端线程把请求交给“请求线程”执行并等待结果，
+ * 对比一个请求一个平台线程（固定线程数，与 Tomcat 默认的 200 个请求线程相同）和一个请求一个虚拟线程（需要 Java 21）。
+ * 客户端并发大于平台线程数时，多出来的请求在线程池里排队，体现为总耗时和首 token 耗时的上升
+ * @CreateTime: 2026-10-19 04:10
+ */
+public class ExecutorTarget implements LoadTarget {
+
+    private final LoadTarget delegate;
+    private final Executor executor;
+    private final String description;
+
+    /**
+     * @param serverThreads virtual，或平台线程数
+     */
+    public ExecutorTarget(LoadTarget delegate, String serverThreads) {
+        this.delegate = delegate;
+        if ("virtual".equals(serverThreads)) {
+            try {
+                this.executor = new VirtualThreadTaskExecutor("bench-request-");
+            } catch (UnsupportedOperationException e) {
+                throw new IllegalStateException("server-threads=virtual 需要 Java 21，当前为 Java " + Runtime.version().feature(), e);
+            }
+            this.description = "virtual";
+        } else {
+            int threads = Integer.parseInt(serverThreads);
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "bench-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.description = "platform-" + threads;
+        }
+    }
+
+    @Override
+    public void prepare() throws Exception {
+        delegate.prepare();
+    }
+
+    @Override
+    public void request(String question, Runnable firstToken) throws Exception {
+        try {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    delegate.request(question, firstToken);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        delegate.close();
+    }
+
+}
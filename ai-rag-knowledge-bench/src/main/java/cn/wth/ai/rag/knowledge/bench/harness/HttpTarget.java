@@ -0,0 +1,122 @@
+package cn.wth.ai.rag.knowledge.bench.harness;
+
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * @Author: 5th
+ * @Description: HTTP 压测对象；请求运行中的应用的 /api/v1/ollama/generate_stream_rag，按 SSE 行读取输出，
+ * 收到第一行 data: 时记为首 token。应用的 Ollama 指向 StubOllamaServer，数据库、Redis 使用应用自身的配置。
+ * files 大于 0 时先通过 /api/v1/rag/file/upload 导入生成的文档并等待导入任务结束，导入同样经过桩模型
+ * @CreateTime: 2026-10-19 03:10
+ */
+@Slf4j
+public class HttpTarget implements LoadTarget {
+
+    private static final Set<String> RUNNING = Set.of("PENDING", "RUNNING");
+    private static final long INGEST_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final String model;
+    private final String ragTag;
+    private final String retrievalMode;
+    private final BenchCorpus corpus;
+    /** 导入的文件数，0 表示使用已有的知识库 */
+    private final int files;
+
+    public HttpTarget(String baseUrl, String model, String ragTag, String retrievalMode, BenchCorpus corpus, int files) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.model = model;
+        this.ragTag = ragTag;
+        this.retrievalMode = retrievalMode;
+        this.corpus = corpus;
+        this.files = files;
+    }
+
+    @Override
+    public void prepare() throws Exception {
+        if (files <= 0) return;
+        String boundary = UUID.randomUUID().toString();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < files; i++) {
+            body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"page-" + i + ".md\"\r\n"
+                    + "Content-Type: text/markdown\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(corpus.prose(64 * 1024).getBytes(StandardCharsets.UTF_8));
+            body.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        JSONObject upload = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/rag/file/upload?ragTag=" + encode(ragTag)))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build());
+        String jobId = upload.getString("data");
+        long deadline = System.currentTimeMillis() + INGEST_TIMEOUT_MILLIS;
+        while (true) {
+            JSONObject job = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/rag/job/" + jobId)).GET().build()).getJSONObject("data");
+            if (!RUNNING.contains(job.getString("status"))) {
+                log.info("压测知识库导入结束 ragTag:{} 状态:{} 分片数:{} 耗时:{}ms", ragTag, job.getString("status"),
+                        job.getLongValue("chunks"), job.getLongValue("elapsedMillis"));
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException("导入任务超时 jobId:" + jobId);
+            Thread.sleep(500);
+        }
+    }
+
+    @Override
+    public void request(String question, Runnable firstToken) throws Exception {
+        String url = baseUrl + "/api/v1/ollama/generate_stream_rag?model=" + encode(model) + "&ragTag=" + encode(ragTag)
+                + "&message=" + encode(question) + (null == retrievalMode ? "" : "&retrievalMode=" + encode(retrievalMode));
+        HttpResponse<Stream<String>> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofLines());
+        try (Stream<String> lines = response.body()) {
+            if (response.statusCode() != 200) throw new IOException("HTTP " + response.statusCode());
+            boolean first = true;
+            for (Iterator<String> iterator = lines.iterator(); iterator.hasNext(); ) {
+                String line = iterator.next();
+                if (first && line.startsWith("data:")) {
+                    firstToken.run();
+                    first = false;
+                }
+            }
+            if (first) throw new IOException("没有输出");
+        }
+    }
+
+    private JSONObject send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        JSONObject body = JSON.parseObject(response.body());
+        if (response.statusCode() != 200 || !"0000".equals(body.getString("code"))) {
+            throw new IOException("请求失败 " + request.uri() + " " + response.statusCode() + " " + response.body());
+        }
+        return body;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+}
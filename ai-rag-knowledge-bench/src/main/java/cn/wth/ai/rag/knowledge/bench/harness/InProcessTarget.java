@@ -0,0 +1,88 @@
+package cn.wth.ai.rag.knowledge.bench.harness;
+
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import cn.wth.ai.rag.knowledge.bench.StubChatModel;
+import cn.wth.ai.rag.knowledge.bench.StubEmbeddingModel;
+import cn.wth.ai.rag.knowledge.trigger.rag.LexicalReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.MmrReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagContextAssembler;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagPromptTemplate;
+import cn.wth.ai.rag.knowledge.trigger.rag.RerankerChain;
+import cn.wth.ai.rag.knowledge.trigger.vector.HnswVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @Author: 5th
+ * @Description: 进程内压测对象；按 OllamaController 知识库问答的顺序执行向量化问题、检索、重排、拼装和流式生成，
+ * 向量库为进程内 HNSW 索引（代替 pgvector），模型为桩。不经过 HTTP 和 Spring，结果只反映检索链路本身的开销和
+ * 桩模型的固定耗时，适合在改动检索、重排、拼装代码前后对比
+ * @CreateTime: 2026-10-19 03:10
+ */
+@Slf4j
+public class InProcessTarget implements LoadTarget {
+
+    private static final RagPromptTemplate SYSTEM_PROMPT = new RagPromptTemplate("""
+            Use the information from the DOCUMENTS section to provide accurate answers but act as if you knew this information innately.
+            DOCUMENTS:
+            {documents}
+            """);
+
+    private final BenchCorpus corpus;
+    private final StubChatModel chatModel;
+    private final int chunks;
+    private final int topK;
+    private final HnswVectorStore vectorStore;
+    private final RerankerChain rerankerChain;
+    private final RagContextAssembler assembler;
+
+    public InProcessTarget(BenchCorpus corpus, StubEmbeddingModel embeddingModel, StubChatModel chatModel, int chunks, int topK) {
+        this.corpus = corpus;
+        this.chatModel = chatModel;
+        this.chunks = chunks;
+        this.topK = topK;
+        this.vectorStore = new HnswVectorStore(embeddingModel, 16, 64, 64);
+        this.rerankerChain = new RerankerChain(List.of(
+                new RerankerChain.Step("lexical", new LexicalReranker(0.5)),
+                new RerankerChain.Step("mmr", new MmrReranker(embeddingModel, 0.7))), 50);
+        this.assembler = new RagContextAssembler(new JTokkitTokenCountEstimator(), 3000);
+    }
+
+    @Override
+    public void prepare() {
+        List<Document> documents = corpus.chunks("bench", chunks, 1200);
+        for (int from = 0; from < documents.size(); from += 1000) {
+            vectorStore.add(documents.subList(from, Math.min(from + 1000, documents.size())));
+        }
+        log.info("进程内知识库已生成 分片数:{}", vectorStore.size());
+    }
+
+    @Override
+    public void request(String question, Runnable firstToken) {
+        List<Document> candidates = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(question)
+                .topK(rerankerChain.candidates(topK))
+                .build());
+        List<Document> documents = rerankerChain.rerank(question, candidates, topK);
+        String context = assembler.assemble(documents);
+        Prompt prompt = new Prompt(List.of(
+                new SystemMessage(SYSTEM_PROMPT.render(Map.of("documents", context))),
+                new UserMessage(question)));
+        AtomicBoolean first = new AtomicBoolean(true);
+        chatModel.stream(prompt)
+                .doOnNext(response -> {
+                    if (first.compareAndSet(true, false)) firstToken.run();
+                })
+                .blockLast();
+    }
+
+}
@@ -0,0 +1,143 @@
+package cn.wth.ai.rag.knowledge.bench.harness;
+
+import cn.wth.ai.rag.knowledge.bench.BenchArgs;
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import cn.wth.ai.rag.knowledge.bench.StubChatModel;
+import cn.wth.ai.rag.knowledge.bench.StubEmbeddingModel;
+import cn.wth.ai.rag.knowledge.bench.StubOllamaServer;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库问答压测；concurrency 个线程各自循环发送请求（闭环，上一个请求结束再发下一个），
+ * 先预热 warmup 个请求不计入结果，结束后输出吞吐、总耗时和首 token 耗时的 p50/p99，写入 out 指定的 JSON。
+ * 指定 baseline 时与基线比较，有指标退化超过 threshold 时以退出码 1 结束，可以直接放进 CI
+ * <p>
+ * 进程内（检索链路 + 桩模型，不需要任何外部服务）：
+ * java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.harness.LoadHarness --mode=in-process --concurrency=8 --requests=400
+ * <p>
+ * HTTP（应用以 --spring.ai.ollama.base-url=http://localhost:11434 启动，同时启动 Ollama 桩服务并导入 20 个文件）：
+ * java -cp benchmarks.jar cn.wth.ai.rag.knowledge.bench.harness.LoadHarness --mode=http --base-url=http://localhost:8090
+ * --stub-port=11434 --files=20 --baseline=load-baseline.json
+ * <p>
+ * 请求线程对比：指定 server-threads 时每个请求交给模拟的服务端请求线程执行，platform 线程数（Tomcat 默认 200）与 virtual（需要 Java 21）
+ * 各跑一次，把前者的结果作为后者的基线，并发数大于平台线程数时差别才明显：
+ * --mode=in-process --concurrency=1000 --requests=5000 --server-threads=200 --out=platform.json
+ * --mode=in-process --concurrency=1000 --requests=5000 --server-threads=virtual --baseline=platform.json
+ * 应用本身的对比用 http 模式，应用分别以 --spring.threads.virtual.enabled=false、true 启动
+ * @CreateTime: 2026-10-19 03:10
+ */
+@Slf4j
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs arguments = new BenchArgs(args);
+        String mode = arguments.get("mode", "in-process");
+        int concurrency = arguments.getInt("concurrency", 8);
+        int requests = arguments.getInt("requests", 400);
+        int warmup = arguments.getInt("warmup", 40);
+
+        BenchCorpus corpus = new BenchCorpus(arguments.getInt("seed", 7));
+        StubEmbeddingModel embeddingModel = new StubEmbeddingModel(arguments.getInt("dimensions", 768),
+                Duration.ofMillis(arguments.getInt("embed-latency-ms", 5)));
+        StubChatModel chatModel = new StubChatModel(arguments.getInt("tokens", 100),
+                Duration.ofMillis(arguments.getInt("ttft-ms", 200)), Duration.ofMillis(arguments.getInt("token-ms", 15)));
+
+        StubOllamaServer stubServer = null;
+        LoadTarget target;
+        if ("http".equals(mode)) {
+            int stubPort = arguments.getInt("stub-port", 0);
+            if (stubPort > 0) stubServer = new StubOllamaServer(stubPort, embeddingModel, chatModel).start();
+            target = new HttpTarget(arguments.get("base-url", "http://localhost:8090"), arguments.get("model", "deepseek-r1:1.5b"),
+                    arguments.get("rag-tag", "bench"), arguments.get("retrieval-mode", null), corpus, arguments.getInt("files", 0));
+        } else if ("in-process".equals(mode)) {
+            target = new InProcessTarget(corpus, embeddingModel, chatModel, arguments.getInt("chunks", 20000), arguments.getInt("top-k", 5));
+        } else {
+            throw new IllegalArgumentException("mode 只支持 in-process、http：" + mode);
+        }
+        String serverThreads = arguments.get("server-threads", null);
+        if (null != serverThreads) {
+            target = new ExecutorTarget(target, serverThreads);
+        }
+
+        JSONObject result;
+        try {
+            target.prepare();
+            List<String> questions = new ArrayList<>(warmup + requests);
+            for (int i = 0; i < warmup + requests; i++) {
+                questions.add(corpus.question());
+            }
+            run(target, questions.subList(0, warmup), concurrency, new LoadReport(warmup));
+            LoadReport report = new LoadReport(requests);
+            long elapsed = run(target, questions.subList(warmup, questions.size()), concurrency, report);
+            result = report.summarize(mode, concurrency, elapsed);
+            if (target instanceof ExecutorTarget executorTarget) {
+                result.put("serverThreads", executorTarget.getDescription());
+            }
+        } finally {
+            target.close();
+            if (null != stubServer) stubServer.close();
+        }
+
+        String json = JSON.toJSONString(result, SerializerFeature.PrettyFormat);
+        log.info("压测结果\n{}", json);
+        Path out = Paths.get(arguments.get("out", "load-report.json"));
+        Files.writeString(out, json, StandardCharsets.UTF_8);
+
+        String baseline = arguments.get("baseline", null);
+        if (null == baseline) return;
+        List<String> regressions = LoadReport.regressions(result,
+                JSON.parseObject(Files.readString(Paths.get(baseline), StandardCharsets.UTF_8)), arguments.getDouble("threshold", 0.1));
+        if (regressions.isEmpty()) {
+            log.info("与基线 {} 相比没有退化", baseline);
+            return;
+        }
+        regressions.forEach(regression -> log.warn("性能退化 {}", regression));
+        System.exit(1);
+    }
+
+    /**
+     * 并发执行一组请求，每个线程依次领取下一个问题
+     *
+     * @return 总耗时（纳秒）
+     */
+    private static long run(LoadTarget target, List<String> questions, int concurrency, LoadReport report) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                for (int index = next.getAndIncrement(); index < questions.size(); index = next.getAndIncrement()) {
+                    long begin = System.nanoTime();
+                    long[] ttft = new long[1];
+                    try {
+                        target.request(questions.get(index), () -> ttft[0] = System.nanoTime() - begin);
+                        report.record(System.nanoTime() - begin, ttft[0]);
+                    } catch (Exception e) {
+                        log.warn("压测请求失败 {}", e.getMessage());
+                        report.error();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.DAYS);
+        return System.nanoTime() - start;
+    }
+
+}
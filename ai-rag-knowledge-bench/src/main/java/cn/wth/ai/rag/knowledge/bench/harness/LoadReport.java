@@ -0,0 +1,106 @@
+package cn.wth.ai.rag.knowledge.bench.harness;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 压测结果；记录每个请求的总耗时和首 token 耗时，汇总为吞吐和 p50、p90、p99，
+ * 以 JSON 保存，并可与上一次保存的基线比较：吞吐下降或延迟上升超过阈值的指标记为退化
+ * @CreateTime: 2026-10-19 03:10
+ */
+public class LoadReport {
+
+    /** 越大越好的指标，其余为延迟，越小越好 */
+    private static final String THROUGHPUT = "throughput";
+    private static final List<String> COMPARED = List.of(THROUGHPUT, "p50Ms", "p99Ms", "ttftP50Ms", "ttftP99Ms");
+
+    private final long[] totalNanos;
+    private final long[] ttftNanos;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    public LoadReport(int requests) {
+        this.totalNanos = new long[requests];
+        this.ttftNanos = new long[requests];
+    }
+
+    /**
+     * 每个请求记录一次，可并发调用
+     *
+     * @param ttftNanos 没有收到输出时为 0
+     */
+    public void record(long totalNanos, long ttftNanos) {
+        int index = recorded.getAndIncrement();
+        this.totalNanos[index] = totalNanos;
+        this.ttftNanos[index] = ttftNanos;
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * 汇总；在所有请求结束后调用
+     *
+     * @param elapsedNanos 压测总耗时
+     */
+    public JSONObject summarize(String mode, int concurrency, long elapsedNanos) {
+        int count = recorded.get();
+        long[] total = Arrays.copyOf(totalNanos, count);
+        long[] ttft = Arrays.stream(ttftNanos, 0, count).filter(nanos -> nanos > 0).toArray();
+        Arrays.sort(total);
+        Arrays.sort(ttft);
+        return new JSONObject(true)
+                .fluentPut("mode", mode)
+                .fluentPut("concurrency", concurrency)
+                .fluentPut("requests", count)
+                .fluentPut("errors", errors.get())
+                .fluentPut("seconds", round(elapsedNanos / 1e9))
+                .fluentPut(THROUGHPUT, round(count / (elapsedNanos / 1e9)))
+                .fluentPut("p50Ms", percentile(total, 0.50))
+                .fluentPut("p90Ms", percentile(total, 0.90))
+                .fluentPut("p99Ms", percentile(total, 0.99))
+                .fluentPut("ttftP50Ms", percentile(ttft, 0.50))
+                .fluentPut("ttftP99Ms", percentile(ttft, 0.99));
+    }
+
+    /**
+     * 与基线比较；两边都有且基线大于 0 的指标才比较
+     *
+     * @param threshold 允许的变化比例，例如 0.1 表示 10%
+     * @return 退化的指标说明，没有退化时为空
+     */
+    public static List<String> regressions(JSONObject current, JSONObject baseline, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (String metric : COMPARED) {
+            Double now = current.getDouble(metric);
+            Double before = baseline.getDouble(metric);
+            if (null == now || null == before || before <= 0) continue;
+            double change = (now - before) / before;
+            boolean worse = THROUGHPUT.equals(metric) ? change < -threshold : change > threshold;
+            if (worse) {
+                regressions.add(String.format("%s %.2f -> %.2f (%+.1f%%)", metric, before, now, change * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * 最近秩法取分位数，单位毫秒
+     */
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return round(sorted[Math.max(0, rank - 1)] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100D;
+    }
+
+}
@@ -0,0 +1,26 @@
+package cn.wth.ai.rag.knowledge.bench.harness;
+
+/**
+ * @Author: 5th
+ * @Description: 压测对象；一次请求对应一次知识库问答，按流式返回
+ * @CreateTime: 2026-10-19 03:10
+ */
+public interface LoadTarget extends AutoCloseable {
+
+    /**
+     * 压测开始前准备数据，例如导入知识库；不计入压测结果
+     */
+    void prepare() throws Exception;
+
+    /**
+     * 发送一次问答请求，阻塞到输出结束
+     *
+     * @param firstToken 收到第一段输出时调用，用于统计首 token 耗时
+     */
+    void request(String question, Runnable firstToken) throws Exception;
+
+    @Override
+    default void close() throws Exception {
+    }
+
+}
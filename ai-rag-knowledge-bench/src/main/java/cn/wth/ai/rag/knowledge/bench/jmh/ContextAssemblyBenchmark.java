@@ -0,0 +1,74 @@
+package cn.wth.ai.rag.knowledge.bench.jmh;
+
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagContextAssembler;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagPromptTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 提示词拼装基准；检索结果按分数排序、去重、计 token 拼成上下文，再渲染系统提示词。
+ * 分片数和预算与 rag.chat 的默认配置同量级，一部分分片超出预算，覆盖跳过和截断的分支
+ * @CreateTime: 2026-10-19 03:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextAssemblyBenchmark {
+
+    private static final RagPromptTemplate SYSTEM_PROMPT = new RagPromptTemplate("""
+            Use the information from the DOCUMENTS section to provide accurate answers.
+            DOCUMENTS:
+            {documents}
+            """);
+
+    @Param({"5", "20"})
+    public int documents;
+
+    @Param({"3000"})
+    public int maxContextTokens;
+
+    private RagContextAssembler assembler;
+    private List<Document> retrieved;
+
+    @Setup
+    public void setup() {
+        assembler = new RagContextAssembler(new JTokkitTokenCountEstimator(), maxContextTokens);
+        retrieved = new ArrayList<>();
+        List<Document> chunks = new BenchCorpus(11).chunks("bench", documents, 2400);
+        for (int i = 0; i < chunks.size(); i++) {
+            retrieved.add(chunks.get(i).mutate().score(1D - i * 0.01).build());
+        }
+    }
+
+    @Benchmark
+    public String assemble() {
+        return assembler.assemble(retrieved);
+    }
+
+    @Benchmark
+    public String assembleAndRender() {
+        return SYSTEM_PROMPT.render(Map.of("documents", assembler.assemble(retrieved)));
+    }
+
+}
@@ -0,0 +1,96 @@
+package cn.wth.ai.rag.knowledge.bench.jmh;
+
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import cn.wth.ai.rag.knowledge.bench.StubEmbeddingModel;
+import cn.wth.ai.rag.knowledge.trigger.rag.LexicalReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.MmrReranker;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagRetriever;
+import cn.wth.ai.rag.knowledge.trigger.rag.RerankerChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 检索结果合并基准；向量、关键词两路候选的倒数排名融合，以及词面、MMR 重排和两者串联。
+ * 两路候选有一半重合，与混合检索的实际情况接近；MMR 使用零延迟的向量模型桩，只测重排本身的计算
+ * @CreateTime: 2026-10-19 03:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrievalMergeBenchmark {
+
+    private static final int RRF_K = 60;
+
+    /** 每路候选数，对应 rag.chat.rerank.candidates */
+    @Param({"50"})
+    public int candidates;
+
+    @Param({"5"})
+    public int topK;
+
+    private String query;
+    private List<List<Document>> rankings;
+    private List<Document> fused;
+    private LexicalReranker lexical;
+    private MmrReranker mmr;
+    private RerankerChain chain;
+
+    @Setup
+    public void setup() {
+        BenchCorpus corpus = new BenchCorpus(13);
+        query = corpus.question();
+        List<Document> chunks = corpus.chunks("bench", candidates * 3 / 2, 1200);
+        List<Document> vector = new ArrayList<>(chunks.subList(0, candidates));
+        List<Document> keyword = new ArrayList<>(chunks.subList(candidates / 2, chunks.size()));
+        Collections.shuffle(keyword, new Random(13));
+        rankings = List.of(vector, keyword);
+        fused = RagRetriever.fuse(rankings, RRF_K, candidates);
+
+        StubEmbeddingModel embeddingModel = new StubEmbeddingModel(768, Duration.ZERO);
+        lexical = new LexicalReranker(0.5);
+        mmr = new MmrReranker(embeddingModel, 0.7);
+        chain = new RerankerChain(List.of(new RerankerChain.Step("lexical", lexical), new RerankerChain.Step("mmr", mmr)), candidates);
+    }
+
+    @Benchmark
+    public List<Document> fuse() {
+        return RagRetriever.fuse(rankings, RRF_K, candidates);
+    }
+
+    @Benchmark
+    public List<Document> lexical() {
+        return lexical.rerank(query, fused, topK);
+    }
+
+    @Benchmark
+    public List<Document> mmr() {
+        return mmr.rerank(query, fused, topK);
+    }
+
+    @Benchmark
+    public List<Document> fuseAndRerank() {
+        return chain.rerank(query, RagRetriever.fuse(rankings, RRF_K, candidates), topK);
+    }
+
+}
@@ -0,0 +1,69 @@
+package cn.wth.ai.rag.knowledge.bench.jmh;
+
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import cn.wth.ai.rag.knowledge.trigger.ingest.StreamingTokenSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 切分基准；整篇切分与按 8KB 分段追加（与 Tika 流式解析的输入方式一致）两种方式，
+ * 输入为固定种子生成的英文段落或 Java 源码。运行时加 -prof gc 可以看到每次切分的分配字节数
+ * @CreateTime: 2026-10-19 03:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplitterBenchmark {
+
+    /** 流式追加时每段的字符数 */
+    private static final int APPEND_CHARS = 8192;
+
+    @Param({"256"})
+    public int kb;
+
+    @Param({"prose", "code"})
+    public String content;
+
+    private StreamingTokenSplitter splitter;
+    private String text;
+    private char[] chars;
+
+    @Setup
+    public void setup() {
+        splitter = new StreamingTokenSplitter(new StreamingTokenSplitter.Config());
+        text = "code".equals(content) ? BenchCorpus.code(kb * 1024) : new BenchCorpus(7).prose(kb * 1024);
+        chars = text.toCharArray();
+    }
+
+    @Benchmark
+    public int split(Blackhole blackhole) {
+        return splitter.split(text, "code".equals(content), blackhole::consume);
+    }
+
+    @Benchmark
+    public int splitStreaming(Blackhole blackhole) {
+        StreamingTokenSplitter.Session session = splitter.open("code".equals(content), blackhole::consume);
+        for (int start = 0; start < chars.length; start += APPEND_CHARS) {
+            session.append(chars, start, Math.min(APPEND_CHARS, chars.length - start));
+        }
+        session.finish();
+        return session.chunks();
+    }
+
+}
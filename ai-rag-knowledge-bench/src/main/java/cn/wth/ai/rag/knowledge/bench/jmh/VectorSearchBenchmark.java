@@ -0,0 +1,71 @@
+package cn.wth.ai.rag.knowledge.bench.jmh;
+
+import cn.wth.ai.rag.knowledge.bench.BenchCorpus;
+import cn.wth.ai.rag.knowledge.bench.StubEmbeddingModel;
+import cn.wth.ai.rag.knowledge.trigger.vector.HnswVectorStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * @Author: 5th
+ * @Description: 向量检索基准；进程内 HNSW 索引代替 pgvector，向量由零延迟的向量模型桩生成，
+ * 测的是索引检索与结果组装，不含网络和数据库耗时
+ * @CreateTime: 2026-10-19 03:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    /** 查询轮换使用，避免每次命中相同的路径 */
+    private static final int QUERIES = 64;
+
+    @Param({"10000"})
+    public int chunks;
+
+    @Param({"64"})
+    public int efSearch;
+
+    private HnswVectorStore vectorStore;
+    private List<SearchRequest> requests;
+    private int next;
+
+    @Setup
+    public void setup() {
+        BenchCorpus corpus = new BenchCorpus(17);
+        vectorStore = new HnswVectorStore(new StubEmbeddingModel(768, Duration.ZERO), 16, 64, efSearch);
+        List<Document> documents = corpus.chunks("bench", chunks, 600);
+        for (int from = 0; from < documents.size(); from += 1000) {
+            vectorStore.add(documents.subList(from, Math.min(from + 1000, documents.size())));
+        }
+        requests = IntStream.range(0, QUERIES)
+                .mapToObj(i -> SearchRequest.builder().query(corpus.question()).topK(50).build())
+                .toList();
+    }
+
+    @Benchmark
+    public List<Document> search() {
+        next = (next + 1) % QUERIES;
+        return vectorStore.similaritySearch(requests.get(next));
+    }
+
+}
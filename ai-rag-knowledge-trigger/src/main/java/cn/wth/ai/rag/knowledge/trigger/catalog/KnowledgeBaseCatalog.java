@@ -0,0 +1,245 @@
+package cn.wth.ai.rag.knowledge.trigger.catalog;
+
+import cn.wth.ai.rag.knowledge.api.dto.KnowledgeBaseDTO;
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import org.redisson.api.RMap;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库目录；Redis 哈希 rag:catalog 中每个知识库一项（标签 → JSON 元数据），各节点在内存中保留一份副本，
+ * 判断标签是否存在、列出知识库都直接读内存。任一节点修改后在 rag:catalog:changed 上广播标签，其他节点只重新读取该项；
+ * 断线期间错过的通知由定期全量刷新兜底。Redis 不可用时沿用内存中的副本
+ * @CreateTime: 2026-10-19 02:30
+ */
+@Slf4j
+public class KnowledgeBaseCatalog {
+
+    private static final String REDIS_KEY = "rag:catalog";
+    private static final String TOPIC = "rag:catalog:changed";
+    /** 旧版本的知识库列表，启动时迁移到目录后删除 */
+    private static final String LEGACY_LIST_KEY = "ragTag";
+    /** 全量加载失败后的重试间隔 */
+    private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    /**
+     * 知识库标签只允许字母（含中文）、数字、下划线、点和短横线；标签会进入向量库的 jsonpath 过滤条件和独立表的表名，
+     * 在请求入口校验，不合法的直接拒绝
+     */
+    private static final Pattern RAG_TAG = Pattern.compile("[\\w.-]{1,128}", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private final RedissonClient redissonClient;
+    private final RMap<String, String> entries;
+    private final RTopic topic;
+    /** 登记、导入完成时写入的向量模型名 */
+    private final String embeddingModel;
+    private final long refreshMillis;
+
+    private final ConcurrentMap<String, KnowledgeBaseDTO> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long loadedTime;
+    private volatile int listenerId = -1;
+
+    public KnowledgeBaseCatalog(RedissonClient redissonClient, String embeddingModel, Config config) {
+        this.redissonClient = redissonClient;
+        this.entries = redissonClient.getMap(REDIS_KEY, StringCodec.INSTANCE);
+        this.topic = redissonClient.getTopic(TOPIC, StringCodec.INSTANCE);
+        this.embeddingModel = embeddingModel;
+        this.refreshMillis = TimeUnit.MINUTES.toMillis(config.getRefreshMinutes());
+    }
+
+    /**
+     * 知识库标签是否合法，见 {@link #RAG_TAG}
+     */
+    public static boolean isValidRagTag(String ragTag) {
+        return null != ragTag && RAG_TAG.matcher(ragTag).matches();
+    }
+
+    /**
+     * 订阅变更通知、迁移旧列表并加载目录；先订阅再加载，加载期间的变更不会丢失
+     */
+    public void start() {
+        try {
+            listenerId = topic.addListener(String.class, (channel, ragTag) -> reload(ragTag));
+            migrateLegacyList();
+        } catch (Exception e) {
+            log.warn("知识库目录初始化失败，稍后重试 {}", e.getMessage());
+        }
+        refresh();
+    }
+
+    public void shutdown() {
+        if (listenerId >= 0) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    public boolean contains(String ragTag) {
+        refreshIfStale();
+        return cache.containsKey(ragTag);
+    }
+
+    public KnowledgeBaseDTO get(String ragTag) {
+        refreshIfStale();
+        return cache.get(ragTag);
+    }
+
+    /**
+     * 所有知识库，按登记时间排序
+     */
+    public List<KnowledgeBaseDTO> list() {
+        refreshIfStale();
+        List<KnowledgeBaseDTO> knowledgeBases = new ArrayList<>(cache.values());
+        knowledgeBases.sort(Comparator.comparingLong(KnowledgeBaseDTO::getCreateTime).thenComparing(KnowledgeBaseDTO::getRagTag));
+        return knowledgeBases;
+    }
+
+    public List<String> ragTags() {
+        return list().stream().map(KnowledgeBaseDTO::getRagTag).toList();
+    }
+
+    /**
+     * 登记知识库；内存中已有时不访问 Redis
+     */
+    public void register(String ragTag) {
+        if (cache.containsKey(ragTag)) return;
+        KnowledgeBaseDTO knowledgeBase = KnowledgeBaseDTO.builder()
+                .ragTag(ragTag)
+                .embeddingModel(embeddingModel)
+                .createTime(System.currentTimeMillis())
+                .build();
+        try {
+            if (!entries.fastPutIfAbsent(ragTag, JSON.toJSONString(knowledgeBase))) {
+                // 其他节点已登记，以 Redis 中的为准
+                reload(ragTag);
+                return;
+            }
+            cache.put(ragTag, knowledgeBase);
+            topic.publish(ragTag);
+        } catch (Exception e) {
+            log.warn("知识库目录登记失败 {} {}", ragTag, e.getMessage());
+            cache.putIfAbsent(ragTag, knowledgeBase);
+        }
+    }
+
+    /**
+     * 导入任务结束后更新分片数和导入时间；任务先于登记结束时一并登记
+     */
+    public void recordIndexed(String ragTag, long chunks) {
+        KnowledgeBaseDTO current = cache.get(ragTag);
+        if (null == current) {
+            // 其他节点登记的知识库，变更通知可能还没到
+            reload(ragTag);
+            current = cache.get(ragTag);
+        }
+        KnowledgeBaseDTO updated = (null == current ? KnowledgeBaseDTO.builder().ragTag(ragTag).createTime(System.currentTimeMillis()) : current.toBuilder())
+                .chunks(chunks)
+                .lastIndexedTime(System.currentTimeMillis())
+                .embeddingModel(embeddingModel)
+                .build();
+        try {
+            entries.fastPut(ragTag, JSON.toJSONString(updated));
+            cache.put(ragTag, updated);
+            topic.publish(ragTag);
+        } catch (Exception e) {
+            log.warn("知识库目录更新失败 {} {}", ragTag, e.getMessage());
+        }
+    }
+
+    public void remove(String ragTag) {
+        cache.remove(ragTag);
+        try {
+            entries.fastRemove(ragTag);
+            topic.publish(ragTag);
+        } catch (Exception e) {
+            log.warn("知识库目录删除失败 {} {}", ragTag, e.getMessage());
+        }
+    }
+
+    /**
+     * 收到变更通知后只重新读取该项，Redis 中已没有时从内存删除
+     */
+    private void reload(String ragTag) {
+        try {
+            String json = entries.get(ragTag);
+            if (null == json) {
+                cache.remove(ragTag);
+            } else {
+                cache.put(ragTag, JSON.parseObject(json, KnowledgeBaseDTO.class));
+            }
+        } catch (Exception e) {
+            log.warn("知识库目录读取失败 {} {}", ragTag, e.getMessage());
+        }
+    }
+
+    private void refreshIfStale() {
+        if (System.currentTimeMillis() - loadedTime < refreshMillis) return;
+        if (refreshing.compareAndSet(false, true)) {
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 全量读取目录替换内存副本；失败时保留原副本，下次读取时重试
+     */
+    private void refresh() {
+        try {
+            Map<String, KnowledgeBaseDTO> loaded = new HashMap<>();
+            entries.readAllMap().forEach((ragTag, json) -> loaded.put(ragTag, JSON.parseObject(json, KnowledgeBaseDTO.class)));
+            cache.keySet().retainAll(loaded.keySet());
+            cache.putAll(loaded);
+            loadedTime = System.currentTimeMillis();
+        } catch (Exception e) {
+            log.warn("知识库目录加载失败 {}", e.getMessage());
+            loadedTime = System.currentTimeMillis() - refreshMillis + RETRY_MILLIS;
+        }
+    }
+
+    /**
+     * 旧版本把标签存在 Redis 列表 ragTag 中，迁移到目录后删除列表，已删除的知识库不会在重启后重新出现
+     */
+    private void migrateLegacyList() {
+        RList<String> legacy = redissonClient.getList(LEGACY_LIST_KEY);
+        if (!legacy.isExists()) return;
+        List<String> ragTags = legacy.readAll();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ragTags.size(); i++) {
+            // 保持原列表的顺序
+            entries.fastPutIfAbsent(ragTags.get(i), JSON.toJSONString(KnowledgeBaseDTO.builder()
+                    .ragTag(ragTags.get(i))
+                    .createTime(now - ragTags.size() + i)
+                    .build()));
+        }
+        legacy.delete();
+        log.info("知识库列表已迁移到目录 数量:{}", ragTags.size());
+    }
+
+    /**
+     * 知识库目录参数
+     */
+    @Data
+    public static class Config {
+        /** 全量刷新内存副本的间隔（分钟），兜底断线期间错过的变更通知，默认为10 */
+        private int refreshMinutes = 10;
+    }
+
+}
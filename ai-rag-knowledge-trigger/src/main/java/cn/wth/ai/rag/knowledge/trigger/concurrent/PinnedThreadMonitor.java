@@ -0,0 +1,109 @@
+package cn.wth.ai.rag.knowledge.trigger.concurrent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: 5th
+ * @Description: 虚拟线程钉住（pinning）诊断；订阅 JFR 的 jdk.VirtualThreadPinned 事件，虚拟线程在 synchronized 块或本地方法中阻塞、
+ * 占住载体线程超过阈值时记录到 rag.threads.pinned 指标，每个调用位置第一次出现时打印堆栈。
+ * 调用位置取堆栈中第一个非 JDK 的栈帧，通常就是需要把 synchronized 换成 ReentrantLock 的地方。
+ * 只在虚拟线程模式下启动；临时排查也可以加 JVM 参数 -Djdk.tracePinnedThreads=short
+ * @CreateTime: 2026-10-19 04:10
+ */
+@Slf4j
+public class PinnedThreadMonitor {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String OTHER = "other";
+
+    private final ThreadMode threadMode;
+    private final MeterRegistry meterRegistry;
+    private final Config config;
+    /** 已打印过堆栈的调用位置，同时作为指标 site 标签的取值集合 */
+    private final Set<String> sites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(ThreadMode threadMode, MeterRegistry meterRegistry, Config config) {
+        this.threadMode = threadMode;
+        this.meterRegistry = meterRegistry;
+        this.config = config;
+    }
+
+    public void start() {
+        if (ThreadMode.VIRTUAL != threadMode || !config.isEnabled()) return;
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(config.getThresholdMillis())).withStackTrace();
+        stream.onEvent(EVENT, this::pinned);
+        stream.startAsync();
+        log.info("虚拟线程钉住诊断已启动 阈值:{}ms", config.getThresholdMillis());
+    }
+
+    private void pinned(RecordedEvent event) {
+        String site = site(event.getStackTrace());
+        boolean first = sites.size() < config.getMaxSites() && sites.add(site);
+        String tag = sites.contains(site) ? site : OTHER;
+        Timer.builder("rag.threads.pinned")
+                .description("虚拟线程阻塞时占住载体线程的次数与时长")
+                .tag("site", tag)
+                .register(meterRegistry)
+                .record(event.getDuration());
+        if (first) {
+            log.warn("虚拟线程在 synchronized 或本地方法中阻塞 {}ms，占住载体线程 位置:{}\n{}",
+                    event.getDuration().toMillis(), site, frames(event.getStackTrace()));
+        }
+    }
+
+    /**
+     * 第一个非 JDK 栈帧，形如 类名.方法名:行号
+     */
+    static String site(RecordedStackTrace stackTrace) {
+        if (null == stackTrace) return OTHER;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) continue;
+            return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+        }
+        return OTHER;
+    }
+
+    private static String frames(RecordedStackTrace stackTrace) {
+        if (null == stackTrace) return "";
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.size(), 32); i++) {
+            RecordedFrame frame = frames.get(i);
+            text.append("\tat ").append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber()).append('\n');
+        }
+        return text.toString();
+    }
+
+    public void shutdown() {
+        if (null != stream) {
+            stream.close();
+        }
+    }
+
+    @Data
+    public static class Config {
+        /** 虚拟线程模式下是否启动，默认为true */
+        private boolean enabled = true;
+        /** 阻塞超过该时长才记录（单位：毫秒），默认为20 */
+        private long thresholdMillis = 20;
+        /** 单独统计、打印堆栈的调用位置个数上限，超过后记为 other，默认为100 */
+        private int maxSites = 100;
+    }
+
+}
@@ -0,0 +1,42 @@
+package cn.wth.ai.rag.knowledge.trigger.concurrent;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 导入、向量化等线程池使用的线程类型；与请求处理一致，由 spring.threads.virtual.enabled 决定（需要 Java 21）。
+ * 只替换线程工厂，线程数、排队上限不变：虚拟线程下阻塞在 I/O 上不再占用平台线程，但并发度仍由各线程池的大小限制，
+ * 不会因此放大对 Ollama、数据库、Redis 的并发
+ * @CreateTime: 2026-10-19 04:10
+ */
+public enum ThreadMode {
+
+    PLATFORM {
+        @Override
+        public ThreadFactory factory(String prefix) {
+            AtomicInteger sequence = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    },
+
+    VIRTUAL {
+        @Override
+        public ThreadFactory factory(String prefix) {
+            // 虚拟线程都是守护线程
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+    };
+
+    /**
+     * @param prefix 线程名前缀，后面接序号
+     */
+    public abstract ThreadFactory factory(String prefix);
+
+}
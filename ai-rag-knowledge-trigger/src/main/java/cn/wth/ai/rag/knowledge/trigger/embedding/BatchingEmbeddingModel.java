@@ -0,0 +1,109 @@
+package cn.wth.ai.rag.knowledge.trigger.embedding;
+
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 批量向量化；把文本按 batchSize 分组成多个请求，最多 concurrency 个请求同时在途，结果按输入顺序返回
+ * @CreateTime: 2026-10-18 15:10
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final int batchSize;
+    /** 所有调用方共享的请求线程池，线程数即全局在途请求上限 */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param delegate    实际的向量模型
+     * @param batchSize   单个请求包含的文本数
+     * @param concurrency 同时在途的请求数
+     */
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int batchSize, int concurrency) {
+        this(delegate, batchSize, concurrency, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * @param threadMode 请求线程类型
+     */
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int batchSize, int concurrency, ThreadMode threadMode) {
+        if (batchSize <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("batchSize and concurrency must be positive");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                threadMode.factory("rag-embedding-"));
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        // 单批次也走线程池，保证所有调用方加起来的在途请求数不超过 concurrency
+        List<String> instructions = request.getInstructions();
+        EmbeddingOptions options = request.getOptions();
+        List<Future<EmbeddingResponse>> futures = new ArrayList<>();
+        for (int from = 0; from < instructions.size(); from += batchSize) {
+            List<String> batch = instructions.subList(from, Math.min(from + batchSize, instructions.size()));
+            futures.add(executor.submit(() -> delegate.call(new EmbeddingRequest(batch, options))));
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(instructions.size());
+        try {
+            for (Future<EmbeddingResponse> future : futures) {
+                for (Embedding embedding : future.get().getResults()) {
+                    embeddings.add(new Embedding(embedding.getOutput(), embeddings.size(), embedding.getMetadata()));
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("embedding interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(cause);
+        }
+
+        if (embeddings.size() != instructions.size()) {
+            throw new IllegalStateException("expected " + instructions.size() + " embeddings but got " + embeddings.size());
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,97 @@
+package cn.wth.ai.rag.knowledge.trigger.embedding;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 带缓存的向量模型；相同模型下文本内容不变就复用已有向量，只把未命中的文本交给下游模型
+ * @CreateTime: 2026-10-18 15:40
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache embeddingCache;
+    /** 请求未指定模型时使用的模型名，作为缓存key的一部分 */
+    private final String defaultModel;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache embeddingCache, String defaultModel) {
+        this.delegate = delegate;
+        this.embeddingCache = embeddingCache;
+        this.defaultModel = defaultModel;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = modelOf(request.getOptions());
+
+        List<String> keys = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            keys.add(EmbeddingCache.key(model, text));
+        }
+        Map<String, float[]> cached = embeddingCache.getAll(new ArrayList<>(new LinkedHashSet<>(keys)));
+
+        // 未命中的文本去重后交给下游，同一请求内重复的文本只算一次
+        Map<String, String> missed = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!cached.containsKey(keys.get(i))) {
+                missed.putIfAbsent(keys.get(i), texts.get(i));
+            }
+        }
+
+        Map<String, float[]> computed = new HashMap<>();
+        if (!missed.isEmpty()) {
+            List<String> missedKeys = new ArrayList<>(missed.keySet());
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(new ArrayList<>(missed.values()), request.getOptions()));
+            List<Embedding> results = response.getResults();
+            for (int i = 0; i < results.size(); i++) {
+                computed.put(missedKeys.get(i), results.get(i).getOutput());
+            }
+            embeddingCache.putAll(computed);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < keys.size(); i++) {
+            float[] embedding = cached.containsKey(keys.get(i)) ? cached.get(keys.get(i)) : computed.get(keys.get(i));
+            embeddings.add(new Embedding(embedding, i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
+
+    public void shutdown() {
+        if (delegate instanceof BatchingEmbeddingModel batchingEmbeddingModel) {
+            batchingEmbeddingModel.shutdown();
+        }
+    }
+
+    private String modelOf(EmbeddingOptions options) {
+        return null != options && null != options.getModel() ? options.getModel() : defaultModel;
+    }
+
+}
@@ -0,0 +1,141 @@
+package cn.wth.ai.rag.knowledge.trigger.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author: 5th
+ * @Description: 向量缓存；key 为 (模型名, 文本SHA-256)。一级为进程内 Caffeine（W-TinyLFU 淘汰，按字节数限容），二级为可选的 Redis 共享缓存
+ * @CreateTime: 2026-10-18 15:40
+ */
+@Slf4j
+public class EmbeddingCache {
+
+    private static final String REDIS_KEY_PREFIX = "rag:embedding:";
+
+    private final Cache<String, float[]> localCache;
+    /** 为空表示不启用 Redis 二级缓存 */
+    private final RedissonClient redissonClient;
+    private final Duration redisTtl;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param localMaxBytes  进程内缓存的容量上限（字节）
+     * @param redissonClient Redis 客户端，为空则只用进程内缓存
+     * @param redisTtl       Redis 中缓存的过期时间
+     */
+    public EmbeddingCache(long localMaxBytes, RedissonClient redissonClient, Duration redisTtl) {
+        this.localCache = Caffeine.newBuilder()
+                .maximumWeight(localMaxBytes)
+                .weigher((String key, float[] value) -> key.length() * 2 + value.length * Float.BYTES)
+                .build();
+        this.redissonClient = redissonClient;
+        this.redisTtl = redisTtl;
+    }
+
+    /**
+     * 生成缓存key
+     */
+    public static String key(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return model + ":" + HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 批量查询，先查进程内缓存，未命中的再一次性查 Redis
+     *
+     * @return 命中的 key → 向量
+     */
+    public Map<String, float[]> getAll(List<String> keys) {
+        Map<String, float[]> found = new HashMap<>(localCache.getAllPresent(keys));
+        localHits.addAndGet(found.size());
+        if (found.size() == keys.size() || null == redissonClient) {
+            misses.addAndGet(keys.size() - found.size());
+            return found;
+        }
+
+        String[] redisKeys = keys.stream().filter(key -> !found.containsKey(key)).map(key -> REDIS_KEY_PREFIX + key).toArray(String[]::new);
+        try {
+            Map<String, byte[]> values = redissonClient.getBuckets(ByteArrayCodec.INSTANCE).get(redisKeys);
+            values.forEach((redisKey, bytes) -> {
+                String key = redisKey.substring(REDIS_KEY_PREFIX.length());
+                float[] embedding = decode(bytes);
+                localCache.put(key, embedding);
+                found.put(key, embedding);
+            });
+            redisHits.addAndGet(values.size());
+        } catch (Exception e) {
+            // Redis 只是加速手段，不可用时退化为重新向量化
+            log.warn("向量缓存读取Redis失败 {}", e.getMessage());
+        }
+        misses.addAndGet(keys.size() - found.size());
+        return found;
+    }
+
+    /**
+     * 写入两级缓存，Redis 异步批量写入
+     */
+    public void putAll(Map<String, float[]> embeddings) {
+        localCache.putAll(embeddings);
+        if (null == redissonClient || embeddings.isEmpty()) return;
+        try {
+            RBatch batch = redissonClient.createBatch();
+            embeddings.forEach((key, embedding) -> batch.getBucket(REDIS_KEY_PREFIX + key, ByteArrayCodec.INSTANCE).setAsync(encode(embedding), redisTtl));
+            batch.executeAsync();
+        } catch (Exception e) {
+            log.warn("向量缓存写入Redis失败 {}", e.getMessage());
+        }
+    }
+
+    public long getLocalHits() {
+        return localHits.get();
+    }
+
+    public long getRedisHits() {
+        return redisHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+
+    private static byte[] encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    private static float[] decode(byte[] bytes) {
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+}
@@ -0,0 +1,364 @@
+package cn.wth.ai.rag.knowledge.trigger.git;
+
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import cn.wth.ai.rag.knowledge.trigger.ingest.ChunkDeduplicator;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestFile;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestJob;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestJobRegistry;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestPipeline;
+import cn.wth.ai.rag.knowledge.trigger.ingest.VectorStoreWriter;
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Author: 5th
+ * @Description: Git仓库增量索引；每个仓库保留一份本地检出，记录上次索引的提交和导入失败的文件，再次索引时只处理两次提交之间变化的文件
+ *               和上次失败的文件；同一仓库同时只有一个任务使用检出目录，重复请求合并到进行中的任务
+ * @CreateTime: 2026-10-18 16:30
+ */
+@Slf4j
+public class GitRepositoryIndexer {
+
+    /** Redis 中记录 本地检出目录（相对 repoRoot）→ 上次索引完成的提交 */
+    private static final String INDEXED_COMMIT_KEY = "rag:git:indexed-commit";
+    /** Redis 中记录 本地检出目录 → 上次导入失败的文件（JSON 数组），下次索引时重新导入 */
+    private static final String FAILED_FILES_KEY = "rag:git:failed-files";
+
+    private final Path repoRoot;
+    private final RedissonClient redissonClient;
+    private final VectorStoreWriter vectorStoreWriter;
+    private final ChunkDeduplicator chunkDeduplicator;
+    private final IngestJobRegistry ingestJobRegistry;
+    private final IngestPipeline ingestPipeline;
+    private final RepositoryFileWalker repositoryFileWalker;
+
+    /** 拉取线程池，限制同时进行的 clone/fetch 数 */
+    private final ThreadPoolExecutor cloneExecutor;
+    /** 本地检出目录 → 使用该检出的未结束任务 */
+    private final Map<Path, IngestJob> inFlightJobs = new ConcurrentHashMap<>();
+
+    public GitRepositoryIndexer(Path repoRoot, RedissonClient redissonClient, VectorStoreWriter vectorStoreWriter,
+                                ChunkDeduplicator chunkDeduplicator, IngestJobRegistry ingestJobRegistry, IngestPipeline ingestPipeline,
+                                RepositoryFileWalker repositoryFileWalker, Config config, ThreadMode threadMode) {
+        this.repoRoot = repoRoot;
+        this.redissonClient = redissonClient;
+        this.vectorStoreWriter = vectorStoreWriter;
+        this.chunkDeduplicator = chunkDeduplicator;
+        this.ingestJobRegistry = ingestJobRegistry;
+        this.ingestPipeline = ingestPipeline;
+        this.repositoryFileWalker = repositoryFileWalker;
+        this.cloneExecutor = new ThreadPoolExecutor(config.getMaxConcurrentClones(), config.getMaxConcurrentClones(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getMaxQueuedRepos()), threadMode.factory("rag-git-clone-"));
+    }
+
+    /**
+     * 提交仓库索引任务，立即返回
+     * 拉取仓库在有界的拉取线程池中执行；同一仓库已有未结束的任务时直接返回该任务，不会重复拉取。
+     * 本地检出在任务结束（包括流水线解析完全部文件）前只归这一个任务使用。
+     *
+     * @param repoUrl  仓库地址
+     * @param userName 用户名
+     * @param token    访问令牌
+     * @param ragTag   知识库标签
+     * @return 导入任务
+     * @throws RejectedExecutionException 排队拉取的仓库数已达上限
+     */
+    public IngestJob index(String repoUrl, String userName, String token, String ragTag) {
+        Path localPath = localPathOf(repoUrl);
+        IngestJob[] created = new IngestJob[1];
+        IngestJob job = inFlightJobs.computeIfAbsent(localPath, key -> created[0] = ingestJobRegistry.createForLocalFiles(ragTag, keyOf(key)));
+        if (job != created[0]) {
+            log.info("Git仓库已有进行中的导入任务，合并请求 {} jobId:{}", repoUrl, job.getJobId());
+            return job;
+        }
+
+        AtomicReference<String> headCommit = new AtomicReference<>();
+        AtomicBoolean rebuilding = new AtomicBoolean();
+        job.onComplete(finished -> {
+            try {
+                // 部分文件失败也算成功：记录提交和失败的文件，下次只重试失败的文件；拉取失败或全部文件失败时不记录，下次重新处理
+                IngestJob.Status status = finished.getStatus();
+                boolean succeeded = IngestJob.Status.COMPLETED == status || IngestJob.Status.PARTIAL_FAILED == status;
+                // 清理失败时不记录提交，下次仍然全量重建
+                if (rebuilding.get()) {
+                    finishRebuild(finished, succeeded);
+                }
+                if (succeeded && null != headCommit.get()) {
+                    recordIndexed(localPath, headCommit.get(), finished);
+                }
+            } finally {
+                inFlightJobs.remove(localPath, finished);
+            }
+        });
+
+        CredentialsProvider credentials = new UsernamePasswordCredentialsProvider(userName, token);
+        try {
+            cloneExecutor.execute(() -> prepare(job, repoUrl, localPath, credentials, headCommit, rebuilding));
+        } catch (RejectedExecutionException e) {
+            ingestPipeline.abort(job, "仓库拉取排队已满");
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * 拉取仓库并把需要导入的文件提交到流水线
+     * 首次索引（或上次索引的提交已不在仓库中）时全量重建，旧分片保留到任务结束，见 finishRebuild；否则按 上次提交..最新提交 的差异，
+     * 删除被修改和删除文件的旧分片，只导入新增和修改的文件，上次导入失败的文件删掉残留分片后一起重新导入。任务结束且不是全部失败时才记录新的提交。
+     */
+    private void prepare(IngestJob job, String repoUrl, Path localPath, CredentialsProvider credentials, AtomicReference<String> headCommit,
+                         AtomicBoolean rebuilding) {
+        String ragTag = job.getRagTag();
+        try (Git git = openOrClone(repoUrl, localPath, credentials)) {
+            Repository repository = git.getRepository();
+            ObjectId head = repository.resolve(Constants.HEAD);
+            RMap<String, String> indexedCommits = redissonClient.getMap(INDEXED_COMMIT_KEY);
+            String lastCommit = indexedCommits.get(keyOf(localPath));
+            ObjectId last = null == lastCommit ? null : ObjectId.fromString(lastCommit);
+            String failedFiles = redissonClient.<String, String>getMap(FAILED_FILES_KEY).get(keyOf(localPath));
+            List<String> retryFiles = null == failedFiles ? List.of() : JSON.parseArray(failedFiles, String.class);
+
+            RepositoryFileWalker.Result scan;
+            if (null == last || !repository.getObjectDatabase().has(last)) {
+                scan = repositoryFileWalker.walk(localPath);
+                log.info("Git仓库全量索引 {} commit:{} 扫描:{} 跳过:{} 导入:{} 字节:{}", repoUrl, head.name(),
+                        scan.getScanned().get(), scan.getSkipped().get(), scan.getFiles().size(), scan.getBytes().get());
+                // 新分片带本任务的 job 元数据写入，本仓库的旧分片在任务成功后才删除，导入失败时知识库保持原样
+                chunkDeduplicator.forget(ragTag);
+                rebuilding.set(true);
+                // 整库导入结束后再一次性建向量索引
+                vectorStoreWriter.beginBulkLoad(ragTag);
+                job.onComplete(finished -> vectorStoreWriter.endBulkLoad(ragTag));
+                for (String file : scan.getFiles()) {
+                    addFile(job, localPath, file);
+                }
+            } else if (!last.equals(head) || !retryFiles.isEmpty()) {
+                scan = new RepositoryFileWalker.Result();
+                Set<String> staleSources = new LinkedHashSet<>();
+                List<String> changedFiles = new ArrayList<>();
+                for (DiffEntry diff : last.equals(head) ? List.<DiffEntry>of() : diff(git, last, head)) {
+                    switch (diff.getChangeType()) {
+                        case ADD, COPY -> changedFiles.add(diff.getNewPath());
+                        case MODIFY, RENAME -> {
+                            // 旧分片总是删除，新内容若被过滤（例如变成了大文件）则不再导入
+                            staleSources.add(diff.getOldPath());
+                            changedFiles.add(diff.getNewPath());
+                        }
+                        case DELETE -> staleSources.add(diff.getOldPath());
+                    }
+                }
+                // 上次失败的文件可能写了一部分分片，删掉后重新导入；已被删除的文件不会通过下面的过滤
+                for (String file : retryFiles) {
+                    staleSources.add(file);
+                    if (!changedFiles.contains(file)) changedFiles.add(file);
+                }
+                vectorStoreWriter.deleteBySources(ragTag, staleSources);
+                // 被删除的分片可能是其他文件重复内容的唯一副本，这些文件一起重新导入，已写入的分片会被当成重复跳过
+                for (String source : chunkDeduplicator.forgetSources(ragTag, staleSources)) {
+                    if (!changedFiles.contains(source)) changedFiles.add(source);
+                }
+                changedFiles.removeIf(file -> !repositoryFileWalker.accept(localPath, file, scan));
+                log.info("Git仓库增量索引 {} {}..{} 删除来源:{} 导入文件:{} 重试失败文件:{} 跳过:{}", repoUrl, last.name(), head.name(),
+                        staleSources.size(), changedFiles.size(), retryFiles.size(), scan.getSkipped().get());
+                for (String file : changedFiles) {
+                    addFile(job, localPath, file);
+                }
+            } else {
+                scan = new RepositoryFileWalker.Result();
+                log.info("Git仓库无新提交 {} commit:{}", repoUrl, head.name());
+            }
+            job.recordScan(scan.getScanned().get(), scan.getSkipped().get());
+            headCommit.set(head.name());
+            ingestPipeline.submit(job);
+        } catch (RejectedExecutionException e) {
+            ingestPipeline.abort(job, "导入任务排队已满");
+        } catch (Exception e) {
+            log.error("Git仓库拉取失败 {} jobId:{}", repoUrl, job.getJobId(), e);
+            ingestPipeline.abort(job, "仓库拉取失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 全量重建结束；成功（包括部分文件失败）时删除本仓库不是本任务写入的旧分片，同一知识库下上传的文件和其他仓库的分片不受影响，
+     * 失败的文件由下次索引重试。整个任务失败时删除本任务写了一半的新分片、保留旧分片，
+     * 并清掉新登记的指纹，之后导入的内容不会因为与没写完的新分片重复而被丢掉
+     */
+    private void finishRebuild(IngestJob job, boolean succeeded) {
+        String ragTag = job.getRagTag();
+        if (succeeded) {
+            vectorStoreWriter.deleteByOriginExcept(ragTag, job.getOrigin(), job.getJobId());
+            return;
+        }
+        log.warn("Git仓库全量重建未完成，保留原有分片 ragTag:{} jobId:{} 状态:{}", ragTag, job.getJobId(), job.getStatus());
+        vectorStoreWriter.deleteByJob(ragTag, job.getJobId());
+        chunkDeduplicator.forget(ragTag);
+    }
+
+    /**
+     * 记录索引完成的提交和本次导入失败的文件
+     */
+    private void recordIndexed(Path localPath, String commit, IngestJob job) {
+        String key = keyOf(localPath);
+        List<String> failed = job.getFiles().stream()
+                .filter(file -> IngestFile.Status.FAILED == file.getStatus())
+                .map(IngestFile::getSource)
+                .toList();
+        RMap<String, String> failedFiles = redissonClient.getMap(FAILED_FILES_KEY);
+        if (failed.isEmpty()) {
+            failedFiles.fastRemove(key);
+        } else {
+            failedFiles.fastPut(key, JSON.toJSONString(failed));
+            log.warn("Git仓库部分文件导入失败，下次索引时重试 {} 失败文件数:{}", key, failed.size());
+        }
+        redissonClient.<String, String>getMap(INDEXED_COMMIT_KEY).fastPut(key, commit);
+    }
+
+    /**
+     * 知识库被删除后调用，清除对应仓库的索引提交记录、失败文件记录和本地检出，再次导入时重新克隆并全量索引；
+     * 仍有任务在使用的检出目录不删除
+     */
+    public void forget(String ragTag) {
+        String name = sanitize(ragTag);
+        RMap<String, String> indexedCommits = redissonClient.getMap(INDEXED_COMMIT_KEY);
+        for (String key : indexedCommits.readAllKeySet()) {
+            Path localPath = repoRoot.resolve(key).normalize();
+            if (!localPath.startsWith(repoRoot.normalize()) || null == localPath.getFileName()
+                    || !name.equals(localPath.getFileName().toString())) continue;
+            indexedCommits.fastRemove(key);
+            redissonClient.getMap(FAILED_FILES_KEY).fastRemove(key);
+            if (inFlightJobs.containsKey(localPath)) {
+                log.warn("Git仓库检出目录仍在使用，暂不删除 {}", localPath);
+                continue;
+            }
+            FileUtils.deleteQuietly(localPath.toFile());
+            log.info("删除Git仓库检出目录 {}", localPath);
+        }
+    }
+
+    public void shutdown() {
+        cloneExecutor.shutdownNow();
+    }
+
+    /**
+     * 仓库对应的知识库标签，即项目名，例如 https://github.com/110LK/ai-rag-knowledge.git → ai-rag-knowledge
+     */
+    public static String ragTagOf(String repoUrl) {
+        String[] parts = repoUrl.split("/");
+        String projectNameWithGit = parts[parts.length - 1];
+        return projectNameWithGit.replace(".git", "");
+    }
+
+    /**
+     * 本地检出目录，按仓库地址区分，例如 https://github.com/110LK/ai-rag-knowledge → repoRoot/github.com/110LK/ai-rag-knowledge
+     */
+    Path localPathOf(String repoUrl) {
+        String name = sanitize(repoUrl.replaceFirst("^[a-zA-Z]+://", "")
+                .replaceFirst("^[^@/]+@", "")
+                .replaceFirst("\\.git$", ""));
+        Path localPath = repoRoot.resolve(name).normalize();
+        if (!localPath.startsWith(repoRoot.normalize())) {
+            throw new IllegalArgumentException("非法的仓库地址 " + repoUrl);
+        }
+        return localPath;
+    }
+
+    /**
+     * 索引提交记录的 key，与本地检出目录一一对应；同一仓库的不同写法（有无 .git、协议、用户名）共用一条记录
+     */
+    private String keyOf(Path localPath) {
+        return repoRoot.normalize().relativize(localPath).toString().replace('\\', '/');
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._/-]", "_").replace("..", "_");
+    }
+
+    private Git openOrClone(String repoUrl, Path localPath, CredentialsProvider credentials) throws Exception {
+        if (Files.isDirectory(localPath.resolve(Constants.DOT_GIT))) {
+            Git git = Git.open(localPath.toFile());
+            try {
+                String branch = git.getRepository().getBranch();
+                git.fetch().setCredentialsProvider(credentials).setRemoveDeletedRefs(true).call();
+                git.reset().setMode(ResetCommand.ResetType.HARD).setRef(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branch).call();
+                return git;
+            } catch (Exception e) {
+                git.close();
+                throw e;
+            }
+        }
+
+        log.info("克隆路径：{}", localPath.toAbsolutePath());
+        Files.createDirectories(localPath);
+        try {
+            return Git.cloneRepository()
+                    .setURI(repoUrl)
+                    .setDirectory(localPath.toFile())
+                    .setCredentialsProvider(credentials)
+                    .call();
+        } catch (Exception e) {
+            // 克隆失败留下的半成品目录会被下次当成已有检出，直接删掉
+            FileUtils.deleteDirectory(localPath.toFile());
+            throw e;
+        }
+    }
+
+    private List<DiffEntry> diff(Git git, ObjectId oldCommit, ObjectId newCommit) throws Exception {
+        Repository repository = git.getRepository();
+        try (ObjectReader reader = repository.newObjectReader(); RevWalk revWalk = new RevWalk(reader)) {
+            CanonicalTreeParser oldTree = new CanonicalTreeParser();
+            oldTree.reset(reader, revWalk.parseCommit(oldCommit).getTree());
+            CanonicalTreeParser newTree = new CanonicalTreeParser();
+            newTree.reset(reader, revWalk.parseCommit(newCommit).getTree());
+            return git.diff().setOldTree(oldTree).setNewTree(newTree).setShowNameAndStatusOnly(true).call();
+        }
+    }
+
+    private void addFile(IngestJob job, Path localPath, String file) throws IOException {
+        Path path = localPath.resolve(file);
+        if (!Files.isRegularFile(path)) return;
+        job.addFile(file, file, path, Files.size(path));
+    }
+
+    /**
+     * 仓库拉取参数
+     */
+    @Data
+    public static class Config {
+        /** 同时拉取的仓库数 */
+        private int maxConcurrentClones = 2;
+        /** 排队等待拉取的仓库上限 */
+        private int maxQueuedRepos = 32;
+    }
+
+}
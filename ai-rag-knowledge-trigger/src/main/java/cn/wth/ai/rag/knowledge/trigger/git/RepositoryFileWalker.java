@@ -0,0 +1,226 @@
+package cn.wth.ai.rag.knowledge.trigger.git;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author: 5th
+ * @Description: 仓库文件遍历；Fork/Join 并行遍历目录，按 include/exclude 通配符、文件大小和二进制探测过滤，只把可能解析出文本的文件交给 Tika
+ * @CreateTime: 2026-10-18 17:10
+ */
+@Slf4j
+public class RepositoryFileWalker {
+
+    /** 二进制探测读取的字节数 */
+    private static final int SNIFF_BYTES = 8192;
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final List<PathMatcher> includeNames;
+    private final List<PathMatcher> excludeNames;
+    private final long maxFileSize;
+    private final ForkJoinPool forkJoinPool;
+
+    public RepositoryFileWalker(Config config) {
+        this.includes = matchers(config.getIncludeGlobs(), true);
+        this.includeNames = matchers(config.getIncludeGlobs(), false);
+        this.excludes = matchers(config.getExcludeGlobs(), true);
+        this.excludeNames = matchers(config.getExcludeGlobs(), false);
+        this.maxFileSize = config.getMaxFileSizeKb() * 1024L;
+        this.forkJoinPool = new ForkJoinPool(config.getParallelism());
+    }
+
+    /**
+     * 并行遍历仓库
+     *
+     * @param root 仓库根目录
+     * @return 通过过滤的文件（仓库内相对路径，/ 分隔，已排序）及遍历统计
+     */
+    public Result walk(Path root) {
+        Result result = new Result();
+        ConcurrentLinkedQueue<String> accepted = new ConcurrentLinkedQueue<>();
+        forkJoinPool.invoke(new DirectoryTask(root, root, accepted, result));
+        List<String> files = new ArrayList<>(accepted);
+        files.sort(null);
+        result.files = files;
+        return result;
+    }
+
+    /**
+     * 单个文件是否需要导入，供增量索引判断变化的文件
+     *
+     * @param root     仓库根目录
+     * @param relative 仓库内相对路径，/ 分隔
+     */
+    public boolean accept(Path root, String relative, Result result) {
+        Path file = root.resolve(relative);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return acceptFile(file, relative, attrs, result);
+        } catch (IOException e) {
+            result.scanned.incrementAndGet();
+            result.skipped.incrementAndGet();
+            return false;
+        }
+    }
+
+    private boolean acceptFile(Path file, String relative, BasicFileAttributes attrs, Result result) {
+        result.scanned.incrementAndGet();
+        if (!attrs.isRegularFile()
+                || attrs.size() == 0
+                || attrs.size() > maxFileSize
+                || excluded(relative)
+                || !included(relative)
+                || isBinary(file)) {
+            result.skipped.incrementAndGet();
+            return false;
+        }
+        result.bytes.addAndGet(attrs.size());
+        return true;
+    }
+
+    private boolean excluded(String relative) {
+        Path path = Path.of(relative);
+        return excludes.stream().anyMatch(matcher -> matcher.matches(path))
+                || anyComponentMatches(excludeNames, path);
+    }
+
+    private boolean included(String relative) {
+        if (includes.isEmpty() && includeNames.isEmpty()) return true;
+        Path path = Path.of(relative);
+        return includes.stream().anyMatch(matcher -> matcher.matches(path))
+                || anyComponentMatches(includeNames, path);
+    }
+
+    /**
+     * 不含 / 的模式逐个匹配路径中的每一级目录名和文件名；增量索引直接判断单个文件，
+     * 不经过目录剪枝，node_modules/x.js 这类路径要靠这里排除
+     */
+    private static boolean anyComponentMatches(List<PathMatcher> matchers, Path path) {
+        if (matchers.isEmpty()) return false;
+        for (Path name : path) {
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(name)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取文件头，包含 NUL 字节即认为是二进制文件
+     */
+    private static boolean isBinary(Path file) {
+        byte[] buffer = new byte[SNIFF_BYTES];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read = in.readNBytes(buffer, 0, buffer.length);
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == 0) return true;
+            }
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @param withSlash true 取包含 / 的模式（匹配相对路径），false 取不含 / 的模式（匹配文件名或目录名）
+     */
+    private static List<PathMatcher> matchers(List<String> globs, boolean withSlash) {
+        return globs.stream()
+                .filter(glob -> glob.contains("/") == withSlash)
+                .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob))
+                .toList();
+    }
+
+    public void shutdown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+
+        private final Path root;
+        private final Path dir;
+        private final ConcurrentLinkedQueue<String> accepted;
+        private final Result result;
+
+        DirectoryTask(Path root, Path dir, ConcurrentLinkedQueue<String> accepted, Result result) {
+            this.root = root;
+            this.dir = dir;
+            this.accepted = accepted;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    String relative = root.relativize(entry).toString().replace('\\', '/');
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        // 目录命中排除规则直接剪枝，.git 之类的目录不会被遍历
+                        if (!excluded(relative)) {
+                            subTasks.add(new DirectoryTask(root, entry, accepted, result));
+                        }
+                    } else if (acceptFile(entry, relative, attrs, result)) {
+                        accepted.add(relative);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("遍历目录失败 {} - {}", dir, e.getMessage());
+            }
+            invokeAll(subTasks);
+        }
+    }
+
+    /**
+     * 遍历统计
+     */
+    @Getter
+    public static class Result {
+        private List<String> files = List.of();
+        /** 检查过的文件数 */
+        private final AtomicLong scanned = new AtomicLong();
+        /** 被过滤掉的文件数 */
+        private final AtomicLong skipped = new AtomicLong();
+        /** 通过过滤的文件总字节数 */
+        private final AtomicLong bytes = new AtomicLong();
+    }
+
+    /**
+     * 遍历参数；通配符含 / 时匹配仓库内相对路径，否则匹配文件名或目录名
+     */
+    @Data
+    public static class Config {
+        /** 只导入命中的文件，为空表示不限制 */
+        private List<String> includeGlobs = new ArrayList<>();
+        /** 排除的文件和目录 */
+        private List<String> excludeGlobs = new ArrayList<>(List.of(
+                ".git", "node_modules", "target", "build", "dist", ".idea",
+                "*.png", "*.jpg", "*.jpeg", "*.gif", "*.ico", "*.svg", "*.webp",
+                "*.jar", "*.war", "*.class", "*.zip", "*.tar", "*.gz", "*.so", "*.dll", "*.exe",
+                "*.lock", "package-lock.json", "*.min.js", "*.min.css", "*.map"));
+        /** 单个文件大小上限（KB） */
+        private int maxFileSizeKb = 1024;
+        /** 遍历并行度 */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+}
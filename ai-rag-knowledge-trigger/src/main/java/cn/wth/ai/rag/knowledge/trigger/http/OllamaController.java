@@ -8,37 +8,76 @@ package cn.wth.ai.rag.knowledge.trigger.http;
 
 
 import cn.wth.ai.rag.knowledge.api.IAiService;
+import cn.wth.ai.rag.knowledge.trigger.catalog.KnowledgeBaseCatalog;
+import cn.wth.ai.rag.knowledge.trigger.metrics.RagMetrics;
+import cn.wth.ai.rag.knowledge.trigger.rag.ModelWarmer;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagContextAssembler;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagPromptTemplate;
+import cn.wth.ai.rag.knowledge.trigger.rag.RagRetriever;
+import cn.wth.ai.rag.knowledge.trigger.rag.RetrievalMode;
+import cn.wth.ai.rag.knowledge.trigger.rag.SemanticCache;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.SystemPromptTemplate;
 import org.springframework.ai.document.Document;
 
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.api.OllamaOptions;
 
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @RestController()
 @CrossOrigin("*")
 @RequestMapping("/api/v1/ollama/")
 public class OllamaController implements IAiService {
 
+    /** 不带知识库的问答在语义缓存中使用的标签 */
+    private static final String NO_RAG_TAG = "";
+    /** 回放缓存回答时每段的字符数 */
+    private static final int REPLAY_CHUNK_CHARS = 16;
+
+    /** 知识库问答的系统提示词，启动时解析一次 */
+    private static final RagPromptTemplate SYSTEM_PROMPT = new RagPromptTemplate("""
+            Use the information from the DOCUMENTS section to provide accurate answers but act as if you knew this information innately.
+            If unsure, simply state that you don't know.
+            Another thing you need to note is that your reply must be in Chinese!
+            Each document starts with [n] source: <file> and documents are separated by ---.
+            DOCUMENTS:
+            {documents}
+            """);
+
     @Resource
     private OllamaChatModel ollamaChatModel;
     @Resource
-    private PgVectorStore pgVectorStore;
+    private RagRetriever ragRetriever;
+    @Resource
+    private RagContextAssembler ragContextAssembler;
+    @Resource
+    private ModelWarmer modelWarmer;
+    @Resource
+    private Scheduler ragRetrievalScheduler;
+    @Resource
+    private SemanticCache semanticCache;
+    @Resource
+    private RagMetrics ragMetrics;
 
     /**
      * http://localhost:8090/api/v1/ollama/generate?model=deepseek-r1:1.5b&message=1+1
@@ -51,7 +90,17 @@ public class OllamaController implements IAiService {
     @GetMapping(value = "generate")
     @Override
     public ChatResponse generate(@RequestParam String model, @RequestParam String message) {
-        return ollamaChatModel.call(new Prompt(message, OllamaOptions.builder().model(model).build()));
+        // 不带知识库的问答缓存在空标签下，不受知识库导入影响
+        float[] queryEmbedding = semanticCache.embedQuery(message);
+        String cached = semanticCache.findAnswer(NO_RAG_TAG, model, queryEmbedding);
+        if (null != cached) {
+            log.info("语义缓存命中 model:{}", model);
+            return cachedResponse(cached, true);
+        }
+        long generation = semanticCache.generation(NO_RAG_TAG);
+        ChatResponse response = ollamaChatModel.call(new Prompt(message, OllamaOptions.builder().model(model).build()));
+        semanticCache.putAnswer(NO_RAG_TAG, model, queryEmbedding, textOf(response), generation);
+        return response;
     }
 
     /**
@@ -61,40 +110,126 @@ public class OllamaController implements IAiService {
      * 流式方法适合：内容生成、长文本输出、需要实时逐字/逐句展示的场景（如对话hi）
      * 流式方法基于Reactive Streams响应式流（非阻塞式IO），可配合SSE（Server-Sent Events）实现前端实时渲染
      * 响应头Content-Type: text/event-stream
+     * 首 token 耗时和每秒 token 数记录到 rag.chat.* 指标
      */
     @GetMapping(value = "generate_stream")
     @Override
     public Flux<ChatResponse> generateStream(@RequestParam String model, @RequestParam String message) {
-        return ollamaChatModel.stream(new Prompt(message, OllamaOptions.builder().model(model).build()));
+        return Flux.defer(() -> ragMetrics.meterStream(ollamaChatModel.stream(new Prompt(message, OllamaOptions.builder().model(model).build())),
+                null, model, System.currentTimeMillis()));
     }
 
+    /**
+     * http://localhost:8090/api/v1/ollama/generate_stream_rag?model=deepseek-r1:1.5b&ragTag=xxx&message=hi&retrievalMode=hybrid
+     *
+     * 知识库问答；检索到的分片按相似度排序、去重、标注来源并控制在 token 预算内，作为系统消息和用户问题一起发给模型
+     * retrievalMode 为 vector、keyword 或 hybrid（向量与关键词检索按倒数排名融合），不传使用 rag.chat.retrieval-mode
+     * 检索在专用的有界调度器上执行，方法本身立即返回 Flux，不占用 Servlet 线程；检索的同时预热对话模型
+     * 配置了重排（rag.chat.rerank）时检索先取较多的候选，重排后保留 top-k 个；语义缓存保存重排后的结果
+     * 相似问题命中语义缓存时直接按流式回放缓存的回答；检索结果单独缓存
+     * 检索、重排（含各步骤）、拼装、首个 token、总耗时分别记录到日志；检索、重排、拼装、首个 token 耗时和每秒 token 数同时记录到指标
+     */
     @GetMapping(value = "generate_stream_rag")
     @Override
-    public Flux<ChatResponse> generateStreamRag(@RequestParam String model, @RequestParam String ragTag, @RequestParam String message) {
-        String SYSTEM_PROMPT = """
-                Use the information from the DOCUMENTS section to provide accurate answers but act as if you knew this information innately.
-                If unsure, simply state that you don't know.
-                Another thing you need to note is that your reply must be in Chinese!
-                DOCUMENTS:
-                    {documents}
-                """;
-
-        // 指定文档搜索
-        SearchRequest request = SearchRequest.builder()
-                .query(message)
-                .topK(5)
-                .filterExpression("knowledge == '" + ragTag + "'")
-                .build();
-
-        List<Document> documents = pgVectorStore.similaritySearch(request);
-        String documentCollectors = documents.stream().map(Document::getText).collect(Collectors.joining());
-        Message ragMessage = new SystemPromptTemplate(SYSTEM_PROMPT).createMessage(Map.of("documents", documentCollectors));
-
-        List<Message> messages = new ArrayList<>();
-        messages.add(new UserMessage(message));
-        messages.add(ragMessage);
-
-        return ollamaChatModel.stream(new Prompt(message, OllamaOptions.builder().model(model).build()));
+    public Flux<ChatResponse> generateStreamRag(@RequestParam String model, @RequestParam String ragTag, @RequestParam String message,
+                                               @RequestParam(required = false) String retrievalMode) {
+        return Flux.defer(() -> {
+            if (!KnowledgeBaseCatalog.isValidRagTag(ragTag)) {
+                return Flux.error(new IllegalArgumentException("知识库标签只能包含字母、数字、下划线、点和短横线：" + ragTag));
+            }
+            long start = System.currentTimeMillis();
+            // 检索、重排、拼装、首个 token 结束的时间点
+            long[] stages = new long[4];
+            Map<String, Long> rerankLatencies = new LinkedHashMap<>();
+            int[] candidates = {-1};
+            RetrievalMode mode = RetrievalMode.parse(retrievalMode, ragRetriever.getDefaultMode());
+            // 不同检索方式的回答分开缓存
+            String answerKey = model + "#" + mode;
+
+            return Mono.fromCallable(() -> semanticCache.embedQuery(message))
+                    .subscribeOn(ragRetrievalScheduler)
+                    .flatMapMany(queryEmbedding -> {
+                        String cached = semanticCache.findAnswer(ragTag, answerKey, queryEmbedding);
+                        if (null != cached) {
+                            log.info("语义缓存命中 ragTag:{} model:{}", ragTag, model);
+                            return replay(cached, REPLAY_CHUNK_CHARS);
+                        }
+                        modelWarmer.warmUp(model);
+                        long generation = semanticCache.generation(ragTag);
+
+                        // 指定文档搜索
+                        List<Document> documents = semanticCache.findDocuments(ragTag, mode.name(), queryEmbedding);
+                        if (null == documents) {
+                            List<Document> retrieved = ragRetriever.retrieveCandidates(ragTag, message, mode);
+                            stages[0] = System.currentTimeMillis();
+                            candidates[0] = retrieved.size();
+                            documents = ragRetriever.rerank(message, retrieved, rerankLatencies);
+                            semanticCache.putDocuments(ragTag, mode.name(), queryEmbedding, documents, generation);
+                            stages[1] = System.currentTimeMillis();
+                            ragMetrics.recordQuery(RagMetrics.Stage.RETRIEVE, ragTag, model, stages[0] - start, TimeUnit.MILLISECONDS);
+                            if (ragRetriever.isRerankEnabled()) {
+                                ragMetrics.recordQuery(RagMetrics.Stage.RERANK, ragTag, model, stages[1] - stages[0], TimeUnit.MILLISECONDS);
+                            }
+                        } else {
+                            stages[0] = System.currentTimeMillis();
+                            stages[1] = stages[0];
+                        }
+                        String context = ragContextAssembler.assemble(documents);
+                        stages[2] = System.currentTimeMillis();
+                        ragMetrics.recordQuery(RagMetrics.Stage.ASSEMBLE, ragTag, model, stages[2] - stages[1], TimeUnit.MILLISECONDS);
+                        List<Message> messages = List.of(
+                                new SystemMessage(SYSTEM_PROMPT.render(Map.of("documents", context))),
+                                new UserMessage(message));
+
+                        StringBuilder answer = new StringBuilder();
+                        Flux<ChatResponse> stream = ollamaChatModel.stream(new Prompt(messages, OllamaOptions.builder()
+                                .model(model)
+                                .keepAlive(modelWarmer.getKeepAlive())
+                                .build()));
+                        return ragMetrics.meterStream(stream, ragTag, model, start)
+                                .doOnNext(response -> answer.append(textOf(response)))
+                                .doOnComplete(() -> semanticCache.putAnswer(ragTag, answerKey, queryEmbedding, answer.toString(), generation));
+                    })
+                    .doOnNext(response -> {
+                        if (stages[3] == 0) stages[3] = System.currentTimeMillis();
+                    })
+                    .doFinally(signal -> log.info("知识库问答 ragTag:{} model:{} 检索方式:{} 候选:{} 检索:{}ms 重排:{}ms {} 拼装:{}ms 首个token:{}ms 总耗时:{}ms 结束:{}",
+                            ragTag, model, mode, candidates[0],
+                            stages[0] == 0 ? -1 : stages[0] - start,
+                            stages[1] == 0 ? -1 : stages[1] - stages[0], rerankLatencies,
+                            stages[2] == 0 ? -1 : stages[2] - stages[1],
+                            stages[3] == 0 ? -1 : stages[3] - start,
+                            System.currentTimeMillis() - start, signal));
+        });
+    }
+
+    /**
+     * 把缓存的回答切成小段按流式返回，最后一段带 STOP 结束标记，前端按正常生成处理
+     */
+    private static Flux<ChatResponse> replay(String answer, int chunkChars) {
+        List<ChatResponse> responses = new ArrayList<>();
+        int from = 0;
+        while (from < answer.length()) {
+            int to = Math.min(from + chunkChars, answer.length());
+            // 不把代理对拆到两段里
+            if (to < answer.length() && Character.isHighSurrogate(answer.charAt(to - 1))) to++;
+            responses.add(cachedResponse(answer.substring(from, to), to >= answer.length()));
+            from = to;
+        }
+        return Flux.fromIterable(responses);
+    }
+
+    private static ChatResponse cachedResponse(String text, boolean last) {
+        AssistantMessage output = new AssistantMessage(text);
+        return new ChatResponse(List.of(last
+                ? new Generation(output, ChatGenerationMetadata.builder().finishReason("STOP").build())
+                : new Generation(output)));
+    }
+
+    private static String textOf(ChatResponse response) {
+        if (null == response || null == response.getResult() || null == response.getResult().getOutput()) return "";
+        String text = response.getResult().getOutput().getText();
+        return null == text ? "" : text;
     }
 
-}
\ No newline at end of file
+}
@@ -1,27 +1,29 @@
 package cn.wth.ai.rag.knowledge.trigger.http;
 
 import cn.wth.ai.rag.knowledge.api.IRAGService;
+import cn.wth.ai.rag.knowledge.api.dto.EmbeddingCacheStatsDTO;
+import cn.wth.ai.rag.knowledge.api.dto.IngestJobDTO;
+import cn.wth.ai.rag.knowledge.api.dto.KnowledgeBaseDTO;
 import cn.wth.ai.rag.knowledge.api.response.Response;
+import cn.wth.ai.rag.knowledge.trigger.catalog.KnowledgeBaseCatalog;
+import cn.wth.ai.rag.knowledge.trigger.embedding.EmbeddingCache;
+import cn.wth.ai.rag.knowledge.trigger.git.GitRepositoryIndexer;
+import cn.wth.ai.rag.knowledge.trigger.ingest.ChunkDeduplicator;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestJob;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestJobRegistry;
+import cn.wth.ai.rag.knowledge.trigger.ingest.IngestPipeline;
+import cn.wth.ai.rag.knowledge.trigger.rag.SemanticCache;
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.redisson.api.RList;
-import org.redisson.api.RedissonClient;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
-import org.springframework.core.io.PathResource;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @Author: 5th
@@ -35,118 +37,195 @@ import java.util.List;
 public class RAGController implements IRAGService {
 
     @Resource
-    private TokenTextSplitter tokenTextSplitter;
+    private KnowledgeBaseCatalog knowledgeBaseCatalog;
     @Resource
-    private PgVectorStore pgVectorStore;
+    private IngestJobRegistry ingestJobRegistry;
     @Resource
-    private RedissonClient redissonClient;
+    private IngestPipeline ingestPipeline;
+    @Resource
+    private ChunkDeduplicator chunkDeduplicator;
+    @Resource
+    private EmbeddingCache embeddingCache;
+    @Resource
+    private GitRepositoryIndexer gitRepositoryIndexer;
+    @Resource
+    private SemanticCache semanticCache;
+    @Resource
+    private VectorStoreRouter vectorStoreRouter;
 
+    /**
+     * 知识库标签列表，按登记时间排序；读取本节点的目录副本，不访问Redis
+     */
     @GetMapping(value = "query_rag_tag_list")
     @Override
     public Response<List<String>> queryRagTagList() {
-        RList<String> elements = redissonClient.getList("ragTag");
         return Response.<List<String>>builder()
                 .code("0000")
                 .info("调用成功")
-                .data(elements)
+                .data(knowledgeBaseCatalog.ragTags())
+                .build();
+    }
+
+    /**
+     * 知识库列表，带分片数、最近导入时间和向量模型
+     */
+    @GetMapping(value = "query_knowledge_base_list")
+    @Override
+    public Response<List<KnowledgeBaseDTO>> queryKnowledgeBaseList() {
+        return Response.<List<KnowledgeBaseDTO>>builder()
+                .code("0000")
+                .info("调用成功")
+                .data(knowledgeBaseCatalog.list())
                 .build();
     }
 
+    /**
+     * 上传文件到知识库；文件落盘后立即返回任务ID，解析、切分、向量化和写库由导入流水线异步完成
+     *
+     * @param ragTag 知识库标签
+     * @param files 上传的文件
+     * @return 导入任务ID，通过 job/{jobId} 查询进度
+     */
     @PostMapping(value = "file/upload", headers = "content-type=multipart/form-data")
     @Override
     public Response<String> uploadFile(@RequestParam String ragTag, @RequestParam("file") List<MultipartFile> files) {
+        if (!KnowledgeBaseCatalog.isValidRagTag(ragTag)) {
+            return Response.<String>builder().code("0001").info("知识库标签只能包含字母、数字、下划线、点和短横线").build();
+        }
         log.info("上传知识库开始 {}", ragTag);
-        for (MultipartFile file : files) {
-            TikaDocumentReader documentReader = new TikaDocumentReader(file.getResource());
-            List<Document> documents = documentReader.get();
-            List<Document> documentSplitterList = tokenTextSplitter.apply(documents);
+        IngestJob job = ingestJobRegistry.create(ragTag);
+        try {
+            Files.createDirectories(job.getWorkDir());
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
+                String fileName = StringUtils.defaultIfBlank(file.getOriginalFilename(), "file");
+                // 请求结束后Multipart临时文件会被清理，先转存到任务目录再交给流水线
+                Path target = job.getWorkDir().resolve(i + "-" + Paths.get(fileName).getFileName());
+                file.transferTo(target);
+                job.addFile(fileName, target, file.getSize());
+            }
+            ingestPipeline.submit(job);
+        } catch (RejectedExecutionException e) {
+            log.warn("上传知识库排队任务已满 {}", ragTag);
+            ingestPipeline.abort(job, "导入任务排队已满");
+            return Response.<String>builder().code("0001").info("导入任务排队已满，请稍后重试").build();
+        } catch (IOException e) {
+            log.error("上传知识库文件转存失败 {}", ragTag, e);
+            ingestPipeline.abort(job, "文件转存失败");
+            return Response.<String>builder().code("0001").info("文件转存失败").build();
+        }
 
-            documents.forEach(doc -> doc.getMetadata().put("knowledge", ragTag));
-            documentSplitterList.forEach(doc -> doc.getMetadata().put("knowledge", ragTag));
+        // 知识库开始变化，缓存的回答不再可信；任务结束时会再清一次
+        semanticCache.invalidate(ragTag);
+        knowledgeBaseCatalog.register(ragTag);
 
-            pgVectorStore.accept(documentSplitterList);
+        log.info("上传知识库任务已提交 {} jobId:{}", ragTag, job.getJobId());
+        return Response.<String>builder().code("0000").info("调用成功").data(job.getJobId()).build();
+    }
 
-            RList<String> elements = redissonClient.getList("ragTag");
-            if (!elements.contains(ragTag)){
-                elements.add(ragTag);
-            }
+    @GetMapping(value = "job/{jobId}")
+    @Override
+    public Response<IngestJobDTO> queryIngestJob(@PathVariable String jobId) {
+        IngestJob job = ingestJobRegistry.get(jobId);
+        if (null == job) {
+            return Response.<IngestJobDTO>builder().code("0001").info("任务不存在或已过期").build();
         }
+        return Response.<IngestJobDTO>builder()
+                .code("0000")
+                .info("调用成功")
+                .data(job.toDTO())
+                .build();
+    }
 
-        log.info("上传知识库完成 {}", ragTag);
-        return Response.<String>builder().code("0000").info("调用成功").build();
+    /**
+     * 向量缓存命中统计，命中数即节省的向量化次数
+     */
+    @GetMapping(value = "embedding_cache_stats")
+    @Override
+    public Response<EmbeddingCacheStatsDTO> queryEmbeddingCacheStats() {
+        long hits = embeddingCache.getLocalHits() + embeddingCache.getRedisHits();
+        long total = hits + embeddingCache.getMisses();
+        return Response.<EmbeddingCacheStatsDTO>builder()
+                .code("0000")
+                .info("调用成功")
+                .data(EmbeddingCacheStatsDTO.builder()
+                        .localHits(embeddingCache.getLocalHits())
+                        .redisHits(embeddingCache.getRedisHits())
+                        .misses(embeddingCache.getMisses())
+                        .hitRate(total == 0 ? 0 : (double) hits / total)
+                        .localSize(embeddingCache.getLocalSize())
+                        .build())
+                .build();
     }
 
     /**
-     * 从指定的Git仓库中克隆项目代码，然后对克隆的代码进行解析并将其内容存储到知识库中
+     * 从指定的Git仓库拉取项目代码，并将变化的文件提交到导入流水线
+     * 每个仓库保留一份本地检出，首次全量导入，之后只导入与上次索引提交之间新增和修改的文件，并删除已变化文件的旧分片
+     * 拉取异步执行，同一仓库已有进行中的任务时返回该任务ID
      *
      * @param repoUrl Git仓库的URL
      * @param userName 用户名
      * @param token 访问令牌
-     * @return
+     * @return 导入任务ID，通过 job/{jobId} 查询进度
      * @throws Exception
      */
     @PostMapping(value = "analyze_git_repository")
     @Override
     public Response<String> analyzeGitRepository(@RequestParam String repoUrl, @RequestParam String userName, @RequestParam String token) throws Exception {
-        String localPath = "./git-cloned-repo";
-        String repoProjectName = extractProjectName(repoUrl);
-        log.info("克隆路径：{}", new File(localPath).getAbsolutePath());
-
-        FileUtils.deleteDirectory(new File(localPath));
-
-        Git git = Git.cloneRepository()
-                .setURI(repoUrl)
-                .setDirectory(new File(localPath))
-                .setCredentialsProvider(new UsernamePasswordCredentialsProvider(userName, token))
-                .call();
-
-        Files.walkFileTree(Paths.get(localPath), new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                log.info("{} 遍历解析路径，上传知识库:{}", repoProjectName, file.getFileName());
-                try {
-                    TikaDocumentReader reader = new TikaDocumentReader(new PathResource(file));
-                    // 获取解析后的文档列表
-                    List<Document> documents = reader.get();
-                    //  将文档内容按照token分割成更小的部分，便于后续处理
-                    List<Document> documentSplitterList = tokenTextSplitter.apply(documents);
-
-                    // 为每个文档（包括分割后的文档）添加元数据，标记其属于哪个项目
-                    documents.forEach(doc -> doc.getMetadata().put("knowledge", repoProjectName));
-                    documentSplitterList.forEach(doc -> doc.getMetadata().put("knowledge", repoProjectName));
-
-                    // 将处理后的文档列表上传到PgVectorStore，这是一个向量存储，用于存储和检索文档
-                    pgVectorStore.accept(documentSplitterList);
-                } catch (Exception e) {
-                    log.error("遍历解析路径，上传知识库失败:{}", file.getFileName());
-                }
-                return FileVisitResult.CONTINUE;
-            }
+        String repoProjectName = GitRepositoryIndexer.ragTagOf(repoUrl);
+        if (!KnowledgeBaseCatalog.isValidRagTag(repoProjectName)) {
+            return Response.<String>builder().code("0001").info("知识库标签只能包含字母、数字、下划线、点和短横线").build();
+        }
+        IngestJob job;
+        try {
+            job = gitRepositoryIndexer.index(repoUrl, userName, token, repoProjectName);
+        } catch (RejectedExecutionException e) {
+            log.warn("Git仓库拉取排队已满 {}", repoUrl);
+            return Response.<String>builder().code("0001").info("导入任务排队已满，请稍后重试").build();
+        }
 
-            // 当尝试访问文件失败时，记录失败信息并继续处理下一个文件。
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-                log.info("Failed to access file: {} - {}", file.toString(), exc.getMessage());
-                return FileVisitResult.CONTINUE;
-            }
-        });
+        semanticCache.invalidate(repoProjectName);
+        knowledgeBaseCatalog.register(repoProjectName);
 
-        FileUtils.deleteDirectory(new File(localPath));
+        log.info("Git仓库导入任务已提交 {} jobId:{}", repoUrl, job.getJobId());
+        return Response.<String>builder().code("0000").info("调用成功").data(job.getJobId()).build();
+    }
 
-        // 从Redisson中获取一个名为ragTag的列表
-        RList<String> elements = redissonClient.getList("ragTag");
-        if (!elements.contains(repoProjectName)) {
-            elements.add(repoProjectName);
+    /**
+     * 删除知识库；每个知识库一张表时直接删除该表，共用表时按标签删除分片
+     *
+     * @param ragTag 知识库标签
+     */
+    @PostMapping(value = "delete_rag_tag")
+    @Override
+    public Response<Boolean> deleteRagTag(@RequestParam String ragTag) {
+        if (!KnowledgeBaseCatalog.isValidRagTag(ragTag)) {
+            return Response.<Boolean>builder().code("0001").info("知识库标签只能包含字母、数字、下划线、点和短横线").data(false).build();
         }
-
-        git.close();
-        log.info("遍历解析路径，上传完成:{}", repoUrl);
-        return Response.<String>builder().code("0000").info("调用成功").build();
+        vectorStoreRouter.drop(ragTag);
+        gitRepositoryIndexer.forget(ragTag);
+        chunkDeduplicator.forget(ragTag);
+        semanticCache.invalidate(ragTag);
+        knowledgeBaseCatalog.remove(ragTag);
+        log.info("删除知识库 {}", ragTag);
+        return Response.<Boolean>builder().code("0000").info("调用成功").data(true).build();
     }
 
-    private String extractProjectName(String repoUrl) {
-        String[] parts = repoUrl.split("/");
-        String projectNameWithGit = parts[parts.length - 1];
-        return projectNameWithGit.replace(".git", "");
+    /**
+     * 重建知识库的向量索引，只在每个知识库一张表时可用
+     *
+     * @param ragTag 知识库标签
+     */
+    @PostMapping(value = "reindex_rag_tag")
+    @Override
+    public Response<Boolean> reindexRagTag(@RequestParam String ragTag) {
+        if (!KnowledgeBaseCatalog.isValidRagTag(ragTag)) {
+            return Response.<Boolean>builder().code("0001").info("知识库标签只能包含字母、数字、下划线、点和短横线").data(false).build();
+        }
+        if (!vectorStoreRouter.reindex(ragTag)) {
+            return Response.<Boolean>builder().code("0001").info("知识库不存在或未启用独立表").data(false).build();
+        }
+        return Response.<Boolean>builder().code("0000").info("调用成功").data(true).build();
     }
+
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 流水线处理阶段；固定线程数 + 有界在途任务数，满了以后提交方阻塞，把压力反压回上游阶段
+ * @CreateTime: 2026-10-18 14:20
+ */
+@Slf4j
+public class BoundedStage {
+
+    private final String name;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param name          阶段名称，用于线程命名
+     * @param threads       工作线程数
+     * @param queueCapacity 排队任务上限，在途任务总数 = threads + queueCapacity
+     * @param threadMode    工作线程类型
+     */
+    public BoundedStage(String name, int threads, int queueCapacity, ThreadMode threadMode) {
+        this.name = name;
+        this.permits = new Semaphore(threads + queueCapacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                threadMode.factory("rag-ingest-" + name + "-"));
+    }
+
+    /**
+     * 提交任务；在途任务达到上限时阻塞等待
+     */
+    public void submit(Runnable task) throws InterruptedException {
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("流水线阶段 {} 任务异常", name, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** 正在排队的任务数 */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /** 正在执行的任务数 */
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
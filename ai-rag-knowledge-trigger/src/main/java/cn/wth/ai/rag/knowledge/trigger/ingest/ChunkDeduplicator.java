@@ -0,0 +1,628 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RMultimapAsync;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.document.Document;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @Author: 5th
+ * @Description: 分片去重，按知识库隔离；完全重复按空白规范化后文本的 SHA-256 判断，近似重复按 64 位 SimHash 的汉明距离判断。
+ * 指纹登记在 Redis 中，重启和多实例之间共享；每个指纹记录写入分片的来源（owner）和因重复被跳过的来源，
+ * owner 的分片被删除时撤回指纹，并返回被跳过的来源，由调用方重新导入补上这份内容。
+ * 每批分片只访问 Redis 两次（RBatch）；不传 Redis 客户端时只在进程内登记
+ * @CreateTime: 2026-10-18 23:40
+ */
+@Slf4j
+public class ChunkDeduplicator {
+
+    private static final String REDIS_KEY_PREFIX = "rag:dedup:";
+    /** 指纹 key 前缀：完全重复的 SHA-256、近似重复的 SimHash */
+    private static final String EXACT = "e:";
+    private static final String NEAR = "n:";
+
+    /** 为空表示只在进程内登记 */
+    private final RedissonClient redissonClient;
+    private final boolean enabled;
+    private final boolean nearDuplicate;
+    private final int maxDistance;
+    private final int shingleWords;
+    private final int minWords;
+    /** SimHash 分段数，汉明距离不超过 maxDistance 的两个指纹至少有一段完全相同 */
+    private final int bands;
+    /** 进程内索引，知识库标签 → 索引 */
+    private final Map<String, LocalIndex> localIndexes = new ConcurrentHashMap<>();
+
+    public ChunkDeduplicator(RedissonClient redissonClient, Config config) {
+        this.redissonClient = redissonClient;
+        this.enabled = config.isEnabled();
+        this.nearDuplicate = config.isNearDuplicate();
+        this.maxDistance = Math.max(0, Math.min(config.getMaxDistance(), 15));
+        this.shingleWords = Math.max(1, config.getShingleWords());
+        this.minWords = config.getMinWords();
+        this.bands = maxDistance + 1;
+    }
+
+    /**
+     * 过滤一批分片；新内容的指纹登记到知识库下，重复的分片不再返回，并记下该来源依赖的指纹。
+     * 第一轮批量抢占完全重复指纹、读取 SimHash 各段的候选，第二轮批量写入登记结果；同一批内的近似重复在本地比较。
+     * 来源已登记过的内容同样视为重复，重新导入未删除旧分片的来源时只补写缺少的分片。
+     * 去重只是节省向量化和存储，Redis 不可用时整批放行
+     *
+     * @param source 分片来源，来源被删除或导入失败时据此撤回指纹
+     */
+    public Result filter(String ragTag, String source, List<Document> batch) {
+        Result result = new Result();
+        if (!enabled) {
+            result.kept.addAll(batch);
+            return result;
+        }
+        List<String> claimed = new ArrayList<>();
+        try {
+            int size = batch.size();
+            String[] exactKeys = new String[size];
+            long[] simHashes = new long[size];
+            boolean[] checkNear = new boolean[size];
+            List<CompletionStage<String>> owners = new ArrayList<>(size);
+            List<List<CompletionStage<Collection<String>>>> candidates = new ArrayList<>(size);
+
+            Batch lookup = index(ragTag).batch();
+            for (int i = 0; i < size; i++) {
+                String text = normalize(batch.get(i).getText());
+                exactKeys[i] = EXACT + sha256(text);
+                owners.add(lookup.claim(exactKeys[i], source));
+                long[] words = nearDuplicate ? wordHashes(text) : null;
+                List<CompletionStage<Collection<String>>> bandCandidates = new ArrayList<>(bands);
+                if (null != words && words.length >= minWords) {
+                    checkNear[i] = true;
+                    simHashes[i] = simHash(words, shingleWords);
+                    for (int band = 0; band < bands; band++) {
+                        bandCandidates.add(lookup.band(bandKey(band, simHashes[i])));
+                    }
+                }
+                candidates.add(bandCandidates);
+            }
+            lookup.execute();
+
+            Batch update = index(ragTag).batch();
+            List<Long> keptSimHashes = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                String exactKey = exactKeys[i];
+                String owner = owners.get(i).toCompletableFuture().join();
+                if (null != owner) {
+                    result.exactDuplicates++;
+                    if (!source.equals(owner)) update.addDuplicate(exactKey, source);
+                    continue;
+                }
+                claimed.add(exactKey);
+
+                if (checkNear[i]) {
+                    String match = findNear(simHashes[i], candidates.get(i), keptSimHashes);
+                    if (null != match) {
+                        // 近似重复的分片不写入，让出刚抢到的完全重复指纹
+                        claimed.remove(exactKey);
+                        update.release(exactKey, source);
+                        update.addDuplicate(match, source);
+                        result.nearDuplicates++;
+                        continue;
+                    }
+                    String nearKey = NEAR + Long.toHexString(simHashes[i]);
+                    update.claim(nearKey, source);
+                    for (int band = 0; band < bands; band++) {
+                        update.addBand(bandKey(band, simHashes[i]), nearKey);
+                    }
+                    update.addSource(source, nearKey);
+                    claimed.add(nearKey);
+                    keptSimHashes.add(simHashes[i]);
+                }
+                update.addSource(source, exactKey);
+                result.kept.add(batch.get(i));
+            }
+            update.execute();
+            result.fingerprints.addAll(claimed);
+        } catch (Exception e) {
+            log.warn("分片去重失败，本批不去重 ragTag:{} source:{} {}", ragTag, source, e.getMessage());
+            release(ragTag, source, claimed);
+            Result passed = new Result();
+            passed.kept.addAll(batch);
+            return passed;
+        }
+        return result;
+    }
+
+    /**
+     * 撤回本次登记的指纹，导入失败的分片没有写入向量库，再次导入时不能被当成重复
+     */
+    public void release(String ragTag, String source, Collection<String> fingerprints) {
+        if (!enabled || fingerprints.isEmpty()) return;
+        try {
+            Index index = index(ragTag);
+            Batch batch = index.batch();
+            Map<String, CompletionStage<Boolean>> released = new LinkedHashMap<>();
+            for (String key : fingerprints) {
+                batch.removeSource(source, key);
+                released.put(key, batch.release(key, source));
+            }
+            batch.execute();
+            removeBands(index, released);
+        } catch (Exception e) {
+            log.warn("分片去重撤回指纹失败 ragTag:{} source:{} {}", ragTag, source, e.getMessage());
+        }
+    }
+
+    /**
+     * 来源的分片从向量库删除后调用，撤回这些来源写入的指纹。
+     * 其他来源因与被删除的分片重复而没有写入的内容随之丢失，返回这些来源，调用方需要重新导入
+     *
+     * @return 需要重新导入的来源，不含 sources 本身
+     */
+    public Set<String> forgetSources(String ragTag, Collection<String> sources) {
+        if (!enabled || sources.isEmpty()) return Set.of();
+        try {
+            Index index = index(ragTag);
+            Batch lookup = index.batch();
+            Map<String, CompletionStage<Collection<String>>> keysBySource = new LinkedHashMap<>();
+            for (String source : sources) {
+                keysBySource.put(source, lookup.removeSources(source));
+            }
+            lookup.execute();
+
+            Batch update = index.batch();
+            Map<String, CompletionStage<Boolean>> released = new LinkedHashMap<>();
+            Map<String, CompletionStage<Collection<String>>> duplicates = new LinkedHashMap<>();
+            keysBySource.forEach((source, keys) -> {
+                for (String key : keys.toCompletableFuture().join()) {
+                    update.removeDuplicate(key, source);
+                    released.merge(key, update.release(key, source), (a, b) -> a.thenCombine(b, Boolean::logicalOr));
+                    duplicates.put(key, update.duplicates(key));
+                }
+            });
+            update.execute();
+
+            Set<String> orphaned = new LinkedHashSet<>();
+            released.forEach((key, removed) -> {
+                if (removed.toCompletableFuture().join()) {
+                    orphaned.addAll(duplicates.get(key).toCompletableFuture().join());
+                }
+            });
+            removeBands(index, released);
+            orphaned.removeAll(sources);
+            return orphaned;
+        } catch (Exception e) {
+            log.warn("分片去重撤回来源失败 ragTag:{} {}", ragTag, e.getMessage());
+            return Set.of();
+        }
+    }
+
+    /**
+     * 知识库清空或删除后调用，清除该知识库的全部指纹
+     */
+    public void forget(String ragTag) {
+        if (!enabled) return;
+        if (null == redissonClient) {
+            localIndexes.remove(ragTag);
+            return;
+        }
+        try {
+            String prefix = REDIS_KEY_PREFIX + ragTag;
+            redissonClient.getKeys().delete(prefix + ":fingerprints", prefix + ":bands", prefix + ":sources", prefix + ":duplicates");
+        } catch (Exception e) {
+            log.warn("分片去重清除知识库失败 ragTag:{} {}", ragTag, e.getMessage());
+        }
+    }
+
+    /**
+     * 64 位 SimHash；特征为连续 shingleWords 个词，字母数字连续的串算一个词，汉字等表意字符每个字算一个词
+     */
+    public static long simHash(String text, int shingleWords) {
+        return simHash(wordHashes(normalize(text)), shingleWords);
+    }
+
+    private static long simHash(long[] words, int shingleWords) {
+        int[] weights = new int[64];
+        int shingles = Math.max(1, words.length - shingleWords + 1);
+        for (int i = 0; i < shingles; i++) {
+            long hash = 0;
+            for (int j = i; j < Math.min(i + shingleWords, words.length); j++) {
+                hash = hash * 0x100000001B3L + words[j];
+            }
+            hash = mix(hash);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += (hash >>> bit & 1) == 1 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @param candidates 各段命中的已登记指纹
+     * @param kept       同一批中已保留的 SimHash
+     * @return 近似重复的指纹 key，没有时为 null
+     */
+    private String findNear(long fingerprint, List<CompletionStage<Collection<String>>> candidates, List<Long> kept) {
+        for (CompletionStage<Collection<String>> band : candidates) {
+            for (String candidate : band.toCompletableFuture().join()) {
+                long other = Long.parseUnsignedLong(candidate.substring(NEAR.length()), 16);
+                if (Long.bitCount(fingerprint ^ other) <= maxDistance) return candidate;
+            }
+        }
+        for (long other : kept) {
+            if (Long.bitCount(fingerprint ^ other) <= maxDistance) return NEAR + Long.toHexString(other);
+        }
+        return null;
+    }
+
+    /**
+     * 第 band 段的取值，各段位数尽量均分
+     */
+    private String bandKey(int band, long fingerprint) {
+        int from = band * 64 / bands;
+        int to = (band + 1) * 64 / bands;
+        long value = (fingerprint >>> from) & (to - from == 64 ? -1L : (1L << (to - from)) - 1);
+        return band + ":" + Long.toHexString(value);
+    }
+
+    /**
+     * 确实撤回了的近似重复指纹从分段索引中删除；指纹由其他来源登记时保留
+     */
+    private void removeBands(Index index, Map<String, CompletionStage<Boolean>> released) {
+        Batch batch = index.batch();
+        boolean changed = false;
+        for (Map.Entry<String, CompletionStage<Boolean>> entry : released.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(NEAR) || !entry.getValue().toCompletableFuture().join()) continue;
+            long fingerprint = Long.parseUnsignedLong(key.substring(NEAR.length()), 16);
+            for (int band = 0; band < bands; band++) {
+                batch.removeBand(bandKey(band, fingerprint), key);
+            }
+            changed = true;
+        }
+        if (changed) batch.execute();
+    }
+
+    private Index index(String ragTag) {
+        if (null != redissonClient) {
+            return new RedisIndex(redissonClient, REDIS_KEY_PREFIX + ragTag);
+        }
+        return localIndexes.computeIfAbsent(ragTag, key -> new LocalIndex());
+    }
+
+    /**
+     * 合并连续空白，只差缩进、换行的分片视为相同
+     */
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean blank = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                blank = normalized.length() > 0;
+            } else {
+                if (blank) normalized.append(' ');
+                normalized.append(c);
+                blank = false;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * 分词并计算每个词的哈希，英文不区分大小写
+     */
+    private static long[] wordHashes(String text) {
+        long[] hashes = new long[16];
+        int count = 0;
+        int i = 0;
+        while (i < text.length()) {
+            int c = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                i += Character.charCount(c);
+                continue;
+            }
+            // FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            if (Character.isIdeographic(c)) {
+                hash = (hash ^ c) * 0x100000001B3L;
+                i += Character.charCount(c);
+            } else {
+                while (i < text.length()) {
+                    c = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || Character.isIdeographic(c)) break;
+                    hash = (hash ^ Character.toLowerCase(c)) * 0x100000001B3L;
+                    i += Character.charCount(c);
+                }
+            }
+            if (count == hashes.length) hashes = Arrays.copyOf(hashes, count * 2);
+            hashes[count++] = hash;
+        }
+        return Arrays.copyOf(hashes, count);
+    }
+
+    /**
+     * MurmurHash3 的 fmix64，让各位充分混合
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一批分片的去重结果
+     */
+    @Getter
+    public static class Result {
+        /** 需要向量化、写库的分片 */
+        private final List<Document> kept = new ArrayList<>();
+        private int exactDuplicates;
+        private int nearDuplicates;
+        /** 本批新登记的指纹，导入失败时撤回 */
+        private final List<String> fingerprints = new ArrayList<>();
+    }
+
+    /**
+     * 一个知识库的指纹索引，包含四个集合：
+     * fingerprints 指纹 → 写入分片的来源；bands SimHash 分段取值 → 指纹；
+     * sources 来源 → 登记或依赖的指纹；duplicates 指纹 → 因重复跳过的来源
+     */
+    private interface Index {
+
+        /**
+         * 开始一批命令，execute 之前返回的结果都未完成
+         */
+        Batch batch();
+    }
+
+    private interface Batch {
+
+        /**
+         * 登记指纹的来源
+         *
+         * @return 已登记的来源，新指纹时为 null
+         */
+        CompletionStage<String> claim(String key, String source);
+
+        /**
+         * @return 指纹是否由该来源登记并已撤回
+         */
+        CompletionStage<Boolean> release(String key, String source);
+
+        CompletionStage<Collection<String>> band(String bandKey);
+
+        void addBand(String bandKey, String key);
+
+        void removeBand(String bandKey, String key);
+
+        void addSource(String source, String key);
+
+        void removeSource(String source, String key);
+
+        CompletionStage<Collection<String>> removeSources(String source);
+
+        /**
+         * 同时把指纹记到来源名下，来源被删除时据此撤回
+         */
+        void addDuplicate(String key, String source);
+
+        void removeDuplicate(String key, String source);
+
+        CompletionStage<Collection<String>> duplicates(String key);
+
+        void execute();
+    }
+
+    private record RedisIndex(RedissonClient redissonClient, String prefix) implements Index {
+
+        @Override
+        public Batch batch() {
+            RBatch batch = redissonClient.createBatch();
+            return new RedisBatch(batch, batch.getMap(prefix + ":fingerprints"), batch.getSetMultimap(prefix + ":bands"),
+                    batch.getSetMultimap(prefix + ":sources"), batch.getSetMultimap(prefix + ":duplicates"));
+        }
+    }
+
+    private record RedisBatch(RBatch batch, RMapAsync<String, String> fingerprints, RMultimapAsync<String, String> bands,
+                              RMultimapAsync<String, String> sources, RMultimapAsync<String, String> duplicates) implements Batch {
+
+        @Override
+        public CompletionStage<String> claim(String key, String source) {
+            return fingerprints.putIfAbsentAsync(key, source);
+        }
+
+        @Override
+        public CompletionStage<Boolean> release(String key, String source) {
+            return fingerprints.removeAsync(key, source);
+        }
+
+        @Override
+        public CompletionStage<Collection<String>> band(String bandKey) {
+            return bands.getAllAsync(bandKey);
+        }
+
+        @Override
+        public void addBand(String bandKey, String key) {
+            bands.putAsync(bandKey, key);
+        }
+
+        @Override
+        public void removeBand(String bandKey, String key) {
+            bands.removeAsync(bandKey, key);
+        }
+
+        @Override
+        public void addSource(String source, String key) {
+            sources.putAsync(source, key);
+        }
+
+        @Override
+        public void removeSource(String source, String key) {
+            sources.removeAsync(source, key);
+        }
+
+        @Override
+        public CompletionStage<Collection<String>> removeSources(String source) {
+            return sources.removeAllAsync(source);
+        }
+
+        @Override
+        public void addDuplicate(String key, String source) {
+            duplicates.putAsync(key, source);
+            sources.putAsync(source, key);
+        }
+
+        @Override
+        public void removeDuplicate(String key, String source) {
+            duplicates.removeAsync(key, source);
+        }
+
+        @Override
+        public CompletionStage<Collection<String>> duplicates(String key) {
+            return duplicates.getAllAsync(key);
+        }
+
+        @Override
+        public void execute() {
+            batch.execute();
+        }
+    }
+
+    /**
+     * 进程内索引，命令立即执行
+     */
+    private static class LocalIndex implements Index, Batch {
+
+        private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> bands = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> sources = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> duplicates = new ConcurrentHashMap<>();
+
+        @Override
+        public Batch batch() {
+            return this;
+        }
+
+        @Override
+        public CompletionStage<String> claim(String key, String source) {
+            return CompletableFuture.completedFuture(fingerprints.putIfAbsent(key, source));
+        }
+
+        @Override
+        public CompletionStage<Boolean> release(String key, String source) {
+            return CompletableFuture.completedFuture(fingerprints.remove(key, source));
+        }
+
+        @Override
+        public CompletionStage<Collection<String>> band(String bandKey) {
+            return CompletableFuture.completedFuture(List.copyOf(bands.getOrDefault(bandKey, Set.of())));
+        }
+
+        @Override
+        public void addBand(String bandKey, String key) {
+            put(bands, bandKey, key);
+        }
+
+        @Override
+        public void removeBand(String bandKey, String key) {
+            remove(bands, bandKey, key);
+        }
+
+        @Override
+        public void addSource(String source, String key) {
+            put(sources, source, key);
+        }
+
+        @Override
+        public void removeSource(String source, String key) {
+            remove(sources, source, key);
+        }
+
+        @Override
+        public CompletionStage<Collection<String>> removeSources(String source) {
+            Set<String> removed = sources.remove(source);
+            return CompletableFuture.completedFuture(null == removed ? Set.of() : removed);
+        }
+
+        @Override
+        public void addDuplicate(String key, String source) {
+            put(duplicates, key, source);
+            put(sources, source, key);
+        }
+
+        @Override
+        public void removeDuplicate(String key, String source) {
+            remove(duplicates, key, source);
+        }
+
+        @Override
+        public CompletionStage<Collection<String>> duplicates(String key) {
+            return CompletableFuture.completedFuture(List.copyOf(duplicates.getOrDefault(key, Set.of())));
+        }
+
+        @Override
+        public void execute() {
+        }
+
+        private static void put(Map<String, Set<String>> multimap, String key, String value) {
+            multimap.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(value);
+        }
+
+        private static void remove(Map<String, Set<String>> multimap, String key, String value) {
+            multimap.computeIfPresent(key, (k, set) -> set.remove(value) && set.isEmpty() ? null : set);
+        }
+    }
+
+    /**
+     * 去重参数
+     */
+    @Data
+    public static class Config {
+        /** 是否启用去重，默认为true */
+        private boolean enabled = true;
+        /** 是否检查近似重复，关闭后只去掉完全相同的分片，默认为true */
+        private boolean nearDuplicate = true;
+        /** SimHash 汉明距离上限（0~15），不超过该值视为近似重复，默认为3 */
+        private int maxDistance = 3;
+        /** SimHash 特征的连续词数，默认为3 */
+        private int shingleWords = 3;
+        /** 词数少于该值的分片只检查完全重复，短文本的 SimHash 不可靠，默认为32 */
+        private int minWords = 32;
+    }
+
+}
@@ -0,0 +1,116 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+/**
+ * @Author: 5th
+ * @Description: cl100k_base 编码前的分词，手写实现 tiktoken 的正则
+ * (?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\r\n\p{L}\p{N}]?\p{L}+|\p{N}{1,3}| ?[^\s\p{L}\p{N}]+[\r\n]*|\s*[\r\n]+|\s+(?!\S)|\s+，
+ * 直接在 CharSequence 上扫描，不创建 Matcher 也不分配对象；BPE 只在片段内部合并，文本的 token 数等于各片段的 token 数之和
+ * @CreateTime: 2026-10-18 23:10
+ */
+public final class Cl100kPieces {
+
+    private Cl100kPieces() {
+    }
+
+    /**
+     * 从 start 开始的片段的结束位置；limit 之后的文本视为不存在
+     */
+    public static int next(CharSequence text, int start, int limit) {
+        int c = Character.codePointAt(text, start);
+        int afterC = start + Character.charCount(c);
+
+        // 's|'t|'re|'ve|'m|'ll|'d，不区分大小写
+        if (c == '\'' && afterC < limit) {
+            char c1 = Character.toLowerCase(text.charAt(afterC));
+            if (c1 == 's' || c1 == 't' || c1 == 'm' || c1 == 'd') return afterC + 1;
+            if (afterC + 1 < limit) {
+                char c2 = Character.toLowerCase(text.charAt(afterC + 1));
+                if (c1 == 'r' && c2 == 'e' || c1 == 'v' && c2 == 'e' || c1 == 'l' && c2 == 'l') return afterC + 2;
+            }
+        }
+
+        // [^\r\n\p{L}\p{N}]?\p{L}+
+        if (isLetter(c)) return skipLetters(text, afterC, limit);
+        if (c != '\r' && c != '\n' && !isNumber(c) && afterC < limit && isLetter(Character.codePointAt(text, afterC))) {
+            return skipLetters(text, afterC, limit);
+        }
+
+        // \p{N}{1,3}
+        if (isNumber(c)) {
+            int end = afterC;
+            for (int n = 1; n < 3 && end < limit; n++) {
+                int next = Character.codePointAt(text, end);
+                if (!isNumber(next)) break;
+                end += Character.charCount(next);
+            }
+            return end;
+        }
+
+        // ' ?[^\s\p{L}\p{N}]+[\r\n]*'
+        int otherStart = -1;
+        if (isOther(c)) {
+            otherStart = start;
+        } else if (c == ' ' && afterC < limit && isOther(Character.codePointAt(text, afterC))) {
+            otherStart = afterC;
+        }
+        if (otherStart >= 0) {
+            int end = otherStart;
+            while (end < limit) {
+                int next = Character.codePointAt(text, end);
+                if (!isOther(next)) break;
+                end += Character.charCount(next);
+            }
+            while (end < limit && (text.charAt(end) == '\r' || text.charAt(end) == '\n')) end++;
+            return end;
+        }
+
+        // 剩下的都是空白：\s*[\r\n]+ 取到连续空白中最后一个换行；\s+(?!\S) 后面还有非空白时留出最后一个空白；否则 \s+
+        int end = afterC;
+        int lastNewline = c == '\r' || c == '\n' ? start : -1;
+        while (end < limit) {
+            int next = Character.codePointAt(text, end);
+            if (!isWhitespace(next)) break;
+            if (next == '\r' || next == '\n') lastNewline = end;
+            end += Character.charCount(next);
+        }
+        if (lastNewline >= 0) return lastNewline + 1;
+        if (end < limit && end - start > 1) {
+            return end - Character.charCount(Character.codePointBefore(text, end));
+        }
+        return end;
+    }
+
+    private static int skipLetters(CharSequence text, int from, int limit) {
+        int end = from;
+        while (end < limit) {
+            int next = Character.codePointAt(text, end);
+            if (!isLetter(next)) break;
+            end += Character.charCount(next);
+        }
+        return end;
+    }
+
+    private static boolean isLetter(int c) {
+        if (c < 128) return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+        return Character.isLetter(c);
+    }
+
+    private static boolean isNumber(int c) {
+        if (c < 128) return c >= '0' && c <= '9';
+        int type = Character.getType(c);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * 与 Unicode 模式下正则的 \s 一致，包括不换行空格
+     */
+    private static boolean isWhitespace(int c) {
+        if (c < 128) return c == ' ' || c >= '\t' && c <= '\r';
+        return Character.isWhitespace(c) || Character.isSpaceChar(c) || c == 0x85;
+    }
+
+    private static boolean isOther(int c) {
+        return !isWhitespace(c) && !isLetter(c) && !isNumber(c);
+    }
+
+}
@@ -0,0 +1,90 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import cn.wth.ai.rag.knowledge.api.dto.IngestJobDTO;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 导入任务中的单个文件及其处理进度
+ * @CreateTime: 2026-10-18 14:20
+ */
+@Getter
+public class IngestFile {
+
+    /**
+     * PARSING 期间解析、切分与已切出分片的向量化同时进行，EMBEDDING 表示解析已结束、等待剩余批次写入
+     */
+    public enum Status {
+        QUEUED, PARSING, EMBEDDING, DONE, FAILED
+    }
+
+    private final String fileName;
+    /** 分片元数据 source 的取值，上传文件为文件名，仓库文件为仓库内相对路径 */
+    private final String source;
+    private final Path path;
+    private final long size;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile int chunks;
+    private volatile String error;
+    private final AtomicInteger writtenChunks = new AtomicInteger();
+    /** 与知识库已有内容完全重复、未写入的分片数 */
+    private final AtomicInteger duplicateChunks = new AtomicInteger();
+    /** 与知识库已有内容近似重复、未写入的分片数 */
+    private final AtomicInteger nearDuplicateChunks = new AtomicInteger();
+    /** 本文件登记的去重指纹，文件失败时撤回 */
+    private final Queue<String> fingerprints = new ConcurrentLinkedQueue<>();
+    /** 尚未写入完成的分片批次数 */
+    private final AtomicInteger pendingBatches = new AtomicInteger();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    public IngestFile(String fileName, String source, Path path, long size) {
+        this.fileName = fileName;
+        this.source = source;
+        this.path = path;
+        this.size = size;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * 标记文件结束，只有第一次调用生效
+     *
+     * @return 本次调用是否完成了状态切换
+     */
+    boolean finish(Status status, String error) {
+        if (!finished.compareAndSet(false, true)) return false;
+        this.error = error;
+        this.status = status;
+        return true;
+    }
+
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    IngestJobDTO.FileProgress toDTO() {
+        return IngestJobDTO.FileProgress.builder()
+                .fileName(fileName)
+                .status(status.name())
+                .chunks(chunks)
+                .writtenChunks(writtenChunks.get())
+                .duplicateChunks(duplicateChunks.get())
+                .nearDuplicateChunks(nearDuplicateChunks.get())
+                .error(error)
+                .build();
+    }
+
+}
@@ -0,0 +1,157 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import cn.wth.ai.rag.knowledge.api.dto.IngestJobDTO;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库导入任务；记录文件明细、吞吐和失败信息，供任务查询接口使用
+ * @CreateTime: 2026-10-18 14:20
+ */
+@Getter
+public class IngestJob {
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, PARTIAL_FAILED, FAILED
+    }
+
+    private final String jobId;
+    private final String ragTag;
+    /** 导入来源，例如 Git 仓库的检出目录，写入分片元数据 origin，全量重建时只清理同一来源的旧分片；为空时不写 */
+    private final String origin;
+    /** 任务工作目录，任务结束后删除；为空表示没有需要清理的临时文件 */
+    private final Path workDir;
+    private final List<IngestFile> files = new CopyOnWriteArrayList<>();
+    /** 任务结束回调，需在提交流水线前注册 */
+    private final List<Consumer<IngestJob>> completionListeners = new CopyOnWriteArrayList<>();
+
+    private final long createTime = System.currentTimeMillis();
+    private volatile long startTime;
+    private volatile long finishTime;
+    /** 任务级失败原因，例如仓库拉取失败，文件还未进入流水线 */
+    private volatile String error;
+
+    private final AtomicInteger finishedFiles = new AtomicInteger();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+    /** 已结束（成功或失败）的文件数，用于判定任务结束 */
+    private final AtomicInteger settledFiles = new AtomicInteger();
+    private final AtomicLong chunks = new AtomicLong();
+    /** 去重丢弃的分片数，完全重复与近似重复分开统计 */
+    private final AtomicLong duplicateChunks = new AtomicLong();
+    private final AtomicLong nearDuplicateChunks = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    /** 提交前扫描过的文件数，仓库导入时由遍历器填写 */
+    private volatile long scannedFiles;
+    /** 提交前被过滤掉的文件数 */
+    private volatile long skippedFiles;
+
+    public IngestJob(String jobId, String ragTag, Path workDir) {
+        this(jobId, ragTag, null, workDir);
+    }
+
+    public IngestJob(String jobId, String ragTag, String origin, Path workDir) {
+        this.jobId = jobId;
+        this.ragTag = ragTag;
+        this.origin = origin;
+        this.workDir = workDir;
+    }
+
+    public IngestFile addFile(String fileName, Path path, long size) {
+        return addFile(fileName, fileName, path, size);
+    }
+
+    /**
+     * @param source 写入分片元数据的来源标识，用于按文件删除向量
+     */
+    public IngestFile addFile(String fileName, String source, Path path, long size) {
+        IngestFile file = new IngestFile(fileName, source, path, size);
+        files.add(file);
+        return file;
+    }
+
+    /**
+     * 记录提交前的文件扫描结果
+     */
+    public void recordScan(long scannedFiles, long skippedFiles) {
+        this.scannedFiles = scannedFiles;
+        this.skippedFiles = skippedFiles;
+    }
+
+    public void onComplete(Consumer<IngestJob> listener) {
+        completionListeners.add(listener);
+    }
+
+    void start() {
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 文件处理结束回调
+     *
+     * @return 整个任务是否因此结束
+     */
+    boolean onFileFinished(IngestFile file) {
+        if (IngestFile.Status.FAILED == file.getStatus()) {
+            failedFiles.incrementAndGet();
+        } else {
+            finishedFiles.incrementAndGet();
+        }
+        if (settledFiles.incrementAndGet() < files.size()) return false;
+        finish();
+        return true;
+    }
+
+    void finish() {
+        this.finishTime = System.currentTimeMillis();
+    }
+
+    void fail(String error) {
+        this.error = error;
+        if (startTime == 0) start();
+        finish();
+    }
+
+    public boolean isFinished() {
+        return finishTime > 0;
+    }
+
+    public Status getStatus() {
+        if (startTime == 0) return Status.PENDING;
+        if (!isFinished()) return Status.RUNNING;
+        if (null != error) return Status.FAILED;
+        if (failedFiles.get() == 0) return Status.COMPLETED;
+        return failedFiles.get() == files.size() ? Status.FAILED : Status.PARTIAL_FAILED;
+    }
+
+    public IngestJobDTO toDTO() {
+        long elapsed = startTime == 0 ? 0 : (isFinished() ? finishTime : System.currentTimeMillis()) - startTime;
+        double seconds = Math.max(elapsed, 1) / 1000D;
+        return IngestJobDTO.builder()
+                .jobId(jobId)
+                .ragTag(ragTag)
+                .status(getStatus().name())
+                .scannedFiles(scannedFiles)
+                .skippedFiles(skippedFiles)
+                .totalFiles(files.size())
+                .finishedFiles(finishedFiles.get())
+                .failedFiles(failedFiles.get())
+                .chunks(chunks.get())
+                .duplicateChunks(duplicateChunks.get())
+                .nearDuplicateChunks(nearDuplicateChunks.get())
+                .bytes(bytes.get())
+                .elapsedMillis(elapsed)
+                .chunksPerSecond(chunks.get() / seconds)
+                .bytesPerSecond(bytes.get() / seconds)
+                .error(error)
+                .files(files.stream().map(IngestFile::toDTO).toList())
+                .build();
+    }
+
+}
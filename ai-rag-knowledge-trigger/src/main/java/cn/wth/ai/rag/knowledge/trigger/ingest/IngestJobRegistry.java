@@ -0,0 +1,64 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: 5th
+ * @Description: 导入任务登记表；进程内保存，已结束的任务超过保留时间后在下次创建任务时清理
+ * @CreateTime: 2026-10-18 14:20
+ */
+public class IngestJobRegistry {
+
+    private final Path spoolRoot;
+    private final long retentionMillis;
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param spoolRoot       上传文件落盘的根目录，每个任务一个子目录
+     * @param retentionMillis 已结束任务的保留时间
+     */
+    public IngestJobRegistry(Path spoolRoot, long retentionMillis) {
+        this.spoolRoot = spoolRoot;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * 创建带工作目录的任务，用于需要落盘上传文件的场景
+     */
+    public IngestJob create(String ragTag) {
+        String jobId = nextJobId();
+        return register(new IngestJob(jobId, ragTag, spoolRoot.resolve(jobId)));
+    }
+
+    /**
+     * 创建直接读取本地文件的任务，任务结束后不清理文件
+     *
+     * @param origin 导入来源，见 {@link IngestJob#getOrigin()}
+     */
+    public IngestJob createForLocalFiles(String ragTag, String origin) {
+        return register(new IngestJob(nextJobId(), ragTag, origin, null));
+    }
+
+    public IngestJob get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private IngestJob register(IngestJob job) {
+        purgeExpired();
+        jobs.put(job.getJobId(), job);
+        return job;
+    }
+
+    private String nextJobId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private void purgeExpired() {
+        long deadline = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishTime() < deadline);
+    }
+
+}
@@ -0,0 +1,305 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import cn.wth.ai.rag.knowledge.trigger.concurrent.ThreadMode;
+import cn.wth.ai.rag.knowledge.trigger.metrics.RagMetrics;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库导入流水线；Tika流式解析并切分 → 去重、向量化 → 写入向量库，每个阶段独立的有界线程池，下游处理不过来时上游阻塞。
+ * 解析、切分按文件，向量化、写库按批次记录耗时指标
+ * @CreateTime: 2026-10-18 14:20
+ */
+@Slf4j
+public class IngestPipeline {
+
+    private final StreamingTikaReader tikaReader = new StreamingTikaReader();
+    private final StreamingTokenSplitter tokenSplitter;
+    private final ChunkDeduplicator chunkDeduplicator;
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreWriter vectorStoreWriter;
+    private final RagMetrics metrics;
+    /** 单次提交到向量化阶段的分片数 */
+    private final int chunkBatchSize;
+
+    /** 任务分发线程，把任务内的文件逐个送入解析阶段 */
+    private final ThreadPoolExecutor dispatcher;
+    private final BoundedStage parseStage;
+    private final BoundedStage embedStage;
+    private final BoundedStage writeStage;
+    /** 所有任务结束时都会调用的回调，例如知识库内容变化后清理缓存 */
+    private final List<Consumer<IngestJob>> jobListeners = new CopyOnWriteArrayList<>();
+
+    public IngestPipeline(StreamingTokenSplitter tokenSplitter, ChunkDeduplicator chunkDeduplicator, EmbeddingModel embeddingModel,
+                          VectorStoreWriter vectorStoreWriter, RagMetrics metrics, Config config, ThreadMode threadMode) {
+        this.tokenSplitter = tokenSplitter;
+        this.chunkDeduplicator = chunkDeduplicator;
+        this.embeddingModel = embeddingModel;
+        this.vectorStoreWriter = vectorStoreWriter;
+        this.metrics = metrics;
+        this.chunkBatchSize = config.getChunkBatchSize();
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getMaxPendingJobs()),
+                threadMode.factory("rag-ingest-dispatcher-"));
+        this.parseStage = new BoundedStage("parse", config.getParseThreads(), config.getQueueCapacity(), threadMode);
+        this.embedStage = new BoundedStage("embed", config.getEmbedThreads(), config.getQueueCapacity(), threadMode);
+        this.writeStage = new BoundedStage("write", config.getWriteThreads(), config.getQueueCapacity(), threadMode);
+    }
+
+    /**
+     * 提交任务，立即返回
+     *
+     * @throws RejectedExecutionException 排队任务数已达上限
+     */
+    public void submit(IngestJob job) {
+        dispatcher.execute(() -> dispatch(job));
+    }
+
+    /**
+     * 注册任务结束回调，对之后结束的所有任务生效
+     */
+    public void onJobFinished(Consumer<IngestJob> listener) {
+        jobListeners.add(listener);
+    }
+
+    /**
+     * 结束尚未提交的任务，例如文件准备阶段失败；同样会触发任务结束回调
+     */
+    public void abort(IngestJob job, String error) {
+        job.fail(error);
+        log.warn("导入任务终止 jobId:{} ragTag:{} 原因:{}", job.getJobId(), job.getRagTag(), error);
+        cleanup(job);
+    }
+
+    private void dispatch(IngestJob job) {
+        job.start();
+        log.info("导入任务开始 jobId:{} ragTag:{} 文件数:{}", job.getJobId(), job.getRagTag(), job.getFiles().size());
+        if (job.getFiles().isEmpty()) {
+            job.finish();
+            cleanup(job);
+            return;
+        }
+        for (IngestFile file : job.getFiles()) {
+            try {
+                parseStage.submit(() -> parse(job, file));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(job, file, "任务被中断");
+            }
+        }
+    }
+
+    /**
+     * 边解析边切分：Tika 回调的文本直接进入切分会话，每凑满一批分片就提交到向量化阶段，向量化阶段排满时解析线程阻塞；
+     * 单个文件在内存中只有切分缓冲区和在途的几批分片，与文件大小无关；
+     * 切分耗时由切分会话统计，提交批次（含等待向量化阶段）的耗时单独扣除，其余计为 Tika 解析耗时
+     */
+    private void parse(IngestJob job, IngestFile file) {
+        file.setStatus(IngestFile.Status.PARSING);
+        long start = System.nanoTime();
+        // 切分过程中提交批次的耗时
+        long[] submitNanos = {0};
+        // 解析过程本身占一个批次计数，解析结束前即使已提交的批次全部写完也不会判定文件完成
+        file.getPendingBatches().set(1);
+        List<Document> batch = new ArrayList<>(chunkBatchSize);
+        StreamingTokenSplitter.Session session = tokenSplitter.open(tokenSplitter.isCode(file.getSource()), text -> {
+            if (file.isFinished()) throw new CancellationException();
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("knowledge", job.getRagTag());
+            metadata.put("source", file.getSource());
+            // 写入的任务，全量重建结束时据此区分新旧分片
+            metadata.put("job", job.getJobId());
+            if (null != job.getOrigin()) {
+                metadata.put("origin", job.getOrigin());
+            }
+            batch.add(new Document(text, metadata));
+            if (batch.size() >= chunkBatchSize) {
+                long submitStart = System.nanoTime();
+                submitBatch(job, file, new ArrayList<>(batch));
+                batch.clear();
+                submitNanos[0] += System.nanoTime() - submitStart;
+            }
+        });
+        try {
+            if (tikaReader.read(file.getPath(), session)) {
+                log.warn("导入文件分片数达到上限，其余内容未导入 jobId:{} file:{} 分片数:{}", job.getJobId(), file.getFileName(), session.chunks());
+            }
+            if (!batch.isEmpty()) {
+                long submitStart = System.nanoTime();
+                submitBatch(job, file, new ArrayList<>(batch));
+                batch.clear();
+                // 最后一批的提交不计入解析耗时
+                start += System.nanoTime() - submitStart;
+            }
+        } catch (Exception e) {
+            if (file.isFinished()) return;
+            log.error("导入任务解析文件失败 jobId:{} file:{}", job.getJobId(), file.getFileName(), e);
+            fail(job, file, "解析失败：" + e.getMessage());
+            return;
+        }
+        metrics.recordIngest(RagMetrics.Stage.SPLIT, job.getRagTag(), session.splitNanos() - submitNanos[0]);
+        metrics.recordIngest(RagMetrics.Stage.PARSE, job.getRagTag(), System.nanoTime() - start - session.splitNanos());
+        job.getBytes().addAndGet(file.getSize());
+        file.setStatus(IngestFile.Status.EMBEDDING);
+        if (file.getPendingBatches().decrementAndGet() == 0) {
+            succeed(job, file);
+        }
+    }
+
+    private void submitBatch(IngestJob job, IngestFile file, List<Document> batch) {
+        file.getPendingBatches().incrementAndGet();
+        file.setChunks(file.getChunks() + batch.size());
+        try {
+            embedStage.submit(() -> embed(job, file, batch));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("任务被中断");
+        }
+    }
+
+    /**
+     * 先去掉知识库中已有的重复内容，只对剩下的分片向量化；整批都重复时直接计为完成
+     */
+    private void embed(IngestJob job, IngestFile file, List<Document> batch) {
+        if (file.isFinished()) return;
+        try {
+            ChunkDeduplicator.Result deduplicated = chunkDeduplicator.filter(job.getRagTag(), file.getSource(), batch);
+            file.getFingerprints().addAll(deduplicated.getFingerprints());
+            if (file.isFinished()) {
+                // 文件在去重期间失败，撤回刚登记的指纹
+                releaseFingerprints(job, file);
+                return;
+            }
+            recordDuplicates(job, file, deduplicated);
+            List<Document> kept = deduplicated.getKept();
+            if (kept.isEmpty()) {
+                if (file.getPendingBatches().decrementAndGet() == 0) {
+                    succeed(job, file);
+                }
+                return;
+            }
+            long start = System.nanoTime();
+            List<float[]> embeddings = embeddingModel.embed(kept.stream().map(Document::getText).toList());
+            metrics.recordIngest(RagMetrics.Stage.EMBED, job.getRagTag(), System.nanoTime() - start);
+            writeStage.submit(() -> write(job, file, kept, embeddings));
+        } catch (Exception e) {
+            log.error("导入任务向量化失败 jobId:{} file:{}", job.getJobId(), file.getFileName(), e);
+            fail(job, file, "向量化失败：" + e.getMessage());
+        }
+    }
+
+    private void write(IngestJob job, IngestFile file, List<Document> batch, List<float[]> embeddings) {
+        if (file.isFinished()) return;
+        try {
+            long start = System.nanoTime();
+            vectorStoreWriter.write(batch, embeddings);
+            metrics.recordIngest(RagMetrics.Stage.WRITE, job.getRagTag(), System.nanoTime() - start);
+            metrics.countChunks(job.getRagTag(), batch.size());
+            file.getWrittenChunks().addAndGet(batch.size());
+            job.getChunks().addAndGet(batch.size());
+            if (file.getPendingBatches().decrementAndGet() == 0) {
+                succeed(job, file);
+            }
+        } catch (Exception e) {
+            log.error("导入任务写入向量库失败 jobId:{} file:{}", job.getJobId(), file.getFileName(), e);
+            fail(job, file, "写入失败：" + e.getMessage());
+        }
+    }
+
+    private void recordDuplicates(IngestJob job, IngestFile file, ChunkDeduplicator.Result deduplicated) {
+        if (deduplicated.getExactDuplicates() > 0) {
+            file.getDuplicateChunks().addAndGet(deduplicated.getExactDuplicates());
+            job.getDuplicateChunks().addAndGet(deduplicated.getExactDuplicates());
+        }
+        if (deduplicated.getNearDuplicates() > 0) {
+            file.getNearDuplicateChunks().addAndGet(deduplicated.getNearDuplicates());
+            job.getNearDuplicateChunks().addAndGet(deduplicated.getNearDuplicates());
+        }
+    }
+
+    /**
+     * 失败文件的分片没有全部写入，撤回它登记的指纹，重新导入时不会被当成重复
+     */
+    private void releaseFingerprints(IngestJob job, IngestFile file) {
+        if (IngestFile.Status.FAILED != file.getStatus()) return;
+        List<String> fingerprints = new ArrayList<>();
+        for (String fingerprint; null != (fingerprint = file.getFingerprints().poll()); ) {
+            fingerprints.add(fingerprint);
+        }
+        chunkDeduplicator.release(job.getRagTag(), file.getSource(), fingerprints);
+    }
+
+    private void succeed(IngestJob job, IngestFile file) {
+        if (file.finish(IngestFile.Status.DONE, null) && job.onFileFinished(file)) {
+            cleanup(job);
+        }
+    }
+
+    private void fail(IngestJob job, IngestFile file, String error) {
+        if (!file.finish(IngestFile.Status.FAILED, error)) return;
+        releaseFingerprints(job, file);
+        if (job.onFileFinished(file)) {
+            cleanup(job);
+        }
+    }
+
+    private void cleanup(IngestJob job) {
+        if (null != job.getWorkDir()) {
+            FileUtils.deleteQuietly(job.getWorkDir().toFile());
+        }
+        log.info("导入任务结束 jobId:{} ragTag:{} 状态:{} 分片数:{} 完全重复:{} 近似重复:{} 耗时:{}ms", job.getJobId(), job.getRagTag(),
+                job.getStatus(), job.getChunks().get(), job.getDuplicateChunks().get(), job.getNearDuplicateChunks().get(),
+                job.getFinishTime() - job.getStartTime());
+        List<Consumer<IngestJob>> listeners = new ArrayList<>(job.getCompletionListeners());
+        listeners.addAll(jobListeners);
+        for (Consumer<IngestJob> listener : listeners) {
+            try {
+                listener.accept(job);
+            } catch (Exception e) {
+                log.error("导入任务结束回调失败 jobId:{}", job.getJobId(), e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        parseStage.shutdown();
+        embedStage.shutdown();
+        writeStage.shutdown();
+    }
+
+    /**
+     * 流水线参数
+     */
+    @Data
+    public static class Config {
+        /** 解析线程数，解析与切分在同一线程上流式进行 */
+        private int parseThreads = 2;
+        /** 向量化线程数 */
+        private int embedThreads = 4;
+        /** 写库线程数 */
+        private int writeThreads = 2;
+        /** 每个阶段的排队上限 */
+        private int queueCapacity = 16;
+        /** 单次提交到向量化阶段的分片数 */
+        private int chunkBatchSize = 32;
+        /** 排队等待分发的任务上限 */
+        private int maxPendingJobs = 64;
+    }
+
+}
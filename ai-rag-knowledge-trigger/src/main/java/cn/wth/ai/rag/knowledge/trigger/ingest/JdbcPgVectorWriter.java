@@ -0,0 +1,95 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import com.alibaba.fastjson.JSON;
+import com.pgvector.PGvector;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @Author: 5th
+ * @Description: 基于 JdbcTemplate 批量写入 pgvector 表，表结构与 PgVectorStore 一致（id, content, metadata, embedding）
+ * @CreateTime: 2026-10-18 14:20
+ */
+public class JdbcPgVectorWriter implements VectorStoreWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertSql;
+    private final String deleteBySourcesSql;
+    private final String deleteByTagSql;
+    private final String deleteByJobSql;
+    private final String deleteByOriginExceptSql;
+
+    public JdbcPgVectorWriter(JdbcTemplate jdbcTemplate, String vectorTableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertSql = "INSERT INTO " + vectorTableName + " (id, content, metadata, embedding) VALUES (?, ?, ?::jsonb, ?) "
+                + "ON CONFLICT (id) DO UPDATE SET content = ? , metadata = ?::jsonb , embedding = ? ";
+        this.deleteBySourcesSql = "DELETE FROM " + vectorTableName + " WHERE metadata->>'knowledge' = ? AND metadata->>'source' = ANY (?)";
+        this.deleteByTagSql = "DELETE FROM " + vectorTableName + " WHERE metadata->>'knowledge' = ?";
+        this.deleteByJobSql = "DELETE FROM " + vectorTableName + " WHERE metadata->>'knowledge' = ? AND metadata->>'job' = ?";
+        this.deleteByOriginExceptSql = "DELETE FROM " + vectorTableName + " WHERE metadata->>'knowledge' = ? AND metadata->>'origin' = ? "
+                + "AND metadata->>'job' IS DISTINCT FROM ?";
+    }
+
+    @Override
+    public void write(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("documents size " + documents.size() + " != embeddings size " + embeddings.size());
+        }
+        jdbcTemplate.batchUpdate(insertSql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Document document = documents.get(i);
+                String content = document.getText();
+                String metadata = JSON.toJSONString(document.getMetadata());
+                PGvector embedding = new PGvector(embeddings.get(i));
+
+                ps.setObject(1, UUID.fromString(document.getId()));
+                ps.setString(2, content);
+                ps.setString(3, metadata);
+                ps.setObject(4, embedding);
+                ps.setString(5, content);
+                ps.setString(6, metadata);
+                ps.setObject(7, embedding);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return documents.size();
+            }
+        });
+    }
+
+    @Override
+    public void deleteBySources(String ragTag, Collection<String> sources) {
+        if (sources.isEmpty()) return;
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(deleteBySourcesSql);
+            ps.setString(1, ragTag);
+            ps.setArray(2, connection.createArrayOf("text", sources.toArray()));
+            return ps;
+        });
+    }
+
+    @Override
+    public void deleteByTag(String ragTag) {
+        jdbcTemplate.update(deleteByTagSql, ragTag);
+    }
+
+    @Override
+    public void deleteByJob(String ragTag, String jobId) {
+        jdbcTemplate.update(deleteByJobSql, ragTag, jobId);
+    }
+
+    @Override
+    public void deleteByOriginExcept(String ragTag, String origin, String jobId) {
+        jdbcTemplate.update(deleteByOriginExceptSql, ragTag, origin, jobId);
+    }
+
+}
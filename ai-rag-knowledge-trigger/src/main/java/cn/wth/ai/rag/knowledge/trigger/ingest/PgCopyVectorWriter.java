@@ -0,0 +1,214 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @Author: 5th
+ * @Description: 基于 COPY ... FROM STDIN (FORMAT BINARY) 批量写入 pgvector 表；一批分片一条 COPY 命令，按二进制格式逐行编码后分段发送，
+ * 数据库端不再逐行解析 SQL 和文本向量。COPY 不支持 ON CONFLICT，分片 id 由流水线随机生成，不会与已有行冲突；删除沿用 JdbcPgVectorWriter
+ * @CreateTime: 2026-10-19 00:20
+ */
+public class PgCopyVectorWriter implements VectorStoreWriter {
+
+    /** 二进制 COPY 文件头：签名、flags、扩展区长度 */
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    /** 每行的字段数：id, content, metadata, embedding */
+    private static final short FIELDS = 4;
+    /** jsonb 二进制格式的版本号 */
+    private static final byte JSONB_VERSION = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final String copySql;
+    /** 攒够该字节数就发送一段 COPY 数据 */
+    private final int bufferSize;
+    private final JdbcPgVectorWriter jdbcWriter;
+    /** metadata 列是否为 jsonb，第一次写入时从表结构读取 */
+    private volatile Boolean jsonb;
+
+    public PgCopyVectorWriter(JdbcTemplate jdbcTemplate, String vectorTableName, Config config) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = vectorTableName;
+        this.copySql = "COPY " + vectorTableName + " (id, content, metadata, embedding) FROM STDIN (FORMAT BINARY)";
+        this.bufferSize = Math.max(config.getBufferKb(), 8) * 1024;
+        this.jdbcWriter = new JdbcPgVectorWriter(jdbcTemplate, vectorTableName);
+    }
+
+    @Override
+    public void write(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("documents size " + documents.size() + " != embeddings size " + embeddings.size());
+        }
+        if (documents.isEmpty()) return;
+        boolean jsonbMetadata = isJsonb();
+        jdbcTemplate.execute((Connection connection) -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+            try {
+                CopyBuffer buffer = new CopyBuffer(bufferSize);
+                buffer.put(HEADER);
+                for (int i = 0; i < documents.size(); i++) {
+                    writeRow(buffer, documents.get(i), embeddings.get(i), jsonbMetadata);
+                    if (buffer.size >= bufferSize) {
+                        buffer.flush(copyIn);
+                    }
+                }
+                // 文件尾
+                buffer.putShort((short) -1);
+                buffer.flush(copyIn);
+                long rows = copyIn.endCopy();
+                if (rows != documents.size()) {
+                    throw new IllegalStateException("COPY rows " + rows + " != documents size " + documents.size());
+                }
+                return rows;
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deleteBySources(String ragTag, Collection<String> sources) {
+        jdbcWriter.deleteBySources(ragTag, sources);
+    }
+
+    @Override
+    public void deleteByTag(String ragTag) {
+        jdbcWriter.deleteByTag(ragTag);
+    }
+
+    @Override
+    public void deleteByJob(String ragTag, String jobId) {
+        jdbcWriter.deleteByJob(ragTag, jobId);
+    }
+
+    @Override
+    public void deleteByOriginExcept(String ragTag, String origin, String jobId) {
+        jdbcWriter.deleteByOriginExcept(ragTag, origin, jobId);
+    }
+
+    /**
+     * 一行的二进制编码：字段数，之后每个字段为 长度 + 内容；uuid 为 16 字节，text/json 为 UTF-8，
+     * jsonb 多一个版本字节，vector 为 维度(int16) + 保留(int16) + float4 数组，均为大端序
+     */
+    private static void writeRow(CopyBuffer buffer, Document document, float[] embedding, boolean jsonbMetadata) {
+        buffer.putShort(FIELDS);
+
+        UUID id = UUID.fromString(document.getId());
+        buffer.putInt(16);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+
+        byte[] content = document.getText().getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(content.length);
+        buffer.put(content);
+
+        byte[] metadata = JSON.toJSONString(document.getMetadata()).getBytes(StandardCharsets.UTF_8);
+        if (jsonbMetadata) {
+            buffer.putInt(metadata.length + 1);
+            buffer.putByte(JSONB_VERSION);
+        } else {
+            buffer.putInt(metadata.length);
+        }
+        buffer.put(metadata);
+
+        buffer.putInt(4 + embedding.length * Float.BYTES);
+        buffer.putShort((short) embedding.length);
+        buffer.putShort((short) 0);
+        for (float value : embedding) {
+            buffer.putInt(Float.floatToIntBits(value));
+        }
+    }
+
+    private boolean isJsonb() {
+        if (null == jsonb) {
+            String type = jdbcTemplate.queryForObject("SELECT format_type(atttypid, atttypmod) FROM pg_attribute WHERE attrelid = ?::regclass AND attname = 'metadata'",
+                    String.class, tableName);
+            jsonb = "jsonb".equals(type);
+        }
+        return jsonb;
+    }
+
+    /**
+     * 可扩容的发送缓冲区，一次 write 内复用
+     */
+    private static class CopyBuffer {
+
+        private byte[] bytes;
+        private int size;
+
+        CopyBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void put(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void putByte(byte value) {
+            ensure(1);
+            bytes[size++] = value;
+        }
+
+        void putShort(short value) {
+            ensure(2);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        void flush(CopyIn copyIn) throws SQLException {
+            if (size == 0) return;
+            copyIn.writeToCopy(bytes, 0, size);
+            size = 0;
+        }
+
+        private void ensure(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+
+    /**
+     * COPY 写入参数
+     */
+    @Data
+    public static class Config {
+        /** 是否使用 COPY 写入，关闭时使用批量 INSERT，默认为false */
+        private boolean enabled = false;
+        /** 每段 COPY 数据的大小（KB），默认为256 */
+        private int bufferKb = 256;
+        /** 全量导入（仓库首次索引或重建）每个知识库一张表时，先删掉向量索引、导入结束后一次性重建，默认为false */
+        private boolean deferIndexBuild = false;
+    }
+
+}
@@ -0,0 +1,136 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * @Author: 5th
+ * @Description: 流式 Tika 解析；解析出的文本通过 ContentHandler 回调直接追加到切分会话，不在内存中拼出整篇文本。
+ * 与 TikaDocumentReader 一样使用自动识别格式的解析器，并把连续的空白行合并为一行
+ * @CreateTime: 2026-10-18 22:30
+ */
+public class StreamingTikaReader {
+
+    /**
+     * 自动识别格式的解析器在第一次解析时才创建，它会加载 Tika 的全部解析器，放在启动阶段会明显拖慢启动；解析器本身线程安全
+     */
+    private static final class Parsers {
+        static final Parser AUTO_DETECT = new AutoDetectParser();
+    }
+
+    /**
+     * 解析文件，文本按解析顺序追加到切分会话；会话分片数达到上限时提前结束解析
+     *
+     * @return 是否因为分片数达到上限而没有解析完
+     */
+    public boolean read(Path path, StreamingTokenSplitter.Session session) throws IOException, TikaException, SAXException {
+        TextHandler handler = new TextHandler(session);
+        Metadata metadata = new Metadata();
+        try (InputStream stream = TikaInputStream.get(path, metadata)) {
+            Parsers.AUTO_DETECT.parse(stream, handler, metadata, new ParseContext());
+        } catch (SAXException | TikaException e) {
+            // 个别解析器会把回调抛出的异常包装成 TikaException，以会话状态为准
+            if (session.isFull()) return true;
+            throw e;
+        }
+        session.finish();
+        return false;
+    }
+
+    /**
+     * 把 Tika 输出的 XHTML 事件转成纯文本：只取正文字符，跳过 script、style 的内容
+     */
+    private static class TextHandler extends DefaultHandler {
+
+        private final StreamingTokenSplitter.Session session;
+        /** 当前行开头的空白，确定该行有内容后才输出 */
+        private final StringBuilder pendingBlank = new StringBuilder();
+        private final char[] newline = {'\n'};
+        private boolean lineHasText;
+        /** 连续的空白行数 */
+        private int blankLines;
+        /** 所在的 script、style 元素层数 */
+        private int skipDepth;
+
+        TextHandler(StreamingTokenSplitter.Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (isSkipped(localName)) skipDepth++;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (isSkipped(localName) && skipDepth > 0) skipDepth--;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (skipDepth > 0) return;
+            if (session.isFull()) throw new StopParsingException();
+            int from = start;
+            int end = start + length;
+            for (int i = start; i < end; i++) {
+                char c = ch[i];
+                if (c == '\n') {
+                    if (lineHasText) {
+                        session.append(ch, from, i + 1 - from);
+                        blankLines = 0;
+                    } else if (++blankLines == 1) {
+                        session.append(newline, 0, 1);
+                    }
+                    pendingBlank.setLength(0);
+                    lineHasText = false;
+                    from = i + 1;
+                } else if (!lineHasText) {
+                    if (Character.isWhitespace(c)) {
+                        pendingBlank.append(c);
+                    } else {
+                        // 行内第一个非空白字符，之前暂存的行首空白一起输出
+                        lineHasText = true;
+                        if (!pendingBlank.isEmpty()) {
+                            session.append(pendingBlank.toString());
+                            pendingBlank.setLength(0);
+                        }
+                        from = i;
+                    }
+                }
+            }
+            if (lineHasText && from < end) {
+                session.append(ch, from, end - from);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        private static boolean isSkipped(String localName) {
+            return "script".equals(localName) || "style".equals(localName);
+        }
+    }
+
+    /**
+     * 分片数达到上限时中断 Tika 解析
+     */
+    private static class StopParsingException extends SAXException {
+        StopParsingException() {
+            super("chunk limit reached");
+        }
+    }
+
+}
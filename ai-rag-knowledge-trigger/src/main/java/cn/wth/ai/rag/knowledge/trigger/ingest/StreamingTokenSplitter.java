@@ -0,0 +1,375 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentTransformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * @Author: 5th
+ * @Description: Token 切分；默认规则与 TokenTextSplitter 一致（按 token 数截取窗口，窗口内最后一个句末标点或换行处断开），
+ * 代码文件优先在类、方法声明前的空行处断开，其次是段落和行，可配置相邻分片的重叠 token 数。
+ * 不把整篇文本编码成 token 列表：按 cl100k 的分词规则（Cl100kPieces）在原文上逐个扫描片段、累加各片段的 token 数（缓存重复片段），凑满 chunkSize 即得到窗口的字符位置，
+ * 分片直接按字符位置从原文截取，不再解码。既可以整篇切分（DocumentTransformer），也可以分多次追加文本流式切分
+ * @CreateTime: 2026-10-18 22:30
+ */
+@Slf4j
+public class StreamingTokenSplitter implements DocumentTransformer {
+
+    /**
+     * 词表在第一次切分时才加载（约 1.7MB 的 BPE 表），应用启动时创建切分器不再加载
+     */
+    private static final class Cl100k {
+        static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    }
+    /** 流式切分时，缓冲区末尾这么多字符内的片段可能随后续文本改变，不参与计数 */
+    private static final int WINDOW_MARGIN = 32;
+    private static final ThreadLocal<PieceCache> PIECE_CACHE = ThreadLocal.withInitial(PieceCache::new);
+    /** 按文件扩展名识别代码文件 */
+    private static final Set<String> CODE_EXTENSIONS = Set.of(
+            "java", "kt", "kts", "scala", "groovy", "py", "go", "rs", "js", "jsx", "ts", "tsx", "vue", "c", "h", "cc", "cpp", "hpp",
+            "cs", "rb", "php", "swift", "m", "mm", "dart", "lua", "sh", "sql", "proto");
+    /** 声明、注解或注释开头的行，缩进不超过一级 */
+    private static final Pattern DECLARATION = Pattern.compile("[ \\t]{0,4}(?:(?:public|protected|private|internal|static|final|abstract"
+            + "|export|async|class|interface|enum|record|object|def|func|function|fn|impl|struct|trait|type|module|namespace|package|import)\\b"
+            + "|@[A-Za-z]|/\\*|//|#)");
+
+    private final Config config;
+
+    public StreamingTokenSplitter(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * 整篇切分，分片复制原文档的元数据；元数据 source 的扩展名为代码文件时按代码边界切分
+     */
+    @Override
+    public List<Document> apply(List<Document> documents) {
+        List<Document> chunks = new ArrayList<>();
+        for (Document document : documents) {
+            if (null == document.getText()) continue;
+            int before = chunks.size();
+            split(document.getText(), isCode(document.getMetadata().get("source")), text -> {
+                chunks.add(new Document(text, new HashMap<>(document.getMetadata())));
+            });
+            log.debug("文档切分完成 id:{} 分片数:{}", document.getId(), chunks.size() - before);
+        }
+        return chunks;
+    }
+
+    /**
+     * 整篇切分，窗口直接从原文截取
+     *
+     * @return 切出的分片数
+     */
+    public int split(String text, boolean code, Consumer<String> sink) {
+        Cutter cutter = new Cutter(code, sink);
+        int pos = 0;
+        while (pos < text.length() && !cutter.isFull()) {
+            pos = cutter.cut(text, pos, true);
+        }
+        return cutter.chunks;
+    }
+
+    /**
+     * 为一个文件创建流式切分会话
+     *
+     * @param code 是否按代码边界切分，见 {@link #isCode(Object)}
+     * @param sink 接收切分出的分片文本，在追加文本的线程上调用
+     */
+    public Session open(boolean code, Consumer<String> sink) {
+        return new Session(new Cutter(code, sink));
+    }
+
+    /**
+     * 是否开启了代码边界切分且来源是代码文件
+     */
+    public boolean isCode(Object source) {
+        if (!config.isCodeAware() || null == source) return false;
+        String name = source.toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && dot > name.lastIndexOf('/') && CODE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 单个文件的流式切分状态，非线程安全；缓冲区只保留还没切出的文本，不到两个分片
+     */
+    public class Session {
+
+        private final Cutter cutter;
+        private final StringBuilder buffer = new StringBuilder();
+        /** 缓冲区达到这个长度再尝试切分，按已有文本的 token 密度估算，避免每次追加都重新编码 */
+        private int retryLength = config.getChunkSize();
+        /** 切分累计耗时，包含 sink 回调 */
+        private long splitNanos;
+
+        private Session(Cutter cutter) {
+            this.cutter = cutter;
+        }
+
+        public void append(char[] text, int start, int length) {
+            if (cutter.isFull()) return;
+            buffer.append(text, start, length);
+            if (buffer.length() >= retryLength) {
+                drain(false);
+            }
+        }
+
+        public void append(String text) {
+            append(text.toCharArray(), 0, text.length());
+        }
+
+        /**
+         * 文本结束，切出缓冲区中剩余的分片
+         */
+        public void finish() {
+            drain(true);
+            buffer.setLength(0);
+        }
+
+        /**
+         * 已切出的分片数
+         */
+        public int chunks() {
+            return cutter.chunks;
+        }
+
+        /**
+         * 分片数达到上限，之后追加的文本被丢弃
+         */
+        public boolean isFull() {
+            return cutter.isFull();
+        }
+
+        /**
+         * 切分累计耗时（纳秒），包含 sink 回调的耗时；只在缓冲区够长、真正切分时计时，追加文本不计时
+         */
+        public long splitNanos() {
+            return splitNanos;
+        }
+
+        private void drain(boolean last) {
+            long start = System.nanoTime();
+            int pos = 0;
+            while (pos < buffer.length() && !cutter.isFull()) {
+                int next = cutter.cut(buffer, pos, last);
+                if (next < 0) break;
+                pos = next;
+            }
+            buffer.delete(0, pos);
+            retryLength = buffer.length() + cutter.wanted;
+            splitNanos += System.nanoTime() - start;
+        }
+
+    }
+
+    /**
+     * 从指定位置切出一个分片
+     */
+    private class Cutter {
+
+        private final boolean code;
+        private final Consumer<String> sink;
+        private final PieceCache cache = PIECE_CACHE.get();
+        private int chunks;
+        /** 上次剩余文本不足一个窗口时，估算还需要追加的字符数 */
+        private int wanted = config.getChunkSize();
+        /** 计算重叠时复用的片段起点与 token 数 */
+        private int[] pieceStarts = new int[256];
+        private int[] pieceTokens = new int[256];
+
+        Cutter(boolean code, Consumer<String> sink) {
+            this.code = code;
+            this.sink = sink;
+        }
+
+        boolean isFull() {
+            return chunks >= config.getMaxNumChunks();
+        }
+
+        /**
+         * @param last text 之后是否还有文本
+         * @return 下一个分片的起点；剩余文本不足一个窗口、且之后还有文本时返回 -1
+         */
+        int cut(CharSequence text, int pos, boolean last) {
+            int limit = text.length();
+            int end = windowEnd(text, pos, limit, last);
+            if (end < 0) return -1;
+
+            int boundary = code ? codeBoundary(text, pos, end) : -1;
+            if (boundary < 0) {
+                boundary = sentenceBoundary(text, pos, end);
+            }
+            if (boundary > 0) {
+                end = boundary;
+            }
+            String raw = text.subSequence(pos, end).toString();
+            String chunk = config.isKeepSeparator() ? raw.trim() : raw.replace(System.lineSeparator(), " ").trim();
+            if (chunk.length() > config.getMinChunkLengthToEmbed()) {
+                chunks++;
+                sink.accept(chunk);
+            }
+            return end == limit && last ? end : overlapStart(text, pos, end);
+        }
+
+        /**
+         * 从 pos 开始凑满 chunkSize 个 token 的位置；逐个片段累加 token 数，跨过上限的片段单独编码取前缀
+         */
+        private int windowEnd(CharSequence text, int pos, int limit, boolean last) {
+            int chunkSize = config.getChunkSize();
+            int tokens = 0;
+            for (int start = pos, end; start < limit; start = end) {
+                end = Cl100kPieces.next(text, start, limit);
+                // 缓冲区末尾的片段可能随后续文本变长，等文本够了再切
+                if (!last && end > limit - WINDOW_MARGIN) break;
+                int count = cache.count(text, start, end);
+                if (tokens + count > chunkSize) {
+                    if (tokens == chunkSize) return start;
+                    String piece = text.subSequence(start, end).toString();
+                    return Math.max(pos + 1, start + Cl100k.ENCODING.encodeOrdinary(piece, chunkSize - tokens).getLastProcessedCharacterIndex() + 1);
+                }
+                tokens += count;
+            }
+            if (last) return limit;
+            // 按已有文本的 token 密度估算凑满一个窗口还需要的字符数
+            long chars = limit - pos;
+            wanted = (int) Math.min(Integer.MAX_VALUE, chars * (chunkSize + 1) / Math.max(1, tokens) - chars + WINDOW_MARGIN);
+            return -1;
+        }
+
+        /**
+         * 窗口内最后一个句末标点或换行之后，与 TokenTextSplitter 相同：位置需超过 minChunkSizeChars
+         */
+        private int sentenceBoundary(CharSequence text, int pos, int end) {
+            for (int i = end - 1; i - pos > config.getMinChunkSizeChars(); i--) {
+                char c = text.charAt(i);
+                if (c == '.' || c == '?' || c == '!' || c == '\n') return i + 1;
+            }
+            return -1;
+        }
+
+        /**
+         * 代码的断开位置，从后往前找行首：空行之后的声明、注解或注释行优先，其次是空行之后的任意行，再次是任意行
+         */
+        private int codeBoundary(CharSequence text, int pos, int end) {
+            int afterBlank = -1;
+            int anyLine = -1;
+            for (int i = end - 1; i - pos >= config.getMinChunkSizeChars(); i--) {
+                if (text.charAt(i) != '\n') continue;
+                int lineStart = i + 1;
+                if (anyLine < 0) anyLine = lineStart;
+                int j = i - 1;
+                while (j > pos && text.charAt(j) != '\n' && Character.isWhitespace(text.charAt(j))) j--;
+                if (j <= pos || text.charAt(j) != '\n') continue;
+                if (lineStart < end && DECLARATION.matcher(text).region(lineStart, end).lookingAt()) return lineStart;
+                if (afterBlank < 0) afterBlank = lineStart;
+            }
+            return afterBlank >= 0 ? afterBlank : anyLine;
+        }
+
+        /**
+         * 下一个分片的起点；配置了重叠时从本分片最后 overlap 个 token 所在的片段开始
+         */
+        private int overlapStart(CharSequence text, int pos, int end) {
+            int overlap = config.getOverlap();
+            if (overlap <= 0) return end;
+            int count = 0;
+            int total = 0;
+            for (int start = pos, pieceEnd; start < end; start = pieceEnd) {
+                pieceEnd = Cl100kPieces.next(text, start, end);
+                if (count == pieceStarts.length) {
+                    pieceStarts = Arrays.copyOf(pieceStarts, count * 2);
+                    pieceTokens = Arrays.copyOf(pieceTokens, count * 2);
+                }
+                pieceStarts[count] = start;
+                pieceTokens[count] = cache.count(text, start, pieceEnd);
+                total += pieceTokens[count++];
+            }
+            if (total <= overlap * 2) return end;
+            int tokens = 0;
+            for (int i = count - 1; i > 0; i--) {
+                tokens += pieceTokens[i];
+                if (tokens >= overlap) return pieceStarts[i];
+            }
+            return end;
+        }
+
+    }
+
+    /**
+     * 片段 → token 数的直接映射缓存；BPE 只在片段内合并，分片的 token 数等于各片段之和。
+     * 单词、缩进、标点在文本中大量重复，命中时只计算哈希、比较字符，不调用编码器也不分配对象；每个线程一份，跨文档复用
+     */
+    private static final class PieceCache {
+
+        private static final int SIZE = 1 << 15;
+        /** 超过该长度的片段不缓存 */
+        private static final int MAX_LENGTH = 24;
+
+        private final String[] keys = new String[SIZE];
+        private final int[] counts = new int[SIZE];
+
+        int count(CharSequence text, int start, int end) {
+            int length = end - start;
+            if (length > MAX_LENGTH) {
+                return Cl100k.ENCODING.countTokensOrdinary(text.subSequence(start, end).toString());
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            int slot = (hash ^ hash >>> 16) & (SIZE - 1);
+            String key = keys[slot];
+            if (null != key && key.length() == length && matches(key, text, start)) {
+                return counts[slot];
+            }
+            String piece = text.subSequence(start, end).toString();
+            int count = Cl100k.ENCODING.countTokensOrdinary(piece);
+            keys[slot] = piece;
+            counts[slot] = count;
+            return count;
+        }
+
+        private static boolean matches(String key, CharSequence text, int start) {
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != text.charAt(start + i)) return false;
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * 切分参数，默认值与 TokenTextSplitter 相同
+     */
+    @Data
+    public static class Config {
+        /** 每个分片的 token 数上限，默认为800 */
+        private int chunkSize = 800;
+        /** 相邻分片重叠的 token 数，应小于 chunkSize 的一半，默认为0 */
+        private int overlap = 0;
+        /** 分片达到该字符数后才在句末标点处断开，默认为350 */
+        private int minChunkSizeChars = 350;
+        /** 去掉首尾空白后不超过该字符数的分片丢弃，默认为5 */
+        private int minChunkLengthToEmbed = 5;
+        /** 单个文件的分片数上限，超过的部分不再解析，默认为10000 */
+        private int maxNumChunks = 10000;
+        /** 是否保留分片内的换行，默认为true */
+        private boolean keepSeparator = true;
+        /** 代码文件是否按类、方法、段落边界切分，默认为true */
+        private boolean codeAware = true;
+    }
+
+}
@@ -0,0 +1,57 @@
+package cn.wth.ai.rag.knowledge.trigger.ingest;
+
+import org.springframework.ai.document.Document;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 向量写入接口；嵌入由流水线的 embedding 阶段完成，这里只负责把分片和向量落库
+ * @CreateTime: 2026-10-18 14:20
+ */
+public interface VectorStoreWriter {
+
+    /**
+     * @param documents  分片文档
+     * @param embeddings 与 documents 一一对应的向量
+     */
+    void write(List<Document> documents, List<float[]> embeddings);
+
+    /**
+     * 删除知识库下指定来源的全部分片
+     *
+     * @param ragTag  知识库标签，对应元数据 knowledge
+     * @param sources 来源，对应元数据 source
+     */
+    void deleteBySources(String ragTag, Collection<String> sources);
+
+    /**
+     * 删除知识库下的全部分片
+     */
+    void deleteByTag(String ragTag);
+
+    /**
+     * 删除知识库下由指定导入任务写入的分片，对应元数据 job；全量重建失败时撤掉写了一半的新分片
+     */
+    void deleteByJob(String ragTag, String jobId);
+
+    /**
+     * 删除知识库下来自指定来源、且不是由指定导入任务写入的分片，对应元数据 origin、job；全量重建成功后清理同一来源的旧分片，
+     * 上传的文件和其他来源的分片不受影响
+     */
+    void deleteByOriginExcept(String ragTag, String origin, String jobId);
+
+    /**
+     * 知识库开始全量导入前调用，实现可以先去掉向量索引，导入结束后一次性构建，避免逐行维护索引；默认不处理
+     */
+    default void beginBulkLoad(String ragTag) {
+    }
+
+    /**
+     * 全量导入结束后调用，无论成功与否；补建 beginBulkLoad 去掉的索引
+     */
+    default void endBulkLoad(String ragTag) {
+    }
+
+}
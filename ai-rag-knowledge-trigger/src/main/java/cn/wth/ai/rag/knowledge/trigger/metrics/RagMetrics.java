@@ -0,0 +1,191 @@
+package cn.wth.ai.rag.knowledge.trigger.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import reactor.core.publisher.Flux;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * @Author: 5th
+ * @Description: 导入与问答热路径上的指标，按 ragTag、model 打标签，通过 Actuator 的 /actuator/prometheus 导出。
+ * 计时器、计数器按 (指标, ragTag, model) 缓存，热路径上只有一次 Map 查找，不再每次构造 Meter.Id；
+ * ragTag 由调用方传入，只有知识库目录中存在的 ragTag 才作为标签值，其余记为 other，避免客户端传入的任意标签占满名额；
+ * 超过 maxRagTags 个之后新出现的 ragTag 同样记为 other，避免时间序列无限增长
+ * @CreateTime: 2026-10-19 01:50
+ */
+public class RagMetrics {
+
+    /** ragTag 未登记、数量超过上限时使用的标签值 */
+    static final String OTHER = "other";
+    static final String NONE = "none";
+
+    private final MeterRegistry registry;
+    /** 导入指标的 model 标签，导入只使用向量模型 */
+    private final String embeddingModel;
+    private final int maxRagTags;
+    /** 是否为已登记的知识库，例如 KnowledgeBaseCatalog::contains */
+    private final Predicate<String> knownRagTag;
+    private final Set<String> ragTags = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Key, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public RagMetrics(MeterRegistry registry, String embeddingModel, int maxRagTags, Predicate<String> knownRagTag) {
+        this.registry = registry;
+        this.embeddingModel = embeddingModel;
+        this.maxRagTags = maxRagTags;
+        this.knownRagTag = knownRagTag;
+    }
+
+    /**
+     * 记录导入阶段的耗时，model 为向量模型
+     */
+    public void recordIngest(Stage stage, String ragTag, long nanos) {
+        timer(stage, ragTag, embeddingModel).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 写入向量库的分片数
+     */
+    public void countChunks(String ragTag, long chunks) {
+        counters.computeIfAbsent(new Key("rag.ingest.chunks", ragTag(ragTag), embeddingModel), key -> Counter.builder(key.name())
+                        .description("写入向量库的分片数")
+                        .baseUnit("chunks")
+                        .tags("ragTag", key.ragTag(), "model", key.model())
+                        .register(registry))
+                .increment(chunks);
+    }
+
+    /**
+     * 记录问答阶段的耗时，model 为对话模型
+     */
+    public void recordQuery(Stage stage, String ragTag, String model, long amount, TimeUnit unit) {
+        timer(stage, ragTag, model).record(amount, unit);
+    }
+
+    /**
+     * 统计模型输出流：收到第一段输出时记录首 token 耗时（从 startMillis 起算，包含检索和拼装），
+     * 正常结束时记录生成的 token 数和每秒 token 数。token 数优先取模型返回的用量，没有用量时按输出段数计
+     *
+     * @param ragTag 知识库标签，不带知识库的问答传 null
+     */
+    public Flux<ChatResponse> meterStream(Flux<ChatResponse> stream, String ragTag, String model, long startMillis) {
+        return Flux.defer(() -> {
+            StreamState state = new StreamState();
+            return stream
+                    .doOnNext(response -> {
+                        long now = System.currentTimeMillis();
+                        if (state.firstMillis == 0) {
+                            state.firstMillis = now;
+                            recordQuery(Stage.TIME_TO_FIRST_TOKEN, ragTag, model, now - startMillis, TimeUnit.MILLISECONDS);
+                        }
+                        state.lastMillis = now;
+                        state.chunks++;
+                        Usage usage = null == response.getMetadata() ? null : response.getMetadata().getUsage();
+                        if (null != usage && null != usage.getCompletionTokens() && usage.getCompletionTokens() > 0) {
+                            state.tokens = usage.getCompletionTokens();
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (state.firstMillis == 0) return;
+                        long tokens = state.tokens > 0 ? state.tokens : state.chunks;
+                        recordQuery(Stage.GENERATION, ragTag, model, state.lastMillis - state.firstMillis, TimeUnit.MILLISECONDS);
+                        summary("rag.chat.tokens", "每次回答生成的 token 数", "tokens", ragTag, model).record(tokens);
+                        // 只有一段输出时没有生成间隔，不计速率
+                        if (state.lastMillis > state.firstMillis) {
+                            summary("rag.chat.tokens.per.second", "首 token 之后的生成速度", "tokens/s", ragTag, model)
+                                    .record(tokens * 1000.0 / (state.lastMillis - state.firstMillis));
+                        }
+                    });
+        });
+    }
+
+    private Timer timer(Stage stage, String ragTag, String model) {
+        return timers.computeIfAbsent(new Key(stage.getMetricName(), ragTag(ragTag), tagValue(model)), key -> Timer.builder(key.name())
+                .description(stage.getDescription())
+                .tags("ragTag", key.ragTag(), "model", key.model())
+                .register(registry));
+    }
+
+    private DistributionSummary summary(String name, String description, String unit, String ragTag, String model) {
+        return summaries.computeIfAbsent(new Key(name, ragTag(ragTag), tagValue(model)), key -> DistributionSummary.builder(key.name())
+                .description(description)
+                .baseUnit(unit)
+                .tags("ragTag", key.ragTag(), "model", key.model())
+                .register(registry));
+    }
+
+    /**
+     * 已占用名额的 ragTag 原样使用；知识库目录中存在的在数量未到上限时占用名额，其余记为 other。
+     * 占用名额时加锁，检查数量和加入在同一临界区内，并发时也不会超过上限
+     */
+    private String ragTag(String ragTag) {
+        if (null == ragTag || ragTag.isEmpty()) return NONE;
+        if (ragTags.contains(ragTag)) return ragTag;
+        if (ragTags.size() >= maxRagTags || !knownRagTag.test(ragTag)) return OTHER;
+        synchronized (ragTags) {
+            if (ragTags.contains(ragTag)) return ragTag;
+            if (ragTags.size() >= maxRagTags) return OTHER;
+            ragTags.add(ragTag);
+            return ragTag;
+        }
+    }
+
+    private static String tagValue(String value) {
+        return null == value || value.isEmpty() ? NONE : value;
+    }
+
+    private record Key(String name, String ragTag, String model) {
+    }
+
+    /**
+     * 单次输出流的统计，只在该流的回调中访问
+     */
+    private static class StreamState {
+        private long firstMillis;
+        private long lastMillis;
+        private long chunks;
+        private long tokens;
+    }
+
+    /**
+     * 计时的阶段
+     */
+    public enum Stage {
+        PARSE("rag.ingest.parse", "Tika 解析耗时，每个文件一次，不含切分和等待下游的时间"),
+        SPLIT("rag.ingest.split", "切分耗时，每个文件一次"),
+        EMBED("rag.ingest.embed", "向量化耗时，每批分片一次"),
+        WRITE("rag.ingest.write", "写入向量库耗时，每批分片一次"),
+        RETRIEVE("rag.query.retrieve", "检索耗时（向量、关键词或混合检索）"),
+        RERANK("rag.query.rerank", "重排耗时"),
+        ASSEMBLE("rag.query.assemble", "上下文拼装耗时"),
+        TIME_TO_FIRST_TOKEN("rag.chat.ttft", "从收到请求到模型输出第一段的耗时"),
+        GENERATION("rag.chat.generation", "从第一段到最后一段输出的耗时");
+
+        private final String metricName;
+        private final String description;
+
+        Stage(String metricName, String description) {
+            this.metricName = metricName;
+            this.description = description;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+}
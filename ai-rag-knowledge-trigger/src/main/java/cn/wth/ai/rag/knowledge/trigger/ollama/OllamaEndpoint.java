@@ -0,0 +1,168 @@
+package cn.wth.ai.rag.knowledge.trigger.ollama;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Data;
+import org.springframework.ai.ollama.api.OllamaApi;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: 5th
+ * @Description: 一个 Ollama 节点；同时在途的请求数不超过 maxConcurrency，记录在途请求数、健康状态和已加载的模型。
+ * 已加载的模型由健康检查（/api/ps）刷新，请求成功后也立即记为已加载；模型名统一补上默认标签，配置的 nomic-embed-text 与
+ * /api/ps 返回的 nomic-embed-text:latest 视为同一个模型
+ * @CreateTime: 2026-10-19 03:40
+ */
+public class OllamaEndpoint {
+
+    private final String baseUrl;
+    private final OllamaApi api;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean healthy = true;
+    /** 已加载的模型，名称已规范化 */
+    private volatile Set<String> loadedModels = Set.of();
+
+    public OllamaEndpoint(String baseUrl, OllamaApi api, int maxConcurrency) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.api = api;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    public OllamaEndpoint(Config config) {
+        this(config.getBaseUrl(), new OllamaApi(config.getBaseUrl()), config.getMaxConcurrency());
+    }
+
+    boolean tryAcquire() {
+        if (!permits.tryAcquire()) return false;
+        outstanding.incrementAndGet();
+        return true;
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+        permits.release();
+    }
+
+    /**
+     * 请求成功，节点可用且模型已加载
+     */
+    void succeeded(String model) {
+        healthy = true;
+        model = normalize(model);
+        if (null != model && !loadedModels.contains(model)) {
+            Set<String> models = new HashSet<>(loadedModels);
+            models.add(model);
+            loadedModels = Set.copyOf(models);
+        }
+    }
+
+    /**
+     * 连接失败，在下次健康检查成功前不再优先选择
+     */
+    void markDown() {
+        healthy = false;
+    }
+
+    /**
+     * 健康检查；请求 /api/ps，成功时用返回的模型列表替换已加载的模型，失败时标记为不可用
+     *
+     * @return 是否可用
+     */
+    public boolean probe(HttpClient client, Duration timeout) {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/ps"))
+                    .timeout(timeout)
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                healthy = false;
+                return false;
+            }
+            Set<String> models = new HashSet<>();
+            JSONArray running = JSON.parseObject(response.body()).getJSONArray("models");
+            if (null != running) {
+                for (int i = 0; i < running.size(); i++) {
+                    JSONObject model = running.getJSONObject(i);
+                    String name = normalize(model.getString("name"));
+                    if (null != name) models.add(name);
+                }
+            }
+            loadedModels = Set.copyOf(models);
+            healthy = true;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return healthy;
+        } catch (Exception e) {
+            healthy = false;
+            return false;
+        }
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public OllamaApi getApi() {
+        return api;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public boolean isLoaded(String model) {
+        model = normalize(model);
+        return null != model && loadedModels.contains(model);
+    }
+
+    public Set<String> getLoadedModels() {
+        return loadedModels;
+    }
+
+    /**
+     * 没有标签的模型名补上 Ollama 的默认标签 latest；标签是最后一个 / 之后的冒号部分，仓库地址中的端口不算
+     */
+    static String normalize(String model) {
+        if (null == model || model.isBlank()) return null;
+        return model.indexOf(':', model.lastIndexOf('/') + 1) < 0 ? model + ":latest" : model;
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+
+    /**
+     * 节点参数
+     */
+    @Data
+    public static class Config {
+        /** 节点地址，例如 http://192.168.1.109:11434 */
+        private String baseUrl;
+        /** 同时在途的请求数上限，一般与节点的 OLLAMA_NUM_PARALLEL 相同，默认为4 */
+        private int maxConcurrency = 4;
+    }
+
+}
@@ -0,0 +1,185 @@
+package cn.wth.ai.rag.knowledge.trigger.ollama;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.ollama.api.OllamaApi;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * @Author: 5th
+ * @Description: 一组 Ollama 节点的路由；对话和向量化各用一组，导入的向量化请求不会占满对话节点。
+ * 选择节点的顺序：可用的优先，已加载该模型的优先（避免在另一台节点上重新加载模型），在途请求少的优先，都相同时轮流。
+ * 每个节点的在途请求数不超过其上限，所有节点都满时等待，超过 acquireTimeoutMillis 仍没有空闲则失败；
+ * 连接失败的节点标记为不可用，由定时健康检查恢复。不可用的节点排在最后，全部不可用时仍会尝试
+ * @CreateTime: 2026-10-19 03:40
+ */
+@Slf4j
+public class OllamaRouter {
+
+    private final String name;
+    private final List<OllamaEndpoint> endpoints;
+    private final long acquireTimeoutMillis;
+    private final AtomicInteger rotation = new AtomicInteger();
+    /** 节点释放时唤醒等待的请求；用显式锁而不是 synchronized，虚拟线程等待时不占用载体线程 */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private ScheduledExecutorService scheduler;
+
+    public OllamaRouter(String name, List<OllamaEndpoint> endpoints, long acquireTimeoutMillis) {
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("Ollama 节点组 " + name + " 没有配置节点");
+        this.name = name;
+        this.endpoints = List.copyOf(endpoints);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * 在选中的节点上执行一次同步调用
+     */
+    public <T> T call(String model, Function<OllamaApi, T> call) {
+        OllamaEndpoint endpoint = acquire(model);
+        try {
+            T result = call.apply(endpoint.getApi());
+            endpoint.succeeded(model);
+            return result;
+        } catch (RuntimeException e) {
+            failed(endpoint, e);
+            throw e;
+        } finally {
+            release(endpoint);
+        }
+    }
+
+    /**
+     * 订阅时选择节点，流结束、出错或取消时释放
+     */
+    public <T> Flux<T> stream(String model, Function<OllamaApi, Flux<T>> call) {
+        return Flux.defer(() -> {
+            OllamaEndpoint endpoint = acquire(model);
+            Flux<T> stream;
+            try {
+                stream = call.apply(endpoint.getApi());
+            } catch (RuntimeException e) {
+                failed(endpoint, e);
+                release(endpoint);
+                throw e;
+            }
+            return stream
+                    .doOnComplete(() -> endpoint.succeeded(model))
+                    .doOnError(e -> failed(endpoint, e))
+                    .doFinally(signal -> release(endpoint));
+        });
+    }
+
+    /**
+     * 选择节点并占用一个并发名额，用完后必须调用 {@link #release(OllamaEndpoint)}
+     */
+    public OllamaEndpoint acquire(String model) {
+        long deadline = System.currentTimeMillis() + acquireTimeoutMillis;
+        while (true) {
+            for (OllamaEndpoint endpoint : rank(model)) {
+                if (endpoint.tryAcquire()) return endpoint;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IllegalStateException("Ollama 节点组 " + name + " 已满载，等待超时 model:" + model);
+            }
+            lock.lock();
+            try {
+                // 释放时会唤醒，限时等待兜底通知与检查之间的间隙
+                released.await(Math.min(remaining, 50), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待 Ollama 节点时被中断", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void release(OllamaEndpoint endpoint) {
+        endpoint.release();
+        lock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按优先级排序的节点；从轮转位置开始排列后稳定排序，条件相同的节点轮流排在前面
+     */
+    List<OllamaEndpoint> rank(String model) {
+        int start = Math.floorMod(rotation.getAndIncrement(), endpoints.size());
+        List<OllamaEndpoint> ranked = new ArrayList<>(endpoints.size());
+        for (int i = 0; i < endpoints.size(); i++) {
+            ranked.add(endpoints.get((start + i) % endpoints.size()));
+        }
+        ranked.sort(Comparator.comparing((OllamaEndpoint endpoint) -> !endpoint.isHealthy())
+                .thenComparing(endpoint -> !endpoint.isLoaded(model))
+                .thenComparingInt(OllamaEndpoint::getOutstanding));
+        return ranked;
+    }
+
+    /**
+     * 只有连接类的错误才标记节点不可用；模型不存在、参数错误等由调用方处理
+     */
+    private void failed(OllamaEndpoint endpoint, Throwable e) {
+        for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                log.warn("Ollama 节点连接失败，暂停使用 {} {}", endpoint, e.getMessage());
+                endpoint.markDown();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 启动定时健康检查，立即检查一次
+     */
+    public void start(Duration interval) {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(interval).build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rag-ollama-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            for (OllamaEndpoint endpoint : endpoints) {
+                boolean before = endpoint.isHealthy();
+                boolean after = endpoint.probe(client, interval);
+                if (before != after) {
+                    log.info("Ollama 节点{} {} 已加载模型:{}", after ? "恢复" : "不可用", endpoint, endpoint.getLoadedModels());
+                }
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<OllamaEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+}
@@ -0,0 +1,38 @@
+package cn.wth.ai.rag.knowledge.trigger.ollama;
+
+import org.springframework.ai.ollama.api.OllamaApi;
+import reactor.core.publisher.Flux;
+
+/**
+ * @Author: 5th
+ * @Description: 按请求类型和模型把 Ollama 调用分发到多个节点：对话走对话节点组，向量化走向量化节点组。
+ * OllamaChatModel、OllamaEmbeddingModel 不需要改动；模型拉取、查询等管理接口仍发往对话组的第一个节点
+ * @CreateTime: 2026-10-19 03:40
+ */
+public class RoutingOllamaApi extends OllamaApi {
+
+    private final OllamaRouter chatRouter;
+    private final OllamaRouter embeddingRouter;
+
+    public RoutingOllamaApi(OllamaRouter chatRouter, OllamaRouter embeddingRouter) {
+        super(chatRouter.getEndpoints().get(0).getBaseUrl());
+        this.chatRouter = chatRouter;
+        this.embeddingRouter = embeddingRouter;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return chatRouter.call(chatRequest.model(), api -> api.chat(chatRequest));
+    }
+
+    @Override
+    public Flux<ChatResponse> streamingChat(ChatRequest chatRequest) {
+        return chatRouter.stream(chatRequest.model(), api -> api.streamingChat(chatRequest));
+    }
+
+    @Override
+    public EmbeddingsResponse embed(EmbeddingsRequest embeddingsRequest) {
+        return embeddingRouter.call(embeddingsRequest.model(), api -> api.embed(embeddingsRequest));
+    }
+
+}
@@ -0,0 +1,18 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 交叉编码器打分；问题与分片一起输入模型，比向量相似度更准，但每个候选都要过一次模型，只用于少量候选的重排。
+ * 接入具体模型（例如部署在推理服务上的 bge-reranker）时实现该接口并注册为 Bean
+ * @CreateTime: 2026-10-19 00:50
+ */
+public interface CrossEncoder {
+
+    /**
+     * @return 与 passages 一一对应的相关度分数，越大越相关
+     */
+    float[] score(String query, List<String> passages);
+
+}
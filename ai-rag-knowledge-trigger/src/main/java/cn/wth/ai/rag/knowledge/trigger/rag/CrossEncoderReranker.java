@@ -0,0 +1,42 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 按交叉编码器的分数重排，分数相同时保持检索顺序
+ * @CreateTime: 2026-10-19 00:50
+ */
+public class CrossEncoderReranker implements Reranker {
+
+    private final CrossEncoder crossEncoder;
+
+    public CrossEncoderReranker(CrossEncoder crossEncoder) {
+        this.crossEncoder = crossEncoder;
+    }
+
+    @Override
+    public List<Document> rerank(String query, List<Document> candidates, int topN) {
+        if (candidates.isEmpty()) return List.of();
+        float[] scores = crossEncoder.score(query, candidates.stream().map(Document::getText).toList());
+        if (scores.length != candidates.size()) {
+            throw new IllegalStateException("cross encoder scores " + scores.length + " != candidates " + candidates.size());
+        }
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        List<Document> reranked = new ArrayList<>(Math.min(topN, order.size()));
+        for (int i : order.subList(0, Math.min(topN, order.size()))) {
+            reranked.add(candidates.get(i).mutate().score((double) scores[i]).build());
+        }
+        return reranked;
+    }
+
+}
@@ -0,0 +1,86 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import cn.wth.ai.rag.knowledge.trigger.vector.PgVectorIndexManager;
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
+import com.alibaba.fastjson.JSON;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Author: 5th
+ * @Description: 关键词检索；PostgreSQL 全文检索按 ts_rank_cd 排序，补充向量检索对类名、方法名等精确标识符召回不足的问题
+ * 查询表达式与 PgVectorIndexManager 建的 GIN 索引表达式一致，才能走索引
+ * @CreateTime: 2026-10-18 20:40
+ */
+public class KeywordRetriever {
+
+    /** 问题中的词：字母、数字组成的连续串；与索引一致，标点（包括下划线）处断开 */
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+    /** 参与检索的词数上限，避免长问题生成过大的查询 */
+    private static final int MAX_TERMS = 32;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStoreRouter vectorStoreRouter;
+    /** 全文检索的 tsvector 表达式，配置名直接拼进 SQL 以匹配索引表达式 */
+    private final String textSearchVector;
+    private final String textSearchConfig;
+
+    public KeywordRetriever(JdbcTemplate jdbcTemplate, VectorStoreRouter vectorStoreRouter, String textSearchConfig) {
+        if (!textSearchConfig.matches("[A-Za-z_]+")) {
+            throw new IllegalArgumentException("非法的全文检索配置 " + textSearchConfig);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.vectorStoreRouter = vectorStoreRouter;
+        this.textSearchConfig = textSearchConfig;
+        this.textSearchVector = PgVectorIndexManager.textSearchVector(textSearchConfig);
+    }
+
+    /**
+     * 按词的 OR 组合检索，命中词越多、越集中的分片排名越靠前；分片分数为 ts_rank_cd
+     */
+    public List<Document> retrieve(String ragTag, String query, int topK) {
+        String tsQuery = toTsQuery(query);
+        if (tsQuery.isEmpty() || null == vectorStoreRouter.find(ragTag)) return List.of();
+
+        String sql = "SELECT id::text AS id, content, metadata::text AS metadata, ts_rank_cd(" + textSearchVector + ", q) AS rank "
+                + "FROM " + vectorStoreRouter.tableName(ragTag) + ", to_tsquery('" + textSearchConfig + "', ?) q "
+                + "WHERE " + textSearchVector + " @@ q "
+                + (vectorStoreRouter.isTablePerTag() ? "" : "AND metadata->>'knowledge' = ? ")
+                + "ORDER BY rank DESC LIMIT ?";
+        Object[] args = vectorStoreRouter.isTablePerTag()
+                ? new Object[]{tsQuery, topK}
+                : new Object[]{tsQuery, ragTag, topK};
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = JSON.parseObject(rs.getString("metadata"), Map.class);
+            return Document.builder()
+                    .id(rs.getString("id"))
+                    .text(rs.getString("content"))
+                    .metadata(null == metadata ? Map.of() : metadata)
+                    .score(rs.getDouble("rank"))
+                    .build();
+        }, args);
+    }
+
+    /**
+     * 问题转成 tsquery，例如 "OllamaController.generateStreamRag 做什么" → "ollamacontroller | generatestreamrag | 做什么"
+     * 每个词只含字母和数字，不会破坏 tsquery 语法
+     */
+    static String toTsQuery(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher matcher = TERM.matcher(query.toLowerCase(Locale.ROOT));
+        while (matcher.find() && terms.size() < MAX_TERMS) {
+            terms.add(matcher.group());
+        }
+        return String.join(" | ", terms);
+    }
+
+}
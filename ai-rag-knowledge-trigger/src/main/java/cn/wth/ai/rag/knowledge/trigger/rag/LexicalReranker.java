@@ -0,0 +1,110 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: 5th
+ * @Description: 词面重合度重排；问题中的词在分片里出现得越多、越少见（在候选中的文档频率越低）分数越高，
+ * 与检索排名按权重加权，能把向量检索排在后面、但包含问题里类名、报错信息等原词的分片提上来。不依赖模型，单次耗时在毫秒级
+ * @CreateTime: 2026-10-19 00:50
+ */
+public class LexicalReranker implements Reranker {
+
+    /** 词面分数的权重，其余为检索排名的权重 */
+    private final double weight;
+
+    public LexicalReranker(double weight) {
+        this.weight = Math.max(0, Math.min(weight, 1));
+    }
+
+    @Override
+    public List<Document> rerank(String query, List<Document> candidates, int topN) {
+        if (candidates.isEmpty()) return List.of();
+        Set<String> queryTerms = terms(query);
+        int n = candidates.size();
+
+        List<Set<String>> documentTerms = new ArrayList<>(n);
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (Document candidate : candidates) {
+            Set<String> terms = terms(null == candidate.getText() ? "" : candidate.getText());
+            terms.retainAll(queryTerms);
+            documentTerms.add(terms);
+            for (String term : terms) {
+                documentFrequency.merge(term, 1, Integer::sum);
+            }
+        }
+
+        double[] lexical = new double[n];
+        double maxLexical = 0;
+        for (int i = 0; i < n; i++) {
+            for (String term : documentTerms.get(i)) {
+                lexical[i] += Math.log(1 + (double) n / documentFrequency.get(term));
+            }
+            maxLexical = Math.max(maxLexical, lexical[i]);
+        }
+
+        double[] scores = new double[n];
+        List<Integer> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // 检索排名换算成 (0, 1]，第一名为 1
+            double prior = 1 - (double) i / n;
+            scores[i] = weight * (maxLexical == 0 ? 0 : lexical[i] / maxLexical) + (1 - weight) * prior;
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        List<Document> reranked = new ArrayList<>(Math.min(topN, n));
+        for (int i : order.subList(0, Math.min(topN, n))) {
+            reranked.add(candidates.get(i).mutate().score(scores[i]).build());
+        }
+        return reranked;
+    }
+
+    /**
+     * 分词：连续的字母数字为一个词（不区分大小写），汉字等表意字符取相邻两字，单独出现的取单字
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        int i = 0;
+        while (i < text.length()) {
+            int c = text.codePointAt(i);
+            if (Character.isIdeographic(c)) {
+                int start = i;
+                while (i < text.length() && Character.isIdeographic(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                String run = text.substring(start, i);
+                if (run.codePointCount(0, run.length()) == 1) {
+                    terms.add(run);
+                    continue;
+                }
+                for (int from = 0; from < run.length(); from = run.offsetByCodePoints(from, 1)) {
+                    int to = run.offsetByCodePoints(from, 1);
+                    if (to >= run.length()) break;
+                    terms.add(run.substring(from, run.offsetByCodePoints(to, 1)));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < text.length()) {
+                    int next = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(next) || Character.isIdeographic(next)) break;
+                    i += Character.charCount(next);
+                }
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(c);
+            }
+        }
+        return terms;
+    }
+
+}
@@ -0,0 +1,92 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 最大边际相关（MMR）重排；每次选出 lambda * 与问题的相似度 - (1 - lambda) * 与已选分片的最大相似度 最高的候选，
+ * 避免前几个分片内容雷同（同一段文字的多个版本、相邻的重叠分片）挤占上下文。
+ * 候选的向量通过向量模型获取，导入时已向量化过的分片命中向量缓存，不会重新请求模型
+ * @CreateTime: 2026-10-19 00:50
+ */
+public class MmrReranker implements Reranker {
+
+    private final EmbeddingModel embeddingModel;
+    /** 相关性的权重，1 等同于按相似度排序，越小越偏向多样性 */
+    private final double lambda;
+
+    public MmrReranker(EmbeddingModel embeddingModel, double lambda) {
+        this.embeddingModel = embeddingModel;
+        this.lambda = Math.max(0, Math.min(lambda, 1));
+    }
+
+    @Override
+    public List<Document> rerank(String query, List<Document> candidates, int topN) {
+        if (candidates.isEmpty()) return List.of();
+        int n = candidates.size();
+        float[] queryEmbedding = normalize(embeddingModel.embed(query));
+        List<float[]> embeddings = embeddingModel.embed(candidates.stream().map(Document::getText).toList());
+        float[][] vectors = new float[n][];
+        double[] relevance = new double[n];
+        for (int i = 0; i < n; i++) {
+            vectors[i] = normalize(embeddings.get(i));
+            relevance[i] = dot(queryEmbedding, vectors[i]);
+        }
+
+        // 每个候选与已选分片的最大相似度，选中一个后增量更新
+        double[] redundancy = new double[n];
+        Arrays.fill(redundancy, Double.NEGATIVE_INFINITY);
+        boolean[] selected = new boolean[n];
+        int limit = Math.min(topN, n);
+        List<Document> reranked = new ArrayList<>(limit);
+        for (int round = 0; round < limit; round++) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (selected[i]) continue;
+                double score = round == 0 ? relevance[i] : lambda * relevance[i] - (1 - lambda) * redundancy[i];
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            selected[best] = true;
+            // MMR 的边际分数不随选择顺序单调，分数按名次给出，保证上下文拼装时的顺序与选择顺序一致
+            reranked.add(candidates.get(best).mutate().score(1 - (double) round / limit).build());
+            for (int i = 0; i < n; i++) {
+                if (!selected[i]) {
+                    redundancy[i] = Math.max(redundancy[i], dot(vectors[i], vectors[best]));
+                }
+            }
+        }
+        return reranked;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) return vector;
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+}
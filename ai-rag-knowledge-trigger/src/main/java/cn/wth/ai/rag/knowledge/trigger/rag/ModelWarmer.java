@@ -0,0 +1,64 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 对话模型预热；检索进行的同时让 Ollama 把模型加载进内存，并通过 keep_alive 保持常驻，避免首个 token 等待模型加载
+ * @CreateTime: 2026-10-18 18:20
+ */
+@Slf4j
+public class ModelWarmer {
+
+    private final ChatModel chatModel;
+    /** 是否在检索的同时预热模型 */
+    private final boolean enabled;
+    /** 传给 Ollama 的 keep_alive，例如 30m */
+    private final String keepAlive;
+    private final long keepAliveMillis;
+    /** 模型 → 最近一次请求时间 */
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    public ModelWarmer(ChatModel chatModel, boolean enabled, int keepAliveMinutes) {
+        this.chatModel = chatModel;
+        this.enabled = enabled;
+        this.keepAlive = keepAliveMinutes + "m";
+        this.keepAliveMillis = TimeUnit.MINUTES.toMillis(keepAliveMinutes);
+    }
+
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * 模型可能已被 Ollama 卸载时，异步发一个只生成 1 个 token 的请求把模型加载进来；不等待结果
+     */
+    public void warmUp(String model) {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        Long last = lastUsed.put(model, now);
+        // 只要上次请求还在 keep_alive 的一半以内，模型一定还在内存里
+        if (null != last && now - last < keepAliveMillis / 2) return;
+
+        Mono.fromRunnable(() -> {
+                    long start = System.currentTimeMillis();
+                    chatModel.call(new Prompt("hi", OllamaOptions.builder().model(model).keepAlive(keepAlive).numPredict(1).build()));
+                    log.info("对话模型预热完成 model:{} 耗时:{}ms", model, System.currentTimeMillis() - start);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> {
+                    lastUsed.remove(model);
+                    log.warn("对话模型预热失败 model:{} - {}", model, e.getMessage());
+                });
+    }
+
+}
@@ -0,0 +1,79 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @Author: 5th
+ * @Description: 检索结果拼装成提示词上下文；按相似度从高到低、去掉重复分片、标注来源，总长度不超过 token 预算
+ * @CreateTime: 2026-10-18 17:50
+ */
+public class RagContextAssembler {
+
+    /** 分片之间的分隔行 */
+    private static final String SEPARATOR = "\n---\n";
+
+    private final TokenCountEstimator tokenCountEstimator;
+    /** 上下文 token 上限 */
+    private final int maxContextTokens;
+
+    public RagContextAssembler(TokenCountEstimator tokenCountEstimator, int maxContextTokens) {
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxContextTokens = maxContextTokens;
+    }
+
+    /**
+     * 拼装上下文；放不下的分片跳过，继续尝试后面更短的分片，第一个分片单独超出预算时按比例截断
+     *
+     * @param documents 检索结果
+     * @return 形如 [1] source: xxx 开头、以 --- 分隔的文本，没有可用分片时返回空串
+     */
+    public String assemble(List<Document> documents) {
+        List<Document> ordered = new ArrayList<>(documents);
+        ordered.sort(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        Set<String> seen = new HashSet<>();
+        StringBuilder context = new StringBuilder();
+        int remaining = maxContextTokens;
+        int index = 0;
+        for (Document document : ordered) {
+            String text = document.getText();
+            if (null == text || text.isBlank() || !seen.add(normalize(text))) continue;
+
+            String block = (index == 0 ? "" : SEPARATOR) + header(index + 1, document) + text.strip();
+            int tokens = tokenCountEstimator.estimate(block);
+            if (tokens > remaining) {
+                if (index > 0) continue;
+                // 字符与 token 不是线性关系，按比例截断后再校验，直到落入预算
+                while (tokens > remaining && !block.isEmpty()) {
+                    block = block.substring(0, (int) ((long) block.length() * remaining * 9 / 10 / tokens));
+                    tokens = tokenCountEstimator.estimate(block);
+                }
+            }
+            context.append(block);
+            remaining -= tokens;
+            index++;
+            if (remaining <= 0) break;
+        }
+        return context.toString();
+    }
+
+    private static String header(int index, Document document) {
+        Object source = document.getMetadata().get("source");
+        return "[" + index + "] source: " + (null == source ? "unknown" : source) + "\n";
+    }
+
+    /**
+     * 去重用的规范化文本，忽略空白差异
+     */
+    private static String normalize(String text) {
+        return text.strip().replaceAll("\\s+", " ");
+    }
+
+}
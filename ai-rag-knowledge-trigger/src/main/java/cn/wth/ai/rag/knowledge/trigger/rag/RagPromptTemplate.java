@@ -0,0 +1,60 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 提示词模板；构造时把 {name} 占位符解析成片段，渲染只做字符串拼接，实例不可变，可在请求间共享
+ * （SystemPromptTemplate 每次 new 都会重新解析模板，且内部的 ST 实例渲染时会被修改，不能跨线程复用）
+ * @CreateTime: 2026-10-18 17:50
+ */
+public class RagPromptTemplate {
+
+    /** 偶数下标为原文，奇数下标为占位符名 */
+    private final List<String> segments;
+    private final int literalLength;
+
+    public RagPromptTemplate(String template) {
+        List<String> parsed = new ArrayList<>();
+        int length = 0;
+        int from = 0;
+        while (true) {
+            int open = template.indexOf('{', from);
+            int close = open < 0 ? -1 : template.indexOf('}', open);
+            if (close < 0) break;
+            parsed.add(template.substring(from, open));
+            parsed.add(template.substring(open + 1, close).trim());
+            length += open - from;
+            from = close + 1;
+        }
+        parsed.add(template.substring(from));
+        this.segments = List.copyOf(parsed);
+        this.literalLength = length + template.length() - from;
+    }
+
+    /**
+     * @throws IllegalArgumentException 缺少占位符对应的变量
+     */
+    public String render(Map<String, String> variables) {
+        int length = literalLength;
+        for (String value : variables.values()) {
+            length += value.length();
+        }
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < segments.size(); i++) {
+            if (i % 2 == 0) {
+                builder.append(segments.get(i));
+                continue;
+            }
+            String value = variables.get(segments.get(i));
+            if (null == value) {
+                throw new IllegalArgumentException("提示词模板缺少变量 " + segments.get(i));
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,144 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import cn.wth.ai.rag.knowledge.trigger.vector.VectorStoreRouter;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库检索；按知识库标签取相似度最高的若干分片，混合检索时与关键词检索的结果按倒数排名融合；
+ * 配置了重排时先多取候选，重排后保留 topK 个
+ * @CreateTime: 2026-10-18 17:50
+ */
+public class RagRetriever {
+
+    private final VectorStoreRouter vectorStoreRouter;
+    private final KeywordRetriever keywordRetriever;
+    /** 最终保留的分片数 */
+    private final int topK;
+    /** 相似度下限，低于该值的分片不参与回答 */
+    private final double similarityThreshold;
+    /** 未指定检索方式时使用的方式 */
+    private final RetrievalMode defaultMode;
+    /** 混合检索时每一路召回的候选数 */
+    private final int hybridCandidates;
+    /** RRF 常数 k，分数为 1 / (k + 排名)，越大各排名之间的差距越小 */
+    private final int rrfK;
+    private final RerankerChain rerankerChain;
+
+    public RagRetriever(VectorStoreRouter vectorStoreRouter, KeywordRetriever keywordRetriever, int topK, double similarityThreshold,
+                        RetrievalMode defaultMode, int hybridCandidates, int rrfK, RerankerChain rerankerChain) {
+        this.vectorStoreRouter = vectorStoreRouter;
+        this.keywordRetriever = keywordRetriever;
+        this.topK = topK;
+        this.similarityThreshold = similarityThreshold;
+        this.defaultMode = defaultMode;
+        this.hybridCandidates = Math.max(hybridCandidates, topK);
+        this.rrfK = rrfK;
+        this.rerankerChain = rerankerChain;
+    }
+
+    public RetrievalMode getDefaultMode() {
+        return defaultMode;
+    }
+
+    public List<Document> retrieve(String ragTag, String query) {
+        return retrieve(ragTag, query, defaultMode);
+    }
+
+    public List<Document> retrieve(String ragTag, String query, RetrievalMode mode) {
+        return rerank(query, retrieveCandidates(ragTag, query, mode), new LinkedHashMap<>());
+    }
+
+    /**
+     * 取重排前的候选；未配置重排时就是最终的 topK 个分片
+     */
+    public List<Document> retrieveCandidates(String ragTag, String query, RetrievalMode mode) {
+        int limit = rerankerChain.candidates(topK);
+        return switch (mode) {
+            case VECTOR -> vectorSearch(ragTag, query, limit);
+            case KEYWORD -> keywordRetriever.retrieve(ragTag, query, limit);
+            case HYBRID -> hybridSearch(ragTag, query, limit);
+        };
+    }
+
+    /**
+     * 重排候选，保留 topK 个
+     *
+     * @param latencies 输出各重排步骤的耗时（毫秒）
+     */
+    public List<Document> rerank(String query, List<Document> candidates, Map<String, Long> latencies) {
+        return rerankerChain.rerank(query, candidates, topK, latencies);
+    }
+
+    public boolean isRerankEnabled() {
+        return rerankerChain.isEnabled();
+    }
+
+    /**
+     * 关键词检索在公共的弹性线程池上执行，向量检索在当前线程执行，耗时取两者中较慢的一路；
+     * 不使用调用方所在的检索线程池，避免线程池占满时调用方等待排在自己后面的任务
+     */
+    private List<Document> hybridSearch(String ragTag, String query, int limit) {
+        int candidates = Math.max(hybridCandidates, limit);
+        CompletableFuture<List<Document>> keyword = Mono.fromCallable(() -> keywordRetriever.retrieve(ragTag, query, candidates))
+                .subscribeOn(Schedulers.boundedElastic())
+                .toFuture();
+        List<Document> vector = vectorSearch(ragTag, query, candidates);
+        return fuse(List.of(vector, keyword.join()), rrfK, limit);
+    }
+
+    private List<Document> vectorSearch(String ragTag, String query, int limit) {
+        VectorStore vectorStore = vectorStoreRouter.find(ragTag);
+        if (null == vectorStore) return List.of();
+
+        SearchRequest.Builder request = SearchRequest.builder()
+                .query(query)
+                .topK(limit)
+                .similarityThreshold(similarityThreshold);
+        // 独立表里只有这个知识库的数据，不需要过滤
+        if (!vectorStoreRouter.isTablePerTag()) {
+            // 过滤条件会被转换成 jsonpath 文本，标签已在请求入口校验过，不含引号等特殊字符
+            request.filterExpression(new FilterExpressionBuilder().eq("knowledge", ragTag).build());
+        }
+        return vectorStore.similaritySearch(request.build());
+    }
+
+    /**
+     * 倒数排名融合（RRF）；每个分片的分数为它在各路结果中 1 / (k + 排名) 之和，排名从 1 开始
+     * 各路分数的量纲不同（余弦相似度、ts_rank_cd），只使用排名；返回的分片分数替换为融合分数，分数相同时先出现的在前
+     *
+     * @param rankings 各路检索结果，按相关度从高到低
+     */
+    public static List<Document> fuse(List<List<Document>> rankings, int rrfK, int topK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                Document document = ranking.get(i);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1D / (rrfK + i + 1), Double::sum);
+            }
+        }
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+
+        List<Document> fused = new ArrayList<>(Math.min(topK, ranked.size()));
+        for (Map.Entry<String, Double> entry : ranked.subList(0, Math.min(topK, ranked.size()))) {
+            fused.add(documents.get(entry.getKey()).mutate().score(entry.getValue()).build());
+        }
+        return fused;
+    }
+
+}
@@ -0,0 +1,22 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * @Author: 5th
+ * @Description: 检索结果重排；检索阶段多取候选，重排后只保留前 topN 个拼入提示词
+ * @CreateTime: 2026-10-19 00:50
+ */
+public interface Reranker {
+
+    /**
+     * @param query      用户问题
+     * @param candidates 检索候选，按检索相关度从高到低
+     * @param topN       返回的分片数
+     * @return 重排后的前 topN 个分片；分数替换为重排分数，从高到低，上下文拼装按分数排序
+     */
+    List<Document> rerank(String query, List<Document> candidates, int topN);
+
+}
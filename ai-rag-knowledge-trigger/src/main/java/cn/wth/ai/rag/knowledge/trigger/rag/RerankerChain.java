@@ -0,0 +1,90 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import lombok.Data;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 按顺序执行的重排步骤，例如先按词面重合度调整顺序，再用 MMR 选出内容互不重复的前 topN 个；
+ * 中间步骤对全部候选排序，最后一步截取 topN。没有配置步骤时直接取检索结果的前 topN 个
+ * @CreateTime: 2026-10-19 00:50
+ */
+public class RerankerChain {
+
+    private final List<Step> steps;
+    /** 重排前从检索取的候选数 */
+    private final int candidates;
+
+    public RerankerChain(List<Step> steps, int candidates) {
+        this.steps = List.copyOf(steps);
+        this.candidates = candidates;
+    }
+
+    public boolean isEnabled() {
+        return !steps.isEmpty();
+    }
+
+    /**
+     * 检索阶段应取的候选数，不少于最终保留的分片数
+     */
+    public int candidates(int topN) {
+        return isEnabled() ? Math.max(candidates, topN) : topN;
+    }
+
+    /**
+     * @param latencies 输出各步骤的耗时（毫秒），步骤名 → 耗时
+     */
+    public List<Document> rerank(String query, List<Document> candidates, int topN, Map<String, Long> latencies) {
+        if (!isEnabled()) {
+            return candidates.size() <= topN ? candidates : candidates.subList(0, topN);
+        }
+        List<Document> documents = candidates;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            long start = System.nanoTime();
+            documents = step.reranker().rerank(query, documents, i == steps.size() - 1 ? topN : documents.size());
+            latencies.merge(step.name(), (System.nanoTime() - start) / 1_000_000, Long::sum);
+        }
+        return documents;
+    }
+
+    public List<Document> rerank(String query, List<Document> candidates, int topN) {
+        return rerank(query, candidates, topN, new LinkedHashMap<>());
+    }
+
+    /**
+     * 重排步骤，name 用于耗时统计
+     */
+    public record Step(String name, Reranker reranker) {
+    }
+
+    public enum Type {
+        /** 词面重合度，不依赖模型 */
+        LEXICAL,
+        /** 最大边际相关，使用向量模型（命中向量缓存） */
+        MMR,
+        /** 交叉编码器，需要注册 CrossEncoder Bean */
+        CROSS_ENCODER
+    }
+
+    /**
+     * 重排参数
+     */
+    @Data
+    public static class Config {
+        /** 重排步骤，按顺序执行；为空表示不重排，默认为空 */
+        private List<Type> steps = new ArrayList<>();
+        /** 重排前从检索取的候选数，默认为50 */
+        private int candidates = 50;
+        /** MMR 中相关性的权重（0~1），越小越偏向多样性，默认为0.7 */
+        private double mmrLambda = 0.7;
+        /** 词面重排中词面分数的权重（0~1），其余为检索排名，默认为0.5 */
+        private double lexicalWeight = 0.5;
+    }
+
+}
@@ -0,0 +1,31 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * @Author: 5th
+ * @Description: 知识库检索方式
+ * @CreateTime: 2026-10-18 20:40
+ */
+public enum RetrievalMode {
+
+    /** 只做向量检索 */
+    VECTOR,
+    /** 只做关键词（全文）检索 */
+    KEYWORD,
+    /** 向量检索与关键词检索并行，按倒数排名融合（RRF） */
+    HYBRID;
+
+    /**
+     * 解析请求参数，忽略大小写；为空返回默认值
+     *
+     * @throws IllegalArgumentException 不支持的检索方式
+     */
+    public static RetrievalMode parse(String value, RetrievalMode defaultMode) {
+        if (StringUtils.isBlank(value)) return defaultMode;
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
@@ -0,0 +1,220 @@
+package cn.wth.ai.rag.knowledge.trigger.rag;
+
+import lombok.Data;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author: 5th
+ * @Description: 语义缓存；问题向量与已缓存问题的余弦距离在阈值内即视为同一问题。
+ * 回答按 (知识库标签, 模型) 缓存，检索结果按知识库标签单独缓存；知识库重新导入后整个标签失效
+ * @CreateTime: 2026-10-18 18:50
+ */
+public class SemanticCache {
+
+    /** 未启用时 embedQuery 返回的空向量 */
+    private static final float[] NO_EMBEDDING = new float[0];
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    /** 命中的最大余弦距离 */
+    private final double maxDistance;
+    private final int maxEntriesPerKey;
+    private final long ttlMillis;
+
+    /** 知识库标签 → 模型 → 回答 */
+    private final Map<String, Map<String, Bucket<String>>> answers = new ConcurrentHashMap<>();
+    /** 知识库标签 → 检索方式 → 检索结果 */
+    private final Map<String, Map<String, Bucket<List<Document>>>> documents = new ConcurrentHashMap<>();
+    /** 知识库标签 → 失效次数；写入时代数已变化说明期间发生过失效，结果作废 */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong answerHits = new AtomicLong();
+    private final AtomicLong documentHits = new AtomicLong();
+    /** 回答未命中次数 */
+    private final AtomicLong misses = new AtomicLong();
+
+    public SemanticCache(EmbeddingModel embeddingModel, Config config) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = config.isEnabled();
+        this.maxDistance = config.getMaxDistance();
+        this.maxEntriesPerKey = config.getMaxEntriesPerKey();
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(config.getTtlMinutes());
+    }
+
+    /**
+     * 计算问题向量（单位化）；未启用时不调用模型，返回空向量，后续查询全部未命中
+     */
+    public float[] embedQuery(String query) {
+        if (!enabled) return NO_EMBEDDING;
+        return normalize(embeddingModel.embed(query));
+    }
+
+    public long generation(String ragTag) {
+        return generations.computeIfAbsent(ragTag, key -> new AtomicLong()).get();
+    }
+
+    public String findAnswer(String ragTag, String model, float[] query) {
+        if (query.length == 0) return null;
+        Map<String, Bucket<String>> byModel = answers.get(ragTag);
+        String answer = null == byModel || !byModel.containsKey(model) ? null : byModel.get(model).find(query);
+        (null == answer ? misses : answerHits).incrementAndGet();
+        return answer;
+    }
+
+    /**
+     * @param generation 开始生成前取到的代数，生成期间知识库被重新导入则不写入
+     */
+    public void putAnswer(String ragTag, String model, float[] query, String answer, long generation) {
+        if (query.length == 0 || answer.isBlank()) return;
+        // 在 compute 内校验代数，与 invalidate 的 remove 互斥，不会把失效前的回答写回去
+        answers.compute(ragTag, (key, byModel) -> {
+            if (generation(ragTag) != generation) return byModel;
+            Map<String, Bucket<String>> target = null == byModel ? new ConcurrentHashMap<>() : byModel;
+            target.computeIfAbsent(model, m -> new Bucket<>()).put(query, answer);
+            return target;
+        });
+    }
+
+    public List<Document> findDocuments(String ragTag, float[] query) {
+        return findDocuments(ragTag, "", query);
+    }
+
+    /**
+     * @param retrieval 检索方式，不同方式的检索结果分开缓存
+     */
+    public List<Document> findDocuments(String ragTag, String retrieval, float[] query) {
+        if (query.length == 0) return null;
+        Map<String, Bucket<List<Document>>> byRetrieval = documents.get(ragTag);
+        Bucket<List<Document>> bucket = null == byRetrieval ? null : byRetrieval.get(retrieval);
+        List<Document> found = null == bucket ? null : bucket.find(query);
+        if (null != found) documentHits.incrementAndGet();
+        return found;
+    }
+
+    public void putDocuments(String ragTag, float[] query, List<Document> found, long generation) {
+        putDocuments(ragTag, "", query, found, generation);
+    }
+
+    public void putDocuments(String ragTag, String retrieval, float[] query, List<Document> found, long generation) {
+        if (query.length == 0) return;
+        documents.compute(ragTag, (key, byRetrieval) -> {
+            if (generation(ragTag) != generation) return byRetrieval;
+            Map<String, Bucket<List<Document>>> target = null == byRetrieval ? new ConcurrentHashMap<>() : byRetrieval;
+            target.computeIfAbsent(retrieval, r -> new Bucket<>()).put(query, List.copyOf(found));
+            return target;
+        });
+    }
+
+    /**
+     * 知识库内容变化后调用，清除该标签下的回答和检索结果
+     */
+    public void invalidate(String ragTag) {
+        generations.computeIfAbsent(ragTag, key -> new AtomicLong()).incrementAndGet();
+        answers.remove(ragTag);
+        documents.remove(ragTag);
+    }
+
+    public long getAnswerHits() {
+        return answerHits.get();
+    }
+
+    public long getDocumentHits() {
+        return documentHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        if (norm == 0) return unit;
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    /**
+     * 单个缓存键下的条目，数量很少，线性扫描找最相似的问题；超出容量时淘汰最早写入的条目
+     */
+    private class Bucket<V> {
+
+        private final Deque<Entry<V>> entries = new ArrayDeque<>();
+
+        synchronized V find(float[] query) {
+            long now = System.currentTimeMillis();
+            V best = null;
+            double bestDistance = maxDistance;
+            Iterator<Entry<V>> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry<V> entry = iterator.next();
+                if (entry.expireAt < now) {
+                    iterator.remove();
+                    continue;
+                }
+                if (entry.query.length != query.length) continue;
+                double dot = 0;
+                for (int i = 0; i < query.length; i++) {
+                    dot += entry.query[i] * query[i];
+                }
+                double distance = 1 - dot;
+                if (distance <= bestDistance) {
+                    bestDistance = distance;
+                    best = entry.value;
+                }
+            }
+            return best;
+        }
+
+        synchronized void put(float[] query, V value) {
+            if (entries.size() >= maxEntriesPerKey) {
+                entries.pollFirst();
+            }
+            entries.addLast(new Entry<>(query, value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    private static class Entry<V> {
+        private final float[] query;
+        private final V value;
+        private final long expireAt;
+
+        Entry(float[] query, V value, long expireAt) {
+            this.query = query;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 语义缓存参数
+     */
+    @Data
+    public static class Config {
+        /** 是否启用 */
+        private boolean enabled = true;
+        /** 命中的最大余弦距离（1 - 余弦相似度） */
+        private double maxDistance = 0.05;
+        /** 每个 (知识库, 模型) 缓存的问题数上限 */
+        private int maxEntriesPerKey = 256;
+        /** 条目过期时间（分钟） */
+        private int ttlMinutes = 60;
+    }
+
+}
@@ -0,0 +1,683 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * @Author: 5th
+ * @Description: HNSW 近邻图，相似度为单位向量的点积（余弦相似度）。
+ * 向量按页存放在连续的 float[] 中，第 0 层邻居表同样按页存放在 int[] 中，没有每个向量一个对象的开销；
+ * 高层邻居只有约 1/M 的节点才有，单独按节点存放。
+ * INT8 编码时每个向量按最大绝对值缩放成 byte，向量部分的内存是 FLOAT32 的 1/4，相似度为近似值，需要调用方用原始向量重排。
+ * 非线程安全：写入需要调用方互斥，写入期间不能检索；多个检索可以并发
+ * @CreateTime: 2026-10-18 21:10
+ */
+public class HnswIndex {
+
+    /** 文件头魔数 "HNSW" */
+    private static final int MAGIC = 0x57534E48;
+    private static final int VERSION = 2;
+    /** 每页的向量数 */
+    private static final int PAGE_ROWS = 4096;
+
+    private final int dimensions;
+    private final Encoding encoding;
+    /** 第 1 层及以上每个节点的邻居数上限 */
+    private final int m;
+    /** 第 0 层每个节点的邻居数上限 */
+    private final int m0;
+    private final int efConstruction;
+    /** 层数分布参数 1/ln(M) */
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    /** 向量页，第 i 个向量在 vectorPages[i / PAGE_ROWS] 的 (i % PAGE_ROWS) * dimensions 处 */
+    private float[][] vectorPages = new float[0][];
+    /** INT8 编码的向量页，布局与 vectorPages 相同 */
+    private byte[][] codePages = new byte[0][];
+    /** INT8 编码时每个向量的缩放系数，原始分量约为 code * scale */
+    private float[] scales = new float[0];
+    /** 第 0 层邻居页，每个节点 m0 + 1 个 int：邻居数、邻居 */
+    private int[][] linkPages = new int[0][];
+    /** 第 1 层及以上的邻居，节点层数为 0 时为 null；每层 m + 1 个 int */
+    private int[][] upperLinks = new int[0][];
+    private byte[] levels = new byte[0];
+
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /** 每个检索线程复用的访问标记 */
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        this(dimensions, m, efConstruction, Encoding.FLOAT32);
+    }
+
+    public HnswIndex(int dimensions, int m, int efConstruction, Encoding encoding) {
+        this.dimensions = dimensions;
+        this.encoding = encoding;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int m() {
+        return m;
+    }
+
+    public int efConstruction() {
+        return efConstruction;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * 向量和邻居表占用的堆内存（字节），不含数组对象头
+     */
+    public long memoryBytes() {
+        long bytes = (long) linkPages.length * PAGE_ROWS * (encoding == Encoding.INT8 ? dimensions : (long) dimensions * Float.BYTES);
+        bytes += (long) linkPages.length * PAGE_ROWS * (m0 + 1) * Integer.BYTES;
+        bytes += levels.length + (long) upperLinks.length * 8 + (encoding == Encoding.INT8 ? (long) scales.length * Float.BYTES : 0);
+        for (int node = 0; node < size; node++) {
+            if (null != upperLinks[node]) bytes += (long) upperLinks[node].length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * 加入单位向量，返回节点编号（从 0 连续递增）
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("vector dimensions " + vector.length + " != " + dimensions);
+        }
+        int node = size;
+        ensureCapacity(node + 1);
+        store(node, vector);
+        int level = randomLevel();
+        levels[node] = (byte) level;
+        upperLinks[node] = level == 0 ? null : new int[level * (m + 1)];
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            size++;
+            return node;
+        }
+
+        int current = entryPoint;
+        float currentScore = dot(vector, current);
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(vector, current, currentScore, l);
+            currentScore = dot(vector, current);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(vector, current, efConstruction, l, null);
+            int[] sorted = candidates.sortedDescending();
+            int[] neighbors = selectNeighbors(sorted, sorted.length, l == 0 ? m0 : m, node);
+            setLinks(node, l, neighbors, neighbors.length);
+            for (int neighbor : neighbors) {
+                connect(neighbor, node, l);
+            }
+            if (sorted.length > 0) current = sorted[0];
+        }
+        size++;
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return node;
+    }
+
+    /**
+     * 检索与 query 最相似的 k 个节点
+     *
+     * @param query  单位向量
+     * @param ef     候选列表大小，不小于 k
+     * @param accept 结果过滤（已删除、元数据不满足），被过滤的节点仍参与图的遍历；为 null 不过滤
+     * @return 按相似度从高到低的节点与相似度
+     */
+    public Result search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) return new Result(new int[0], new float[0]);
+        int current = entryPoint;
+        float currentScore = dot(query, current);
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(query, current, currentScore, l);
+            currentScore = dot(query, current);
+        }
+        NodeHeap found = searchLayer(query, current, Math.max(ef, k), 0, accept);
+        int[] nodes = found.sortedDescending();
+        int count = Math.min(k, nodes.length);
+        int[] top = Arrays.copyOf(nodes, count);
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = dot(query, top[i]);
+        }
+        return new Result(top, scores);
+    }
+
+    /**
+     * 节点向量的拷贝
+     */
+    public float[] vector(int node) {
+        float[] vector = new float[dimensions];
+        int offset = (node % PAGE_ROWS) * dimensions;
+        if (encoding == Encoding.INT8) {
+            byte[] page = codePages[node / PAGE_ROWS];
+            float scale = scales[node];
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = page[offset + i] * scale;
+            }
+            return vector;
+        }
+        System.arraycopy(vectorPages[node / PAGE_ROWS], offset, vector, 0, dimensions);
+        return vector;
+    }
+
+    /**
+     * 单位向量与节点向量的点积；四路累加，循环体没有依赖链，JIT 能展开和流水化
+     */
+    public float dot(float[] query, int node) {
+        if (encoding == Encoding.INT8) return dotCodes(query, node);
+        float[] page = vectorPages[node / PAGE_ROWS];
+        int offset = (node % PAGE_ROWS) * dimensions;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = dimensions & ~3;
+        for (; i < bound; i += 4) {
+            s0 += query[i] * page[offset + i];
+            s1 += query[i + 1] * page[offset + i + 1];
+            s2 += query[i + 2] * page[offset + i + 2];
+            s3 += query[i + 3] * page[offset + i + 3];
+        }
+        for (; i < dimensions; i++) {
+            s0 += query[i] * page[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private float dot(int a, int b) {
+        if (encoding == Encoding.INT8) return dotCodes(a, b);
+        float[] pageA = vectorPages[a / PAGE_ROWS];
+        float[] pageB = vectorPages[b / PAGE_ROWS];
+        int offsetA = (a % PAGE_ROWS) * dimensions;
+        int offsetB = (b % PAGE_ROWS) * dimensions;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = dimensions & ~3;
+        for (; i < bound; i += 4) {
+            s0 += pageA[offsetA + i] * pageB[offsetB + i];
+            s1 += pageA[offsetA + i + 1] * pageB[offsetB + i + 1];
+            s2 += pageA[offsetA + i + 2] * pageB[offsetB + i + 2];
+            s3 += pageA[offsetA + i + 3] * pageB[offsetB + i + 3];
+        }
+        for (; i < dimensions; i++) {
+            s0 += pageA[offsetA + i] * pageB[offsetB + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private float dotCodes(float[] query, int node) {
+        byte[] page = codePages[node / PAGE_ROWS];
+        int offset = (node % PAGE_ROWS) * dimensions;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = dimensions & ~3;
+        for (; i < bound; i += 4) {
+            s0 += query[i] * page[offset + i];
+            s1 += query[i + 1] * page[offset + i + 1];
+            s2 += query[i + 2] * page[offset + i + 2];
+            s3 += query[i + 3] * page[offset + i + 3];
+        }
+        for (; i < dimensions; i++) {
+            s0 += query[i] * page[offset + i];
+        }
+        return ((s0 + s1) + (s2 + s3)) * scales[node];
+    }
+
+    /**
+     * 两个 INT8 向量的点积，整数累加；768 维时累加值不超过 768 * 127 * 127，不会溢出
+     */
+    private float dotCodes(int a, int b) {
+        byte[] pageA = codePages[a / PAGE_ROWS];
+        byte[] pageB = codePages[b / PAGE_ROWS];
+        int offsetA = (a % PAGE_ROWS) * dimensions;
+        int offsetB = (b % PAGE_ROWS) * dimensions;
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = dimensions & ~3;
+        for (; i < bound; i += 4) {
+            s0 += pageA[offsetA + i] * pageB[offsetB + i];
+            s1 += pageA[offsetA + i + 1] * pageB[offsetB + i + 1];
+            s2 += pageA[offsetA + i + 2] * pageB[offsetB + i + 2];
+            s3 += pageA[offsetA + i + 3] * pageB[offsetB + i + 3];
+        }
+        for (; i < dimensions; i++) {
+            s0 += pageA[offsetA + i] * pageB[offsetB + i];
+        }
+        return ((s0 + s1) + (s2 + s3)) * scales[a] * scales[b];
+    }
+
+    /**
+     * 写入节点向量；INT8 按最大绝对值对称量化，最大的分量映射到 ±127
+     */
+    private void store(int node, float[] vector) {
+        int offset = (node % PAGE_ROWS) * dimensions;
+        if (encoding == Encoding.FLOAT32) {
+            System.arraycopy(vector, 0, vectorPages[node / PAGE_ROWS], offset, dimensions);
+            return;
+        }
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        float scale = max == 0 ? 1 : max / 127;
+        byte[] page = codePages[node / PAGE_ROWS];
+        for (int i = 0; i < dimensions; i++) {
+            page[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        scales[node] = scale;
+    }
+
+    /**
+     * 在一层上贪心移动到与 query 最相似的节点
+     */
+    private int greedy(float[] query, int current, float currentScore, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] links = links(current, level);
+            int base = linkBase(current, level);
+            int count = links[base];
+            for (int i = 1; i <= count; i++) {
+                int neighbor = links[base + i];
+                float score = dot(query, neighbor);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在一层上做束搜索；accept 为 null 时结果包含所有访问到的节点
+     */
+    private NodeHeap searchLayer(float[] query, int entry, int ef, int level, IntPredicate accept) {
+        Visited marks = visited.get();
+        marks.reset(size + 1);
+        // 候选按相似度从高到低取出，结果保留最相似的 ef 个（堆顶为最差的）
+        NodeHeap candidates = new NodeHeap(ef * 2, true);
+        NodeHeap results = new NodeHeap(ef + 1, false);
+
+        float entryScore = dot(query, entry);
+        marks.mark(entry);
+        candidates.push(entry, entryScore);
+        if (null == accept || accept.test(entry)) results.push(entry, entryScore);
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) break;
+            int candidate = candidates.pop();
+
+            int[] links = links(candidate, level);
+            int base = linkBase(candidate, level);
+            int count = links[base];
+            for (int i = 1; i <= count; i++) {
+                int neighbor = links[base + i];
+                if (!marks.mark(neighbor)) continue;
+                float score = dot(query, neighbor);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbor, score);
+                    if (null == accept || accept.test(neighbor)) {
+                        results.push(neighbor, score);
+                        if (results.size() > ef) results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选邻居：候选与已选邻居比与 base 更相似时跳过，让邻居分散在不同方向上；不足时再用跳过的候选补齐
+     *
+     * @param candidates 按与 base 的相似度从高到低
+     */
+    private int[] selectNeighbors(int[] candidates, int length, int limit, int base) {
+        int[] selected = new int[Math.min(limit, length)];
+        int count = 0;
+        int[] skipped = new int[length];
+        int skippedCount = 0;
+        for (int c = 0; c < length && count < selected.length; c++) {
+            int candidate = candidates[c];
+            float toBase = dot(candidate, base);
+            boolean keep = true;
+            for (int s = 0; s < count; s++) {
+                if (dot(candidate, selected[s]) > toBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+            } else {
+                skipped[skippedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < skippedCount && count < selected.length; i++) {
+            selected[count++] = skipped[i];
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * 给已有节点加一条指向新节点的边；邻居已满时用启发式从原邻居和新节点中重新选
+     */
+    private void connect(int node, int newNode, int level) {
+        int[] links = links(node, level);
+        int base = linkBase(node, level);
+        int count = links[base];
+        int limit = level == 0 ? m0 : m;
+        if (count < limit) {
+            links[base + 1 + count] = newNode;
+            links[base] = count + 1;
+            return;
+        }
+        int[] candidates = new int[count + 1];
+        System.arraycopy(links, base + 1, candidates, 0, count);
+        candidates[count] = newNode;
+        sortBySimilarity(candidates, node);
+        int[] selected = selectNeighbors(candidates, candidates.length, limit, node);
+        setLinks(node, level, selected, selected.length);
+    }
+
+    private void sortBySimilarity(int[] nodes, int to) {
+        float[] scores = new float[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            scores[i] = dot(nodes[i], to);
+        }
+        // 邻居数很少，插入排序即可
+        for (int i = 1; i < nodes.length; i++) {
+            int node = nodes[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = score;
+        }
+    }
+
+    private void setLinks(int node, int level, int[] neighbors, int count) {
+        int[] links = links(node, level);
+        int base = linkBase(node, level);
+        links[base] = count;
+        System.arraycopy(neighbors, 0, links, base + 1, count);
+    }
+
+    private int[] links(int node, int level) {
+        return level == 0 ? linkPages[node / PAGE_ROWS] : upperLinks[node];
+    }
+
+    private int linkBase(int node, int level) {
+        return level == 0 ? (node % PAGE_ROWS) * (m0 + 1) : (level - 1) * (m + 1);
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        int level = (int) (-Math.log(Math.max(r, Double.MIN_VALUE)) * levelMultiplier);
+        return Math.min(level, Byte.MAX_VALUE);
+    }
+
+    private void ensureCapacity(int capacity) {
+        int pages = (capacity + PAGE_ROWS - 1) / PAGE_ROWS;
+        if (pages > linkPages.length) {
+            int oldPages = linkPages.length;
+            linkPages = Arrays.copyOf(linkPages, pages);
+            if (encoding == Encoding.INT8) {
+                codePages = Arrays.copyOf(codePages, pages);
+            } else {
+                vectorPages = Arrays.copyOf(vectorPages, pages);
+            }
+            for (int p = oldPages; p < pages; p++) {
+                linkPages[p] = new int[PAGE_ROWS * (m0 + 1)];
+                if (encoding == Encoding.INT8) {
+                    codePages[p] = new byte[PAGE_ROWS * dimensions];
+                } else {
+                    vectorPages[p] = new float[PAGE_ROWS * dimensions];
+                }
+            }
+        }
+        if (capacity > levels.length) {
+            int length = Math.max(capacity, levels.length * 2);
+            levels = Arrays.copyOf(levels, length);
+            upperLinks = Arrays.copyOf(upperLinks, length);
+            if (encoding == Encoding.INT8) {
+                scales = Arrays.copyOf(scales, length);
+            }
+        }
+    }
+
+    /**
+     * 写入索引：文件头、层数、向量（INT8 为缩放系数和编码）、第 0 层邻居、高层邻居
+     */
+    void write(MappedFile.Writer writer) throws IOException {
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        writer.putInt(encoding.ordinal());
+        writer.putInt(dimensions);
+        writer.putInt(m);
+        writer.putInt(efConstruction);
+        writer.putInt(size);
+        writer.putInt(entryPoint);
+        writer.putInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            writer.putInt(levels[node]);
+        }
+        if (encoding == Encoding.INT8) {
+            writer.putFloats(scales, 0, size);
+            for (int start = 0; start < size; start += PAGE_ROWS) {
+                int rows = Math.min(PAGE_ROWS, size - start);
+                writer.putRawBytes(codePages[start / PAGE_ROWS], 0, rows * dimensions);
+            }
+        } else {
+            for (int start = 0; start < size; start += PAGE_ROWS) {
+                int rows = Math.min(PAGE_ROWS, size - start);
+                writer.putFloats(vectorPages[start / PAGE_ROWS], 0, rows * dimensions);
+            }
+        }
+        for (int start = 0; start < size; start += PAGE_ROWS) {
+            int rows = Math.min(PAGE_ROWS, size - start);
+            writer.putInts(linkPages[start / PAGE_ROWS], 0, rows * (m0 + 1));
+        }
+        for (int node = 0; node < size; node++) {
+            if (null != upperLinks[node]) {
+                writer.putInts(upperLinks[node], 0, upperLinks[node].length);
+            }
+        }
+    }
+
+    static HnswIndex read(MappedFile.Reader reader) throws IOException {
+        if (reader.getInt() != MAGIC) throw new IOException("不是 HNSW 索引文件");
+        int version = reader.getInt();
+        if (version > VERSION) throw new IOException("不支持的索引文件版本 " + version);
+        // 版本 1 没有编码字段，只有 FLOAT32
+        Encoding encoding = version == 1 ? Encoding.FLOAT32 : Encoding.values()[reader.getInt()];
+        HnswIndex index = new HnswIndex(reader.getInt(), reader.getInt(), reader.getInt(), encoding);
+        int size = reader.getInt();
+        index.entryPoint = reader.getInt();
+        index.maxLevel = reader.getInt();
+        index.ensureCapacity(size);
+        for (int node = 0; node < size; node++) {
+            index.levels[node] = (byte) reader.getInt();
+        }
+        if (encoding == Encoding.INT8) {
+            reader.getFloats(index.scales, 0, size);
+            for (int start = 0; start < size; start += PAGE_ROWS) {
+                int rows = Math.min(PAGE_ROWS, size - start);
+                reader.getRawBytes(index.codePages[start / PAGE_ROWS], 0, rows * index.dimensions);
+            }
+        } else {
+            for (int start = 0; start < size; start += PAGE_ROWS) {
+                int rows = Math.min(PAGE_ROWS, size - start);
+                reader.getFloats(index.vectorPages[start / PAGE_ROWS], 0, rows * index.dimensions);
+            }
+        }
+        for (int start = 0; start < size; start += PAGE_ROWS) {
+            int rows = Math.min(PAGE_ROWS, size - start);
+            reader.getInts(index.linkPages[start / PAGE_ROWS], 0, rows * (index.m0 + 1));
+        }
+        for (int node = 0; node < size; node++) {
+            int level = index.levels[node];
+            if (level > 0) {
+                index.upperLinks[node] = new int[level * (index.m + 1)];
+                reader.getInts(index.upperLinks[node], 0, index.upperLinks[node].length);
+            }
+        }
+        index.size = size;
+        return index;
+    }
+
+    /**
+     * 向量编码
+     */
+    public enum Encoding {
+        /** 原始 float，相似度精确 */
+        FLOAT32,
+        /** 每个分量 1 字节，相似度为近似值 */
+        INT8
+    }
+
+    /**
+     * 检索结果，按相似度从高到低
+     */
+    public record Result(int[] nodes, float[] scores) {
+    }
+
+    /**
+     * 节点与分数的二叉堆，数组存放不装箱；maxHeap 为 true 时堆顶是分数最高的节点
+     */
+    private static final class NodeHeap {
+
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+        private final boolean maxHeap;
+
+        NodeHeap(int capacity, boolean maxHeap) {
+            this.nodes = new int[Math.max(capacity, 4)];
+            this.scores = new float[nodes.length];
+            this.maxHeap = maxHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) break;
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int node = nodes[size];
+            float score = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(scores[child + 1], scores[child])) child++;
+                if (!before(scores[child], score)) break;
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+            return top;
+        }
+
+        /**
+         * 取出全部节点，按分数从高到低；只用于 maxHeap 为 false 的结果堆，调用后堆为空
+         */
+        int[] sortedDescending() {
+            int[] sorted = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                sorted[i] = pop();
+            }
+            return sorted;
+        }
+
+        private boolean before(float a, float b) {
+            return maxHeap ? a > b : a < b;
+        }
+    }
+
+    /**
+     * 访问标记，用递增的轮次代替每次检索清零
+     */
+    private static final class Visited {
+
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return 之前未访问过
+         */
+        boolean mark(int node) {
+            if (marks[node] == epoch) return false;
+            marks[node] = epoch;
+            return true;
+        }
+    }
+
+}
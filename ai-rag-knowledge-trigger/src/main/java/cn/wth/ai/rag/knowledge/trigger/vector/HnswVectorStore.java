@@ -0,0 +1,441 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * @Author: 5th
+ * @Description: 进程内向量库；向量放在 HnswIndex 里（单位化后点积即余弦相似度），文本和元数据按节点编号存放。
+ * 删除只做标记，检索时跳过，删除比例超过阈值后在保存时重建索引；索引保存为内存映射文件，启动时直接加载，不需要重新构建。
+ * INT8 编码时图遍历使用量化向量，取 topK * rerankFactor 个候选再用原始向量重排；原始向量保存在索引文件末尾，
+ * 加载后以只读映射访问，只有重排的候选会被换入页缓存，堆内只保留量化向量和上次保存后新增的原始向量
+ * @CreateTime: 2026-10-18 21:10
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+
+    /** 文档段魔数 "DOCS" */
+    private static final int DOCS_MAGIC = 0x53434F44;
+    /** 原始向量段魔数 "FULL" */
+    private static final int FULL_MAGIC = 0x4C4C5546;
+
+    private final EmbeddingModel embeddingModel;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    /** INT8 编码时重排的候选数为 topK 的倍数 */
+    private final int rerankFactor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** 保存与重建互斥，两者都会替换原始向量的来源；保存期间有文件 I/O，不用 synchronized，避免虚拟线程占住载体线程 */
+    private final ReentrantLock maintenance = new ReentrantLock();
+
+    private HnswIndex index;
+    private List<String> ids = new ArrayList<>();
+    private List<String> texts = new ArrayList<>();
+    private List<Map<String, Object>> metadata = new ArrayList<>();
+    private Map<String, Integer> nodeById = new HashMap<>();
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    /** INT8 编码时已保存节点的原始向量，映射自索引文件 */
+    private MappedFile.FloatRows persisted;
+    /** INT8 编码时上次保存后新增节点的原始向量 */
+    private Map<Integer, float[]> pending = new HashMap<>();
+    /** 上次保存后是否有变化 */
+    private volatile boolean dirty;
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch) {
+        this(embeddingModel, m, efConstruction, efSearch, HnswIndex.Encoding.FLOAT32, 1);
+    }
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch, HnswIndex.Encoding encoding,
+                           int rerankFactor) {
+        this(embeddingModel, efSearch, rerankFactor, new HnswIndex(embeddingModel.dimensions(), m, efConstruction, encoding));
+    }
+
+    private HnswVectorStore(EmbeddingModel embeddingModel, int efSearch, int rerankFactor, HnswIndex index) {
+        this.embeddingModel = embeddingModel;
+        this.m = index.m();
+        this.efConstruction = index.efConstruction();
+        this.efSearch = efSearch;
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.index = index;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) return;
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+        add(documents, embeddings);
+    }
+
+    /**
+     * 写入已向量化的分片；id 已存在时替换
+     */
+    public void add(List<Document> documents, List<float[]> embeddings) {
+        List<float[]> normalized = new ArrayList<>(embeddings.size());
+        for (float[] embedding : embeddings) {
+            normalized.add(normalize(embedding));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                markDeleted(nodeById.get(document.getId()));
+                int node = index.add(normalized.get(i));
+                if (isQuantized()) {
+                    pending.put(node, normalized.get(i));
+                }
+                ids.add(document.getId());
+                texts.add(document.getText());
+                metadata.add(new HashMap<>(document.getMetadata()));
+                nodeById.put(document.getId(), node);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                markDeleted(nodeById.remove(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        lock.writeLock().lock();
+        try {
+            for (int node = 0; node < ids.size(); node++) {
+                if (!deleted.get(node) && MetadataFilter.matches(filterExpression, metadata.get(node))) {
+                    nodeById.remove(ids.get(node));
+                    markDeleted(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索；相似度为余弦相似度，与 pgvector 余弦距离下的分数（1 - 距离）一致
+     */
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        Filter.Expression filter = request.getFilterExpression();
+        lock.readLock().lock();
+        try {
+            IntPredicate accept = node -> !deleted.get(node) && MetadataFilter.matches(filter, metadata.get(node));
+            int candidates = isQuantized() ? request.getTopK() * rerankFactor : request.getTopK();
+            HnswIndex.Result result = index.search(query, candidates, Math.max(efSearch, candidates), accept);
+            if (isQuantized()) {
+                result = rerank(query, result);
+            }
+            int count = Math.min(request.getTopK(), result.nodes().length);
+            List<Document> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                float score = result.scores()[i];
+                if (score < request.getSimilarityThreshold()) break;
+                int node = result.nodes()[i];
+                Map<String, Object> documentMetadata = new HashMap<>(metadata.get(node));
+                documentMetadata.put("distance", 1 - score);
+                documents.add(Document.builder()
+                        .id(ids.get(node))
+                        .text(texts.get(node))
+                        .metadata(documentMetadata)
+                        .score((double) score)
+                        .build());
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 未删除的分片 id
+     */
+    public Set<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(nodeById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public HnswIndex.Encoding encoding() {
+        return index.encoding();
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 常驻堆内存的向量和邻居表（字节）；INT8 编码时不含映射的原始向量
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return index.memoryBytes() + (long) pending.size() * index.dimensions() * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已删除节点占比超过 compactDeletedRatio 时重建索引
+     *
+     * @return 是否重建
+     */
+    public boolean compact(double compactDeletedRatio) {
+        maintenance.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                return compactLocked(compactDeletedRatio);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            maintenance.unlock();
+        }
+    }
+
+    private boolean compactLocked(double compactDeletedRatio) {
+        if (ids.isEmpty() || (double) deletedCount / ids.size() <= compactDeletedRatio) return false;
+        long start = System.currentTimeMillis();
+        // INT8 编码时用原始向量重建，避免量化误差累积；重建后节点编号改变，原始向量在下次保存前都放在堆内
+        HnswIndex compacted = new HnswIndex(index.dimensions(), m, efConstruction, index.encoding());
+        Map<Integer, float[]> newPending = new HashMap<>();
+        float[] buffer = new float[index.dimensions()];
+        List<String> newIds = new ArrayList<>(nodeById.size());
+        List<String> newTexts = new ArrayList<>(nodeById.size());
+        List<Map<String, Object>> newMetadata = new ArrayList<>(nodeById.size());
+        Map<String, Integer> newNodeById = new HashMap<>();
+        for (int node = 0; node < ids.size(); node++) {
+            if (deleted.get(node)) continue;
+            float[] vector = isQuantized() ? fullVector(node, buffer).clone() : index.vector(node);
+            int newNode = compacted.add(vector);
+            if (isQuantized()) {
+                newPending.put(newNode, vector);
+            }
+            newNodeById.put(ids.get(node), newNode);
+            newIds.add(ids.get(node));
+            newTexts.add(texts.get(node));
+            newMetadata.add(metadata.get(node));
+        }
+        log.info("重建进程内向量索引 节点:{} → {} 耗时:{}ms", ids.size(), newIds.size(), System.currentTimeMillis() - start);
+        index = compacted;
+        ids = newIds;
+        texts = newTexts;
+        metadata = newMetadata;
+        nodeById = newNodeById;
+        deleted = new BitSet();
+        deletedCount = 0;
+        persisted = null;
+        pending = newPending;
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * 写入临时文件后原子替换，保存过程中崩溃不会损坏已有文件；保存期间可以检索，写入等待
+     */
+    public void save(Path path) throws IOException {
+        maintenance.lock();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            int savedSize;
+            long fullOffset = -1;
+            lock.readLock().lock();
+            try {
+                savedSize = ids.size();
+                try (MappedFile.Writer writer = new MappedFile.Writer(temp)) {
+                    index.write(writer);
+                    writer.putInt(DOCS_MAGIC);
+                    writer.putInt(savedSize);
+                    for (int node = 0; node < savedSize; node++) {
+                        writer.putString(ids.get(node));
+                        writer.putString(null == texts.get(node) ? "" : texts.get(node));
+                        writer.putString(JSON.toJSONString(metadata.get(node)));
+                    }
+                    writer.putBytes(deleted.toByteArray());
+                    if (isQuantized()) {
+                        writer.putInt(FULL_MAGIC);
+                        fullOffset = writer.position();
+                        float[] buffer = new float[index.dimensions()];
+                        for (int node = 0; node < savedSize; node++) {
+                            writer.putFloats(fullVector(node, buffer), 0, buffer.length);
+                        }
+                    }
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                dirty = false;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (fullOffset < 0) return;
+
+            // 已保存节点的原始向量改为从新文件映射，释放堆内的副本；保存期间新增的节点仍在堆内
+            MappedFile.FloatRows rows = new MappedFile.FloatRows(path, fullOffset, savedSize, index.dimensions());
+            lock.writeLock().lock();
+            try {
+                persisted = rows;
+                pending.keySet().removeIf(node -> node < savedSize);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            maintenance.unlock();
+        }
+    }
+
+    /**
+     * 从文件加载；文件的向量维度与向量模型不一致时（换了模型）返回 null
+     */
+    public static HnswVectorStore load(Path path, EmbeddingModel embeddingModel, int efSearch, int rerankFactor) throws IOException {
+        try (MappedFile.Reader reader = new MappedFile.Reader(path)) {
+            HnswIndex index = HnswIndex.read(reader);
+            if (index.dimensions() != embeddingModel.dimensions()) {
+                log.warn("进程内向量索引维度 {} 与向量模型 {} 不一致，忽略 {}", index.dimensions(), embeddingModel.dimensions(), path);
+                return null;
+            }
+            if (reader.getInt() != DOCS_MAGIC) throw new IOException("索引文件缺少文档段 " + path);
+            int size = reader.getInt();
+            if (size != index.size()) throw new IOException("索引文件节点数 " + index.size() + " 与文档数 " + size + " 不一致 " + path);
+
+            HnswVectorStore store = new HnswVectorStore(embeddingModel, efSearch, rerankFactor, index);
+            for (int node = 0; node < size; node++) {
+                store.ids.add(reader.getString());
+                store.texts.add(reader.getString());
+                @SuppressWarnings("unchecked")
+                Map<String, Object> documentMetadata = JSON.parseObject(reader.getString(), Map.class);
+                store.metadata.add(null == documentMetadata ? new HashMap<>() : documentMetadata);
+            }
+            store.deleted = BitSet.valueOf(reader.getBytes());
+            store.deletedCount = store.deleted.cardinality();
+            for (int node = 0; node < size; node++) {
+                if (!store.deleted.get(node)) store.nodeById.put(store.ids.get(node), node);
+            }
+            if (store.isQuantized()) {
+                if (reader.getInt() != FULL_MAGIC) throw new IOException("索引文件缺少原始向量段 " + path);
+                store.persisted = new MappedFile.FloatRows(path, reader.position(), size, index.dimensions());
+            }
+            return store;
+        }
+    }
+
+    private boolean isQuantized() {
+        return index.encoding() == HnswIndex.Encoding.INT8;
+    }
+
+    /**
+     * 节点的原始单位向量；返回值可能是 buffer，也可能是堆内的副本，调用方不能修改
+     */
+    private float[] fullVector(int node, float[] buffer) {
+        float[] vector = pending.get(node);
+        if (null != vector) return vector;
+        persisted.get(node, buffer);
+        return buffer;
+    }
+
+    /**
+     * 用原始向量重新计算候选的相似度并排序
+     */
+    private HnswIndex.Result rerank(float[] query, HnswIndex.Result candidates) {
+        int[] nodes = candidates.nodes();
+        float[] buffer = new float[query.length];
+        Integer[] order = new Integer[nodes.length];
+        float[] scores = new float[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            order[i] = i;
+            scores[i] = dot(query, fullVector(nodes[i], buffer));
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] rerankedNodes = new int[nodes.length];
+        float[] rerankedScores = new float[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            rerankedNodes[i] = nodes[order[i]];
+            rerankedScores[i] = scores[order[i]];
+        }
+        return new HnswIndex.Result(rerankedNodes, rerankedScores);
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private void markDeleted(Integer node) {
+        if (null == node || deleted.get(node)) return;
+        deleted.set(node);
+        deletedCount++;
+        dirty = true;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) return normalized;
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+}
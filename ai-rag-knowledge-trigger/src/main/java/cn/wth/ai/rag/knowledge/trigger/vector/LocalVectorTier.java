@@ -0,0 +1,279 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import com.alibaba.fastjson.JSON;
+import com.pgvector.PGvector;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: 5th
+ * @Description: 热点知识库的进程内向量层；配置的热点知识库各自一个 HnswVectorStore，检索不再访问 pgvector。
+ * pgvector 仍是数据的来源：导入流水线的写入和删除同步到这里，启动后和定时任务再与表中的 id 对账，补齐其他实例写入的分片
+ * @CreateTime: 2026-10-18 21:10
+ */
+@Slf4j
+public class LocalVectorTier {
+
+    /** 对账时每次从表中加载的分片数 */
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final Config config;
+    private final Set<String> hotTags;
+    /** 知识库标签 → 已就绪（从文件加载或完成过一次对账）的进程内向量库 */
+    private final Map<String, HnswVectorStore> stores = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public LocalVectorTier(JdbcTemplate jdbcTemplate, EmbeddingModel embeddingModel, Config config) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingModel = embeddingModel;
+        this.config = config;
+        this.hotTags = Set.copyOf(config.getHotTags());
+    }
+
+    public boolean isHot(String ragTag) {
+        return hotTags.contains(ragTag);
+    }
+
+    public Set<String> getHotTags() {
+        return hotTags;
+    }
+
+    /**
+     * 已就绪的进程内向量库；还没加载完成时返回 null，由调用方回退到 pgvector
+     */
+    public HnswVectorStore find(String ragTag) {
+        return stores.get(ragTag);
+    }
+
+    /**
+     * 加载上次保存的索引文件；文件不存在或损坏的知识库等待对账时从表中加载
+     */
+    public void load() {
+        for (String ragTag : hotTags) {
+            Path path = path(ragTag);
+            if (!Files.exists(path)) continue;
+            long start = System.currentTimeMillis();
+            try {
+                HnswVectorStore store = HnswVectorStore.load(path, embeddingModel, config.getEfSearch(), config.getRerankFactor());
+                if (null == store) continue;
+                if (store.encoding() != config.getEncoding()) {
+                    log.info("进程内向量索引编码 {} 与配置 {} 不一致，从数据库重建 {}", store.encoding(), config.getEncoding(), ragTag);
+                    continue;
+                }
+                stores.put(ragTag, store);
+                log.info("加载进程内向量索引 {} 分片数:{} 堆内存:{}KB 耗时:{}ms", ragTag, store.size(), store.memoryBytes() / 1024,
+                        System.currentTimeMillis() - start);
+            } catch (IOException | RuntimeException e) {
+                log.warn("进程内向量索引加载失败，等待从数据库重建 {} path:{}", ragTag, path, e);
+            }
+        }
+    }
+
+    /**
+     * 与表中的数据对账：删除表中已没有的分片，加载本地缺少的分片
+     *
+     * @param table       知识库所在的表
+     * @param filterByTag 表是否由多个知识库共用
+     */
+    public void sync(String ragTag, String table, boolean filterByTag) {
+        long start = System.currentTimeMillis();
+        String where = filterByTag ? " WHERE metadata->>'knowledge' = ?" : "";
+        Object[] args = filterByTag ? new Object[]{ragTag} : new Object[0];
+        Set<String> tableIds = new HashSet<>(jdbcTemplate.queryForList("SELECT id::text FROM " + table + where, String.class, args));
+
+        HnswVectorStore store = stores.get(ragTag);
+        if (null == store) {
+            store = new HnswVectorStore(embeddingModel, config.getM(), config.getEfConstruction(), config.getEfSearch(),
+                    config.getEncoding(), config.getRerankFactor());
+        }
+        Set<String> localIds = store.ids();
+        List<String> removed = localIds.stream().filter(id -> !tableIds.contains(id)).toList();
+        if (!removed.isEmpty()) store.delete(removed);
+
+        List<String> missing = tableIds.stream().filter(id -> !localIds.contains(id)).toList();
+        for (int from = 0; from < missing.size(); from += LOAD_BATCH_SIZE) {
+            List<String> batch = missing.subList(from, Math.min(from + LOAD_BATCH_SIZE, missing.size()));
+            loadRows(store, table, batch);
+        }
+        stores.put(ragTag, store);
+        if (!removed.isEmpty() || !missing.isEmpty()) {
+            log.info("进程内向量索引对账 {} 删除:{} 加载:{} 分片数:{} 耗时:{}ms", ragTag, removed.size(), missing.size(), store.size(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 同步导入流水线写入的分片，只保留热点知识库的
+     */
+    public void write(String ragTag, List<Document> documents, List<float[]> embeddings) {
+        HnswVectorStore store = stores.get(ragTag);
+        if (null != store) {
+            store.add(documents, embeddings);
+        }
+    }
+
+    public void deleteBySources(String ragTag, Collection<String> sources) {
+        HnswVectorStore store = stores.get(ragTag);
+        if (null != store && !sources.isEmpty()) {
+            store.delete(new FilterExpressionBuilder().in("source", new ArrayList<Object>(sources)).build());
+        }
+    }
+
+    public void deleteByJob(String ragTag, String jobId) {
+        HnswVectorStore store = stores.get(ragTag);
+        if (null != store) {
+            store.delete(new FilterExpressionBuilder().eq("job", jobId).build());
+        }
+    }
+
+    /**
+     * 删除来自 origin、不是该任务写入的分片
+     */
+    public void deleteByOriginExcept(String ragTag, String origin, String jobId) {
+        HnswVectorStore store = stores.get(ragTag);
+        if (null != store) {
+            FilterExpressionBuilder builder = new FilterExpressionBuilder();
+            store.delete(builder.and(builder.eq("origin", origin), builder.ne("job", jobId)).build());
+        }
+    }
+
+    public void clear(String ragTag) {
+        HnswVectorStore store = stores.get(ragTag);
+        if (null != store) {
+            store.delete(new ArrayList<>(store.ids()));
+        }
+    }
+
+    /**
+     * 保存有变化的索引；删除比例过高的先重建
+     */
+    public void save() {
+        for (Map.Entry<String, HnswVectorStore> entry : stores.entrySet()) {
+            HnswVectorStore store = entry.getValue();
+            store.compact(config.getCompactDeletedRatio());
+            if (!store.isDirty()) continue;
+            long start = System.currentTimeMillis();
+            try {
+                store.save(path(entry.getKey()));
+                log.info("保存进程内向量索引 {} 分片数:{} 堆内存:{}KB 耗时:{}ms", entry.getKey(), store.size(), store.memoryBytes() / 1024,
+                        System.currentTimeMillis() - start);
+            } catch (IOException e) {
+                log.error("进程内向量索引保存失败 {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 启动后台任务：立即对账一次，之后按 syncIntervalMinutes 定时对账并保存
+     *
+     * @param syncAll 对所有热点知识库执行 sync
+     */
+    public void start(Runnable syncAll) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rag-local-vector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                syncAll.run();
+                save();
+            } catch (Exception e) {
+                log.error("进程内向量索引对账失败", e);
+            }
+        }, 0, config.getSyncIntervalMinutes(), TimeUnit.MINUTES);
+    }
+
+    /**
+     * 停止后台任务并保存，下次启动直接加载
+     */
+    public void shutdown() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+        }
+        save();
+    }
+
+    private void loadRows(HnswVectorStore store, String table, List<String> ids) {
+        List<Document> documents = new ArrayList<>(ids.size());
+        List<float[]> embeddings = new ArrayList<>(ids.size());
+        jdbcTemplate.query("SELECT id::text AS id, content, metadata::text AS metadata, embedding::text AS embedding FROM " + table
+                + " WHERE id = ANY(?::uuid[])", (RowCallbackHandler) rs -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = JSON.parseObject(rs.getString("metadata"), Map.class);
+            documents.add(Document.builder()
+                    .id(rs.getString("id"))
+                    .text(rs.getString("content"))
+                    .metadata(null == metadata ? Map.of() : metadata)
+                    .build());
+            embeddings.add(new PGvector(rs.getString("embedding")).toArray());
+        }, (Object) ids.toArray(new String[0]));
+        store.add(documents, embeddings);
+    }
+
+    /**
+     * 索引文件路径；文件名使用标签的哈希，标签里的任意字符都不会影响路径
+     */
+    private Path path(String ragTag) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(ragTag.getBytes(StandardCharsets.UTF_8));
+            return Paths.get(config.getDir(), HexFormat.of().formatHex(digest).substring(0, 16) + ".hnsw");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 进程内向量层参数
+     */
+    @Data
+    public static class Config {
+        /** 是否启用，默认为false */
+        private boolean enabled = false;
+        /** 热点知识库标签，默认为空 */
+        private List<String> hotTags = new ArrayList<>();
+        /** 索引文件目录，默认为./data/vector-local */
+        private String dir = "./data/vector-local";
+        /** HNSW 每个节点的邻居数，默认为16 */
+        private int m = 16;
+        /** 构建时的候选列表大小，默认为100 */
+        private int efConstruction = 100;
+        /** 检索时的候选列表大小，默认为64 */
+        private int efSearch = 64;
+        /** 向量编码；FLOAT32、INT8（向量部分内存为 1/4，检索后用原始向量重排），默认为FLOAT32；修改后重启时从数据库重建 */
+        private HnswIndex.Encoding encoding = HnswIndex.Encoding.FLOAT32;
+        /** INT8 编码时重排的候选数为 topK 的倍数，默认为4 */
+        private int rerankFactor = 4;
+        /** 对账与保存间隔（单位：分钟），默认为10 */
+        private int syncIntervalMinutes = 10;
+        /** 已删除节点占比超过该值时重建索引，默认为0.3 */
+        private double compactDeletedRatio = 0.3;
+    }
+
+}
@@ -0,0 +1,260 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @Author: 5th
+ * @Description: 按窗口映射的顺序读写文件；单个 MappedByteBuffer 最大 2GB，这里每次映射一段窗口，用完再映射下一段。
+ * 大块的 float/int 数组整段拷贝，读写都是内存拷贝，没有逐个元素的系统调用
+ * @CreateTime: 2026-10-18 21:10
+ */
+final class MappedFile {
+
+    /** 映射窗口大小 */
+    private static final long WINDOW = 64L << 20;
+
+    private MappedFile() {
+    }
+
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        /** 当前窗口在文件中的起始位置 */
+        private long windowStart;
+
+        Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(0);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putFloats(float[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Float.BYTES);
+                int count = Math.min(length, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Float.BYTES);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        void putInts(int[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Integer.BYTES);
+                int count = Math.min(length, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /**
+         * 带长度前缀的字节数组
+         */
+        void putBytes(byte[] values) throws IOException {
+            putInt(values.length);
+            putRawBytes(values, 0, values.length);
+        }
+
+        /**
+         * 不带长度前缀，读取方需要知道长度
+         */
+        void putRawBytes(byte[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(values, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /**
+         * 当前写入位置，即已写入的字节数
+         */
+        long position() {
+            return windowStart + buffer.position();
+        }
+
+        void putString(String value) throws IOException {
+            putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * 刷盘并截掉最后一个窗口未使用的部分
+         */
+        @Override
+        public void close() throws IOException {
+            long length = windowStart + buffer.position();
+            buffer.force();
+            channel.truncate(length);
+            channel.close();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                map(windowStart + buffer.position());
+            }
+        }
+
+        private void map(long position) throws IOException {
+            if (null != buffer) buffer.force();
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long windowStart;
+
+        Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+            map(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        void getFloats(float[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Float.BYTES);
+                int count = Math.min(length, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Float.BYTES);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        void getInts(int[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Integer.BYTES);
+                int count = Math.min(length, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        byte[] getBytes() throws IOException {
+            byte[] values = new byte[getInt()];
+            getRawBytes(values, 0, values.length);
+            return values;
+        }
+
+        void getRawBytes(byte[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(values, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        String getString() throws IOException {
+            return new String(getBytes(), StandardCharsets.UTF_8);
+        }
+
+        long position() {
+            return windowStart + buffer.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                long position = windowStart + buffer.position();
+                if (position + bytes > size) {
+                    throw new IOException("文件不完整，期望至少 " + (position + bytes) + " 字节，实际 " + size);
+                }
+                map(position);
+            }
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * 文件中一段定长 float 行（例如每个节点的原始向量）的只读映射；按需由操作系统换入页缓存，不占用堆内存。
+     * 映射在文件被替换或关闭通道后仍然有效；只做绝对位置的读取，多个线程可以同时读
+     */
+    static final class FloatRows {
+
+        private final int columns;
+        private final int rows;
+        private final int rowsPerWindow;
+        private final FloatBuffer[] windows;
+
+        FloatRows(Path path, long offset, int rows, int columns) throws IOException {
+            this.columns = columns;
+            this.rows = rows;
+            this.rowsPerWindow = (int) Math.max(1, WINDOW / ((long) columns * Float.BYTES));
+            this.windows = new FloatBuffer[(rows + rowsPerWindow - 1) / rowsPerWindow];
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long end = offset + (long) rows * columns * Float.BYTES;
+                if (channel.size() < end) {
+                    throw new IOException("文件不完整，期望至少 " + end + " 字节，实际 " + channel.size());
+                }
+                for (int w = 0; w < windows.length; w++) {
+                    int windowRows = Math.min(rowsPerWindow, rows - w * rowsPerWindow);
+                    long start = offset + (long) w * rowsPerWindow * columns * Float.BYTES;
+                    windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) windowRows * columns * Float.BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN)
+                            .asFloatBuffer();
+                }
+            }
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        void get(int row, float[] values) {
+            windows[row / rowsPerWindow].get((row % rowsPerWindow) * columns, values, 0, columns);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * @Author: 5th
+ * @Description: 在内存中按元数据求值过滤表达式，供进程内向量库使用；不经过 SpEL，检索时对每个候选分片求值开销很小
+ * @CreateTime: 2026-10-18 21:10
+ */
+public final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    public static boolean matches(Filter.Expression expression, Map<String, Object> metadata) {
+        if (null == expression) return true;
+        return switch (expression.type()) {
+            case AND -> test(expression.left(), metadata) && test(expression.right(), metadata);
+            case OR -> test(expression.left(), metadata) || test(expression.right(), metadata);
+            case NOT -> !test(expression.left(), metadata);
+            case EQ -> equal(value(expression.left(), metadata), constant(expression.right()));
+            case NE -> !equal(value(expression.left(), metadata), constant(expression.right()));
+            case GT -> compare(value(expression.left(), metadata), constant(expression.right()), c -> c > 0);
+            case GTE -> compare(value(expression.left(), metadata), constant(expression.right()), c -> c >= 0);
+            case LT -> compare(value(expression.left(), metadata), constant(expression.right()), c -> c < 0);
+            case LTE -> compare(value(expression.left(), metadata), constant(expression.right()), c -> c <= 0);
+            case IN -> contains(constant(expression.right()), value(expression.left(), metadata));
+            case NIN -> !contains(constant(expression.right()), value(expression.left(), metadata));
+        };
+    }
+
+    private static boolean test(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) return matches(group.content(), metadata);
+        if (operand instanceof Filter.Expression expression) return matches(expression, metadata);
+        throw new IllegalArgumentException("不支持的过滤条件 " + operand);
+    }
+
+    private static Object value(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Key key) {
+            // 表达式文本中的键可能带引号，例如 'knowledge'
+            String name = key.key().replaceAll("^[\"']|[\"']$", "");
+            return metadata.get(name);
+        }
+        throw new IllegalArgumentException("过滤条件左侧应为元数据键 " + operand);
+    }
+
+    private static Object constant(Filter.Operand operand) {
+        if (operand instanceof Filter.Value value) return value.value();
+        throw new IllegalArgumentException("过滤条件右侧应为常量 " + operand);
+    }
+
+    private static boolean equal(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) return a.doubleValue() == b.doubleValue();
+        if (null == actual || null == expected) return Objects.equals(actual, expected);
+        return actual.toString().equals(expected.toString());
+    }
+
+    /**
+     * 缺失的元数据与任何值比较都不满足条件
+     */
+    private static boolean compare(Object actual, Object expected, IntPredicate test) {
+        if (null == actual || null == expected) return false;
+        if (actual instanceof Number a && expected instanceof Number b) return test.test(Double.compare(a.doubleValue(), b.doubleValue()));
+        return test.test(actual.toString().compareTo(expected.toString()));
+    }
+
+    private static boolean contains(Object values, Object actual) {
+        if (values instanceof Collection<?> collection) {
+            for (Object candidate : collection) {
+                if (equal(actual, candidate)) return true;
+            }
+            return false;
+        }
+        return equal(actual, values);
+    }
+
+}
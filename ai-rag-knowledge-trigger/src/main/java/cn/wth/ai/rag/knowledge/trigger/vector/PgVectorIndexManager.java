@@ -0,0 +1,321 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgDistanceType;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgIndexType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: pgvector 索引管理；按配置维护向量列上的 HNSW/IVFFlat 索引和 metadata 上的过滤索引，并给出查询时的 ef_search/probes 设置
+ * 索引名包含类型、距离、构建参数和量化方式，配置变化后旧索引被删除并重建；使用 CONCURRENTLY，不阻塞写入。
+ * 量化时表中仍保存完整的 float32 向量，只对索引建在 halfvec / binary_quantize 表达式上，索引按量化向量取候选，再用原始向量重排
+ * @CreateTime: 2026-10-18 19:30
+ */
+@Slf4j
+public class PgVectorIndexManager {
+
+    /** PostgreSQL 标识符长度上限 */
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final Config config;
+    /** 向量列维度，第一次使用时从表结构读取 */
+    private volatile int dimensions;
+
+    public PgVectorIndexManager(JdbcTemplate jdbcTemplate, String tableName, Config config) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.config = config;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * 后台检查并建索引，大表建索引耗时较长，不阻塞启动
+     */
+    public void ensureIndexesAsync() {
+        Thread thread = new Thread(() -> {
+            try {
+                ensureIndexes();
+            } catch (Exception e) {
+                log.error("向量索引维护失败 table:{}", tableName, e);
+            }
+        }, "rag-vector-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 删除与当前配置不一致的向量索引、重建失效（INVALID）的索引，再补齐缺失的索引
+     */
+    public void ensureIndexes() {
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, tableName);
+        if (!Boolean.TRUE.equals(exists)) {
+            log.warn("向量表不存在，跳过索引维护 table:{}", tableName);
+            return;
+        }
+
+        String embeddingIndex = embeddingIndexName();
+        String prefix = embeddingIndexPrefix();
+        for (Map<String, Object> index : jdbcTemplate.queryForList("""
+                SELECT c.relname AS name, i.indisvalid AS valid
+                FROM pg_index i
+                JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE i.indrelid = ?::regclass
+                """, tableName)) {
+            String name = (String) index.get("name");
+            boolean valid = Boolean.TRUE.equals(index.get("valid"));
+            boolean stale = name.startsWith(prefix) && !name.equals(embeddingIndex);
+            if (stale || !valid) {
+                log.info("删除向量索引 {} 原因:{}", name, stale ? "配置已变化" : "上次创建未完成");
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+            }
+        }
+
+        if (PgIndexType.NONE != config.getIndexType()) {
+            createIndex(embeddingIndex, createEmbeddingIndexSql(embeddingIndex));
+        }
+        if (config.isMetadataIndex()) {
+            // PgVectorStore 的过滤条件是 metadata::jsonb @@ jsonpath，jsonb_path_ops 的 GIN 索引支持该操作符
+            createIndex(truncate(tableName + "_metadata_gin_idx"), "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + truncate(tableName + "_metadata_gin_idx")
+                    + " ON " + tableName + " USING gin ((metadata::jsonb) jsonb_path_ops)");
+            // 按知识库删除向量时使用 metadata->>'knowledge' 等值条件
+            createIndex(truncate(tableName + "_knowledge_idx"), "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + truncate(tableName + "_knowledge_idx")
+                    + " ON " + tableName + " ((metadata->>'knowledge'))");
+        }
+        if (config.isTextIndex()) {
+            // 关键词检索，表达式必须与 KeywordRetriever 的查询一致
+            createIndex(truncate(tableName + "_content_fts_idx"), "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + truncate(tableName + "_content_fts_idx")
+                    + " ON " + tableName + " USING gin (" + textSearchVector(config.getTextSearchConfig()) + ")");
+        }
+    }
+
+    /**
+     * 删除表上全部向量索引（包括不同参数、量化方式的），大批量导入前调用，导入后由 ensureIndexes 重建
+     */
+    public void dropEmbeddingIndexes() {
+        String prefix = embeddingIndexPrefix();
+        for (String name : jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_index i
+                JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE i.indrelid = ?::regclass
+                """, String.class, tableName)) {
+            if (name.startsWith(prefix)) {
+                log.info("删除向量索引 {} 原因:大批量导入", name);
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+            }
+        }
+    }
+
+    /**
+     * 查询前需要在同一事务内执行的设置语句
+     *
+     * @param override 覆盖配置中的 ef_search（HNSW）或 probes（IVFFlat），为空使用配置值
+     */
+    public List<String> searchSettings(Integer override) {
+        List<String> settings = new ArrayList<>();
+        switch (config.getIndexType()) {
+            case HNSW -> settings.add("SET LOCAL hnsw.ef_search = " + (null == override ? config.getEfSearch() : override));
+            case IVFFLAT -> settings.add("SET LOCAL ivfflat.probes = " + (null == override ? config.getProbes() : override));
+            default -> {
+            }
+        }
+        if (StringUtils.isNotBlank(config.getIterativeScan()) && PgIndexType.NONE != config.getIndexType()) {
+            // pgvector 0.8 起支持，带过滤条件时索引返回的结果不足 topK 会继续扫描
+            String prefix = PgIndexType.HNSW == config.getIndexType() ? "hnsw" : "ivfflat";
+            settings.add("SET LOCAL " + prefix + ".iterative_scan = " + config.getIterativeScan());
+        }
+        return settings;
+    }
+
+    public boolean isQuantized() {
+        return Quantization.NONE != config.getQuantization() && PgIndexType.NONE != config.getIndexType();
+    }
+
+    /**
+     * 按量化向量取候选的排序表达式，参数为查询向量（?）；与索引表达式一致，索引才会被使用
+     */
+    public String candidateOrderBy() {
+        int dims = dimensions();
+        return switch (config.getQuantization()) {
+            case HALFVEC -> "(embedding::halfvec(" + dims + ")) " + distanceOperator() + " (?::vector::halfvec(" + dims + "))";
+            case BINARY -> "(binary_quantize(embedding)::bit(" + dims + ")) <~> (binary_quantize(?::vector)::bit(" + dims + "))";
+            case NONE -> "embedding " + distanceOperator() + " ?";
+        };
+    }
+
+    /**
+     * 原始向量之间的距离操作符，与 PgVectorStore 一致
+     */
+    public String distanceOperator() {
+        return switch (config.getDistanceType()) {
+            case EUCLIDEAN_DISTANCE -> "<->";
+            case NEGATIVE_INNER_PRODUCT -> "<#>";
+            case COSINE_DISTANCE -> "<=>";
+        };
+    }
+
+    /**
+     * 向量列的维度；halfvec、bit 的类型修饰必须写明维度
+     */
+    public int dimensions() {
+        if (dimensions == 0) {
+            Integer typmod = jdbcTemplate.queryForObject("SELECT atttypmod FROM pg_attribute WHERE attrelid = ?::regclass AND attname = 'embedding'",
+                    Integer.class, tableName);
+            if (null == typmod || typmod <= 0) {
+                throw new IllegalStateException("向量列没有声明维度，无法量化 table:" + tableName);
+            }
+            dimensions = typmod;
+        }
+        return dimensions;
+    }
+
+    /**
+     * 全文检索的 tsvector 表达式；先把标点换成空格，a.b()、a/b 这类代码片段才会拆成独立的词，否则会被解析成一个整体
+     */
+    public static String textSearchVector(String textSearchConfig) {
+        return "to_tsvector('" + textSearchConfig + "', regexp_replace(content, '[[:punct:]]', ' ', 'g'))";
+    }
+
+    String createEmbeddingIndexSql(String indexName) {
+        String distance = switch (config.getDistanceType()) {
+            case EUCLIDEAN_DISTANCE -> "l2";
+            case NEGATIVE_INNER_PRODUCT -> "ip";
+            case COSINE_DISTANCE -> "cosine";
+        };
+        String column = switch (config.getQuantization()) {
+            case HALFVEC -> "(embedding::halfvec(" + dimensions() + ")) halfvec_" + distance + "_ops";
+            // 二值量化只支持汉明距离，原始向量重排时再按配置的距离排序
+            case BINARY -> "(binary_quantize(embedding)::bit(" + dimensions() + ")) bit_hamming_ops";
+            case NONE -> "embedding vector_" + distance + "_ops";
+        };
+        String with = PgIndexType.HNSW == config.getIndexType()
+                ? "m = " + config.getHnswM() + ", ef_construction = " + config.getHnswEfConstruction()
+                : "lists = " + config.getIvfflatLists();
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + indexName + " ON " + tableName
+                + " USING " + config.getIndexType().name().toLowerCase() + " (" + column + ") WITH (" + with + ")";
+    }
+
+    /**
+     * 向量索引名，例如 vector_store_ollama_deepseek_emb_hnsw_cos_m16_ef64，halfvec 量化时为 ..._ef64_f16
+     */
+    public String embeddingIndexName() {
+        String distance = switch (config.getDistanceType()) {
+            case EUCLIDEAN_DISTANCE -> "l2";
+            case NEGATIVE_INNER_PRODUCT -> "ip";
+            case COSINE_DISTANCE -> "cos";
+        };
+        String params = PgIndexType.HNSW == config.getIndexType()
+                ? "m" + config.getHnswM() + "_ef" + config.getHnswEfConstruction()
+                : "l" + config.getIvfflatLists();
+        String quantization = switch (config.getQuantization()) {
+            case HALFVEC -> "_f16";
+            case BINARY -> "_bin";
+            case NONE -> "";
+        };
+        String suffix = config.getIndexType().name().toLowerCase() + "_" + distance + "_" + params + quantization;
+        String prefix = embeddingIndexPrefix();
+        return prefix + suffix;
+    }
+
+    private String embeddingIndexPrefix() {
+        String prefix = tableName + "_emb_";
+        // 后缀最长约 24 个字符，表名过长时截断前缀，保证整个索引名不被 PostgreSQL 截断
+        return prefix.length() > MAX_IDENTIFIER_LENGTH - 24 ? prefix.substring(0, MAX_IDENTIFIER_LENGTH - 24) : prefix;
+    }
+
+    private static String truncate(String name) {
+        return name.length() > MAX_IDENTIFIER_LENGTH ? name.substring(0, MAX_IDENTIFIER_LENGTH) : name;
+    }
+
+    private void createIndex(String indexName, String sql) {
+        long start = System.currentTimeMillis();
+        boolean tuneMemory = StringUtils.isNotBlank(config.getMaintenanceWorkMem());
+        // maintenance_work_mem 是会话级设置，必须与建索引语句在同一连接上执行，结束后还原再归还连接池
+        jdbcTemplate.execute((Connection connection) -> {
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT to_regclass('" + indexName + "') IS NOT NULL")) {
+                    if (resultSet.next() && resultSet.getBoolean(1)) return null;
+                }
+                if (tuneMemory) {
+                    statement.execute("SET maintenance_work_mem = '" + config.getMaintenanceWorkMem().replace("'", "") + "'");
+                }
+                try {
+                    log.info("创建向量索引 {}", sql);
+                    statement.execute(sql);
+                    log.info("创建向量索引完成 {} 耗时:{}ms", indexName, System.currentTimeMillis() - start);
+                } finally {
+                    if (tuneMemory) {
+                        statement.execute("RESET maintenance_work_mem");
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 向量索引参数
+     */
+    @Data
+    public static class Config {
+        /** 是否在启动时维护索引 */
+        private boolean manageOnStartup = true;
+        /** 索引类型；HNSW、IVFFLAT、NONE */
+        private PgIndexType indexType = PgIndexType.HNSW;
+        /** 距离类型，需与向量库查询使用的距离一致，否则索引不会被使用 */
+        private PgDistanceType distanceType = PgDistanceType.COSINE_DISTANCE;
+        /** HNSW 每个节点的邻居数 */
+        private int hnswM = 16;
+        /** HNSW 构建时的候选列表大小 */
+        private int hnswEfConstruction = 64;
+        /** IVFFlat 聚类数，建议 行数/1000（百万行以上取 sqrt(行数)） */
+        private int ivfflatLists = 100;
+        /** HNSW 查询时的候选列表大小，越大召回越高、越慢 */
+        private int efSearch = 40;
+        /** IVFFlat 查询时扫描的聚类数 */
+        private int probes = 10;
+        /** 带过滤条件时的迭代扫描；off、relaxed_order、strict_order，为空不设置（需要 pgvector 0.8+） */
+        private String iterativeScan;
+        /** 建索引时的 maintenance_work_mem，例如 1GB，为空使用数据库默认值 */
+        private String maintenanceWorkMem;
+        /** 是否维护 metadata 过滤索引 */
+        private boolean metadataIndex = true;
+        /** 是否维护 content 全文检索索引，混合检索的关键词部分使用 */
+        private boolean textIndex = true;
+        /** 全文检索配置，simple 不做词干和停用词处理，适合代码标识符 */
+        private String textSearchConfig = "simple";
+        /** 向量索引的量化方式；NONE、HALFVEC（索引约为 1/2）、BINARY（索引约为 1/32，需要更大的重排倍数） */
+        private Quantization quantization = Quantization.NONE;
+        /** 量化时从索引取 topK * rerankFactor 个候选，再用原始向量重排 */
+        private int rerankFactor = 4;
+    }
+
+    public enum Quantization {
+        /** 索引使用原始 float32 向量 */
+        NONE,
+        /** 索引使用 float16（halfvec），需要 pgvector 0.7+ */
+        HALFVEC,
+        /** 索引使用二值量化（每维 1 bit）与汉明距离，需要 pgvector 0.7+ */
+        BINARY
+    }
+
+}
@@ -0,0 +1,134 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import com.alibaba.fastjson.JSON;
+import com.pgvector.PGvector;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgIndexType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: 5th
+ * @Description: 带查询参数的向量库；在只读事务内先 SET LOCAL hnsw.ef_search / ivfflat.probes 再检索，设置只对本次查询生效，不会污染连接池中的连接
+ * 索引量化时不经过 PgVectorStore：内层按量化表达式走索引取 topK * rerankFactor 个候选，外层用原始向量计算距离重排
+ * @CreateTime: 2026-10-18 19:30
+ */
+public class TunedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+    private final EmbeddingModel embeddingModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PgVectorIndexManager indexManager;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    public TunedVectorStore(VectorStore delegate, EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager, PgVectorIndexManager indexManager) {
+        this.delegate = delegate;
+        this.embeddingModel = embeddingModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.indexManager = indexManager;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return similaritySearch(request, null);
+    }
+
+    /**
+     * @param searchParam 本次查询的 ef_search（HNSW）或 probes（IVFFlat），为空使用配置值
+     */
+    public List<Document> similaritySearch(SearchRequest request, Integer searchParam) {
+        if (indexManager.isQuantized()) {
+            return quantizedSearch(request, searchParam);
+        }
+        List<String> settings = indexManager.searchSettings(searchParam);
+        if (settings.isEmpty()) {
+            return delegate.similaritySearch(request);
+        }
+        return transactionTemplate.execute(status -> {
+            settings.forEach(jdbcTemplate::execute);
+            return delegate.similaritySearch(request);
+        });
+    }
+
+    /**
+     * 量化索引取候选、原始向量重排；分数和 metadata.distance 与 PgVectorStore 的结果一致（分数 = 1 - 距离）
+     */
+    private List<Document> quantizedSearch(SearchRequest request, Integer searchParam) {
+        PgVectorIndexManager.Config config = indexManager.getConfig();
+        int candidates = request.getTopK() * Math.max(1, config.getRerankFactor());
+        // HNSW 一次最多返回 ef_search 个结果，候选数不能超过它
+        Integer param = searchParam;
+        if (PgIndexType.HNSW == config.getIndexType()) {
+            param = Math.max(null == searchParam ? config.getEfSearch() : searchParam, candidates);
+        }
+        List<String> settings = indexManager.searchSettings(param);
+
+        PGvector query = new PGvector(embeddingModel.embed(request.getQuery()));
+        // 过滤条件作为参数绑定，不拼进 SQL
+        List<Object> args = new ArrayList<>(List.of(query));
+        String where = "";
+        if (request.hasFilterExpression()) {
+            where = "WHERE metadata::jsonb @@ ?::jsonpath ";
+            args.add(filterConverter.convertExpression(request.getFilterExpression()));
+        }
+        String sql = "SELECT id::text AS id, content, metadata::text AS metadata, distance FROM ("
+                + "SELECT id, content, metadata, embedding " + indexManager.distanceOperator() + " ? AS distance FROM ("
+                + "SELECT id, content, metadata, embedding FROM " + indexManager.getTableName() + " " + where
+                + "ORDER BY " + indexManager.candidateOrderBy() + " LIMIT ?) candidates) reranked "
+                + "WHERE distance < ? ORDER BY distance LIMIT ?";
+        args.addAll(List.of(query, candidates, 1 - request.getSimilarityThreshold(), request.getTopK()));
+
+        return transactionTemplate.execute(status -> {
+            settings.forEach(jdbcTemplate::execute);
+            return jdbcTemplate.query(sql, (rs, rowNum) -> {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> metadata = JSON.parseObject(rs.getString("metadata"), Map.class);
+                Map<String, Object> documentMetadata = null == metadata ? new HashMap<>() : new HashMap<>(metadata);
+                float distance = rs.getFloat("distance");
+                documentMetadata.put("distance", distance);
+                return Document.builder()
+                        .id(rs.getString("id"))
+                        .text(rs.getString("content"))
+                        .metadata(documentMetadata)
+                        .score(1D - distance)
+                        .build();
+            }, args.toArray());
+        });
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+}
@@ -0,0 +1,358 @@
+package cn.wth.ai.rag.knowledge.trigger.vector;
+
+import cn.wth.ai.rag.knowledge.trigger.ingest.JdbcPgVectorWriter;
+import cn.wth.ai.rag.knowledge.trigger.ingest.PgCopyVectorWriter;
+import cn.wth.ai.rag.knowledge.trigger.ingest.VectorStoreWriter;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: 5th
+ * @Description: 按知识库标签路由向量表；SHARED 模式所有知识库共用一张表、检索时按 knowledge 过滤，
+ * TABLE_PER_TAG 模式每个知识库一张表（各自的向量索引），检索不再需要过滤，清空、删除、重建索引只涉及该知识库的数据；
+ * 配置了进程内向量层时，热点知识库的检索走进程内索引，写入和删除同时同步过去；
+ * 启用 COPY 写入时分片以二进制 COPY 批量写入，独立表全量导入期间可以先去掉向量索引、导入结束后再建
+ * @CreateTime: 2026-10-18 20:10
+ */
+@Slf4j
+public class VectorStoreRouter implements VectorStoreWriter {
+
+    /**
+     * 知识库表名长度上限；索引名是 表名 + "_emb_" + 约 24 个字符的参数后缀，
+     * 超过后 PgVectorIndexManager 会截断表名部分，不同知识库的索引名可能冲突
+     */
+    private static final int MAX_TABLE_NAME_LENGTH = 34;
+    /** 表名中标签哈希的长度 */
+    private static final int HASH_LENGTH = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final EmbeddingModel embeddingModel;
+    private final Config config;
+    private final PgCopyVectorWriter.Config copyConfig;
+    /** 知识库表的索引参数，与共用表一致，但不建 metadata 过滤索引 */
+    private final PgVectorIndexManager.Config tableIndexConfig;
+
+    private final Route shared;
+    /** 知识库标签 → 独立表 */
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    /** 热点知识库的进程内向量层，未启用时为 null */
+    private final LocalVectorTier localTier;
+
+    public VectorStoreRouter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, EmbeddingModel embeddingModel,
+                             PgVectorStore sharedStore, String sharedTableName, PgVectorIndexManager sharedIndexManager, Config config,
+                             PgCopyVectorWriter.Config copyConfig, LocalVectorTier localTier) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.localTier = localTier;
+        this.transactionManager = transactionManager;
+        this.embeddingModel = embeddingModel;
+        this.config = config;
+        this.copyConfig = copyConfig;
+        this.tableIndexConfig = new PgVectorIndexManager.Config();
+        BeanUtils.copyProperties(sharedIndexManager.getConfig(), tableIndexConfig);
+        this.tableIndexConfig.setMetadataIndex(false);
+        this.shared = new Route(sharedTableName,
+                new TunedVectorStore(sharedStore, embeddingModel, jdbcTemplate, transactionManager, sharedIndexManager),
+                sharedIndexManager, writer(sharedTableName));
+    }
+
+    /**
+     * 是否每个知识库一张表；是则检索不需要按 knowledge 过滤
+     */
+    public boolean isTablePerTag() {
+        return Mode.TABLE_PER_TAG == config.getMode();
+    }
+
+    /**
+     * 检索用的向量库；热点知识库的进程内索引就绪后优先使用，知识库还没有数据（独立表不存在）时返回 null
+     */
+    public VectorStore find(String ragTag) {
+        if (null != localTier && localTier.isHot(ragTag)) {
+            HnswVectorStore local = localTier.find(ragTag);
+            if (null != local) return local;
+        }
+        Route route = existingRoute(ragTag);
+        return null == route ? null : route.store;
+    }
+
+    /**
+     * 热点知识库与表中数据对账；知识库还没有数据时跳过
+     */
+    public void syncLocalTier() {
+        if (null == localTier) return;
+        for (String ragTag : localTier.getHotTags()) {
+            Route route = existingRoute(ragTag);
+            if (null != route) {
+                localTier.sync(ragTag, route.table, !isTablePerTag());
+            }
+        }
+    }
+
+    /**
+     * 知识库对应的表名，例如 rag_kb_ai_rag_knowledge_1a2b3c4d
+     */
+    public String tableName(String ragTag) {
+        if (!isTablePerTag()) return shared.table;
+        String slug = ragTag.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_+|_+$", "");
+        int maxSlugLength = Math.max(0, MAX_TABLE_NAME_LENGTH - config.getTablePrefix().length() - HASH_LENGTH - 1);
+        if (slug.length() > maxSlugLength) {
+            slug = slug.substring(0, maxSlugLength);
+        }
+        // 标签转成表名会丢失大小写和特殊字符，追加原始标签的哈希保证不同标签不会落到同一张表
+        return config.getTablePrefix() + (slug.isEmpty() ? "" : slug + "_") + hash(ragTag);
+    }
+
+    /**
+     * 按元数据 knowledge 分组写入各自的表；流水线的一批分片通常只属于一个知识库。热点知识库的分片同时写入进程内索引
+     */
+    @Override
+    public void write(List<Document> documents, List<float[]> embeddings) {
+        if (!isTablePerTag()) {
+            shared.writer.write(documents, embeddings);
+            if (null == localTier) return;
+        }
+        Map<String, List<Integer>> byTag = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Object knowledge = documents.get(i).getMetadata().get("knowledge");
+            if (null == knowledge) {
+                if (!isTablePerTag()) continue;
+                throw new IllegalArgumentException("document " + documents.get(i).getId() + " has no knowledge metadata");
+            }
+            byTag.computeIfAbsent(knowledge.toString(), key -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<String, List<Integer>> entry : byTag.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            List<Document> tagDocuments = documents;
+            List<float[]> tagEmbeddings = embeddings;
+            if (indexes.size() != documents.size()) {
+                tagDocuments = new ArrayList<>(indexes.size());
+                tagEmbeddings = new ArrayList<>(indexes.size());
+                for (int i : indexes) {
+                    tagDocuments.add(documents.get(i));
+                    tagEmbeddings.add(embeddings.get(i));
+                }
+            }
+            if (isTablePerTag()) {
+                route(entry.getKey()).writer.write(tagDocuments, tagEmbeddings);
+            }
+            if (null != localTier && localTier.isHot(entry.getKey())) {
+                localTier.write(entry.getKey(), tagDocuments, tagEmbeddings);
+            }
+        }
+    }
+
+    @Override
+    public void deleteBySources(String ragTag, Collection<String> sources) {
+        Route route = existingRoute(ragTag);
+        if (null != route) {
+            route.writer.deleteBySources(ragTag, sources);
+        }
+        if (null != localTier) {
+            localTier.deleteBySources(ragTag, sources);
+        }
+    }
+
+    /**
+     * 清空知识库；独立表使用 TRUNCATE，保留表和索引，后续导入直接写入
+     */
+    @Override
+    public void deleteByTag(String ragTag) {
+        if (null != localTier) {
+            localTier.clear(ragTag);
+        }
+        if (!isTablePerTag()) {
+            shared.writer.deleteByTag(ragTag);
+            return;
+        }
+        Route route = existingRoute(ragTag);
+        if (null != route) {
+            jdbcTemplate.execute("TRUNCATE " + route.table);
+        }
+    }
+
+    @Override
+    public void deleteByJob(String ragTag, String jobId) {
+        Route route = existingRoute(ragTag);
+        if (null != route) {
+            route.writer.deleteByJob(ragTag, jobId);
+        }
+        if (null != localTier) {
+            localTier.deleteByJob(ragTag, jobId);
+        }
+    }
+
+    @Override
+    public void deleteByOriginExcept(String ragTag, String origin, String jobId) {
+        Route route = existingRoute(ragTag);
+        if (null != route) {
+            route.writer.deleteByOriginExcept(ragTag, origin, jobId);
+        }
+        if (null != localTier) {
+            localTier.deleteByOriginExcept(ragTag, origin, jobId);
+        }
+    }
+
+    /**
+     * 独立表全量导入前删除向量索引，导入期间检索退化为顺序扫描；共用表的索引覆盖所有知识库，不做处理
+     */
+    @Override
+    public void beginBulkLoad(String ragTag) {
+        if (!isTablePerTag() || !copyConfig.isDeferIndexBuild()) return;
+        Route route = route(ragTag);
+        route.indexManager.dropEmbeddingIndexes();
+        log.info("知识库全量导入，延后构建向量索引 {} table:{}", ragTag, route.table);
+    }
+
+    /**
+     * 全量导入结束后在后台构建向量索引
+     */
+    @Override
+    public void endBulkLoad(String ragTag) {
+        if (!isTablePerTag() || !copyConfig.isDeferIndexBuild()) return;
+        Route route = existingRoute(ragTag);
+        if (null != route) {
+            route.indexManager.ensureIndexesAsync();
+        }
+    }
+
+    /**
+     * 删除知识库；独立表直接 DROP，共用表按 knowledge 删除
+     */
+    public void drop(String ragTag) {
+        if (null != localTier) {
+            localTier.clear(ragTag);
+        }
+        if (!isTablePerTag()) {
+            shared.writer.deleteByTag(ragTag);
+            return;
+        }
+        String table = tableName(ragTag);
+        routes.remove(ragTag);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        log.info("删除知识库表 {} table:{}", ragTag, table);
+    }
+
+    /**
+     * 知识库的分片数；独立表统计整张表，共用表按 knowledge 过滤，知识库还没有数据时为 0
+     */
+    public long count(String ragTag) {
+        Route route = existingRoute(ragTag);
+        if (null == route) return 0;
+        Long count = isTablePerTag()
+                ? jdbcTemplate.queryForObject("SELECT count(*) FROM " + route.table, Long.class)
+                : jdbcTemplate.queryForObject("SELECT count(*) FROM " + route.table + " WHERE metadata->>'knowledge' = ?", Long.class, ragTag);
+        return null == count ? 0 : count;
+    }
+
+    /**
+     * 重建知识库的向量索引（IVFFlat 在数据导入后重建聚类更准确）；共用表的索引覆盖所有知识库，不支持单独重建
+     *
+     * @return 是否执行了重建
+     */
+    public boolean reindex(String ragTag) {
+        if (!isTablePerTag()) return false;
+        Route route = existingRoute(ragTag);
+        if (null == route) return false;
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute("REINDEX TABLE CONCURRENTLY " + route.table);
+        log.info("重建知识库索引 {} table:{} 耗时:{}ms", ragTag, route.table, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private Route existingRoute(String ragTag) {
+        if (!isTablePerTag()) return shared;
+        Route route = routes.get(ragTag);
+        if (null != route) return route;
+        String table = tableName(ragTag);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+        return Boolean.TRUE.equals(exists) ? route(ragTag) : null;
+    }
+
+    /**
+     * 知识库的独立表，不存在时建表和向量索引；空表上建 HNSW 索引很快，后续写入增量维护
+     */
+    private Route route(String ragTag) {
+        return routes.computeIfAbsent(ragTag, key -> {
+            String table = tableName(key);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " (id uuid DEFAULT uuid_generate_v4() PRIMARY KEY, content text, "
+                    + "metadata json, embedding vector(" + embeddingModel.dimensions() + "))");
+            PgVectorIndexManager indexManager = new PgVectorIndexManager(jdbcTemplate, table, tableIndexConfig);
+            indexManager.ensureIndexes();
+
+            PgVectorStore store = PgVectorStore.builder(jdbcTemplate, embeddingModel)
+                    .vectorTableName(table)
+                    .distanceType(tableIndexConfig.getDistanceType())
+                    .initializeSchema(false)
+                    .batchingStrategy(documents -> List.of(documents))
+                    .build();
+            log.info("知识库表就绪 {} table:{}", key, table);
+            return new Route(table, new TunedVectorStore(store, embeddingModel, jdbcTemplate, transactionManager, indexManager),
+                    indexManager, writer(table));
+        });
+    }
+
+    private VectorStoreWriter writer(String table) {
+        return copyConfig.isEnabled() ? new PgCopyVectorWriter(jdbcTemplate, table, copyConfig) : new JdbcPgVectorWriter(jdbcTemplate, table);
+    }
+
+    private static String hash(String ragTag) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(ragTag.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest).substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Route {
+        private final String table;
+        private final TunedVectorStore store;
+        private final PgVectorIndexManager indexManager;
+        private final VectorStoreWriter writer;
+
+        Route(String table, TunedVectorStore store, PgVectorIndexManager indexManager, VectorStoreWriter writer) {
+            this.table = table;
+            this.store = store;
+            this.indexManager = indexManager;
+            this.writer = writer;
+        }
+    }
+
+    public enum Mode {
+        /** 所有知识库共用一张表 */
+        SHARED,
+        /** 每个知识库一张表 */
+        TABLE_PER_TAG
+    }
+
+    /**
+     * 向量表路由参数
+     */
+    @Data
+    public static class Config {
+        /** 路由方式；切换后已有知识库需要重新导入 */
+        private Mode mode = Mode.SHARED;
+        /** 知识库表名前缀，只能包含小写字母、数字和下划线 */
+        private String tablePrefix = "rag_kb_";
+    }
+
+}
@@ -1 +1,28 @@
 CREATE EXTENSION IF NOT EXISTS vector;
+CREATE EXTENSION IF NOT EXISTS hstore;
+CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
+
+-- 知识库向量表，结构与 PgVectorStore 一致；nomic-embed-text 向量维度为 768
+CREATE TABLE IF NOT EXISTS vector_store_ollama_deepseek (
+    id uuid DEFAULT uuid_generate_v4() PRIMARY KEY,
+    content text,
+    metadata json,
+    embedding vector(768)
+);
+
+-- 向量索引，与 rag.vector.index 默认配置一致（HNSW、余弦距离、m=16、ef_construction=64）
+-- 应用启动时会按配置检查，配置变化后删除并重建
+CREATE INDEX IF NOT EXISTS vector_store_ollama_deepseek_emb_hnsw_cos_m16_ef64
+    ON vector_store_ollama_deepseek USING hnsw (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64);
+
+-- 检索按知识库过滤：metadata::jsonb @@ '$.knowledge == "xxx"'
+CREATE INDEX IF NOT EXISTS vector_store_ollama_deepseek_metadata_gin_idx
+    ON vector_store_ollama_deepseek USING gin ((metadata::jsonb) jsonb_path_ops);
+
+-- 按知识库删除：metadata->>'knowledge' = 'xxx'
+CREATE INDEX IF NOT EXISTS vector_store_ollama_deepseek_knowledge_idx
+    ON vector_store_ollama_deepseek ((metadata->>'knowledge'));
+
+-- 关键词检索：标点换成空格后分词，表达式与 KeywordRetriever 的查询一致
+CREATE INDEX IF NOT EXISTS vector_store_ollama_deepseek_content_fts_idx
+    ON vector_store_ollama_deepseek USING gin (to_tsvector('simple', regexp_replace(content, '[[:punct:]]', ' ', 'g')));